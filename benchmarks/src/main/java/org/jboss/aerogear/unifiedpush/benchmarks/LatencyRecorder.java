@@ -0,0 +1,65 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe collector of latencies (in milliseconds), that reports percentiles.
+ */
+public final class LatencyRecorder {
+
+    private long[] values = new long[1024];
+    private int size;
+
+    public synchronized void record(long millis) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = millis;
+    }
+
+    public synchronized int getCount() {
+        return size;
+    }
+
+    /**
+     * Adds all latencies of this recorder to the given one.
+     */
+    public void copyTo(LatencyRecorder target) {
+        final long[] copy;
+        synchronized (this) {
+            copy = Arrays.copyOf(values, size);
+        }
+        for (long value : copy) {
+            target.record(value);
+        }
+    }
+
+    /**
+     * Returns the given percentile (0 - 100), using the nearest-rank method.
+     */
+    public synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        final long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * size);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,342 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a registration storm against the installation registration endpoint (<code>/rest/registry/device</code>):
+ * a mix of new devices, re-launches with unchanged metadata, token rotations (a new token for a known device,
+ * the old one stays behind, like it does in production) and unregisters.
+ *
+ * Reports the requests per second and latency percentiles per operation and, if <code>load.jmxUrl</code> is given,
+ * the database statements per request, read from the <code>TotalExecutions</code> of the server's
+ * <code>org.jboss.aerogear.unifiedpush:type=QueryStatistics</code> MBean before and after the run.
+ * Configured with system properties:
+ * <ul>
+ *     <li><code>load.serverUrl</code>, default: <code>http://localhost:8080/ag-push</code></li>
+ *     <li><code>load.variantID</code> and <code>load.secret</code> of an existing variant</li>
+ *     <li><code>load.variantType</code>, <code>android</code> (default) or <code>ios</code></li>
+ *     <li><code>load.devices</code>, default: 10000, the devices registered before the measurement</li>
+ *     <li><code>load.requests</code>, default: 10000 and <code>load.concurrency</code>, default: 10</li>
+ *     <li><code>load.mix</code>, default: <code>new:20,relaunch:60,rotate:15,unregister:5</code></li>
+ *     <li><code>load.jmxUrl</code>, <code>load.jmxUser</code> and <code>load.jmxPassword</code>, optional, e.g.
+ *     <code>service:jmx:http-remoting-jmx://localhost:9990</code> (requires the JMX client of the server on the classpath)</li>
+ *     <li><code>load.historyFile</code>, optional, a CSV file the results are appended to</li>
+ * </ul>
+ */
+public final class RegistrationLoadDriver {
+
+    private static final String QUERY_STATISTICS = "org.jboss.aerogear.unifiedpush:type=QueryStatistics";
+
+    enum Operation {
+        NEW, RELAUNCH, ROTATE, UNREGISTER
+    }
+
+    private final RestClient client = new RestClient(System.getProperty("load.serverUrl", "http://localhost:8080/ag-push"));
+    private final String variantType = System.getProperty("load.variantType", "android");
+    private final int devices = Integer.getInteger("load.devices", 10000);
+    private final int requests = Integer.getInteger("load.requests", 10000);
+    private final int concurrency = Integer.getInteger("load.concurrency", 10);
+    private final long timeoutMillis = TimeUnit.SECONDS.toMillis(Long.getLong("load.timeoutSeconds", 600));
+
+    private final String authorization;
+    private final OperationMix mix;
+
+    private final AtomicInteger nextDevice = new AtomicInteger();
+    private final AtomicInteger nextToken = new AtomicInteger();
+    private final List<Device> registered = new ArrayList<Device>();
+    private final Random random = new Random();
+
+    private final Map<Operation, LatencyRecorder> latencies = new HashMap<Operation, LatencyRecorder>();
+    private final Map<Operation, AtomicInteger> failures = new HashMap<Operation, AtomicInteger>();
+
+    private RegistrationLoadDriver() {
+        authorization = RestClient.basic(required("load.variantID"), required("load.secret"));
+        mix = OperationMix.parse(System.getProperty("load.mix", "new:20,relaunch:60,rotate:15,unregister:5"));
+        resetStatistics();
+    }
+
+    private void resetStatistics() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyRecorder());
+            failures.put(operation, new AtomicInteger());
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        new RegistrationLoadDriver().run();
+    }
+
+    private void run() throws Exception {
+        final long seedStart = System.currentTimeMillis();
+        execute(devices, Operation.NEW);
+        System.out.println(String.format(Locale.ENGLISH, "Registered %d devices in %d ms",
+                devices, System.currentTimeMillis() - seedStart));
+        resetStatistics();
+
+        final JMXConnector jmx = connectJmx();
+        try {
+            final long statementsBefore = totalStatements(jmx);
+            final long start = System.currentTimeMillis();
+            execute(requests, null);
+            final long duration = Math.max(1, System.currentTimeMillis() - start);
+            final long statements = totalStatements(jmx) - statementsBefore;
+
+            final LatencyRecorder all = new LatencyRecorder();
+            for (Operation operation : Operation.values()) {
+                final LatencyRecorder latency = latencies.get(operation);
+                System.out.println(String.format(Locale.ENGLISH, "%-10s %7d requests (%d failed), p50 %d ms, p95 %d ms, p99 %d ms",
+                        operation.name().toLowerCase(Locale.ENGLISH), latency.getCount(), failures.get(operation).get(),
+                        latency.percentile(50), latency.percentile(95), latency.percentile(99)));
+                latency.copyTo(all);
+            }
+
+            final double requestsPerSecond = requests * 1000.0 / duration;
+            final double statementsPerRequest = jmx == null ? Double.NaN : statements / (double) requests;
+            System.out.println(String.format(Locale.ENGLISH, "%d requests in %d ms: %.1f requests/s, p50 %d ms, p99 %d ms, %.2f DB statements/request",
+                    requests, duration, requestsPerSecond, all.percentile(50), all.percentile(99), statementsPerRequest));
+
+            appendHistory(requestsPerSecond, all, statementsPerRequest);
+        } finally {
+            if (jmx != null) {
+                jmx.close();
+            }
+        }
+    }
+
+    /**
+     * Runs the given operation the given number of times, or operations picked from the mix, if <code>null</code>.
+     */
+    private void execute(int times, final Operation fixed) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        for (int i = 0; i < times; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        perform(fixed != null ? fixed : mix.pick(random));
+                    } catch (IOException e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        if (!errors.isEmpty()) {
+            System.out.println(errors.size() + " requests failed, e.g. " + errors.get(0));
+        }
+    }
+
+    private void perform(Operation operation) throws IOException {
+        Device device = null;
+        if (operation != Operation.NEW) {
+            device = operation == Operation.RELAUNCH ? randomDevice() : takeRandomDevice();
+            if (device == null) {
+                operation = Operation.NEW;
+            }
+        }
+
+        final int status;
+        final long start = System.currentTimeMillis();
+        switch (operation) {
+            case NEW:
+                device = new Device(nextDevice.getAndIncrement(), newToken());
+                status = register(device);
+                break;
+            case RELAUNCH:
+                status = register(device);
+                break;
+            case ROTATE:
+                device = new Device(device.id, newToken());
+                status = register(device);
+                break;
+            default:
+                status = client.delete("/rest/registry/device/" + device.token, authorization);
+                break;
+        }
+        latencies.get(operation).record(System.currentTimeMillis() - start);
+
+        if (status >= 300) {
+            failures.get(operation).incrementAndGet();
+        } else if (operation != Operation.UNREGISTER && operation != Operation.RELAUNCH) {
+            synchronized (registered) {
+                registered.add(device);
+            }
+        }
+    }
+
+    private int register(Device device) throws IOException {
+        final String body = "{\"deviceToken\":\"" + device.token + "\",\"alias\":\"load-user-" + device.id
+                + "@example.com\",\"deviceType\":\"" + variantType + "\",\"operatingSystem\":\"" + variantType
+                + "\",\"osVersion\":\"5.0\",\"categories\":[\"news\",\"sport\"]}";
+        return client.post("/rest/registry/device", authorization, body);
+    }
+
+    private Device randomDevice() {
+        synchronized (registered) {
+            return registered.isEmpty() ? null : registered.get(random.nextInt(registered.size()));
+        }
+    }
+
+    /**
+     * Removes a random device from the registered ones, swapping the last one into its slot.
+     */
+    private Device takeRandomDevice() {
+        synchronized (registered) {
+            if (registered.isEmpty()) {
+                return null;
+            }
+            final int index = random.nextInt(registered.size());
+            final Device device = registered.get(index);
+            registered.set(index, registered.get(registered.size() - 1));
+            registered.remove(registered.size() - 1);
+            return device;
+        }
+    }
+
+    /**
+     * Device tokens, that pass the validation of the configured variant type.
+     */
+    private String newToken() {
+        final int index = nextToken.getAndIncrement();
+        if ("ios".equals(variantType)) {
+            return String.format("%064x", index);
+        }
+        return String.format("APA91%095d", index);
+    }
+
+    private JMXConnector connectJmx() throws IOException {
+        final String url = System.getProperty("load.jmxUrl");
+        if (url == null) {
+            System.out.println("No load.jmxUrl given, the DB statements per request are not measured");
+            return null;
+        }
+        final Map<String, Object> environment = new HashMap<String, Object>();
+        final String user = System.getProperty("load.jmxUser");
+        if (user != null) {
+            environment.put(JMXConnector.CREDENTIALS, new String[] {user, System.getProperty("load.jmxPassword", "")});
+        }
+        return JMXConnectorFactory.connect(new JMXServiceURL(url), environment);
+    }
+
+    private static long totalStatements(JMXConnector jmx) throws Exception {
+        if (jmx == null) {
+            return 0;
+        }
+        final MBeanServerConnection connection = jmx.getMBeanServerConnection();
+        return (Long) connection.getAttribute(new ObjectName(QUERY_STATISTICS), "TotalExecutions");
+    }
+
+    private void appendHistory(double requestsPerSecond, LatencyRecorder all, double statementsPerRequest) throws IOException {
+        final String historyFile = System.getProperty("load.historyFile");
+        if (historyFile == null) {
+            return;
+        }
+        final Writer writer = new FileWriter(historyFile, true);
+        try {
+            writer.write(String.format(Locale.ENGLISH, "%d;%s;%d;%d;%.1f;%d;%d;%.2f%n", System.currentTimeMillis(),
+                    variantType, requests, concurrency, requestsPerSecond, all.percentile(50), all.percentile(99),
+                    statementsPerRequest));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String required(String name) {
+        final String value = System.getProperty(name);
+        if (value == null) {
+            throw new IllegalArgumentException("System property " + name + " is required");
+        }
+        return value;
+    }
+
+    private static final class Device {
+        private final int id;
+        private final String token;
+
+        private Device(int id, String token) {
+            this.id = id;
+            this.token = token;
+        }
+    }
+
+    /**
+     * Weighted choice of the operations, parsed from <code>operation:weight</code> pairs.
+     */
+    static final class OperationMix {
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+
+        private OperationMix(Operation[] operations, int[] cumulativeWeights) {
+            this.operations = operations;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        static OperationMix parse(String mix) {
+            final String[] entries = mix.split(",");
+            final Operation[] operations = new Operation[entries.length];
+            final int[] cumulativeWeights = new int[entries.length];
+            int total = 0;
+            for (int i = 0; i < entries.length; i++) {
+                final String[] parts = entries[i].trim().split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Expected operation:weight, got " + entries[i]);
+                }
+                operations[i] = Operation.valueOf(parts[0].trim().toUpperCase(Locale.ENGLISH));
+                total += Integer.parseInt(parts[1].trim());
+                cumulativeWeights[i] = total;
+            }
+            if (total <= 0) {
+                throw new IllegalArgumentException("The weights of " + mix + " have to add up to more than 0");
+            }
+            return new OperationMix(operations, cumulativeWeights);
+        }
+
+        Operation pick(Random random) {
+            final int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks;
+
+import net.iharder.Base64;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+/**
+ * Minimal HTTP client for the RESTful endpoints of the UnifiedPush Server, used by the load drivers.
+ */
+final class RestClient {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String serverUrl;
+
+    RestClient(String serverUrl) {
+        this.serverUrl = serverUrl;
+    }
+
+    /**
+     * POSTs the given JSON and returns the HTTP status.
+     */
+    int post(String path, String authorization, String json) throws IOException {
+        final byte[] bytes = json.getBytes(UTF_8);
+        final HttpURLConnection connection = open(path, "POST", authorization);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(bytes.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+
+        final OutputStream out = connection.getOutputStream();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return drain(connection);
+    }
+
+    /**
+     * Sends a DELETE and returns the HTTP status.
+     */
+    int delete(String path, String authorization) throws IOException {
+        return drain(open(path, "DELETE", authorization));
+    }
+
+    static String basic(String username, String password) {
+        return "Basic " + Base64.encodeBytes((username + ":" + password).getBytes(UTF_8));
+    }
+
+    private HttpURLConnection open(String path, String method, String authorization) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(serverUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Authorization", authorization);
+        return connection;
+    }
+
+    /**
+     * Reads the response, so that the keep-alive connection is reused.
+     */
+    private static int drain(HttpURLConnection connection) throws IOException {
+        final int status = connection.getResponseCode();
+        final InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            try {
+                final byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) {
+                    // discard
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status;
+    }
+}
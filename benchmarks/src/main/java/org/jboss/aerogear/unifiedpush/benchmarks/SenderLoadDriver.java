@@ -0,0 +1,215 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks;
+
+import org.jboss.aerogear.unifiedpush.benchmarks.mock.DeliveryStatistics;
+import org.jboss.aerogear.unifiedpush.benchmarks.mock.MockBehavior;
+import org.jboss.aerogear.unifiedpush.benchmarks.mock.MockNetworks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end throughput benchmark: starts the {@link MockNetworks}, registers installations for the given variants,
+ * fires messages at the RESTful sender endpoint and waits until the mock networks stopped receiving.
+ *
+ * The UnifiedPush Server has to run with the system properties printed on start-up, the push application and its
+ * variants have to exist (for iOS variants, upload <code>mock-apns-client.p12</code>, password <code>aerogear</code>).
+ * Configured with system properties:
+ * <ul>
+ *     <li><code>load.serverUrl</code>, default: <code>http://localhost:8080/ag-push</code></li>
+ *     <li><code>load.pushApplicationID</code> and <code>load.masterSecret</code></li>
+ *     <li><code>load.variants</code>, comma separated <code>type:variantID:secret</code>, type is one of
+ *     <code>android</code>, <code>ios</code>, <code>chrome</code> or <code>simplePush</code></li>
+ *     <li><code>load.installationsPerVariant</code>, default: 1000, 0 skips the registration</li>
+ *     <li><code>load.messages</code>, default: 1000 and <code>load.concurrency</code>, default: 10</li>
+ *     <li><code>load.quietPeriodSeconds</code>, default: 10, finishes once nothing was delivered for this time</li>
+ * </ul>
+ * The behavior of the mock networks is configured as described in {@link MockBehavior}.
+ */
+public final class SenderLoadDriver {
+
+    private final RestClient client = new RestClient(System.getProperty("load.serverUrl", "http://localhost:8080/ag-push"));
+    private final int installationsPerVariant = Integer.getInteger("load.installationsPerVariant", 1000);
+    private final int messages = Integer.getInteger("load.messages", 1000);
+    private final int concurrency = Integer.getInteger("load.concurrency", 10);
+    private final long quietPeriodMillis = TimeUnit.SECONDS.toMillis(Long.getLong("load.quietPeriodSeconds", 10));
+    private final long timeoutMillis = TimeUnit.SECONDS.toMillis(Long.getLong("load.timeoutSeconds", 600));
+
+    private final MockNetworks networks;
+
+    private SenderLoadDriver(MockNetworks networks) {
+        this.networks = networks;
+    }
+
+    public static void main(String... args) throws Exception {
+        final MockNetworks networks = new MockNetworks(MockBehavior.fromSystemProperties());
+        networks.start();
+        System.out.println("Mock push networks started, the UnifiedPush Server has to run with:");
+        System.out.println(networks.serverSystemProperties());
+
+        try {
+            new SenderLoadDriver(networks).run();
+        } finally {
+            networks.stop();
+        }
+    }
+
+    private void run() throws Exception {
+        final String pushApplicationID = required("load.pushApplicationID");
+        final String masterSecret = required("load.masterSecret");
+
+        if (installationsPerVariant > 0) {
+            for (String variant : required("load.variants").split(",")) {
+                final String[] parts = variant.trim().split(":");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Expected type:variantID:secret, got " + variant);
+                }
+                registerInstallations(parts[0], parts[1], parts[2]);
+            }
+        }
+
+        final LatencyRecorder submitLatency = new LatencyRecorder();
+        final AtomicInteger rejected = new AtomicInteger();
+        final String authorization = RestClient.basic(pushApplicationID, masterSecret);
+
+        final long start = System.currentTimeMillis();
+        execute(messages, new Task() {
+            @Override
+            public void run(int index) throws IOException {
+                final long submitted = System.currentTimeMillis();
+                final String body = "{\"message\":{\"alert\":\"" + DeliveryStatistics.ALERT_PREFIX + submitted + "\",\"sound\":\"default\"}}";
+                final int status = client.post("/rest/sender", authorization, body);
+                submitLatency.record(System.currentTimeMillis() - submitted);
+                if (status >= 300) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+        final long submitDuration = System.currentTimeMillis() - start;
+
+        final DeliveryStatistics statistics = networks.getStatistics();
+        awaitQuietPeriod(statistics, start);
+        final long deliveryDuration = Math.max(1, statistics.getLastDelivery() - start);
+
+        System.out.println(String.format(Locale.ENGLISH, "Submitted %d messages in %d ms (%d rejected): %.1f messages/s, submit p50 %d ms, p99 %d ms",
+                messages, submitDuration, rejected.get(), messages * 1000.0 / Math.max(1, submitDuration),
+                submitLatency.percentile(50), submitLatency.percentile(99)));
+        System.out.println(String.format(Locale.ENGLISH, "Delivered %d tokens in %d ms: %.1f tokens/s, %.1f messages/s end to end",
+                statistics.getTokens(), deliveryDuration, statistics.getTokens() * 1000.0 / deliveryDuration,
+                messages * 1000.0 / deliveryDuration));
+        System.out.println(String.format(Locale.ENGLISH, "Delivery latency p50 %d ms, p99 %d ms (%d samples)",
+                statistics.getDeliveryLatency().percentile(50), statistics.getDeliveryLatency().percentile(99),
+                statistics.getDeliveryLatency().getCount()));
+        System.out.println(String.format(Locale.ENGLISH, "Network requests %d (%d failed), invalid tokens %d",
+                statistics.getRequests(), statistics.getFailedRequests(), statistics.getInvalidTokens()));
+    }
+
+    private void registerInstallations(final String type, String variantID, String secret) throws Exception {
+        final String authorization = RestClient.basic(variantID, secret);
+        final AtomicInteger failed = new AtomicInteger();
+
+        execute(installationsPerVariant, new Task() {
+            @Override
+            public void run(int index) throws IOException {
+                final String body = "{\"deviceToken\":\"" + deviceToken(type, index) + "\",\"alias\":\"load-user-" + index
+                        + "@example.com\",\"deviceType\":\"" + type + "\"}";
+                if (client.post("/rest/registry/device", authorization, body) >= 300) {
+                    failed.incrementAndGet();
+                }
+            }
+        });
+        System.out.println("Registered " + (installationsPerVariant - failed.get()) + " " + type + " installations for " + variantID);
+    }
+
+    /**
+     * Device tokens, that pass the validation of the given variant type.
+     */
+    private String deviceToken(String type, int index) {
+        if ("android".equals(type)) {
+            return String.format("APA91%095d", index);
+        } else if ("ios".equals(type)) {
+            return String.format("%064x", index);
+        } else if ("simplePush".equals(type)) {
+            return networks.simplePushEndpoint("channel-" + index);
+        }
+        return "chrome-channel-" + index;
+    }
+
+    private void awaitQuietPeriod(DeliveryStatistics statistics, long start) throws InterruptedException {
+        long lastTokens = -1;
+        long lastChange = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < timeoutMillis) {
+            Thread.sleep(500);
+            final long tokens = statistics.getTokens() + statistics.getInvalidTokens();
+            if (tokens != lastTokens) {
+                lastTokens = tokens;
+                lastChange = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - lastChange > quietPeriodMillis) {
+                return;
+            }
+        }
+        System.out.println("Timed out, while waiting for the deliveries");
+    }
+
+    private interface Task {
+        void run(int index) throws IOException;
+    }
+
+    /**
+     * Runs the given task the given number of times, with the configured concurrency.
+     */
+    private void execute(int times, final Task task) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        for (int i = 0; i < times; i++) {
+            final int index = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run(index);
+                    } catch (IOException e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        if (!errors.isEmpty()) {
+            System.out.println(errors.size() + " requests failed, e.g. " + errors.get(0));
+        }
+    }
+
+    private static String required(String name) {
+        final String value = System.getProperty(name);
+        if (value == null) {
+            throw new IllegalArgumentException("System property " + name + " is required");
+        }
+        return value;
+    }
+}
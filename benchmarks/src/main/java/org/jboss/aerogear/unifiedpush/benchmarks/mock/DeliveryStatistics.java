@@ -0,0 +1,95 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import org.jboss.aerogear.unifiedpush.benchmarks.LatencyRecorder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Everything the mock push networks received, shared by all of them.
+ */
+public final class DeliveryStatistics {
+
+    /**
+     * Prefix of the alert, that carries the submit time of the message, to measure the end-to-end latency.
+     */
+    public static final String ALERT_PREFIX = "benchmark-";
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong invalidTokens = new AtomicLong();
+    private final AtomicLong lastDelivery = new AtomicLong();
+    private final LatencyRecorder deliveryLatency = new LatencyRecorder();
+
+    void requestFailed() {
+        requests.incrementAndGet();
+        failedRequests.incrementAndGet();
+    }
+
+    /**
+     * Records a successful request, delivering the given number of tokens.
+     *
+     * @param alert the alert of the delivered message, may be null
+     */
+    void delivered(int tokenCount, int invalidTokenCount, String alert) {
+        final long now = System.currentTimeMillis();
+        requests.incrementAndGet();
+        tokens.addAndGet(tokenCount);
+        invalidTokens.addAndGet(invalidTokenCount);
+        lastDelivery.set(now);
+
+        if (alert != null && alert.startsWith(ALERT_PREFIX)) {
+            try {
+                deliveryLatency.record(now - Long.parseLong(alert.substring(ALERT_PREFIX.length())));
+            } catch (NumberFormatException e) {
+                // not sent by the load driver
+            }
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    public long getTokens() {
+        return tokens.get();
+    }
+
+    public long getInvalidTokens() {
+        return invalidTokens.get();
+    }
+
+    /**
+     * Time (in millis since epoch) of the latest delivery, 0 if nothing was delivered yet.
+     */
+    public long getLastDelivery() {
+        return lastDelivery.get();
+    }
+
+    /**
+     * Time between the submission to the RESTful sender endpoint and the arrival at the mock network.
+     */
+    public LatencyRecorder getDeliveryLatency() {
+        return deliveryLatency;
+    }
+}
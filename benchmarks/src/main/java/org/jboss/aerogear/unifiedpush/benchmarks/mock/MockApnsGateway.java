@@ -0,0 +1,253 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for the APNs gateway and feedback service, using the binary protocol over TLS. The server certificate
+ * is <code>mock-apns.jks</code>, so the UnifiedPush Server has to trust <code>mock-apns-truststore.jks</code>
+ * (password: <code>aerogear</code>). The invalid tokens are reported by the feedback service.
+ */
+public class MockApnsGateway {
+
+    private static final String KEYSTORE = "/mock-apns.jks";
+    private static final char[] PASSWORD = "aerogear".toCharArray();
+
+    private static final int COMMAND_SIMPLE = 0;
+    private static final int COMMAND_ENHANCED = 1;
+    private static final int COMMAND_FRAME = 2;
+
+    private final int gatewayPort;
+    private final int feedbackPort;
+    private final MockBehavior behavior;
+    private final DeliveryStatistics statistics;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final List<byte[]> invalidTokens = new ArrayList<byte[]>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private ServerSocket gateway;
+    private ServerSocket feedback;
+
+    public MockApnsGateway(int gatewayPort, int feedbackPort, MockBehavior behavior, DeliveryStatistics statistics) {
+        this.gatewayPort = gatewayPort;
+        this.feedbackPort = feedbackPort;
+        this.behavior = behavior;
+        this.statistics = statistics;
+    }
+
+    public void start() throws IOException, GeneralSecurityException {
+        final SSLContext context = createSSLContext();
+        gateway = context.getServerSocketFactory().createServerSocket(gatewayPort);
+        feedback = context.getServerSocketFactory().createServerSocket(feedbackPort);
+        // the client certificate of the variant is not verified:
+        ((SSLServerSocket) gateway).setNeedClientAuth(false);
+
+        executor.execute(new Acceptor(gateway, true));
+        executor.execute(new Acceptor(feedback, false));
+    }
+
+    public void stop() throws IOException {
+        gateway.close();
+        feedback.close();
+        executor.shutdownNow();
+    }
+
+    private SSLContext createSSLContext() throws IOException, GeneralSecurityException {
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        final InputStream in = MockApnsGateway.class.getResourceAsStream(KEYSTORE);
+        try {
+            keyStore.load(in, PASSWORD);
+        } finally {
+            in.close();
+        }
+
+        final KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    /**
+     * Reads notifications until the client closes the connection.
+     */
+    private void readNotifications(Socket socket) throws IOException {
+        // a failing gateway drops the connection right away:
+        if (behavior.failRequest()) {
+            statistics.requestFailed();
+            return;
+        }
+
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        try {
+            while (true) {
+                final int command = in.read();
+                if (command == -1) {
+                    return;
+                }
+
+                final byte[] token;
+                final byte[] payload;
+                if (command == COMMAND_SIMPLE || command == COMMAND_ENHANCED) {
+                    if (command == COMMAND_ENHANCED) {
+                        // identifier and expiry
+                        in.readInt();
+                        in.readInt();
+                    }
+                    token = new byte[in.readUnsignedShort()];
+                    in.readFully(token);
+                    payload = new byte[in.readUnsignedShort()];
+                    in.readFully(payload);
+                } else if (command == COMMAND_FRAME) {
+                    final byte[][] items = readFrame(in);
+                    token = items[0];
+                    payload = items[1];
+                } else {
+                    throw new IOException("Unknown APNs command " + command);
+                }
+
+                notificationReceived(token, payload);
+            }
+        } catch (EOFException e) {
+            // client went away
+        }
+    }
+
+    /**
+     * Returns the token and payload items of a frame.
+     */
+    private static byte[][] readFrame(DataInputStream in) throws IOException {
+        final byte[][] items = new byte[2][];
+        int remaining = in.readInt();
+        while (remaining > 0) {
+            final int itemId = in.read();
+            final byte[] item = new byte[in.readUnsignedShort()];
+            in.readFully(item);
+            remaining -= 3 + item.length;
+            if (itemId == 1 || itemId == 2) {
+                items[itemId - 1] = item;
+            }
+        }
+        return items;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notificationReceived(byte[] token, byte[] payload) {
+        behavior.delay();
+        if (behavior.invalidToken()) {
+            synchronized (invalidTokens) {
+                invalidTokens.add(token);
+            }
+            statistics.delivered(0, 1, null);
+            return;
+        }
+
+        String alert = null;
+        try {
+            final Map<String, Object> aps = (Map<String, Object>) mapper.readValue(new String(payload, MockHttpNetwork.UTF_8), Map.class).get("aps");
+            if (aps != null && aps.get("alert") instanceof String) {
+                alert = (String) aps.get("alert");
+            }
+        } catch (IOException e) {
+            // no latency for unparsable payloads
+        }
+        statistics.delivered(1, 0, alert);
+    }
+
+    /**
+     * Sends all invalid tokens, collected since the last connect, to the feedback client.
+     */
+    private void writeFeedback(Socket socket) throws IOException {
+        final List<byte[]> tokens;
+        synchronized (invalidTokens) {
+            tokens = new ArrayList<byte[]>(invalidTokens);
+            invalidTokens.clear();
+        }
+
+        final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        final int now = (int) (System.currentTimeMillis() / 1000);
+        for (byte[] token : tokens) {
+            out.writeInt(now);
+            out.writeShort(token.length);
+            out.write(token);
+        }
+        out.flush();
+    }
+
+    private class Acceptor implements Runnable {
+
+        private final ServerSocket serverSocket;
+        private final boolean isGateway;
+
+        Acceptor(ServerSocket serverSocket, boolean isGateway) {
+            this.serverSocket = serverSocket;
+            this.isGateway = isGateway;
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                if (isGateway) {
+                                    readNotifications(socket);
+                                } else {
+                                    writeFeedback(socket);
+                                }
+                            } catch (IOException e) {
+                                statistics.requestFailed();
+                            } finally {
+                                try {
+                                    socket.close();
+                                } catch (IOException e) {
+                                    // ignore
+                                }
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    // server socket was closed
+                }
+            }
+        }
+    }
+}
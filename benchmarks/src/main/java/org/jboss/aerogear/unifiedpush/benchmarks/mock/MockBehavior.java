@@ -0,0 +1,67 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import java.util.Random;
+
+/**
+ * Configurable behavior of a mock push network: the latency of each request, the rate of failing requests and
+ * the rate of tokens, that are reported as invalid.
+ *
+ * Configured with the system properties <code>mock.latencyMillis</code> (default: 50), <code>mock.errorRate</code>
+ * (default: 0) and <code>mock.invalidTokenRate</code> (default: 0.01).
+ */
+public final class MockBehavior {
+
+    private final long latencyMillis;
+    private final double errorRate;
+    private final double invalidTokenRate;
+    private final Random random = new Random();
+
+    public MockBehavior(long latencyMillis, double errorRate, double invalidTokenRate) {
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.invalidTokenRate = invalidTokenRate;
+    }
+
+    public static MockBehavior fromSystemProperties() {
+        return new MockBehavior(Long.getLong("mock.latencyMillis", 50),
+                Double.parseDouble(System.getProperty("mock.errorRate", "0")),
+                Double.parseDouble(System.getProperty("mock.invalidTokenRate", "0.01")));
+    }
+
+    /**
+     * Simulates the round-trip to the real network.
+     */
+    void delay() {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    boolean failRequest() {
+        return random.nextDouble() < errorRate;
+    }
+
+    boolean invalidToken() {
+        return random.nextDouble() < invalidTokenRate;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for GCM for Chrome: the OAuth token endpoint (<code>/chrome/token</code>) and the message endpoint
+ * (<code>/chrome/messages</code>), that accepts one channel per request.
+ */
+public class MockChromeServer extends MockHttpNetwork {
+
+    public static final String TOKEN_PATH = "/chrome/token";
+    public static final String MESSAGES_PATH = "/chrome/messages";
+
+    // the Chrome sender does not send valid JSON, so the payload is extracted by pattern:
+    private static final Pattern PAYLOAD = Pattern.compile("'payload': '([^']*)'");
+
+    public MockChromeServer(int port, MockBehavior behavior, DeliveryStatistics statistics) {
+        super(port, behavior, statistics);
+    }
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext(TOKEN_PATH, new Handler() {
+            @Override
+            void doHandle(HttpExchange exchange) throws IOException {
+                readBody(exchange);
+                respond(exchange, 200, "application/json", "{\"access_token\":\"mock-access-token\",\"expires_in\":3600}");
+            }
+        });
+        server.createContext(MESSAGES_PATH, new Handler() {
+            @Override
+            void doHandle(HttpExchange exchange) throws IOException {
+                final Matcher payload = PAYLOAD.matcher(readBody(exchange));
+                behavior.delay();
+
+                if (behavior.failRequest()) {
+                    statistics.requestFailed();
+                    respond(exchange, 503, "text/plain", "");
+                } else if (behavior.invalidToken()) {
+                    statistics.delivered(0, 1, null);
+                    respond(exchange, 400, "text/plain", "invalid channel");
+                } else {
+                    statistics.delivered(1, 0, payload.find() ? payload.group(1) : null);
+                    respond(exchange, 204, "text/plain", "");
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the GCM HTTP endpoint (<code>/gcm/send</code>), answers with a multicast result, that flags some of
+ * the registration IDs as <code>InvalidRegistration</code>. Failing requests are answered with <code>503</code>.
+ */
+public class MockGcmServer extends MockHttpNetwork {
+
+    public static final String PATH = "/gcm/send";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    public MockGcmServer(int port, MockBehavior behavior, DeliveryStatistics statistics) {
+        super(port, behavior, statistics);
+    }
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext(PATH, new Handler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            void doHandle(HttpExchange exchange) throws IOException {
+                final Map<String, Object> request = mapper.readValue(readBody(exchange), Map.class);
+                behavior.delay();
+
+                if (behavior.failRequest()) {
+                    statistics.requestFailed();
+                    respond(exchange, 503, "text/plain", "");
+                    return;
+                }
+
+                final List<String> registrationIDs = (List<String>) request.get("registration_ids");
+                final Map<String, Object> data = (Map<String, Object>) request.get("data");
+
+                int failures = 0;
+                final StringBuilder results = new StringBuilder();
+                for (int i = 0; i < registrationIDs.size(); i++) {
+                    if (i > 0) {
+                        results.append(',');
+                    }
+                    if (behavior.invalidToken()) {
+                        failures++;
+                        results.append("{\"error\":\"InvalidRegistration\"}");
+                    } else {
+                        results.append("{\"message_id\":\"0:").append(messageIds.incrementAndGet()).append("\"}");
+                    }
+                }
+                statistics.delivered(registrationIDs.size() - failures, failures, data == null ? null : (String) data.get("alert"));
+
+                respond(exchange, 200, "application/json", "{\"multicast_id\":" + messageIds.incrementAndGet()
+                        + ",\"success\":" + (registrationIDs.size() - failures) + ",\"failure\":" + failures
+                        + ",\"canonical_ids\":0,\"results\":[" + results + "]}");
+            }
+        });
+    }
+}
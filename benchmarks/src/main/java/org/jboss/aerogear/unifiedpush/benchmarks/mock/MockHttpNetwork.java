@@ -0,0 +1,118 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Base class for the HTTP based mock push networks.
+ */
+abstract class MockHttpNetwork {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected final MockBehavior behavior;
+    protected final DeliveryStatistics statistics;
+
+    private final int port;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    MockHttpNetwork(int port, MockBehavior behavior, DeliveryStatistics statistics) {
+        this.port = port;
+        this.behavior = behavior;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Registers the handlers of the network.
+     */
+    protected abstract void createContexts(HttpServer server);
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        createContexts(server);
+        // the simulated latency blocks a thread per request:
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    static String readBody(HttpExchange exchange) throws IOException {
+        final InputStream in = exchange.getRequestBody();
+        try {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        final byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        final OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Handler, that always closes the exchange.
+     */
+    abstract static class Handler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                doHandle(exchange);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        abstract void doHandle(HttpExchange exchange) throws IOException;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * Starts all mock push networks, sharing the same {@link MockBehavior} and {@link DeliveryStatistics}.
+ *
+ * The ports are configured with the system properties <code>mock.gcmPort</code> (default: 9401),
+ * <code>mock.chromePort</code> (9402), <code>mock.simplePushPort</code> (9403), <code>mock.apnsPort</code> (9404)
+ * and <code>mock.apnsFeedbackPort</code> (9405).
+ */
+public final class MockNetworks {
+
+    private final String host = System.getProperty("mock.host", "localhost");
+    private final DeliveryStatistics statistics = new DeliveryStatistics();
+
+    private final MockGcmServer gcm;
+    private final MockChromeServer chrome;
+    private final MockSimplePushServer simplePush;
+    private final MockApnsGateway apns;
+    private final int apnsPort = Integer.getInteger("mock.apnsPort", 9404);
+    private final int apnsFeedbackPort = Integer.getInteger("mock.apnsFeedbackPort", 9405);
+
+    public MockNetworks(MockBehavior behavior) {
+        gcm = new MockGcmServer(Integer.getInteger("mock.gcmPort", 9401), behavior, statistics);
+        chrome = new MockChromeServer(Integer.getInteger("mock.chromePort", 9402), behavior, statistics);
+        simplePush = new MockSimplePushServer(Integer.getInteger("mock.simplePushPort", 9403), behavior, statistics);
+        apns = new MockApnsGateway(apnsPort, apnsFeedbackPort, behavior, statistics);
+    }
+
+    public void start() throws IOException, GeneralSecurityException {
+        gcm.start();
+        chrome.start();
+        simplePush.start();
+        apns.start();
+    }
+
+    public void stop() throws IOException {
+        gcm.stop();
+        chrome.stop();
+        simplePush.stop();
+        apns.stop();
+    }
+
+    public DeliveryStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Device token of a SimplePush installation, that is delivered to the mock SimplePush server.
+     */
+    public String simplePushEndpoint(String channel) {
+        return "http://" + host + ":" + simplePush.getPort() + MockSimplePushServer.PATH + channel;
+    }
+
+    /**
+     * The system properties, that point the UnifiedPush Server to the mock networks.
+     */
+    public String serverSystemProperties() {
+        return "-Daerogear.gcm.endpoint=http://" + host + ":" + gcm.getPort() + MockGcmServer.PATH
+                + " -Daerogear.chrome.messageUrl=http://" + host + ":" + chrome.getPort() + MockChromeServer.MESSAGES_PATH
+                + " -Daerogear.chrome.accessTokenUrl=http://" + host + ":" + chrome.getPort() + MockChromeServer.TOKEN_PATH
+                + " -Daerogear.apns.gatewayHost=" + host
+                + " -Daerogear.apns.gatewayPort=" + apnsPort
+                + " -Daerogear.apns.feedbackPort=" + apnsFeedbackPort
+                + " -Djavax.net.ssl.trustStore=<benchmarks>/src/main/resources/mock-apns-truststore.jks"
+                + " -Djavax.net.ssl.trustStorePassword=aerogear";
+    }
+
+    /**
+     * Runs the mock networks only, e.g. for manual tests against a running server.
+     */
+    public static void main(String... args) throws Exception {
+        final MockNetworks networks = new MockNetworks(MockBehavior.fromSystemProperties());
+        networks.start();
+        System.out.println("Mock push networks started, run the UnifiedPush Server with:");
+        System.out.println(networks.serverSystemProperties());
+    }
+}
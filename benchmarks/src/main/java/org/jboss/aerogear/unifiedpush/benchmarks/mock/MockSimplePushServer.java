@@ -0,0 +1,58 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.benchmarks.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+
+/**
+ * Stand-in for a SimplePush server. The device tokens of SimplePush are the endpoint URLs themselves, so the
+ * installations have to be registered with <code>http://host:port/simplepush/{channel}</code> tokens.
+ */
+public class MockSimplePushServer extends MockHttpNetwork {
+
+    public static final String PATH = "/simplepush/";
+
+    public MockSimplePushServer(int port, MockBehavior behavior, DeliveryStatistics statistics) {
+        super(port, behavior, statistics);
+    }
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext(PATH, new Handler() {
+            @Override
+            void doHandle(HttpExchange exchange) throws IOException {
+                readBody(exchange);
+                behavior.delay();
+
+                if (behavior.failRequest()) {
+                    statistics.requestFailed();
+                    respond(exchange, 500, "text/plain", "");
+                } else if (behavior.invalidToken()) {
+                    statistics.delivered(0, 1, null);
+                    respond(exchange, 404, "text/plain", "unknown channel");
+                } else {
+                    // the version payload does not carry the alert, so there is no end-to-end latency:
+                    statistics.delivered(1, 0, null);
+                    respond(exchange, 200, "text/plain", "");
+                }
+            }
+        });
+    }
+}
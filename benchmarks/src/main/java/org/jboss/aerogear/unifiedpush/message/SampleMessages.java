@@ -0,0 +1,54 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Representative payloads, as submitted to the RESTful sender endpoint.
+ */
+public final class SampleMessages {
+
+    private SampleMessages() {
+        // no instances
+    }
+
+    /**
+     * JSON of a message with alert, sound, badge, ttl, criteria and the given number of application specific keys.
+     */
+    public static String json(int customFields) {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\"alias\":[\"john@example.com\",\"jane@example.com\"],")
+                .append("\"categories\":[\"football\",\"sports\"],")
+                .append("\"ttl\":3600,")
+                .append("\"message\":{\"alert\":\"Kickoff in 15 minutes!\",\"sound\":\"default\",\"badge\":2,")
+                .append("\"action-category\":\"matches\",\"content-available\":true");
+        for (int i = 0; i < customFields; i++) {
+            json.append(",\"key").append(i).append("\":\"value ").append(i).append("\"");
+        }
+        json.append("},\"simple-push\":\"version=123\"}");
+        return json.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static UnifiedPushMessage message(int customFields) throws IOException {
+        return new UnifiedPushMessage(new ObjectMapper().readValue(json(customFields), Map.class));
+    }
+}
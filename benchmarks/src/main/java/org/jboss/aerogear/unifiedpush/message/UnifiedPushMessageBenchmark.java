@@ -0,0 +1,88 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the submitted JSON into a {@link UnifiedPushMessage}, the way the RESTful sender endpoint receives it,
+ * and the JSON serialization, that is stored with each push message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UnifiedPushMessageBenchmark {
+
+    /**
+     * Number of application specific keys inside of the <code>message</code> object.
+     */
+    @Param({"1", "20"})
+    public int customFields;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private String json;
+    private UnifiedPushMessage message;
+
+    @Setup
+    public void setup() throws IOException {
+        json = SampleMessages.json(customFields);
+        message = parse();
+    }
+
+    @Benchmark
+    public Map<?, ?> parseJacksonMap() throws IOException {
+        return mapper.readValue(json, Map.class);
+    }
+
+    /**
+     * The constructor consumes the given map, so it has to be parsed on each invocation.
+     * Compare with {@link #parseJacksonMap()} to isolate the cost of the constructor.
+     */
+    @Benchmark
+    public UnifiedPushMessage parseAndConstruct() throws IOException {
+        return parse();
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return message.toJsonString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private UnifiedPushMessage parse() throws IOException {
+        return new UnifiedPushMessage(mapper.readValue(json, Map.class));
+    }
+}
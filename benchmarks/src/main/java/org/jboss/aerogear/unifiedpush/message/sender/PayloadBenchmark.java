@@ -0,0 +1,76 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.sender;
+
+import com.google.android.gcm.server.Message;
+import org.jboss.aerogear.unifiedpush.message.SampleMessages;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transformation of a {@link UnifiedPushMessage} into the network specific payloads. Lives in the package of the
+ * senders, to access their package-private payload builders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PayloadBenchmark {
+
+    @Param({"1", "20"})
+    public int customFields;
+
+    private UnifiedPushMessage message;
+
+    @Setup
+    public void setup() throws IOException {
+        message = SampleMessages.message(customFields);
+    }
+
+    @Benchmark
+    public Message gcmMessage() {
+        return GCMPushNotificationSender.buildMessage(message);
+    }
+
+    @Benchmark
+    public String apnsPayload() {
+        return APNsPushNotificationSender.buildPayload(message).build();
+    }
+
+    /**
+     * The APNs sender checks the size of the payload, before building it.
+     */
+    @Benchmark
+    public boolean apnsSizeCheck() {
+        return APNsPushNotificationSender.buildPayload(message).isTooLong();
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.metrics;
+
+import org.jboss.aerogear.unifiedpush.jpa.statistics.QueryStatistics;
+
+import javax.ejb.Stateless;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Exposes the duration, result size and parameter cardinality of the DAO operations, grouped by query shape.
+ */
+@Stateless
+@Path("/metrics/database")
+public class DatabaseMetricsEndpoint {
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response queryShapes() {
+        return Response.ok(QueryStatistics.getInstance().getQueryShapes()).build();
+    }
+
+    @DELETE
+    public Response resetQueryShapes() {
+        QueryStatistics.getInstance().reset();
+        return Response.noContent().build();
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.metrics;
+
+import org.jboss.aerogear.unifiedpush.message.breaker.CircuitBreakerRegistry;
+import org.jboss.aerogear.unifiedpush.message.dispatch.SendDispatcher;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.StageStatistics;
+import org.jboss.aerogear.unifiedpush.trace.FlightRecorder;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+/**
+ * Exposes the counters and latency histograms of the send pipeline (token resolution, payload build, network
+ * round-trip, cleanup and metrics persistence), as well as queue depth and in-flight counts, the state of the circuit
+ * breakers and the events of the flight recorder.
+ */
+@Stateless
+@Path("/metrics/sender")
+public class SenderMetricsEndpoint {
+
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private CircuitBreakerRegistry circuitBreakers;
+    @Inject
+    private SendDispatcher sendDispatcher;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response senderMetrics() {
+        return Response.ok(pushMetrics.snapshot()).build();
+    }
+
+    @GET
+    @Path("/networks")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response networkMetrics() {
+        return Response.ok(pushMetrics.getNetworkStatistics()).build();
+    }
+
+    @GET
+    @Path("/variant/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response variantMetrics(@PathParam("id") String id) {
+        final List<StageStatistics> statistics = pushMetrics.getVariantStatistics(id);
+        if (statistics.isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Could not find requested information").build();
+        }
+
+        return Response.ok(statistics).build();
+    }
+
+    /**
+     * Queue depth and workers of the dispatch lanes, per priority.
+     */
+    @GET
+    @Path("/lanes")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response dispatchLanes() {
+        return Response.ok(sendDispatcher.getLanes()).build();
+    }
+
+    /**
+     * State of the circuit breakers per push network and credential.
+     */
+    @GET
+    @Path("/breakers")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response circuitBreakers() {
+        return Response.ok(circuitBreakers.getBreakers()).build();
+    }
+
+    /**
+     * Dumps the events of the flight recorder, optionally filtered by their minimum duration or by the push message
+     * (trace) they belong to.
+     */
+    @GET
+    @Path("/trace")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response traceEvents(@QueryParam("minDurationMicros") Long minDurationMicros, @QueryParam("traceId") String traceId) {
+        final FlightRecorder recorder = FlightRecorder.getInstance();
+        if (traceId != null) {
+            return Response.ok(recorder.getEventsOfTrace(traceId)).build();
+        }
+        if (minDurationMicros != null) {
+            return Response.ok(recorder.getSlowEvents(minDurationMicros)).build();
+        }
+
+        return Response.ok(recorder.getEvents()).build();
+    }
+
+    @DELETE
+    public Response resetMetrics() {
+        pushMetrics.reset();
+        return Response.noContent().build();
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.sender;
+
+/**
+ * The outcome of one message of a batch request, in the order of the request.
+ */
+public class BatchSendResult {
+
+    /**
+     * The message is queued for processing.
+     */
+    public static final String SUBMITTED = "submitted";
+
+    /**
+     * The message waits for its 'deliver-at' time.
+     */
+    public static final String SCHEDULED = "scheduled";
+
+    /**
+     * The message has not been accepted, see {@link #getReason()}. It can be sent again later.
+     */
+    public static final String REJECTED = "rejected";
+
+    private final String jobId;
+    private final String status;
+    private final String reason;
+
+    public BatchSendResult(String jobId, String status, String reason) {
+        this.jobId = jobId;
+        this.status = status;
+        this.reason = reason;
+    }
+
+    /**
+     * The ID of the send job of an accepted message, <code>null</code> if it has been rejected.
+     */
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.sender;
+
+import org.jboss.aerogear.unifiedpush.message.SenderService;
+import org.jboss.aerogear.unifiedpush.message.retry.DeadLetter;
+import org.jboss.aerogear.unifiedpush.message.retry.DeadLetterStore;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import java.util.List;
+
+/**
+ * Inspection and replay of the batches, that could not be delivered to the push networks within the allowed retries.
+ */
+@Stateless
+@Path("/deadletters")
+public class DeadLetterEndpoint {
+
+    @Inject
+    private DeadLetterStore deadLetterStore;
+    @Inject
+    private SenderService senderService;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response listDeadLetters() {
+        return Response.ok(deadLetterStore.getSummaries()).build();
+    }
+
+    /**
+     * Submits all dead letters again, returns the number of replayed batches.
+     */
+    @POST
+    @Path("/replay")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response replayAll() {
+        final List<DeadLetter> deadLetters = deadLetterStore.removeAll();
+        for (DeadLetter deadLetter : deadLetters) {
+            senderService.resend(deadLetter);
+        }
+        return Response.status(Status.ACCEPTED).entity(deadLetters.size()).build();
+    }
+
+    @POST
+    @Path("/{id}/replay")
+    public Response replay(@PathParam("id") String id) {
+        final DeadLetter deadLetter = deadLetterStore.remove(id);
+        if (deadLetter == null) {
+            return Response.status(Status.NOT_FOUND).entity("Could not find requested dead letter").build();
+        }
+        senderService.resend(deadLetter);
+        return Response.status(Status.ACCEPTED).build();
+    }
+
+    @DELETE
+    @Path("/{id}")
+    public Response discard(@PathParam("id") String id) {
+        if (deadLetterStore.remove(id) == null) {
+            return Response.status(Status.NOT_FOUND).entity("Could not find requested dead letter").build();
+        }
+        return Response.noContent().build();
+    }
+
+    @DELETE
+    public Response discardAll() {
+        deadLetterStore.removeAll();
+        return Response.noContent().build();
+    }
+}
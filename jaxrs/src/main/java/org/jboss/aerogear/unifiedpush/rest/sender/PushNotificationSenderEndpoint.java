@@ -16,6 +16,11 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.sender;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,14 +31,25 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
 
 import org.jboss.aerogear.unifiedpush.api.PushApplication;
-import org.jboss.aerogear.unifiedpush.message.SenderService;
+import org.jboss.aerogear.unifiedpush.message.InvalidDeliveryTimeException;
+import org.jboss.aerogear.unifiedpush.message.MessageStreamReader;
+import org.jboss.aerogear.unifiedpush.message.SendCriteria;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.audience.AudienceCounter;
+import org.jboss.aerogear.unifiedpush.message.dispatch.Admission;
+import org.jboss.aerogear.unifiedpush.message.dispatch.SendDispatcher;
+import org.jboss.aerogear.unifiedpush.message.idempotency.IdempotencyStore;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobRegistry;
+import org.jboss.aerogear.unifiedpush.message.outbox.Outbox;
+import org.jboss.aerogear.unifiedpush.message.schedule.SendScheduler;
 import org.jboss.aerogear.unifiedpush.rest.util.HttpBasicHelper;
 import org.jboss.aerogear.unifiedpush.rest.util.HttpRequestUtil;
 import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
@@ -42,15 +58,31 @@ import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
 @Path("/sender")
 public class PushNotificationSenderEndpoint {
 
+    // not part of the JAX-RS 1.1 Status enum
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("aerogear.sender.maxBatchSize", 10000);
+
     private final Logger logger = Logger.getLogger(PushNotificationSenderEndpoint.class.getName());
     @Inject
     private PushApplicationService pushApplicationService;
     @Inject
-    private SenderService senderService;
+    private SendDispatcher sendDispatcher;
+    @Inject
+    private SendJobRegistry sendJobs;
+    @Inject
+    private Outbox outbox;
+    @Inject
+    private SendScheduler sendScheduler;
+    @Inject
+    private IdempotencyStore idempotencyStore;
+    @Inject
+    private AudienceCounter audienceCounter;
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response send(final Map<String, Object> message, @Context HttpServletRequest request) {
+    public Response send(final Map<String, Object> message, @Context HttpServletRequest request, @Context UriInfo uriInfo) {
 
         final PushApplication pushApplication = loadPushApplicationWhenAuthorized(request);
         if (pushApplication == null) {
@@ -60,24 +92,243 @@ public class PushNotificationSenderEndpoint {
                     .build();
         }
 
+        final String ipAddress = HttpRequestUtil.extractIPAddress(request);
+        final String clientIdentifier = HttpRequestUtil.extractAeroGearSenderInformation(request);
+        final String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY);
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > IdempotencyStore.MAX_KEY_LENGTH)) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Invalid " + IDEMPOTENCY_KEY + " header").build();
+        }
+
+        // the job tracks the progress of the message, which is journaled before it is processed:
+        final String jobId = sendJobs.create(pushApplication.getPushApplicationID());
+        final String rawMessage = outbox.serialize(message);
+
         // transform map to service object:
-        final UnifiedPushMessage payload = new UnifiedPushMessage(message);
+        final UnifiedPushMessage payload;
+        try {
+            payload = new UnifiedPushMessage(message);
+        } catch (InvalidDeliveryTimeException e) {
+            sendJobs.remove(jobId);
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Invalid deliver-at time").build();
+        }
 
         // submit http request metadata:
-        payload.setIpAddress(HttpRequestUtil.extractIPAddress(request));
+        payload.setIpAddress(ipAddress);
 
         // add the client identifier
-        payload.setClientIdentifier(HttpRequestUtil.extractAeroGearSenderInformation(request));
+        payload.setClientIdentifier(clientIdentifier);
+        payload.setJobId(jobId);
+        payload.setRawMessage(rawMessage);
+
+        // a retried request gets the job of its first attempt, instead of sending the message again:
+        if (idempotencyKey != null) {
+            final String originalJobId = idempotencyStore.reserve(pushApplication.getPushApplicationID(), idempotencyKey, jobId);
+            if (originalJobId != null) {
+                sendJobs.remove(jobId);
+                logger.log(Level.INFO, "Duplicate request of job " + originalJobId + ", not sending the message again");
+                return Response.status(Status.OK)
+                        .location(uriInfo.getAbsolutePathBuilder().path("jobs").path(originalJobId).build())
+                        .entity("Job already submitted").build();
+            }
+        }
+
+        if (rawMessage == null || !outbox.accepted(jobId, pushApplication.getPushApplicationID(), rawMessage, ipAddress, clientIdentifier)) {
+            forget(pushApplication, idempotencyKey, jobId);
+            return Response.status(Status.SERVICE_UNAVAILABLE)
+                    .entity("Could not store the message").build();
+        }
+
+        // held until shortly before its delivery time:
+        if (sendScheduler.isScheduled(payload)) {
+            if (!sendScheduler.schedule(pushApplication.getPushApplicationID(), payload)) {
+                forget(pushApplication, idempotencyKey, jobId);
+                outbox.finished(jobId);
+                logger.log(Level.WARNING, "Too many scheduled messages, rejecting the request");
+                return Response.status(Status.SERVICE_UNAVAILABLE)
+                        .entity("Too many scheduled messages").build();
+            }
+            logger.log(Level.INFO, "Message scheduled for " + new Date(payload.getDeliverAt()));
+            return Response.status(Status.OK)
+                    .location(uriInfo.getAbsolutePathBuilder().path("jobs").path(jobId).build())
+                    .entity("Job scheduled").build();
+        }
 
-        // submitted to @Async EJB:
-        senderService.send(pushApplication, payload);
+        // queued on the lane of its priority, if the lane can take it:
+        final Admission admission = sendDispatcher.dispatch(pushApplication, payload);
+        if (admission != Admission.ACCEPTED) {
+            forget(pushApplication, idempotencyKey, jobId);
+            outbox.finished(jobId);
+        }
+        if (admission == Admission.LIMITED) {
+            logger.log(Level.FINE, "Too many pending " + payload.getPriority() + " priority messages, asking the sender to back off");
+            return Response.status(TOO_MANY_REQUESTS)
+                    .header("Retry-After", sendDispatcher.getRetryAfterSeconds(payload.getPriority()))
+                    .entity("Too many pending messages, retry later").build();
+        }
+        if (admission == Admission.QUEUE_FULL) {
+            logger.log(Level.WARNING, "Too many queued " + payload.getPriority() + " priority messages, rejecting the request");
+            return Response.status(Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", sendDispatcher.getRetryAfterSeconds(payload.getPriority()))
+                    .entity("Too many queued messages").build();
+        }
         logger.log(Level.FINE, "Message sent by: '" + payload.getClientIdentifier() + "'");
         logger.log(Level.INFO, "Message submitted to PushNetworks for further processing");
 
         return Response.status(Status.OK)
+                .location(uriInfo.getAbsolutePathBuilder().path("jobs").path(jobId).build())
                 .entity("Job submitted").build();
     }
 
+    /**
+     * Accepts many messages of one push application with a single request: a JSON array of messages, or one message per
+     * line (NDJSON). The push application is authenticated once, the messages are journaled together and admitted to
+     * their dispatch lanes in one step per lane. The response lists the outcome of every message, in the order of the
+     * request; messages, that found their lane at its limit, are rejected and can be sent again after the
+     * <code>Retry-After</code> seconds.
+     *
+     * The whole batch is refused if any message is invalid, or if it contains more than
+     * <code>aerogear.sender.maxBatchSize</code> (default: 10000) messages.
+     */
+    @POST
+    @Path("/batch")
+    @Consumes({MediaType.APPLICATION_JSON, NDJSON})
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response sendBatch(InputStream body, @Context HttpServletRequest request) {
+
+        final PushApplication pushApplication = loadPushApplicationWhenAuthorized(request);
+        if (pushApplication == null) {
+            return Response.status(Status.UNAUTHORIZED)
+                    .header("WWW-Authenticate", "Basic realm=\"AeroGear UnifiedPush Server\"")
+                    .entity("Unauthorized Request")
+                    .build();
+        }
+
+        final String ipAddress = HttpRequestUtil.extractIPAddress(request);
+        final String clientIdentifier = HttpRequestUtil.extractAeroGearSenderInformation(request);
+
+        // read all messages, before any of them is accepted:
+        final List<UnifiedPushMessage> payloads = new ArrayList<UnifiedPushMessage>();
+        try {
+            final MessageStreamReader reader = new MessageStreamReader(body);
+            try {
+                Map<String, Object> message;
+                while ((message = reader.next()) != null) {
+                    if (payloads.size() == MAX_BATCH_SIZE) {
+                        return Response.status(Status.BAD_REQUEST)
+                                .entity("Too many messages, at most " + MAX_BATCH_SIZE + " are accepted per request").build();
+                    }
+                    final String rawMessage = outbox.serialize(message);
+                    final UnifiedPushMessage payload;
+                    try {
+                        payload = new UnifiedPushMessage(message);
+                    } catch (InvalidDeliveryTimeException e) {
+                        return Response.status(Status.BAD_REQUEST)
+                                .entity("Invalid deliver-at time of message " + payloads.size()).build();
+                    }
+                    payload.setIpAddress(ipAddress);
+                    payload.setClientIdentifier(clientIdentifier);
+                    payload.setRawMessage(rawMessage);
+                    payloads.add(payload);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Invalid message stream: " + e.getMessage()).build();
+        }
+
+        // the jobs track the progress of the messages, which are journaled before they are processed:
+        boolean serialized = true;
+        for (UnifiedPushMessage payload : payloads) {
+            payload.setJobId(sendJobs.create(pushApplication.getPushApplicationID()));
+            serialized &= payload.getRawMessage() != null;
+        }
+        if (!serialized || !outbox.accepted(pushApplication.getPushApplicationID(), payloads)) {
+            for (UnifiedPushMessage payload : payloads) {
+                sendJobs.remove(payload.getJobId());
+            }
+            return Response.status(Status.SERVICE_UNAVAILABLE)
+                    .entity("Could not store the messages").build();
+        }
+
+        final BatchSendResult[] results = new BatchSendResult[payloads.size()];
+        final List<UnifiedPushMessage> immediate = new ArrayList<UnifiedPushMessage>(payloads.size());
+        final List<Integer> immediateIndexes = new ArrayList<Integer>(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            final UnifiedPushMessage payload = payloads.get(i);
+            if (!sendScheduler.isScheduled(payload)) {
+                immediate.add(payload);
+                immediateIndexes.add(i);
+            } else if (sendScheduler.schedule(pushApplication.getPushApplicationID(), payload)) {
+                results[i] = new BatchSendResult(payload.getJobId(), BatchSendResult.SCHEDULED, null);
+            } else {
+                sendJobs.remove(payload.getJobId());
+                outbox.finished(payload.getJobId());
+                results[i] = new BatchSendResult(null, BatchSendResult.REJECTED, "Too many scheduled messages");
+            }
+        }
+
+        // queued on the lanes of their priorities, as far as the lanes can take them:
+        final List<Admission> admissions = sendDispatcher.dispatchAll(pushApplication, immediate);
+        long retryAfterSeconds = 0;
+        for (int i = 0; i < immediate.size(); i++) {
+            final UnifiedPushMessage payload = immediate.get(i);
+            final Admission admission = admissions.get(i);
+            if (admission == Admission.ACCEPTED) {
+                results[immediateIndexes.get(i)] = new BatchSendResult(payload.getJobId(), BatchSendResult.SUBMITTED, null);
+                continue;
+            }
+            sendJobs.remove(payload.getJobId());
+            outbox.finished(payload.getJobId());
+            retryAfterSeconds = Math.max(retryAfterSeconds, sendDispatcher.getRetryAfterSeconds(payload.getPriority()));
+            results[immediateIndexes.get(i)] = new BatchSendResult(null, BatchSendResult.REJECTED,
+                    admission == Admission.LIMITED ? "Too many pending messages, retry later" : "Too many queued messages");
+        }
+        logger.log(Level.INFO, payloads.size() + " messages of a batch submitted for further processing");
+
+        final Response.ResponseBuilder response = Response.status(Status.OK).entity(results);
+        if (retryAfterSeconds > 0) {
+            response.header("Retry-After", retryAfterSeconds);
+        }
+        return response.build();
+    }
+
+    /**
+     * Dry run of a send: evaluates the criteria of the given message (<code>variants</code>, <code>alias</code>,
+     * <code>categories</code> and <code>deviceType</code>) and returns the number of devices per variant, it would be
+     * sent to. The devices are counted by the database, no message is sent and no token is loaded.
+     */
+    @POST
+    @Path("/dry-run")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response dryRun(final Map<String, Object> message, @Context HttpServletRequest request) {
+
+        final PushApplication pushApplication = loadPushApplicationWhenAuthorized(request);
+        if (pushApplication == null) {
+            return Response.status(Status.UNAUTHORIZED)
+                    .header("WWW-Authenticate", "Basic realm=\"AeroGear UnifiedPush Server\"")
+                    .entity("Unauthorized Request")
+                    .build();
+        }
+
+        return Response.status(Status.OK)
+                .entity(audienceCounter.count(pushApplication, new SendCriteria(message))).build();
+    }
+
+    /**
+     * Forgets the job of a request, that has not been accepted: a retry with the same idempotency key is a new request.
+     */
+    private void forget(PushApplication pushApplication, String idempotencyKey, String jobId) {
+        sendJobs.remove(jobId);
+        if (idempotencyKey != null) {
+            idempotencyStore.release(pushApplication.getPushApplicationID(), idempotencyKey, jobId);
+        }
+    }
+
     /**
      * returns application if the masterSecret is valid for the request PushApplicationEntity
      */
@@ -0,0 +1,67 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.sender;
+
+import org.jboss.aerogear.unifiedpush.message.throttle.SendRateLimiter;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Shows and changes the rate limits of the push networks, e.g.
+ * <code>PUT /ratelimits/android?permitsPerSecond=1000&amp;burst=2000</code>. A rate of 0 removes the limit.
+ */
+@Stateless
+@Path("/ratelimits")
+public class RateLimitEndpoint {
+
+    @Inject
+    private SendRateLimiter rateLimiter;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response limits() {
+        return Response.ok(rateLimiter.getLimits()).build();
+    }
+
+    @PUT
+    @Path("/{network}")
+    public Response updateNetworkLimit(@PathParam("network") String network,
+                                       @QueryParam("permitsPerSecond") double permitsPerSecond,
+                                       @QueryParam("burst") @DefaultValue("0") double burst) {
+        rateLimiter.setNetworkLimit(network, permitsPerSecond, burst);
+        return Response.noContent().build();
+    }
+
+    @PUT
+    @Path("/{network}/credential")
+    public Response updateCredentialLimit(@PathParam("network") String network,
+                                          @QueryParam("permitsPerSecond") double permitsPerSecond,
+                                          @QueryParam("burst") @DefaultValue("0") double burst) {
+        rateLimiter.setCredentialLimit(network, permitsPerSecond, burst);
+        return Response.noContent().build();
+    }
+}
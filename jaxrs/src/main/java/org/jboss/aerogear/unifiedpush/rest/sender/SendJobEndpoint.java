@@ -0,0 +1,99 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.rest.sender;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobRegistry;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobStatus;
+import org.jboss.aerogear.unifiedpush.rest.util.HttpBasicHelper;
+import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status and progress of the jobs, created by the {@link PushNotificationSenderEndpoint}. Like the sender, it is
+ * authenticated with the ID and master secret of the push application.
+ */
+@Stateless
+@Path("/sender/jobs")
+public class SendJobEndpoint {
+
+    private static final int MAX_WAIT_SECONDS = Integer.getInteger("aerogear.jobs.maxWaitSeconds", 30);
+
+    @Inject
+    private PushApplicationService pushApplicationService;
+    @Inject
+    private SendJobRegistry sendJobs;
+
+    /**
+     * Returns the status of the given job. With <code>wait</code> (in seconds), the request is held until the job has
+     * changed after the version given by <code>since</code>, or is finished (long-polling).
+     */
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJob(@PathParam("id") String id, @QueryParam("since") @DefaultValue("-1") long since,
+                           @QueryParam("wait") @DefaultValue("0") int wait, @Context HttpServletRequest request) {
+
+        final PushApplication pushApplication = loadPushApplicationWhenAuthorized(request);
+        if (pushApplication == null) {
+            return Response.status(Status.UNAUTHORIZED)
+                    .header("WWW-Authenticate", "Basic realm=\"AeroGear UnifiedPush Server\"")
+                    .entity("Unauthorized Request")
+                    .build();
+        }
+
+        SendJobStatus status = sendJobs.find(id);
+        if (status == null || !status.getPushApplicationID().equals(pushApplication.getPushApplicationID())) {
+            return Response.status(Status.NOT_FOUND).entity("Could not find requested job").build();
+        }
+
+        if (wait > 0) {
+            try {
+                status = sendJobs.await(id, since, TimeUnit.SECONDS.toMillis(Math.min(wait, MAX_WAIT_SECONDS)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return Response.ok(status).build();
+    }
+
+    /**
+     * returns application if the masterSecret is valid for the request PushApplicationEntity
+     */
+    private PushApplication loadPushApplicationWhenAuthorized(HttpServletRequest request) {
+        final String[] credentials = HttpBasicHelper.extractUsernameAndPasswordFromBasicHeader(request);
+        final PushApplication pushApplication = pushApplicationService.findByPushApplicationID(credentials[0]);
+        if (pushApplication != null && pushApplication.getMasterSecret().equals(credentials[1])) {
+            return pushApplication;
+        }
+        return null;
+    }
+}
@@ -16,18 +16,27 @@
  */
 package org.jboss.aerogear.unifiedpush.rest.util;
 
+import org.jboss.aerogear.unifiedpush.service.health.HealthService;
+import org.jboss.aerogear.unifiedpush.service.health.HealthStatus;
+
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 /**
- * A class to test the Authorization status of a user
+ * A class to test the Authorization status of a user, and the health of the server
  */
 @Stateless
 @Path("/ping")
 public class Ping {
 
+    @Inject
+    private HealthService healthService;
+
     /**
      * an endpoint for testing the authorization status of a user
      *
@@ -37,4 +46,22 @@ public class Ping {
     public Response ping() {
         return Response.noContent().build();
     }
+
+    /**
+     * an endpoint for load balancers, reporting the saturation of the server (queues, database latency and
+     * error rates of the push networks). Not protected, see web.xml
+     *
+     * @return 200(OK) when healthy, 503(Service Unavailable) when degraded or down
+     */
+    @GET
+    @Path("/health")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response health() {
+        final HealthStatus status = healthService.checkHealth();
+
+        if (status.getState() == HealthStatus.State.OK) {
+            return Response.ok(status).build();
+        }
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(status).build();
+    }
 }
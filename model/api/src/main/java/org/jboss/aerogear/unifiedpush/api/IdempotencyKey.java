@@ -0,0 +1,87 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.api;
+
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+
+/**
+ * The idempotency key of a request to the RESTful Sender endpoint, with the send job it has started. The ID is derived
+ * from the push application and the key, so a duplicate request of any node of the cluster finds the original job.
+ */
+public class IdempotencyKey extends BaseModel {
+
+    @NotNull
+    private String pushApplicationId;
+    @NotNull
+    private String idempotencyKey;
+    @NotNull
+    private String jobId;
+    @NotNull
+    private Date expiry;
+
+    /**
+     * Returns the ID of the stored key, for the given push application and key.
+     */
+    public static String idOf(String pushApplicationId, String idempotencyKey) {
+        return pushApplicationId + ':' + idempotencyKey;
+    }
+
+    /**
+     * The ID of the push application, that has submitted the request
+     */
+    public String getPushApplicationId() {
+        return pushApplicationId;
+    }
+
+    public void setPushApplicationId(String pushApplicationId) {
+        this.pushApplicationId = pushApplicationId;
+    }
+
+    /**
+     * The key, as given by the sender
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * The ID of the send job, that has been started by the first request with the key
+     */
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    /**
+     * The time after which a request with the same key starts a new job
+     */
+    public Date getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(Date expiry) {
+        this.expiry = expiry;
+    }
+}
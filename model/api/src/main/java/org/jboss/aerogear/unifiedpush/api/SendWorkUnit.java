@@ -0,0 +1,212 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.api;
+
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+
+/**
+ * A part of a large send: the installations of a variant within a range of installation IDs. The units are stored in
+ * a shared table, any node of the cluster can lease one, send to its installations and record its progress.
+ */
+public class SendWorkUnit extends BaseModel {
+
+    @NotNull
+    private String pushMessageInformationId;
+    @NotNull
+    private String pushApplicationId;
+    @NotNull
+    private String variantID;
+
+    private String afterInstallationId;
+    private String lastInstallationId;
+
+    private String rawJsonMessage;
+    private String ipAddress;
+    private String clientIdentifier;
+
+    private Date notBefore;
+
+    private SendWorkUnitState state = SendWorkUnitState.PENDING;
+    private String owner;
+    private Date leaseExpiry;
+    private int claims;
+    private String checkpoint;
+    private long tokens;
+
+    /**
+     * The ID of the push message request, the unit is part of
+     */
+    public String getPushMessageInformationId() {
+        return pushMessageInformationId;
+    }
+
+    public void setPushMessageInformationId(String pushMessageInformationId) {
+        this.pushMessageInformationId = pushMessageInformationId;
+    }
+
+    /**
+     * The ID of the push application, for which the push message request has been submitted
+     */
+    public String getPushApplicationId() {
+        return pushApplicationId;
+    }
+
+    public void setPushApplicationId(String pushApplicationId) {
+        this.pushApplicationId = pushApplicationId;
+    }
+
+    /**
+     * The ID of the variant, whose installations are sent to
+     */
+    public String getVariantID() {
+        return variantID;
+    }
+
+    public void setVariantID(String variantID) {
+        this.variantID = variantID;
+    }
+
+    /**
+     * The range starts after this installation ID, <code>null</code> if it starts with the first installation
+     */
+    public String getAfterInstallationId() {
+        return afterInstallationId;
+    }
+
+    public void setAfterInstallationId(String afterInstallationId) {
+        this.afterInstallationId = afterInstallationId;
+    }
+
+    /**
+     * The last installation ID of the range, <code>null</code> if it ends with the last installation
+     */
+    public String getLastInstallationId() {
+        return lastInstallationId;
+    }
+
+    public void setLastInstallationId(String lastInstallationId) {
+        this.lastInstallationId = lastInstallationId;
+    }
+
+    /**
+     * The raw JSON payload of the push message request
+     */
+    public String getRawJsonMessage() {
+        return rawJsonMessage;
+    }
+
+    public void setRawJsonMessage(String rawJsonMessage) {
+        this.rawJsonMessage = rawJsonMessage;
+    }
+
+    /**
+     * The IP from the submitter of the push message request
+     */
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    /**
+     * The Client Identifier showing who triggered the Push Notification
+     */
+    public String getClientIdentifier() {
+        return clientIdentifier;
+    }
+
+    public void setClientIdentifier(String clientIdentifier) {
+        this.clientIdentifier = clientIdentifier;
+    }
+
+    /**
+     * The unit can not be claimed before this date, the delivery time of a scheduled message
+     */
+    public Date getNotBefore() {
+        return notBefore;
+    }
+
+    public void setNotBefore(Date notBefore) {
+        this.notBefore = notBefore;
+    }
+
+    public SendWorkUnitState getState() {
+        return state;
+    }
+
+    public void setState(SendWorkUnitState state) {
+        this.state = state;
+    }
+
+    /**
+     * The node holding the lease, if any
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Once the lease has expired, the unit can be claimed by another node
+     */
+    public Date getLeaseExpiry() {
+        return leaseExpiry;
+    }
+
+    public void setLeaseExpiry(Date leaseExpiry) {
+        this.leaseExpiry = leaseExpiry;
+    }
+
+    /**
+     * The number of times the unit has been claimed
+     */
+    public int getClaims() {
+        return claims;
+    }
+
+    public void setClaims(int claims) {
+        this.claims = claims;
+    }
+
+    /**
+     * The last installation ID, up to which the range has been sent to, <code>null</code> if nothing has been sent yet
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * The number of tokens, that have been handed to the push network
+     */
+    public long getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(long tokens) {
+        this.tokens = tokens;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.api;
+
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+
+/**
+ * An alias of a send request with a large alias list. The aliases are staged once per send, and joined by the token
+ * queries of all its variants, instead of being bound as query parameters for every variant.
+ */
+public class StagedAlias extends BaseModel {
+
+    @NotNull
+    private String stageId;
+    @NotNull
+    private String alias;
+    @NotNull
+    private Date stagedAt;
+
+    /**
+     * The ID shared by all aliases of one send request
+     */
+    public String getStageId() {
+        return stageId;
+    }
+
+    public void setStageId(String stageId) {
+        this.stageId = stageId;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
+
+    /**
+     * The time the alias has been staged, to remove the stages of sends that did not finish
+     */
+    public Date getStagedAt() {
+        return stagedAt;
+    }
+
+    public void setStagedAt(Date stagedAt) {
+        this.stagedAt = stagedAt;
+    }
+}
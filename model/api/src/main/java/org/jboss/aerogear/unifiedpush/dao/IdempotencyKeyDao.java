@@ -0,0 +1,44 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.dao;
+
+import org.jboss.aerogear.unifiedpush.api.IdempotencyKey;
+
+import java.util.Date;
+
+/**
+ * The idempotency keys of the sender requests, shared by the nodes of the cluster. The takeover of an expired key is a
+ * conditional update, which is atomic on any database.
+ */
+public interface IdempotencyKeyDao extends GenericBaseDao<IdempotencyKey, String> {
+
+    /**
+     * Assigns the given job to the stored key, if the key has expired before the given date. Returns whether the key
+     * has been taken over.
+     */
+    boolean takeOver(String id, String jobId, Date expiry, Date now);
+
+    /**
+     * Deletes the key, as long as it is still assigned to the given job.
+     */
+    void release(String id, String jobId);
+
+    /**
+     * Deletes all keys, that have expired before the given date. Returns the number of deleted keys.
+     */
+    int deleteExpired(Date now);
+}
@@ -19,6 +19,7 @@ package org.jboss.aerogear.unifiedpush.dao;
 import org.jboss.aerogear.unifiedpush.api.Installation;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface InstallationDao extends GenericBaseDao<Installation, String> {
@@ -40,6 +41,81 @@ public interface InstallationDao extends GenericBaseDao<Installation, String> {
      */
     List<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes);
 
+    /**
+     * Sender API for installations:
+     *
+     * Like {@link #findAllDeviceTokenForVariantIDByCriteria(String, List, List, List)}, but for the aliases staged under the
+     * given stage ID (see {@link StagedAliasDao}), which are joined instead of being bound as parameters.
+     */
+    List<String> findAllDeviceTokenForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes);
+
+    /**
+     * Sender API for installations:
+     *
+     * Counts the tokens, that {@link #findAllDeviceTokenForVariantIDByCriteria(String, List, List, List)} would return,
+     * without loading them.
+     */
+    long countDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes);
+
+    /**
+     * Sender API for installations:
+     *
+     * Counts the tokens, that {@link #findAllDeviceTokenForVariantIDByStagedAliases(String, List, String, List)} would
+     * return, without loading them.
+     */
+    long countDeviceTokensForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes);
+
+    /**
+     * Sender API for installations:
+     *
+     * Query the tokens of the given variant, within a range of installation IDs, by respecting a few criteria arguments
+     * (categories, aliases and deviceTypes). Returns up to <code>maxResults</code> tokens, keyed and ordered by their
+     * installation ID.
+     *
+     * @param afterInstallationId the range starts after this ID, <code>null</code> for the first installation
+     * @param lastInstallationId the last ID of the range, <code>null</code> for the last installation
+     */
+    Map<String, String> findDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                               String afterInstallationId, String lastInstallationId, int maxResults);
+
+    /**
+     * Splits the enabled installations of the given variant into ranges of <code>rangeSize</code> installations, and
+     * returns the last installation ID of each range, except the last one. The list is empty, if the variant does not
+     * have more than <code>rangeSize</code> installations.
+     */
+    List<String> findInstallationIdBoundariesForVariantID(String variantID, int rangeSize);
+
+    /**
+     * Sender API for installations:
+     *
+     * Splits the sorted tokens, that {@link #findAllDeviceTokenForVariantIDByCriteria(String, List, List, List)} would
+     * return, into ranges of <code>rangeSize</code> tokens, and returns the last token of each range, except the last
+     * one. The list is empty, if there are not more than <code>rangeSize</code> tokens.
+     */
+    List<String> findDeviceTokenBoundariesForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                 int rangeSize);
+
+    /**
+     * Sender API for installations:
+     *
+     * Query the sorted tokens of the given variant, within a range of tokens, by respecting a few criteria arguments
+     * (categories, aliases and deviceTypes).
+     *
+     * @param afterToken the range starts after this token, <code>null</code> for the first token
+     * @param lastToken the last token of the range, <code>null</code> for the last token
+     */
+    List<String> findDeviceTokenRangeForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                            String afterToken, String lastToken);
+
+    /**
+     * Loads up to <code>maxResults</code> enabled installations of the given variant, after the given installation ID and
+     * ordered by it. The returned installations are not managed, and carry the attributes of the send criteria only: ID,
+     * device-token, alias, device type and categories.
+     *
+     * @param afterInstallationId the page starts after this ID, <code>null</code> for the first page
+     */
+    List<Installation> findCriteriaOfEnabledInstallationsForVariantID(String variantID, String afterInstallationId, int maxResults);
+
     /**
      * Find all installations for the variant specified.
      * @param variantID the id of the variant to find the installations for
@@ -17,6 +17,7 @@
 package org.jboss.aerogear.unifiedpush.dao;
 
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
 
 import java.util.List;
 import java.util.Map;
@@ -48,4 +49,10 @@ public interface PushMessageInformationDao extends GenericBaseDao<PushMessageInf
      */
     Map<String, Long> findTopThreeBusyVariantIDs(String loginName);
 
+    /**
+     * Adds the receivers of the given outcome to the stored outcome of the given push message, that has the same
+     * variant, delivery status and reason. Returns false if there is none yet.
+     */
+    boolean addReceivers(String pushMessageInformationId, VariantMetricInformation variantMetricInformation);
+
 }
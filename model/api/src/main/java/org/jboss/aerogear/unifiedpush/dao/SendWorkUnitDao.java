@@ -0,0 +1,62 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.dao;
+
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The lease table of the work units. Claims, checkpoints and completions are conditional updates, which are atomic on
+ * any database: the node that updates the row holds the lease.
+ */
+public interface SendWorkUnitDao extends GenericBaseDao<SendWorkUnit, String> {
+
+    /**
+     * Loads the IDs of units that are pending, or whose lease has expired before the given date. Units that are not to be
+     * sent before a later date are skipped.
+     */
+    List<String> findClaimableIds(Date now, int maxResults);
+
+    /**
+     * Leases the unit to the given owner, if it is still pending or its lease has expired before the given date, and it
+     * is to be sent by then. Returns whether the lease has been taken.
+     */
+    boolean claim(String id, String owner, Date now, Date leaseExpiry);
+
+    /**
+     * Records the progress of the unit and extends the lease, as long as the given owner is holding it. Returns false
+     * if the lease has been lost.
+     */
+    boolean checkpoint(String id, String owner, String checkpoint, long tokens, Date leaseExpiry);
+
+    /**
+     * Marks the unit as completed, as long as the given owner is holding it. Returns false if the lease has been lost.
+     */
+    boolean complete(String id, String owner, long tokens);
+
+    /**
+     * Loads all units of the given push message request.
+     */
+    List<SendWorkUnit> findAllForPushMessage(String pushMessageInformationId);
+
+    /**
+     * Deletes all units of the given push message request.
+     */
+    void deleteAllForPushMessage(String pushMessageInformationId);
+}
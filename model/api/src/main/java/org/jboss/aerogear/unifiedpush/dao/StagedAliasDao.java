@@ -0,0 +1,44 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.dao;
+
+import org.jboss.aerogear.unifiedpush.api.StagedAlias;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * The staged aliases of the send requests with large alias lists, see
+ * {@link InstallationDao#findAllDeviceTokenForVariantIDByStagedAliases(String, java.util.List, String, java.util.List)}.
+ */
+public interface StagedAliasDao extends GenericBaseDao<StagedAlias, String> {
+
+    /**
+     * Stores the given distinct aliases under the given stage ID, flushing them in batches.
+     */
+    void stage(String stageId, Collection<String> aliases, Date stagedAt);
+
+    /**
+     * Deletes all aliases of the given stage. Returns the number of deleted aliases.
+     */
+    int deleteStage(String stageId);
+
+    /**
+     * Deletes all aliases, that have been staged before the given date. Returns the number of deleted aliases.
+     */
+    int deleteStagedBefore(Date date);
+}
@@ -0,0 +1,145 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Always-on, low-overhead recorder for the send pipeline and the DAOs. The last events are kept in a fixed size ring
+ * buffer, so a slow send can be analyzed afterwards, without enabling verbose logging.
+ *
+ * Events of the same push message are correlated by a trace ID, bound to the processing thread with
+ * {@link #beginTrace(String)}.
+ *
+ * Configured with the system properties <code>aerogear.flightRecorder.enabled</code> (default: true) and
+ * <code>aerogear.flightRecorder.capacity</code> (default: 8192 events).
+ */
+public final class FlightRecorder implements FlightRecorderMXBean {
+
+    public static final String OBJECT_NAME = "org.jboss.aerogear.unifiedpush:type=FlightRecorder";
+
+    private static final FlightRecorder INSTANCE = new FlightRecorder(Integer.getInteger("aerogear.flightRecorder.capacity", 8192));
+
+    private static final ThreadLocal<String> CURRENT_TRACE = new ThreadLocal<String>();
+
+    private final AtomicReferenceArray<TraceEvent> ring;
+    private final AtomicLong cursor = new AtomicLong();
+    private volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("aerogear.flightRecorder.enabled"));
+
+    FlightRecorder(int capacity) {
+        this.ring = new AtomicReferenceArray<TraceEvent>(capacity);
+    }
+
+    public static FlightRecorder getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Binds the given trace ID to the current thread, all following events of the thread are correlated with it.
+     */
+    public static void beginTrace(String traceId) {
+        CURRENT_TRACE.set(traceId);
+    }
+
+    /**
+     * Removes the trace ID from the current thread.
+     */
+    public static void endTrace() {
+        CURRENT_TRACE.remove();
+    }
+
+    /**
+     * Captures a successful event.
+     */
+    public static void record(TraceEventType type, String name, String detail, long count, long durationNanos) {
+        INSTANCE.capture(type, name, detail, count, durationNanos, true);
+    }
+
+    /**
+     * Captures a failed event.
+     */
+    public static void recordFailure(TraceEventType type, String name, String detail, long durationNanos) {
+        INSTANCE.capture(type, name, detail, 0, durationNanos, false);
+    }
+
+    void capture(TraceEventType type, String name, String detail, long count, long durationNanos, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        final TraceEvent event = new TraceEvent(System.currentTimeMillis(), CURRENT_TRACE.get(),
+                Thread.currentThread().getName(), type, name, detail, count, durationNanos, success);
+        ring.set((int) (cursor.getAndIncrement() % ring.length()), event);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public List<TraceEvent> getEvents() {
+        return filter(-1, null);
+    }
+
+    @Override
+    public List<TraceEvent> getSlowEvents(long minDurationMicros) {
+        return filter(TimeUnit.MICROSECONDS.toNanos(minDurationMicros), null);
+    }
+
+    @Override
+    public List<TraceEvent> getEventsOfTrace(String traceId) {
+        return filter(-1, traceId);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < ring.length(); i++) {
+            ring.set(i, null);
+        }
+    }
+
+    private List<TraceEvent> filter(long minDurationNanos, String traceId) {
+        final int capacity = ring.length();
+        final long end = cursor.get();
+        final long start = Math.max(0, end - capacity);
+
+        final List<TraceEvent> events = new ArrayList<TraceEvent>();
+        for (long i = start; i < end; i++) {
+            final TraceEvent event = ring.get((int) (i % capacity));
+            if (event == null) {
+                continue;
+            }
+            if (event.getDurationMicros() < TimeUnit.NANOSECONDS.toMicros(minDurationNanos)) {
+                continue;
+            }
+            if (traceId != null && !traceId.equals(event.getTraceId())) {
+                continue;
+            }
+            events.add(event);
+        }
+        return events;
+    }
+}
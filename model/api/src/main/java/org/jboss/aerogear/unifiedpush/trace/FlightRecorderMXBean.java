@@ -0,0 +1,46 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.trace;
+
+import java.util.List;
+
+/**
+ * JMX view on the {@link FlightRecorder}, registered as <code>org.jboss.aerogear.unifiedpush:type=FlightRecorder</code>.
+ */
+public interface FlightRecorderMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * All captured events, oldest first.
+     */
+    List<TraceEvent> getEvents();
+
+    /**
+     * Captured events, that took at least the given number of microseconds.
+     */
+    List<TraceEvent> getSlowEvents(long minDurationMicros);
+
+    /**
+     * All captured events for the given push message.
+     */
+    List<TraceEvent> getEventsOfTrace(String traceId);
+
+    void clear();
+}
@@ -0,0 +1,105 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.trace;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single, immutable event captured by the {@link FlightRecorder}.
+ */
+public class TraceEvent {
+
+    private final long timestamp;
+    private final String traceId;
+    private final String thread;
+    private final TraceEventType type;
+    private final String name;
+    private final String detail;
+    private final long count;
+    private final long durationNanos;
+    private final boolean success;
+
+    TraceEvent(long timestamp, String traceId, String thread, TraceEventType type, String name, String detail,
+               long count, long durationNanos, boolean success) {
+        this.timestamp = timestamp;
+        this.traceId = traceId;
+        this.thread = thread;
+        this.type = type;
+        this.name = name;
+        this.detail = detail;
+        this.count = count;
+        this.durationNanos = durationNanos;
+        this.success = success;
+    }
+
+    /**
+     * Time (in millis since epoch) when the event ended.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Identifier of the push message, that was processed by the thread when the event occurred, may be <code>null</code>.
+     */
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public TraceEventType getType() {
+        return type;
+    }
+
+    /**
+     * What happened, e.g. the name of the send stage or the DAO operation.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Further details, e.g. the variant or the shape of the executed query.
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Number of processed items, e.g. tokens or rows.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getDurationMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(durationNanos);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + type + " " + name + " (" + detail + ") count=" + count + ", duration=" + getDurationMicros()
+                + "us, success=" + success + ", trace=" + traceId + ", thread=" + thread + "]";
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.trace;
+
+/**
+ * Categories of the events, captured by the {@link FlightRecorder}.
+ */
+public enum TraceEventType {
+
+    /**
+     * A stage of the send pipeline, like token resolution or payload build.
+     */
+    SEND_STAGE,
+
+    /**
+     * A call to the push network.
+     */
+    NETWORK_CALL,
+
+    /**
+     * A database operation, issued by one of the DAOs.
+     */
+    DAO_OPERATION
+}
@@ -0,0 +1,66 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.trace;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void keepsOnlyTheLatestEvents() {
+        final FlightRecorder recorder = new FlightRecorder(3);
+        for (int i = 0; i < 5; i++) {
+            recorder.capture(TraceEventType.DAO_OPERATION, "persist", "event" + i, 1, 10, true);
+        }
+
+        final List<TraceEvent> events = recorder.getEvents();
+        assertEquals(3, events.size());
+        assertEquals("event2", events.get(0).getDetail());
+        assertEquals("event4", events.get(2).getDetail());
+    }
+
+    @Test
+    public void filtersByDurationAndTrace() {
+        final FlightRecorder recorder = new FlightRecorder(10);
+        FlightRecorder.beginTrace("message-1");
+        try {
+            recorder.capture(TraceEventType.NETWORK_CALL, "NETWORK", "android", 1000, TimeUnit.MILLISECONDS.toNanos(250), true);
+        } finally {
+            FlightRecorder.endTrace();
+        }
+        recorder.capture(TraceEventType.SEND_STAGE, "PAYLOAD_BUILD", "android", 1000, TimeUnit.MICROSECONDS.toNanos(20), true);
+
+        assertEquals(1, recorder.getSlowEvents(1000).size());
+        assertEquals(1, recorder.getEventsOfTrace("message-1").size());
+        assertTrue(recorder.getEventsOfTrace("message-2").isEmpty());
+    }
+
+    @Test
+    public void doesNotCaptureWhenDisabled() {
+        final FlightRecorder recorder = new FlightRecorder(10);
+        recorder.setEnabled(false);
+        recorder.capture(TraceEventType.DAO_OPERATION, "merge", "Variant", 1, 10, true);
+
+        assertTrue(recorder.getEvents().isEmpty());
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
+
+import org.jboss.aerogear.unifiedpush.jpa.statistics.QueryStatistics;
+import org.jboss.aerogear.unifiedpush.trace.FlightRecorder;
+import org.jboss.aerogear.unifiedpush.trace.TraceEventType;
+
+import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
+import javax.persistence.Parameter;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decorates a JPA {@link Query} and captures the execution of it, including the query shape,
+ * the number of returned rows, the size of bound collection parameters and the duration,
+ * with the {@link FlightRecorder} and the {@link QueryStatistics}.
+ */
+class InstrumentedQuery implements Query {
+
+    private final Query delegate;
+    private final String shape;
+    private int parameterCardinality;
+
+    InstrumentedQuery(Query delegate, String jpql) {
+        this.delegate = delegate;
+        this.shape = QueryStatistics.shapeOf(jpql);
+    }
+
+    @Override
+    public List getResultList() {
+        final long start = System.nanoTime();
+        try {
+            final List result = delegate.getResultList();
+            recordExecution("getResultList", start, result.size());
+            return result;
+        } catch (PersistenceException e) {
+            recordFailure("getResultList", start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Object getSingleResult() {
+        final long start = System.nanoTime();
+        try {
+            final Object result = delegate.getSingleResult();
+            recordExecution("getSingleResult", start, 1);
+            return result;
+        } catch (PersistenceException e) {
+            recordFailure("getSingleResult", start);
+            throw e;
+        }
+    }
+
+    @Override
+    public int executeUpdate() {
+        final long start = System.nanoTime();
+        try {
+            final int rows = delegate.executeUpdate();
+            recordExecution("executeUpdate", start, rows);
+            return rows;
+        } catch (PersistenceException e) {
+            recordFailure("executeUpdate", start);
+            throw e;
+        }
+    }
+
+    private void recordExecution(String operation, long start, int rows) {
+        final long nanos = System.nanoTime() - start;
+        QueryStatistics.getInstance().record(shape, nanos, rows, parameterCardinality, true);
+        FlightRecorder.record(TraceEventType.DAO_OPERATION, operation, shape, rows, nanos);
+    }
+
+    private void recordFailure(String operation, long start) {
+        final long nanos = System.nanoTime() - start;
+        QueryStatistics.getInstance().record(shape, nanos, 0, parameterCardinality, false);
+        FlightRecorder.recordFailure(TraceEventType.DAO_OPERATION, operation, shape, nanos);
+    }
+
+    /**
+     * Remembers the size of the largest collection parameter, e.g. for <code>IN</code> clauses.
+     */
+    private void trackCardinality(Object value) {
+        if (value instanceof Collection) {
+            parameterCardinality = Math.max(parameterCardinality, ((Collection<?>) value).size());
+        }
+    }
+
+    // all other methods just configure the delegate, but keep the decorator in place for chaining:
+
+    @Override
+    public Query setMaxResults(int maxResult) {
+        delegate.setMaxResults(maxResult);
+        return this;
+    }
+
+    @Override
+    public int getMaxResults() {
+        return delegate.getMaxResults();
+    }
+
+    @Override
+    public Query setFirstResult(int startPosition) {
+        delegate.setFirstResult(startPosition);
+        return this;
+    }
+
+    @Override
+    public int getFirstResult() {
+        return delegate.getFirstResult();
+    }
+
+    @Override
+    public Query setHint(String hintName, Object value) {
+        delegate.setHint(hintName, value);
+        return this;
+    }
+
+    @Override
+    public Map<String, Object> getHints() {
+        return delegate.getHints();
+    }
+
+    @Override
+    public <T> Query setParameter(Parameter<T> param, T value) {
+        trackCardinality(value);
+        delegate.setParameter(param, value);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(Parameter<Calendar> param, Calendar value, TemporalType temporalType) {
+        delegate.setParameter(param, value, temporalType);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(Parameter<Date> param, Date value, TemporalType temporalType) {
+        delegate.setParameter(param, value, temporalType);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(String name, Object value) {
+        trackCardinality(value);
+        delegate.setParameter(name, value);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(String name, Calendar value, TemporalType temporalType) {
+        delegate.setParameter(name, value, temporalType);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(String name, Date value, TemporalType temporalType) {
+        delegate.setParameter(name, value, temporalType);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(int position, Object value) {
+        trackCardinality(value);
+        delegate.setParameter(position, value);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(int position, Calendar value, TemporalType temporalType) {
+        delegate.setParameter(position, value, temporalType);
+        return this;
+    }
+
+    @Override
+    public Query setParameter(int position, Date value, TemporalType temporalType) {
+        delegate.setParameter(position, value, temporalType);
+        return this;
+    }
+
+    @Override
+    public Set<Parameter<?>> getParameters() {
+        return delegate.getParameters();
+    }
+
+    @Override
+    public Parameter<?> getParameter(String name) {
+        return delegate.getParameter(name);
+    }
+
+    @Override
+    public <T> Parameter<T> getParameter(String name, Class<T> type) {
+        return delegate.getParameter(name, type);
+    }
+
+    @Override
+    public Parameter<?> getParameter(int position) {
+        return delegate.getParameter(position);
+    }
+
+    @Override
+    public <T> Parameter<T> getParameter(int position, Class<T> type) {
+        return delegate.getParameter(position, type);
+    }
+
+    @Override
+    public boolean isBound(Parameter<?> param) {
+        return delegate.isBound(param);
+    }
+
+    @Override
+    public <T> T getParameterValue(Parameter<T> param) {
+        return delegate.getParameterValue(param);
+    }
+
+    @Override
+    public Object getParameterValue(String name) {
+        return delegate.getParameterValue(name);
+    }
+
+    @Override
+    public Object getParameterValue(int position) {
+        return delegate.getParameterValue(position);
+    }
+
+    @Override
+    public Query setFlushMode(FlushModeType flushMode) {
+        delegate.setFlushMode(flushMode);
+        return this;
+    }
+
+    @Override
+    public FlushModeType getFlushMode() {
+        return delegate.getFlushMode();
+    }
+
+    @Override
+    public Query setLockMode(LockModeType lockMode) {
+        delegate.setLockMode(lockMode);
+        return this;
+    }
+
+    @Override
+    public LockModeType getLockMode() {
+        return delegate.getLockMode();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> cls) {
+        return delegate.unwrap(cls);
+    }
+}
@@ -16,9 +16,14 @@
  */
 package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
 
+import org.jboss.aerogear.unifiedpush.jpa.statistics.QueryStatistics;
+import org.jboss.aerogear.unifiedpush.trace.FlightRecorder;
+import org.jboss.aerogear.unifiedpush.trace.TraceEventType;
+
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaQuery;
 
 public abstract class JPABaseDao {
 
@@ -34,28 +39,49 @@ public abstract class JPABaseDao {
 
 
     protected Query createQuery(String jpql) {
-        return entityManager.createQuery(jpql);
+        return new InstrumentedQuery(entityManager.createQuery(jpql), jpql);
+    }
+
+    /**
+     * Like {@link #createQuery(String)}, for a query of the Criteria API, which is recorded under the given name, as it
+     * does not have a JPQL string.
+     */
+    protected Query createQuery(CriteriaQuery<?> criteriaQuery, String name) {
+        return new InstrumentedQuery(entityManager.createQuery(criteriaQuery), name);
     }
 
     protected void persist(Object entity) {
+        final long start = System.nanoTime();
         entityManager.joinTransaction();
         entityManager.persist(entity);
+        recordOperation("persist", entity, start);
     }
 
     protected void merge(Object entity) {
+        final long start = System.nanoTime();
         entityManager.joinTransaction();
         entityManager.merge(entity);
 
         entityManager.flush();
+        recordOperation("merge", entity, start);
     }
 
     protected void remove(Object entity) {
         if (entity != null) {
+            final long start = System.nanoTime();
 
             entityManager.joinTransaction();
             entityManager.remove(entity);
+            recordOperation("remove", entity, start);
         }
     }
 
+    private void recordOperation(String operation, Object entity, long start) {
+        final long nanos = System.nanoTime() - start;
+        final String entityName = entity.getClass().getSimpleName();
+        QueryStatistics.getInstance().record(operation + " " + entityName, nanos, 1, 0, true);
+        FlightRecorder.record(TraceEventType.DAO_OPERATION, operation, entityName, 1, nanos);
+    }
+
 
 }
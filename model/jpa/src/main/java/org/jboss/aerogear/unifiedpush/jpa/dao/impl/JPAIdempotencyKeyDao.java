@@ -0,0 +1,83 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
+
+import org.jboss.aerogear.unifiedpush.api.IdempotencyKey;
+import org.jboss.aerogear.unifiedpush.dao.IdempotencyKeyDao;
+
+import javax.persistence.Query;
+import java.util.Date;
+
+/**
+ * The keys are written by other nodes, and by bulk updates, which bypass the persistence context: a loaded key is
+ * refreshed, to reflect the stored state.
+ */
+public class JPAIdempotencyKeyDao extends JPABaseDao implements IdempotencyKeyDao {
+
+    @Override
+    public void create(IdempotencyKey key) {
+        persist(key);
+    }
+
+    @Override
+    public void update(IdempotencyKey key) {
+        merge(key);
+    }
+
+    @Override
+    public void delete(IdempotencyKey key) {
+        IdempotencyKey entity = entityManager.find(IdempotencyKey.class, key.getId());
+        remove(entity);
+    }
+
+    @Override
+    public IdempotencyKey find(String id) {
+        final IdempotencyKey key = entityManager.find(IdempotencyKey.class, id);
+        if (key != null) {
+            entityManager.refresh(key);
+        }
+        return key;
+    }
+
+    @Override
+    public boolean takeOver(String id, String jobId, Date expiry, Date now) {
+        return executeUpdate(createQuery("update IdempotencyKey stored" +
+                " set stored.jobId = :jobId, stored.expiry = :expiry where stored.id = :id and stored.expiry < :now")
+                .setParameter("jobId", jobId)
+                .setParameter("expiry", expiry)
+                .setParameter("id", id)
+                .setParameter("now", now)) > 0;
+    }
+
+    @Override
+    public void release(String id, String jobId) {
+        executeUpdate(createQuery("delete from IdempotencyKey stored where stored.id = :id and stored.jobId = :jobId")
+                .setParameter("id", id)
+                .setParameter("jobId", jobId));
+    }
+
+    @Override
+    public int deleteExpired(Date now) {
+        return executeUpdate(createQuery("delete from IdempotencyKey stored where stored.expiry < :now")
+                .setParameter("now", now));
+    }
+
+    private int executeUpdate(Query query) {
+        entityManager.joinTransaction();
+        return query.executeUpdate();
+    }
+}
@@ -50,13 +50,14 @@ public class JPAInstallationDao extends JPABaseDao implements InstallationDao {
         final Predicate[] predicates = getPredicates(variantID, developer, builder, join);
         query.where(predicates);
 
-        List<Installation> result = entityManager.createQuery(query)
+        List<Installation> result = createQuery(query, "criteria: installations by variant and developer")
                 .setFirstResult(page * pageSize).setMaxResults(pageSize).getResultList();
 
         CriteriaQuery<Long> countQuery = builder.createQuery(Long.class);
         final Join<Object, Object> join1 = countQuery.from(Installation.class).join("variant");
         countQuery.where(getPredicates(variantID, developer, builder, join1));
-        final Long count = entityManager.createQuery(countQuery.select(builder.count(join1))).getSingleResult();
+        final Long count = (Long) createQuery(countQuery.select(builder.count(join1)), "criteria: count of installations by variant and developer")
+                .getSingleResult();
 
         return new PageResult<Installation>(result, count);
     }
@@ -108,6 +109,185 @@ public class JPAInstallationDao extends JPABaseDao implements InstallationDao {
         return this.executeDynamicQuery(jpqlString, variantID, categories, aliases, deviceTypes);
     }
 
+    @Override
+    public List<String> findAllDeviceTokenForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes) {
+        final StringBuilder jpqlString = new StringBuilder("select installation.deviceToken from Installation installation")
+                .append(" join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true")
+                .append(" and installation.alias IN (select staged.alias from StagedAlias staged where staged.stageId = :aliasStageId)");
+
+        final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+        parameters.put("aliasStageId", aliasStageId);
+
+        return this.createDynamicQuery(jpqlString, "", parameters, variantID, categories, null, deviceTypes).getResultList();
+    }
+
+    @Override
+    public long countDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        final StringBuilder jpqlString = new StringBuilder("select count(installation) from Installation installation")
+                .append(" join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true");
+
+        return (Long) this.createDynamicQuery(jpqlString, "", new LinkedHashMap<String, Object>(), variantID, categories, aliases, deviceTypes)
+                .getSingleResult();
+    }
+
+    @Override
+    public long countDeviceTokensForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes) {
+        final StringBuilder jpqlString = new StringBuilder("select count(installation) from Installation installation")
+                .append(" join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true")
+                .append(" and installation.alias IN (select staged.alias from StagedAlias staged where staged.stageId = :aliasStageId)");
+
+        final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+        parameters.put("aliasStageId", aliasStageId);
+
+        return (Long) this.createDynamicQuery(jpqlString, "", parameters, variantID, categories, null, deviceTypes).getSingleResult();
+    }
+
+    @Override
+    public Map<String, String> findDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                      String afterInstallationId, String lastInstallationId, int maxResults) {
+        final StringBuilder jpqlString = new StringBuilder("select installation.id, installation.deviceToken from Installation installation")
+                .append(" join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true");
+
+        final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+        if (afterInstallationId != null) {
+            jpqlString.append(" and installation.id > :afterInstallationId");
+            parameters.put("afterInstallationId", afterInstallationId);
+        }
+        if (lastInstallationId != null) {
+            jpqlString.append(" and installation.id <= :lastInstallationId");
+            parameters.put("lastInstallationId", lastInstallationId);
+        }
+
+        final Query query = this.createDynamicQuery(jpqlString, " order by installation.id", parameters, variantID, categories, aliases, deviceTypes);
+        final List<Object[]> rows = query.setMaxResults(maxResults).getResultList();
+
+        final Map<String, String> tokens = new LinkedHashMap<String, String>();
+        for (Object[] row : rows) {
+            tokens.put((String) row[0], (String) row[1]);
+        }
+        return tokens;
+    }
+
+    @Override
+    public List<String> findInstallationIdBoundariesForVariantID(String variantID, int rangeSize) {
+        final List<String> boundaries = new ArrayList<String>();
+
+        // every step skips one range, starting after the previous boundary:
+        String last = null;
+        while (true) {
+            final Query query = createQuery("select installation.id from Installation installation" +
+                    " join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true" +
+                    (last == null ? "" : " and installation.id > :last") +
+                    " order by installation.id")
+                    .setParameter("variantID", variantID);
+            if (last != null) {
+                query.setParameter("last", last);
+            }
+
+            // the boundary counts only, if the range is followed by another installation:
+            final List<String> ids = query.setFirstResult(rangeSize - 1).setMaxResults(2).getResultList();
+            if (ids.size() < 2) {
+                return boundaries;
+            }
+            last = ids.get(0);
+            boundaries.add(last);
+        }
+    }
+
+    @Override
+    public List<String> findDeviceTokenBoundariesForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                        int rangeSize) {
+        final List<String> boundaries = new ArrayList<String>();
+
+        // every step skips one range, starting after the previous boundary:
+        String last = null;
+        while (true) {
+            final StringBuilder jpqlString = new StringBuilder("select installation.deviceToken from Installation installation")
+                    .append(" join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true");
+
+            final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+            if (last != null) {
+                jpqlString.append(" and installation.deviceToken > :last");
+                parameters.put("last", last);
+            }
+
+            // the boundary counts only, if the range is followed by another token:
+            final List<String> tokens = this.createDynamicQuery(jpqlString, " order by installation.deviceToken", parameters, variantID, categories, aliases, deviceTypes)
+                    .setFirstResult(rangeSize - 1).setMaxResults(2).getResultList();
+            if (tokens.size() < 2) {
+                return boundaries;
+            }
+            last = tokens.get(0);
+            boundaries.add(last);
+        }
+    }
+
+    @Override
+    public List<String> findDeviceTokenRangeForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                   String afterToken, String lastToken) {
+        final StringBuilder jpqlString = new StringBuilder("select installation.deviceToken from Installation installation")
+                .append(" join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true");
+
+        final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+        if (afterToken != null) {
+            jpqlString.append(" and installation.deviceToken > :afterToken");
+            parameters.put("afterToken", afterToken);
+        }
+        if (lastToken != null) {
+            jpqlString.append(" and installation.deviceToken <= :lastToken");
+            parameters.put("lastToken", lastToken);
+        }
+
+        return this.createDynamicQuery(jpqlString, " order by installation.deviceToken", parameters, variantID, categories, aliases, deviceTypes)
+                .getResultList();
+    }
+
+    @Override
+    public List<Installation> findCriteriaOfEnabledInstallationsForVariantID(String variantID, String afterInstallationId, int maxResults) {
+        final Query query = createQuery("select installation.id, installation.deviceToken, installation.alias, installation.deviceType" +
+                " from Installation installation" +
+                " join installation.variant abstractVariant where abstractVariant.variantID = :variantID AND installation.enabled = true" +
+                (afterInstallationId == null ? "" : " and installation.id > :afterInstallationId") +
+                " order by installation.id")
+                .setParameter("variantID", variantID);
+        if (afterInstallationId != null) {
+            query.setParameter("afterInstallationId", afterInstallationId);
+        }
+        final List<Object[]> rows = query.setMaxResults(maxResults).getResultList();
+        if (rows.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Map<String, Installation> installations = new LinkedHashMap<String, Installation>();
+        for (Object[] row : rows) {
+            final Installation installation = new Installation();
+            installation.setId((String) row[0]);
+            installation.setDeviceToken((String) row[1]);
+            installation.setAlias((String) row[2]);
+            installation.setDeviceType((String) row[3]);
+            installation.setCategories(new HashSet<String>());
+            installations.put(installation.getId(), installation);
+        }
+
+        // the categories of the page, in one query instead of one per installation:
+        final List<Object[]> categories = createQuery("select installation.id, category from Installation installation" +
+                " join installation.variant abstractVariant join installation.categories category" +
+                " where abstractVariant.variantID = :variantID AND installation.enabled = true" +
+                " and installation.id >= :firstInstallationId and installation.id <= :lastInstallationId")
+                .setParameter("variantID", variantID)
+                .setParameter("firstInstallationId", rows.get(0)[0])
+                .setParameter("lastInstallationId", rows.get(rows.size() - 1)[0])
+                .getResultList();
+        for (Object[] row : categories) {
+            // installations registered in between are not part of the page:
+            final Installation installation = installations.get(row[0]);
+            if (installation != null) {
+                installation.getCategories().add((String) row[1]);
+            }
+        }
+        return new ArrayList<Installation>(installations.values());
+    }
+
     @Override
     public long getNumberOfDevicesForVariantIDs(String loginName) {
         return (Long) createQuery("select count(installation) from Installation installation join installation.variant abstractVariant where abstractVariant.variantID IN (select t.variantID from Variant t where t.developer = :developer) ")
@@ -132,9 +312,15 @@ public class JPAInstallationDao extends JPABaseDao implements InstallationDao {
      */
     @SuppressWarnings("unchecked")
     private List<String> executeDynamicQuery(final StringBuilder jpqlBaseString, String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        return createDynamicQuery(jpqlBaseString, "", new LinkedHashMap<String, Object>(), variantID, categories, aliases, deviceTypes).getResultList();
+    }
 
-        // parameter names and values, stored in a map:
-        final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+    /**
+     * Appends the present criterias, and the given suffix, to the given JPQL string. The given parameters are added
+     * to the query, besides the ones of the criterias.
+     */
+    private Query createDynamicQuery(final StringBuilder jpqlBaseString, String suffix, final Map<String, Object> parameters,
+                                     String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes) {
 
         // OPTIONAL query arguments, as provided.....
         // are aliases present ??
@@ -174,6 +360,7 @@ public class JPAInstallationDao extends JPABaseDao implements InstallationDao {
             }
             jpqlBaseString.append(')');
         }
+        jpqlBaseString.append(suffix);
 
         // the entire JPQL string
         Query jpql = createQuery(jpqlBaseString.toString());
@@ -186,7 +373,7 @@ public class JPAInstallationDao extends JPABaseDao implements InstallationDao {
             jpql.setParameter(parameterName, parameters.get(parameterName));
         }
 
-        return jpql.getResultList();
+        return jpql;
     }
     /**
      * Checks if the list is empty, and not null
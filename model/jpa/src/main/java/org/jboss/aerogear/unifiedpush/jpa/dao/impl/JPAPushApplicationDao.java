@@ -43,7 +43,7 @@ public class JPAPushApplicationDao extends JPABaseDao implements PushApplication
         PushApplication entity = entityManager.find(PushApplication.class, pushApplication.getId());
         final List<Variant> variants = entity.getVariants();
         if (variants != null && !variants.isEmpty()) {
-            entityManager.createQuery("delete from Installation i where i.variant = :variant")
+            createQuery("delete from Installation i where i.variant = :variant")
                     .setParameter("variant", variants).executeUpdate();
         }
         remove(entity);
@@ -18,9 +18,11 @@ package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
 
 
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
 
+import javax.persistence.Query;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -111,6 +113,32 @@ public class JPAPushMessageInformationDao extends JPABaseDao implements PushMess
         return result;
     }
 
+    @Override
+    public boolean addReceivers(String pushMessageInformationId, VariantMetricInformation variantMetricInformation) {
+        final String reason = variantMetricInformation.getReason();
+        final Query query = createQuery("select vi.id from PushMessageInformation pmi JOIN pmi.variantInformations vi" +
+                " where pmi.id = :id and vi.variantID = :variantID and vi.deliveryStatus = :deliveryStatus" +
+                (reason == null ? " and vi.reason is null" : " and vi.reason = :reason"))
+                .setParameter("id", pushMessageInformationId)
+                .setParameter("variantID", variantMetricInformation.getVariantID())
+                .setParameter("deliveryStatus", variantMetricInformation.getDeliveryStatus())
+                .setMaxResults(1);
+        if (reason != null) {
+            query.setParameter("reason", reason);
+        }
+        final List<String> ids = query.getResultList();
+        if (ids.isEmpty()) {
+            return false;
+        }
+
+        // the stored outcome may be updated from several nodes at the same time:
+        entityManager.joinTransaction();
+        return createQuery("update VariantMetricInformation vmi set vmi.receivers = vmi.receivers + :receivers where vmi.id = :id")
+                .setParameter("receivers", variantMetricInformation.getReceivers())
+                .setParameter("id", ids.get(0))
+                .executeUpdate() > 0;
+    }
+
     /**
      * Helper that returns 'ASC' when true and 'DESC' when false.
      */
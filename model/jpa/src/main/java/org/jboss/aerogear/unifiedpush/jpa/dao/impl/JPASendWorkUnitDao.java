@@ -0,0 +1,132 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
+
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnitState;
+import org.jboss.aerogear.unifiedpush.dao.SendWorkUnitDao;
+
+import javax.persistence.Query;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The rows are updated by other nodes, and by bulk updates, which bypass the persistence context: the loaded units are
+ * refreshed, to reflect the stored state.
+ */
+public class JPASendWorkUnitDao extends JPABaseDao implements SendWorkUnitDao {
+
+    @Override
+    public void create(SendWorkUnit unit) {
+        persist(unit);
+    }
+
+    @Override
+    public void update(SendWorkUnit unit) {
+        merge(unit);
+    }
+
+    @Override
+    public void delete(SendWorkUnit unit) {
+        SendWorkUnit entity = entityManager.find(SendWorkUnit.class, unit.getId());
+        remove(entity);
+    }
+
+    @Override
+    public SendWorkUnit find(String id) {
+        final SendWorkUnit unit = entityManager.find(SendWorkUnit.class, id);
+        if (unit != null) {
+            entityManager.refresh(unit);
+        }
+        return unit;
+    }
+
+    @Override
+    public List<String> findClaimableIds(Date now, int maxResults) {
+        return createQuery("select unit.id from SendWorkUnit unit" +
+                " where (unit.state = :pending or (unit.state = :leased and unit.leaseExpiry < :now))" +
+                " and (unit.notBefore is null or unit.notBefore <= :now)" +
+                " order by unit.pushMessageInformationId, unit.id")
+                .setParameter("pending", SendWorkUnitState.PENDING)
+                .setParameter("leased", SendWorkUnitState.LEASED)
+                .setParameter("now", now)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
+    @Override
+    public boolean claim(String id, String owner, Date now, Date leaseExpiry) {
+        return executeUpdate(createQuery("update SendWorkUnit unit" +
+                " set unit.state = :leased, unit.owner = :owner, unit.leaseExpiry = :leaseExpiry, unit.claims = unit.claims + 1" +
+                " where unit.id = :id and (unit.state = :pending or (unit.state = :leased and unit.leaseExpiry < :now))" +
+                " and (unit.notBefore is null or unit.notBefore <= :now)")
+                .setParameter("pending", SendWorkUnitState.PENDING)
+                .setParameter("leased", SendWorkUnitState.LEASED)
+                .setParameter("owner", owner)
+                .setParameter("leaseExpiry", leaseExpiry)
+                .setParameter("now", now)
+                .setParameter("id", id));
+    }
+
+    @Override
+    public boolean checkpoint(String id, String owner, String checkpoint, long tokens, Date leaseExpiry) {
+        return executeUpdate(createQuery("update SendWorkUnit unit" +
+                " set unit.checkpoint = :checkpoint, unit.tokens = :tokens, unit.leaseExpiry = :leaseExpiry" +
+                " where unit.id = :id and unit.owner = :owner and unit.state = :leased")
+                .setParameter("checkpoint", checkpoint)
+                .setParameter("tokens", tokens)
+                .setParameter("leaseExpiry", leaseExpiry)
+                .setParameter("id", id)
+                .setParameter("owner", owner)
+                .setParameter("leased", SendWorkUnitState.LEASED));
+    }
+
+    @Override
+    public boolean complete(String id, String owner, long tokens) {
+        return executeUpdate(createQuery("update SendWorkUnit unit" +
+                " set unit.state = :completed, unit.tokens = :tokens, unit.leaseExpiry = null" +
+                " where unit.id = :id and unit.owner = :owner and unit.state = :leased")
+                .setParameter("completed", SendWorkUnitState.COMPLETED)
+                .setParameter("tokens", tokens)
+                .setParameter("id", id)
+                .setParameter("owner", owner)
+                .setParameter("leased", SendWorkUnitState.LEASED));
+    }
+
+    @Override
+    public List<SendWorkUnit> findAllForPushMessage(String pushMessageInformationId) {
+        final List<SendWorkUnit> units = createQuery("select unit from SendWorkUnit unit" +
+                " where unit.pushMessageInformationId = :pushMessageInformationId order by unit.variantID, unit.id")
+                .setParameter("pushMessageInformationId", pushMessageInformationId)
+                .getResultList();
+        for (SendWorkUnit unit : units) {
+            entityManager.refresh(unit);
+        }
+        return units;
+    }
+
+    @Override
+    public void deleteAllForPushMessage(String pushMessageInformationId) {
+        executeUpdate(createQuery("delete from SendWorkUnit unit where unit.pushMessageInformationId = :pushMessageInformationId")
+                .setParameter("pushMessageInformationId", pushMessageInformationId));
+    }
+
+    private boolean executeUpdate(Query query) {
+        entityManager.joinTransaction();
+        return query.executeUpdate() > 0;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.dao.impl;
+
+import org.jboss.aerogear.unifiedpush.api.StagedAlias;
+import org.jboss.aerogear.unifiedpush.dao.StagedAliasDao;
+
+import javax.persistence.Query;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * The aliases are inserted in batches, which are flushed and detached, so the persistence context does not hold a
+ * whole stage. The inserts of a flush are sent as JDBC batches (<code>hibernate.jdbc.batch_size</code> in the
+ * persistence unit).
+ */
+public class JPAStagedAliasDao extends JPABaseDao implements StagedAliasDao {
+
+    private static final int FLUSH_SIZE = 1000;
+
+    @Override
+    public void create(StagedAlias alias) {
+        persist(alias);
+    }
+
+    @Override
+    public void update(StagedAlias alias) {
+        merge(alias);
+    }
+
+    @Override
+    public void delete(StagedAlias alias) {
+        StagedAlias entity = entityManager.find(StagedAlias.class, alias.getId());
+        remove(entity);
+    }
+
+    @Override
+    public StagedAlias find(String id) {
+        return entityManager.find(StagedAlias.class, id);
+    }
+
+    @Override
+    public void stage(String stageId, Collection<String> aliases, Date stagedAt) {
+        int pending = 0;
+        for (String value : aliases) {
+            final StagedAlias alias = new StagedAlias();
+            alias.setStageId(stageId);
+            alias.setAlias(value);
+            alias.setStagedAt(stagedAt);
+            persist(alias);
+
+            if (++pending == FLUSH_SIZE) {
+                entityManager.flush();
+                entityManager.clear();
+                pending = 0;
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public int deleteStage(String stageId) {
+        return executeUpdate(createQuery("delete from StagedAlias staged where staged.stageId = :stageId")
+                .setParameter("stageId", stageId));
+    }
+
+    @Override
+    public int deleteStagedBefore(Date date) {
+        return executeUpdate(createQuery("delete from StagedAlias staged where staged.stagedAt < :date")
+                .setParameter("date", date));
+    }
+
+    private int executeUpdate(Query query) {
+        entityManager.joinTransaction();
+        return query.executeUpdate();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.statistics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accumulates the executions of a single query shape: a latency histogram with power-of-two microsecond buckets,
+ * the returned rows and the largest collection, that was bound as a parameter (e.g. for an <code>IN</code> clause).
+ */
+final class QueryShapeStatistics {
+
+    private static final int BUCKETS = 32;
+
+    private final String shape;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong totalRows = new AtomicLong();
+    private final AtomicLong maxRows = new AtomicLong();
+    private final AtomicLong maxParameterCardinality = new AtomicLong();
+
+    QueryShapeStatistics(String shape) {
+        this.shape = shape;
+    }
+
+    void record(long nanos, int rows, int parameterCardinality, boolean success) {
+        buckets.incrementAndGet(bucketFor(nanos));
+        executions.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        updateMax(maxNanos, nanos);
+        updateMax(maxParameterCardinality, parameterCardinality);
+        if (success) {
+            totalRows.addAndGet(rows);
+            updateMax(maxRows, rows);
+        } else {
+            failures.incrementAndGet();
+        }
+    }
+
+    QueryShapeSummary summarize() {
+        final long count = executions.get();
+        final long[] snapshot = new long[BUCKETS];
+        long histogramCount = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            histogramCount += snapshot[i];
+        }
+
+        return new QueryShapeSummary(shape, count, failures.get(), totalRows.get(), maxRows.get(), maxParameterCardinality.get(),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get()) / count,
+                percentileOf(snapshot, histogramCount, 0.5), percentileOf(snapshot, histogramCount, 0.99),
+                TimeUnit.NANOSECONDS.toMicros(maxNanos.get()), TimeUnit.NANOSECONDS.toMillis(totalNanos.get()));
+    }
+
+    long getExecutions() {
+        return executions.get();
+    }
+
+    long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Bucket <code>i</code> holds the durations below <code>2^i</code> microseconds.
+     */
+    static int bucketFor(long nanos) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    static long percentileOf(long[] buckets, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (buckets.length - 1);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+}
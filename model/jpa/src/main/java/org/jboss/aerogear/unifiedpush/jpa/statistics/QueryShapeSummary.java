@@ -0,0 +1,107 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.statistics;
+
+/**
+ * Immutable summary of all executions of a single query shape.
+ */
+public class QueryShapeSummary {
+
+    private final String shape;
+    private final long executions;
+    private final long failures;
+    private final long totalRows;
+    private final long maxRows;
+    private final long maxParameterCardinality;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+    private final long totalMillis;
+
+    QueryShapeSummary(String shape, long executions, long failures, long totalRows, long maxRows, long maxParameterCardinality,
+                      long meanMicros, long p50Micros, long p99Micros, long maxMicros, long totalMillis) {
+        this.shape = shape;
+        this.executions = executions;
+        this.failures = failures;
+        this.totalRows = totalRows;
+        this.maxRows = maxRows;
+        this.maxParameterCardinality = maxParameterCardinality;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * The normalized JPQL of the query, or the operation and entity name for <code>persist</code>,
+     * <code>merge</code> and <code>remove</code>.
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Size of the largest collection, that was bound as a parameter of this query.
+     */
+    public long getMaxParameterCardinality() {
+        return maxParameterCardinality;
+    }
+
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    /**
+     * Upper bound of the bucket containing the median duration.
+     */
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    /**
+     * Upper bound of the bucket containing the 99th percentile duration.
+     */
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+}
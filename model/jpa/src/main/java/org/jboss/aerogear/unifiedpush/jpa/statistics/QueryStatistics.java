@@ -0,0 +1,134 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Duration, result size and parameter cardinality of all DAO operations, grouped by the shape of the query.
+ * Operations slower than the threshold (system property <code>aerogear.jpa.slowQueryMillis</code>, default: 500)
+ * are logged.
+ */
+public final class QueryStatistics implements QueryStatisticsMXBean {
+
+    public static final String OBJECT_NAME = "org.jboss.aerogear.unifiedpush:type=QueryStatistics";
+
+    private static final QueryStatistics INSTANCE = new QueryStatistics(Long.getLong("aerogear.jpa.slowQueryMillis", 500));
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern NUMBERED_PARAMETER = Pattern.compile(":([A-Za-z_]+)\\d+");
+
+    private final Logger logger = Logger.getLogger(QueryStatistics.class.getName());
+
+    private final ConcurrentMap<String, QueryShapeStatistics> shapes = new ConcurrentHashMap<String, QueryShapeStatistics>();
+    private volatile long slowQueryThresholdMillis;
+
+    QueryStatistics(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+    }
+
+    public static QueryStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Collapses the whitespace and the numbered parameters (e.g. <code>:categories0</code>, <code>:categories1</code>)
+     * of the given JPQL, so that the dynamically built queries are grouped by their shape.
+     */
+    public static String shapeOf(String jpql) {
+        final String collapsed = WHITESPACE.matcher(jpql.trim()).replaceAll(" ");
+        return NUMBERED_PARAMETER.matcher(collapsed).replaceAll(":$1#");
+    }
+
+    /**
+     * Records a single execution of the given query shape.
+     *
+     * @param shape the (normalized) shape of the query
+     * @param nanos duration of the execution
+     * @param rows number of returned (or updated) rows
+     * @param parameterCardinality size of the largest collection parameter, or 0 if none was bound
+     * @param success false if the execution failed
+     */
+    public void record(String shape, long nanos, int rows, int parameterCardinality, boolean success) {
+        QueryShapeStatistics statistics = shapes.get(shape);
+        if (statistics == null) {
+            final QueryShapeStatistics created = new QueryShapeStatistics(shape);
+            statistics = shapes.putIfAbsent(shape, created);
+            if (statistics == null) {
+                statistics = created;
+            }
+        }
+        statistics.record(nanos, rows, parameterCardinality, success);
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (millis >= slowQueryThresholdMillis) {
+            logger.log(Level.WARNING, String.format("Slow query (%d ms, %d rows, %d parameter elements): %s",
+                    millis, rows, parameterCardinality, shape));
+        }
+    }
+
+    @Override
+    public List<QueryShapeSummary> getQueryShapes() {
+        final List<QueryShapeStatistics> all = new ArrayList<QueryShapeStatistics>(shapes.values());
+        Collections.sort(all, new Comparator<QueryShapeStatistics>() {
+            @Override
+            public int compare(QueryShapeStatistics first, QueryShapeStatistics second) {
+                final long difference = second.getTotalNanos() - first.getTotalNanos();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        final List<QueryShapeSummary> summaries = new ArrayList<QueryShapeSummary>(all.size());
+        for (QueryShapeStatistics statistics : all) {
+            summaries.add(statistics.summarize());
+        }
+        return summaries;
+    }
+
+    @Override
+    public long getTotalExecutions() {
+        long total = 0;
+        for (QueryShapeStatistics statistics : shapes.values()) {
+            total += statistics.getExecutions();
+        }
+        return total;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+    }
+
+    @Override
+    public void reset() {
+        shapes.clear();
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.statistics;
+
+import java.util.List;
+
+/**
+ * JMX view on the {@link QueryStatistics}, registered as <code>org.jboss.aerogear.unifiedpush:type=QueryStatistics</code>.
+ */
+public interface QueryStatisticsMXBean {
+
+    /**
+     * Summaries of all query shapes, the most expensive (by total time) first.
+     */
+    List<QueryShapeSummary> getQueryShapes();
+
+    /**
+     * Number of DAO operations (queries, persists, merges and removes) since the last reset, e.g. to compute the
+     * database statements per request of a load test.
+     */
+    long getTotalExecutions();
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long slowQueryThresholdMillis);
+
+    void reset();
+}
@@ -0,0 +1,113 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa;
+
+import org.jboss.aerogear.unifiedpush.api.IdempotencyKey;
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAIdempotencyKeyDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.RollbackException;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdempotencyKeyDaoTest {
+
+    private static final long NOW = 1000000L;
+
+    private EntityManager entityManager;
+    private JPAIdempotencyKeyDao idempotencyKeyDao;
+    private String keyID;
+
+    @Before
+    public void setUp() {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("UnifiedPush");
+        entityManager = emf.createEntityManager();
+
+        // start the shindig
+        entityManager.getTransaction().begin();
+
+        idempotencyKeyDao = new JPAIdempotencyKeyDao();
+        idempotencyKeyDao.setEntityManager(entityManager);
+
+        IdempotencyKey key = new IdempotencyKey();
+        key.setId(IdempotencyKey.idOf("app", "retry-1"));
+        key.setPushApplicationId("app");
+        key.setIdempotencyKey("retry-1");
+        key.setJobId("job-1");
+        key.setExpiry(new Date(NOW));
+        idempotencyKeyDao.create(key);
+        keyID = key.getId();
+
+        flushAndClear();
+    }
+
+    private void flushAndClear() {
+        // flush to be sure that it's in the database
+        entityManager.flush();
+        // clear the cache otherwise finding the entity will not perform a select but get the entity from cache
+        entityManager.clear();
+    }
+
+    @After
+    public void tearDown() {
+        try {
+            entityManager.getTransaction().commit();
+        } catch (RollbackException e) {
+            //ignore
+        }
+
+        entityManager.close();
+    }
+
+    @Test
+    public void findKeyOfPushApplication() {
+        assertThat(idempotencyKeyDao.find(IdempotencyKey.idOf("app", "retry-1")).getJobId()).isEqualTo("job-1");
+        assertThat(idempotencyKeyDao.find(IdempotencyKey.idOf("other-app", "retry-1"))).isNull();
+    }
+
+    @Test
+    public void onlyExpiredKeyIsTakenOver() {
+        assertThat(idempotencyKeyDao.takeOver(keyID, "job-2", new Date(NOW + 1000), new Date(NOW - 1))).isFalse();
+        assertThat(idempotencyKeyDao.takeOver(keyID, "job-2", new Date(NOW + 1000), new Date(NOW + 1))).isTrue();
+        // the new expiry protects it again:
+        assertThat(idempotencyKeyDao.takeOver(keyID, "job-3", new Date(NOW + 2000), new Date(NOW + 1))).isFalse();
+
+        assertThat(idempotencyKeyDao.find(keyID).getJobId()).isEqualTo("job-2");
+    }
+
+    @Test
+    public void releaseKeepsKeyOfAnotherJob() {
+        idempotencyKeyDao.release(keyID, "job-2");
+        assertThat(idempotencyKeyDao.find(keyID)).isNotNull();
+
+        idempotencyKeyDao.release(keyID, "job-1");
+        assertThat(idempotencyKeyDao.find(keyID)).isNull();
+    }
+
+    @Test
+    public void deleteExpiredKeys() {
+        assertThat(idempotencyKeyDao.deleteExpired(new Date(NOW))).isEqualTo(0);
+        assertThat(idempotencyKeyDao.deleteExpired(new Date(NOW + 1))).isEqualTo(1);
+        assertThat(idempotencyKeyDao.find(keyID)).isNull();
+    }
+}
@@ -20,6 +20,7 @@ import org.jboss.aerogear.unifiedpush.api.*;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAInstallationDao;
 import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAPushApplicationDao;
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAStagedAliasDao;
 import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAVariantDao;
 import org.jboss.aerogear.unifiedpush.utils.TestUtils;
 import org.junit.After;
@@ -176,6 +177,49 @@ public class InstallationDaoTest {
     }
 
 
+    @Test
+    public void splitVariantIntoInstallationIdRanges() {
+        assertThat(installationDao.findInstallationIdBoundariesForVariantID(simplePushVariantID, 1)).hasSize(2);
+        assertThat(installationDao.findInstallationIdBoundariesForVariantID(simplePushVariantID, 2)).hasSize(1);
+        assertThat(installationDao.findInstallationIdBoundariesForVariantID(simplePushVariantID, 3)).isEmpty();
+
+        // the disabled installation is not counted:
+        assertThat(installationDao.findInstallationIdBoundariesForVariantID(androidVariantID, 2)).isEmpty();
+    }
+
+    @Test
+    public void findDeviceTokensWithinInstallationIdRange() {
+        final String boundary = installationDao.findInstallationIdBoundariesForVariantID(simplePushVariantID, 2).get(0);
+
+        final Map<String, String> first = installationDao.findDeviceTokensForVariantIDByCriteria(simplePushVariantID, null, null, null, null, boundary, 10);
+        final Map<String, String> second = installationDao.findDeviceTokensForVariantIDByCriteria(simplePushVariantID, null, null, null, boundary, null, 10);
+
+        assertThat(first).hasSize(2);
+        assertThat(first.keySet()).contains(boundary);
+        assertThat(second).hasSize(1);
+        assertThat(second.keySet().iterator().next().compareTo(boundary)).isPositive();
+
+        // paged, ordered by installation ID:
+        final Map<String, String> page = installationDao.findDeviceTokensForVariantIDByCriteria(simplePushVariantID, null, null, null, null, null, 1);
+        assertThat(page.keySet()).containsOnly(first.keySet().iterator().next());
+    }
+
+    @Test
+    public void findDeviceTokensWithinTokenRange() {
+        assertThat(installationDao.findDeviceTokenBoundariesForVariantIDByCriteria(simplePushVariantID, null, null, null, 1)).hasSize(2);
+        assertThat(installationDao.findDeviceTokenBoundariesForVariantIDByCriteria(simplePushVariantID, null, null, null, 3)).isEmpty();
+
+        final String boundary = installationDao.findDeviceTokenBoundariesForVariantIDByCriteria(simplePushVariantID, null, null, null, 2).get(0);
+
+        final List<String> first = installationDao.findDeviceTokenRangeForVariantIDByCriteria(simplePushVariantID, null, null, null, null, boundary);
+        final List<String> second = installationDao.findDeviceTokenRangeForVariantIDByCriteria(simplePushVariantID, null, null, null, boundary, null);
+
+        assertThat(first).hasSize(2);
+        assertThat(first.get(1)).isEqualTo(boundary);
+        assertThat(second).hasSize(1);
+        assertThat(second.get(0).compareTo(boundary)).isPositive();
+    }
+
     @Test
     public void findDeviceTokensForOneInstallationOfOneVariant() {
         String[] alias = { "foo@bar.org" };
@@ -207,6 +251,52 @@ public class InstallationDaoTest {
          assertThat(tokens).hasSize(0);
     }
 
+    @Test
+    public void findDeviceTokensForStagedAliases() {
+        final JPAStagedAliasDao stagedAliasDao = new JPAStagedAliasDao();
+        stagedAliasDao.setEntityManager(entityManager);
+        stagedAliasDao.stage("stage", Arrays.asList("foo@bar.org", "bar@foo.org"), new Date());
+        stagedAliasDao.stage("other-stage", Arrays.asList("bar@foo.org"), new Date());
+
+        assertThat(installationDao.findAllDeviceTokenForVariantIDByStagedAliases(androidVariantID, null, "stage", null)).hasSize(2);
+        assertThat(installationDao.findAllDeviceTokenForVariantIDByStagedAliases(androidVariantID, null, "stage", Arrays.asList("Android Tablet")))
+                .containsOnly(DEVICE_TOKEN_2);
+        assertThat(installationDao.findAllDeviceTokenForVariantIDByStagedAliases(androidVariantID, null, "other-stage", null)).isEmpty();
+    }
+
+    @Test
+    public void countDeviceTokensLikeTheFinder() {
+        final List<String> alias = Arrays.asList("foo@bar.org");
+        final List<String> categories = Arrays.asList("soccer", "news");
+
+        assertThat(installationDao.countDeviceTokensForVariantIDByCriteria(androidVariantID, null, null, null)).isEqualTo(2);
+        assertThat(installationDao.countDeviceTokensForVariantIDByCriteria(androidVariantID, categories, alias, Arrays.asList("Android Tablet")))
+                .isEqualTo(installationDao.findAllDeviceTokenForVariantIDByCriteria(androidVariantID, categories, alias, Arrays.asList("Android Tablet")).size());
+        assertThat(installationDao.countDeviceTokensForVariantIDByCriteria(androidVariantID, null, Arrays.asList("bar@foo.org"), null)).isEqualTo(0);
+
+        final JPAStagedAliasDao stagedAliasDao = new JPAStagedAliasDao();
+        stagedAliasDao.setEntityManager(entityManager);
+        stagedAliasDao.stage("stage", alias, new Date());
+        assertThat(installationDao.countDeviceTokensForVariantIDByStagedAliases(androidVariantID, null, "stage", null)).isEqualTo(2);
+    }
+
+    @Test
+    public void findCriteriaOfEnabledInstallationsInPages() {
+        final List<Installation> first = installationDao.findCriteriaOfEnabledInstallationsForVariantID(androidVariantID, null, 1);
+        assertThat(first).hasSize(1);
+        final List<Installation> rest = installationDao.findCriteriaOfEnabledInstallationsForVariantID(androidVariantID, first.get(0).getId(), 10);
+        assertThat(rest).hasSize(1);
+
+        final List<Installation> all = new ArrayList<Installation>(first);
+        all.addAll(rest);
+        // the disabled installation is not loaded:
+        assertThat(all).extracting("deviceToken").containsOnly(DEVICE_TOKEN_1, DEVICE_TOKEN_2);
+        for (Installation installation : all) {
+            assertThat(installation.getAlias()).isEqualTo("foo@bar.org");
+            assertThat(installation.getCategories()).hasSize(1);
+        }
+    }
+
     @Test
     public void findDeviceTokensForAliasAndDeviceType() {
         String[] alias = { "foo@bar.org" };
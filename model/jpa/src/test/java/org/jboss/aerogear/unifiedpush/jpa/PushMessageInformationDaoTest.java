@@ -150,6 +150,37 @@ public class PushMessageInformationDaoTest {
         assertThat(pushMessageInformation.getSubmitDate()).isNotNull();
     }
 
+    @Test
+    public void addReceiversToMatchingVariantInfo() {
+        pushMessageInformation = pushMessageInformationDao.find(pushMessageInformationID);
+
+        VariantMetricInformation sent = new VariantMetricInformation();
+        sent.setDeliveryStatus(Boolean.TRUE);
+        sent.setReceivers(10);
+        sent.setVariantID("231543432432");
+        pushMessageInformation.getVariantInformations().add(sent);
+        pushMessageInformationDao.update(pushMessageInformation);
+        flushAndClear();
+
+        VariantMetricInformation moreSent = new VariantMetricInformation();
+        moreSent.setDeliveryStatus(Boolean.TRUE);
+        moreSent.setReceivers(5);
+        moreSent.setVariantID("231543432432");
+        assertThat(pushMessageInformationDao.addReceivers(pushMessageInformationID, moreSent)).isTrue();
+
+        VariantMetricInformation failed = new VariantMetricInformation();
+        failed.setDeliveryStatus(Boolean.FALSE);
+        failed.setReceivers(1);
+        failed.setVariantID("231543432432");
+        failed.setReason("Invalid token");
+        assertThat(pushMessageInformationDao.addReceivers(pushMessageInformationID, failed)).isFalse();
+        flushAndClear();
+
+        pushMessageInformation = pushMessageInformationDao.find(pushMessageInformationID);
+        assertThat(pushMessageInformation.getVariantInformations()).extracting("receivers", "deliveryStatus")
+                .containsOnly(tuple(15L, Boolean.TRUE));
+    }
+
     @Test
     public void findByPushApplicationID() {
         int page = 0;
@@ -0,0 +1,165 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa;
+
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnitState;
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPASendWorkUnitDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.RollbackException;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SendWorkUnitDaoTest {
+
+    private static final long NOW = 1000000L;
+
+    private EntityManager entityManager;
+    private JPASendWorkUnitDao sendWorkUnitDao;
+    private String firstUnitID;
+    private String secondUnitID;
+
+    @Before
+    public void setUp() {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("UnifiedPush");
+        entityManager = emf.createEntityManager();
+
+        // start the shindig
+        entityManager.getTransaction().begin();
+
+        sendWorkUnitDao = new JPASendWorkUnitDao();
+        sendWorkUnitDao.setEntityManager(entityManager);
+
+        // two ranges of the same variant:
+        firstUnitID = createUnit(null, "5");
+        secondUnitID = createUnit("5", null);
+
+        flushAndClear();
+    }
+
+    private String createUnit(String after, String last) {
+        SendWorkUnit unit = new SendWorkUnit();
+        unit.setPushMessageInformationId("231231231");
+        unit.setPushApplicationId("app");
+        unit.setVariantID("variant");
+        unit.setAfterInstallationId(after);
+        unit.setLastInstallationId(last);
+        unit.setRawJsonMessage("{\"message\":{\"alert\":\"hello\"}}");
+        sendWorkUnitDao.create(unit);
+        return unit.getId();
+    }
+
+    private void flushAndClear() {
+        // flush to be sure that it's in the database
+        entityManager.flush();
+        // clear the cache otherwise finding the entity will not perform a select but get the entity from cache
+        entityManager.clear();
+    }
+
+    @After
+    public void tearDown() {
+        try {
+            entityManager.getTransaction().commit();
+        } catch (RollbackException e) {
+            //ignore
+        }
+
+        entityManager.close();
+    }
+
+    @Test
+    public void findPendingUnitsAsClaimable() {
+        assertThat(sendWorkUnitDao.findClaimableIds(new Date(NOW), 10)).containsOnly(firstUnitID, secondUnitID);
+        assertThat(sendWorkUnitDao.findClaimableIds(new Date(NOW), 1)).hasSize(1);
+    }
+
+    @Test
+    public void claimLeasesUnitToOneOwner() {
+        assertThat(sendWorkUnitDao.claim(firstUnitID, "node-1", new Date(NOW), new Date(NOW + 60000))).isTrue();
+        assertThat(sendWorkUnitDao.claim(firstUnitID, "node-2", new Date(NOW), new Date(NOW + 60000))).isFalse();
+
+        final SendWorkUnit unit = sendWorkUnitDao.find(firstUnitID);
+        assertThat(unit.getState()).isEqualTo(SendWorkUnitState.LEASED);
+        assertThat(unit.getOwner()).isEqualTo("node-1");
+        assertThat(unit.getClaims()).isEqualTo(1);
+
+        assertThat(sendWorkUnitDao.findClaimableIds(new Date(NOW), 10)).containsOnly(secondUnitID);
+    }
+
+    @Test
+    public void expiredLeaseIsReclaimed() {
+        sendWorkUnitDao.claim(firstUnitID, "node-1", new Date(NOW), new Date(NOW + 60000));
+        sendWorkUnitDao.checkpoint(firstUnitID, "node-1", "3", 3, new Date(NOW + 60000));
+
+        // node-1 did not checkpoint in time:
+        final Date later = new Date(NOW + 120000);
+        assertThat(sendWorkUnitDao.findClaimableIds(later, 10)).contains(firstUnitID);
+        assertThat(sendWorkUnitDao.claim(firstUnitID, "node-2", later, new Date(NOW + 180000))).isTrue();
+
+        final SendWorkUnit unit = sendWorkUnitDao.find(firstUnitID);
+        assertThat(unit.getOwner()).isEqualTo("node-2");
+        assertThat(unit.getClaims()).isEqualTo(2);
+        assertThat(unit.getCheckpoint()).isEqualTo("3");
+        assertThat(unit.getTokens()).isEqualTo(3);
+
+        // the former owner lost its lease:
+        assertThat(sendWorkUnitDao.checkpoint(firstUnitID, "node-1", "4", 4, new Date(NOW + 180000))).isFalse();
+        assertThat(sendWorkUnitDao.complete(firstUnitID, "node-1", 4)).isFalse();
+    }
+
+    @Test
+    public void completedUnitIsNotClaimable() {
+        sendWorkUnitDao.claim(firstUnitID, "node-1", new Date(NOW), new Date(NOW + 60000));
+        assertThat(sendWorkUnitDao.complete(firstUnitID, "node-1", 5)).isTrue();
+
+        final SendWorkUnit unit = sendWorkUnitDao.find(firstUnitID);
+        assertThat(unit.getState()).isEqualTo(SendWorkUnitState.COMPLETED);
+        assertThat(unit.getTokens()).isEqualTo(5);
+        assertThat(sendWorkUnitDao.findClaimableIds(new Date(NOW + 120000), 10)).containsOnly(secondUnitID);
+    }
+
+    @Test
+    public void scheduledUnitIsNotClaimableBeforeItsTime() {
+        final SendWorkUnit unit = sendWorkUnitDao.find(secondUnitID);
+        unit.setNotBefore(new Date(NOW + 60000));
+        sendWorkUnitDao.update(unit);
+        flushAndClear();
+
+        assertThat(sendWorkUnitDao.findClaimableIds(new Date(NOW), 10)).containsOnly(firstUnitID);
+        assertThat(sendWorkUnitDao.claim(secondUnitID, "node-1", new Date(NOW), new Date(NOW + 60000))).isFalse();
+
+        assertThat(sendWorkUnitDao.findClaimableIds(new Date(NOW + 60000), 10)).contains(secondUnitID);
+        assertThat(sendWorkUnitDao.claim(secondUnitID, "node-1", new Date(NOW + 60000), new Date(NOW + 120000))).isTrue();
+    }
+
+    @Test
+    public void deleteAllUnitsOfPushMessage() {
+        assertThat(sendWorkUnitDao.findAllForPushMessage("231231231")).hasSize(2);
+
+        sendWorkUnitDao.deleteAllForPushMessage("231231231");
+        flushAndClear();
+
+        assertThat(sendWorkUnitDao.findAllForPushMessage("231231231")).isEmpty();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa;
+
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAStagedAliasDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.RollbackException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StagedAliasDaoTest {
+
+    private static final long NOW = 1000000L;
+
+    private EntityManager entityManager;
+    private JPAStagedAliasDao stagedAliasDao;
+
+    @Before
+    public void setUp() {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("UnifiedPush");
+        entityManager = emf.createEntityManager();
+
+        // start the shindig
+        entityManager.getTransaction().begin();
+
+        stagedAliasDao = new JPAStagedAliasDao();
+        stagedAliasDao.setEntityManager(entityManager);
+    }
+
+    @After
+    public void tearDown() {
+        try {
+            entityManager.getTransaction().commit();
+        } catch (RollbackException e) {
+            //ignore
+        }
+
+        entityManager.close();
+    }
+
+    @Test
+    public void stageMoreAliasesThanOneFlush() {
+        final List<String> aliases = new ArrayList<String>();
+        for (int i = 0; i < 2500; i++) {
+            aliases.add("user" + i + "@example.org");
+        }
+        stagedAliasDao.stage("large", aliases, new Date(NOW));
+        stagedAliasDao.stage("small", Arrays.asList("user1@example.org"), new Date(NOW));
+
+        assertThat(stagedAliasDao.deleteStage("large")).isEqualTo(2500);
+        assertThat(stagedAliasDao.deleteStage("large")).isEqualTo(0);
+        assertThat(stagedAliasDao.deleteStage("small")).isEqualTo(1);
+    }
+
+    @Test
+    public void deleteStaleStages() {
+        stagedAliasDao.stage("stale", Arrays.asList("foo@bar.org", "bar@foo.org"), new Date(NOW));
+        stagedAliasDao.stage("recent", Arrays.asList("foo@bar.org"), new Date(NOW + 1000));
+
+        assertThat(stagedAliasDao.deleteStagedBefore(new Date(NOW))).isEqualTo(0);
+        assertThat(stagedAliasDao.deleteStagedBefore(new Date(NOW + 1))).isEqualTo(2);
+        assertThat(stagedAliasDao.deleteStage("recent")).isEqualTo(1);
+    }
+}
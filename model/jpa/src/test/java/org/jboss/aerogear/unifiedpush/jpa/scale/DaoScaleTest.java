@@ -0,0 +1,313 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.scale;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.dao.PageResult;
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAInstallationDao;
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAPushApplicationDao;
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAPushMessageInformationDao;
+import org.jboss.aerogear.unifiedpush.jpa.dao.impl.JPAVariantDao;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the DAO queries on a large, synthetic data set. Not part of the regular build, run it with:
+ * <pre>
+ *   mvn test -Pscale-tests -Dtest=DaoScaleTest
+ *   mvn test -Pscale-tests -Dtest=DaoScaleTest -Daerogear.scale.database=postgresql -Daerogear.scale.installations=5000000
+ * </pre>
+ * See {@link ScaleTestConfiguration} for all settings.
+ */
+public class DaoScaleTest {
+
+    private static final ScaleTestConfiguration configuration = new ScaleTestConfiguration();
+
+    private static EntityManagerFactory entityManagerFactory;
+    private static EntityManager entityManager;
+    private static SyntheticDataGenerator generator;
+
+    private JPAInstallationDao installationDao;
+    private JPAPushApplicationDao pushApplicationDao;
+    private JPAVariantDao variantDao;
+    private JPAPushMessageInformationDao pushMessageInformationDao;
+
+    private final ScaleReport report = new ScaleReport(configuration);
+
+    /**
+     * A single, measured execution of a scenario.
+     */
+    private interface Scenario {
+        void run();
+    }
+
+    /**
+     * A scenario, that needs untimed preparation before each execution.
+     */
+    private interface PreparedScenario extends Scenario {
+        void prepare(int iteration);
+    }
+
+    @BeforeClass
+    public static void generateData() {
+        entityManagerFactory = Persistence.createEntityManagerFactory("UnifiedPush", configuration.persistenceProperties());
+        entityManager = entityManagerFactory.createEntityManager();
+
+        final long start = System.currentTimeMillis();
+        generator = new SyntheticDataGenerator(configuration, entityManager);
+        generator.generate();
+        System.out.println("Generated " + configuration.dataSetDescription() + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    @AfterClass
+    public static void close() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Test
+    public void measureDaoQueries() throws Exception {
+        installationDao = new JPAInstallationDao();
+        installationDao.setEntityManager(entityManager);
+        pushApplicationDao = new JPAPushApplicationDao();
+        pushApplicationDao.setEntityManager(entityManager);
+        variantDao = new JPAVariantDao();
+        variantDao.setEntityManager(entityManager);
+        pushMessageInformationDao = new JPAPushMessageInformationDao();
+        pushMessageInformationDao.setEntityManager(entityManager);
+
+        measureTokenQueries();
+        measureInstallationPages();
+        measureDashboardQueries();
+        measureBulkDeletes();
+
+        final List<String> regressions = report.write();
+        for (String regression : regressions) {
+            System.out.println("REGRESSION " + regression);
+        }
+        if (configuration.failOnRegression) {
+            assertTrue("Regressions: " + regressions, regressions.isEmpty());
+        }
+    }
+
+    private void measureTokenQueries() {
+        // the first variant is the busiest one:
+        final String variantID = generator.getVariants().get(0).getVariantID();
+
+        measure("tokens: variant", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, null, null, null);
+            }
+        });
+        measure("tokens: variant + 1 category", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, categories(1), null, null);
+            }
+        });
+        measure("tokens: variant + 3 categories", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, categories(3), null, null);
+            }
+        });
+        measure("tokens: variant + 100 aliases", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, null, aliases(100), null);
+            }
+        });
+        measure("tokens: variant + 1000 aliases", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, null, aliases(1000), null);
+            }
+        });
+        measure("tokens: variant + category + deviceType", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findAllDeviceTokenForVariantIDByCriteria(variantID, categories(1), null,
+                        Arrays.asList(SyntheticDataGenerator.deviceType(0)));
+            }
+        });
+    }
+
+    private void measureInstallationPages() {
+        final String variantID = generator.getVariants().get(0).getVariantID();
+        final PageResult<Installation> firstPage = installationDao.findInstallationsByVariant(variantID,
+                SyntheticDataGenerator.DEVELOPER, 0, configuration.pageSize);
+        final int lastPage = (int) ((firstPage.getCount() - 1) / configuration.pageSize);
+
+        measure("installations: first page", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findInstallationsByVariant(variantID, SyntheticDataGenerator.DEVELOPER, 0, configuration.pageSize);
+            }
+        });
+        measure("installations: last page (" + lastPage + ")", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.findInstallationsByVariant(variantID, SyntheticDataGenerator.DEVELOPER, lastPage, configuration.pageSize);
+            }
+        });
+    }
+
+    private void measureDashboardQueries() {
+        final String pushApplicationID = generator.getPushApplication().getPushApplicationID();
+        final int lastPage = (configuration.historyDays * configuration.messagesPerDay - 1) / configuration.pageSize;
+
+        measure("countInstallationsByType", new Scenario() {
+            @Override
+            public void run() {
+                pushApplicationDao.countInstallationsByType(pushApplicationID);
+            }
+        });
+        measure("dashboard: number of devices", new Scenario() {
+            @Override
+            public void run() {
+                installationDao.getNumberOfDevicesForVariantIDs(SyntheticDataGenerator.DEVELOPER);
+            }
+        });
+        measure("dashboard: number of messages", new Scenario() {
+            @Override
+            public void run() {
+                pushMessageInformationDao.getNumberOfPushMessagesForApplications(SyntheticDataGenerator.DEVELOPER);
+            }
+        });
+        measure("dashboard: variants with warnings", new Scenario() {
+            @Override
+            public void run() {
+                pushMessageInformationDao.findVariantIDsWithWarnings(SyntheticDataGenerator.DEVELOPER);
+            }
+        });
+        measure("dashboard: top three busy variants", new Scenario() {
+            @Override
+            public void run() {
+                pushMessageInformationDao.findTopThreeBusyVariantIDs(SyntheticDataGenerator.DEVELOPER);
+            }
+        });
+        measure("messages: first page", new Scenario() {
+            @Override
+            public void run() {
+                pushMessageInformationDao.findAllForPushApplication(pushApplicationID, false, 0, configuration.pageSize);
+            }
+        });
+        measure("messages: last page (" + lastPage + ")", new Scenario() {
+            @Override
+            public void run() {
+                pushMessageInformationDao.findAllForPushApplication(pushApplicationID, false, lastPage, configuration.pageSize);
+            }
+        });
+    }
+
+    private void measureBulkDeletes() {
+        final Variant cleanupVariant = createScratchVariant();
+
+        measure("delete: " + configuration.cleanupSize + " invalid tokens", new PreparedScenario() {
+            private Set<String> tokens;
+
+            @Override
+            public void prepare(int iteration) {
+                tokens = generator.createInstallations(cleanupVariant, "cleanup" + iteration, configuration.cleanupSize);
+            }
+
+            @Override
+            public void run() {
+                // same as the cleanup of invalid tokens, after a send:
+                entityManager.getTransaction().begin();
+                for (Installation installation : installationDao.findInstallationsForVariantByDeviceTokens(cleanupVariant.getVariantID(), tokens)) {
+                    installationDao.delete(installation);
+                }
+                entityManager.getTransaction().commit();
+            }
+        });
+
+        measure("delete: variant with " + configuration.deleteSize + " installations", new PreparedScenario() {
+            private Variant variant;
+
+            @Override
+            public void prepare(int iteration) {
+                variant = createScratchVariant();
+                generator.createInstallations(variant, "delete" + iteration, configuration.deleteSize);
+            }
+
+            @Override
+            public void run() {
+                entityManager.getTransaction().begin();
+                variantDao.delete(variant);
+                entityManager.getTransaction().commit();
+            }
+        });
+    }
+
+    private void measure(String name, Scenario scenario) {
+        final LatencySample sample = new LatencySample(name, configuration.iterations);
+        for (int i = 0; i < configuration.warmups + configuration.iterations; i++) {
+            if (scenario instanceof PreparedScenario) {
+                ((PreparedScenario) scenario).prepare(i);
+            }
+            // do not measure the first level cache:
+            entityManager.clear();
+
+            final long start = System.nanoTime();
+            scenario.run();
+            final long duration = System.nanoTime() - start;
+
+            if (i >= configuration.warmups) {
+                sample.record(duration);
+            }
+        }
+        report.add(sample);
+    }
+
+    private Variant createScratchVariant() {
+        final Variant variant = generator.newVariant(0);
+        entityManager.getTransaction().begin();
+        entityManager.persist(variant);
+        entityManager.getTransaction().commit();
+        return variant;
+    }
+
+    private static List<String> categories(int count) {
+        final List<String> categories = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            categories.add(SyntheticDataGenerator.category(i));
+        }
+        return categories;
+    }
+
+    private static List<String> aliases(int count) {
+        final List<String> aliases = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            aliases.add(SyntheticDataGenerator.alias(i));
+        }
+        return aliases;
+    }
+}
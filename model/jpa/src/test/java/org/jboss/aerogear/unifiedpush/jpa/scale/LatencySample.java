@@ -0,0 +1,64 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.scale;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measured durations of a single scenario.
+ */
+final class LatencySample {
+
+    private final String scenario;
+    private final long[] nanos;
+    private int size;
+
+    LatencySample(String scenario, int iterations) {
+        this.scenario = scenario;
+        this.nanos = new long[iterations];
+    }
+
+    void record(long duration) {
+        nanos[size++] = duration;
+    }
+
+    String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * Returns the given percentile (0 - 100) in milliseconds, using the nearest-rank method.
+     */
+    double percentileMillis(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        final long[] sorted = Arrays.copyOf(nanos, size);
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * size);
+        return toMillis(sorted[Math.max(0, rank - 1)]);
+    }
+
+    double maxMillis() {
+        return percentileMillis(100);
+    }
+
+    private static double toMillis(long duration) {
+        return duration / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.scale;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prints the latency percentiles of all scenarios and keeps their history in a CSV file, so that each run is
+ * compared with the previous run on the same data set.
+ */
+final class ScaleReport {
+
+    private static final String SEPARATOR = ";";
+
+    private final ScaleTestConfiguration configuration;
+    private final List<LatencySample> samples = new ArrayList<LatencySample>();
+
+    ScaleReport(ScaleTestConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    void add(LatencySample sample) {
+        samples.add(sample);
+    }
+
+    /**
+     * Prints the report, appends it to the history and returns the scenarios that regressed.
+     */
+    List<String> write() throws IOException {
+        final Map<String, Double> previousMedians = readPreviousMedians();
+        final List<String> regressions = new ArrayList<String>();
+
+        System.out.println("Scale test results for " + configuration.dataSetDescription());
+        System.out.println(String.format(Locale.ENGLISH, "%-45s %10s %10s %10s %10s %10s", "scenario", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)", "prev p50"));
+
+        for (LatencySample sample : samples) {
+            final double median = sample.percentileMillis(50);
+            final Double previous = previousMedians.get(sample.getScenario());
+
+            System.out.println(String.format(Locale.ENGLISH, "%-45s %10.2f %10.2f %10.2f %10.2f %10s", sample.getScenario(),
+                    median, sample.percentileMillis(90), sample.percentileMillis(99), sample.maxMillis(),
+                    previous == null ? "-" : String.format(Locale.ENGLISH, "%.2f", previous)));
+
+            if (previous != null && median > previous * configuration.regressionFactor) {
+                regressions.add(String.format(Locale.ENGLISH, "%s: p50 %.2f ms, was %.2f ms", sample.getScenario(), median, previous));
+            }
+        }
+
+        appendToHistory();
+        return regressions;
+    }
+
+    /**
+     * Reads the medians of the most recent run with the same data set from the history file.
+     */
+    private Map<String, Double> readPreviousMedians() throws IOException {
+        final Map<String, Double> medians = new HashMap<String, Double>();
+        final File history = configuration.historyFile;
+        if (!history.exists()) {
+            return medians;
+        }
+
+        final BufferedReader reader = new BufferedReader(new FileReader(history));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] columns = line.split(SEPARATOR);
+                // later lines overwrite earlier ones, so the latest run wins:
+                if (columns.length >= 4 && columns[1].equals(configuration.dataSetDescription())) {
+                    medians.put(columns[2], Double.valueOf(columns[3]));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return medians;
+    }
+
+    private void appendToHistory() throws IOException {
+        final File history = configuration.historyFile;
+        if (history.getParentFile() != null) {
+            history.getParentFile().mkdirs();
+        }
+
+        final long timestamp = System.currentTimeMillis();
+        final PrintWriter writer = new PrintWriter(new FileWriter(history, true));
+        try {
+            for (LatencySample sample : samples) {
+                writer.println(String.format(Locale.ENGLISH, "%d;%s;%s;%.3f;%.3f;%.3f;%.3f", timestamp,
+                        configuration.dataSetDescription(), sample.getScenario(), sample.percentileMillis(50),
+                        sample.percentileMillis(90), sample.percentileMillis(99), sample.maxMillis()));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
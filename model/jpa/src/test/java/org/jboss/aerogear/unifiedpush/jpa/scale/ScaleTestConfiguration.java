@@ -0,0 +1,103 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.scale;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the scale test, all of them can be overridden with <code>aerogear.scale.*</code> system properties.
+ *
+ * The database is selected with <code>aerogear.scale.database</code> (<code>h2</code>, <code>postgresql</code> or
+ * <code>mysql</code>), the connection defaults match the scripts in the <code>databases</code> folder and can be
+ * changed with <code>aerogear.scale.jdbc.url</code>, <code>aerogear.scale.jdbc.user</code> and
+ * <code>aerogear.scale.jdbc.password</code>.
+ */
+final class ScaleTestConfiguration {
+
+    private static final String PREFIX = "aerogear.scale.";
+
+    final String database = property("database", "h2");
+
+    final int installations = Integer.getInteger(PREFIX + "installations", 1000000);
+    final int variants = Integer.getInteger(PREFIX + "variants", 12);
+    final int categories = Integer.getInteger(PREFIX + "categories", 50);
+    final int aliases = Integer.getInteger(PREFIX + "aliases", 200000);
+    final int historyDays = Integer.getInteger(PREFIX + "historyDays", 90);
+    final int messagesPerDay = Integer.getInteger(PREFIX + "messagesPerDay", 100);
+
+    final int batchSize = Integer.getInteger(PREFIX + "batchSize", 1000);
+    final int pageSize = Integer.getInteger(PREFIX + "pageSize", 25);
+    final int deleteSize = Integer.getInteger(PREFIX + "deleteSize", 5000);
+    final int cleanupSize = Integer.getInteger(PREFIX + "cleanupSize", 1000);
+    final int warmups = Integer.getInteger(PREFIX + "warmups", 3);
+    final int iterations = Integer.getInteger(PREFIX + "iterations", 20);
+
+    /**
+     * A scenario regressed, if its median is slower than the one of the previous run, multiplied with this factor.
+     */
+    final double regressionFactor = Double.parseDouble(property("regressionFactor", "1.5"));
+
+    /**
+     * Fails the test on regressions, instead of only reporting them.
+     */
+    final boolean failOnRegression = Boolean.getBoolean(PREFIX + "failOnRegression");
+
+    /**
+     * Kept outside of the build directory, so that the history survives a <code>mvn clean</code>.
+     */
+    final File historyFile = new File(property("history", new File(System.getProperty("user.home"), ".aerogear/scale-history.csv").getPath()));
+
+    /**
+     * Properties, that replace the ones of the <code>UnifiedPush</code> test persistence unit.
+     */
+    Map<String, String> persistenceProperties() {
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+
+        if ("postgresql".equals(database)) {
+            properties.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+            properties.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+            properties.put("hibernate.connection.url", property("jdbc.url", "jdbc:postgresql://localhost:5432/unifiedpush"));
+            properties.put("hibernate.connection.username", property("jdbc.user", "unifiedpush"));
+            properties.put("hibernate.connection.password", property("jdbc.password", "unifiedpush"));
+        } else if ("mysql".equals(database)) {
+            properties.put("hibernate.connection.driver_class", "com.mysql.jdbc.Driver");
+            properties.put("hibernate.dialect", "org.hibernate.dialect.MySQL5InnoDBDialect");
+            properties.put("hibernate.connection.url", property("jdbc.url", "jdbc:mysql://localhost:3306/unifiedpush?useUnicode=true&characterEncoding=UTF-8"));
+            properties.put("hibernate.connection.username", property("jdbc.user", "unifiedpush"));
+            properties.put("hibernate.connection.password", property("jdbc.password", "unifiedpush"));
+        } else {
+            // separate in-memory database, so that it does not clash with the regular DAO tests
+            properties.put("hibernate.connection.url", property("jdbc.url", "jdbc:h2:mem:unifiedPushScale;DB_CLOSE_DELAY=-1"));
+        }
+        return properties;
+    }
+
+    /**
+     * Describes the data set, only runs with the same description are compared with each other.
+     */
+    String dataSetDescription() {
+        return database + "/" + installations + " installations/" + variants + " variants/"
+                + (historyDays * messagesPerDay) + " messages";
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.scale;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.SimplePushVariant;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.api.iOSVariant;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a reproducible data set of installations across variants, categories and aliases, and a history of
+ * push messages. The rows are inserted in batches, each batch in its own transaction.
+ */
+final class SyntheticDataGenerator {
+
+    static final String DEVELOPER = "scale-developer";
+
+    private static final String[] DEVICE_TYPES = {"Phone", "Tablet", "Watch"};
+
+    private final ScaleTestConfiguration configuration;
+    private final EntityManager entityManager;
+    private final Random random = new Random(42);
+
+    private final List<Variant> variants = new ArrayList<Variant>();
+    private PushApplication pushApplication;
+
+    SyntheticDataGenerator(ScaleTestConfiguration configuration, EntityManager entityManager) {
+        this.configuration = configuration;
+        this.entityManager = entityManager;
+    }
+
+    void generate() {
+        createApplicationAndVariants();
+        createInstallations();
+        createMessageHistory();
+    }
+
+    PushApplication getPushApplication() {
+        return pushApplication;
+    }
+
+    List<Variant> getVariants() {
+        return variants;
+    }
+
+    /**
+     * Creates the given number of installations for the given variant, e.g. to have something to delete.
+     * The device tokens are unique for the given <code>prefix</code>.
+     */
+    Set<String> createInstallations(Variant variant, String prefix, int count) {
+        final Set<String> tokens = new HashSet<String>();
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < count; i++) {
+            final Installation installation = newInstallation(variant, prefix, i);
+            tokens.add(installation.getDeviceToken());
+            entityManager.persist(installation);
+            if (i > 0 && i % configuration.batchSize == 0) {
+                flushBatch();
+            }
+        }
+        flushBatch();
+        entityManager.getTransaction().commit();
+        return tokens;
+    }
+
+    /**
+     * Category names are shared by all installations, the first ones are the most popular.
+     */
+    static String category(int index) {
+        return "category-" + index;
+    }
+
+    static String alias(int index) {
+        return "user-" + index + "@example.com";
+    }
+
+    static String deviceType(int index) {
+        return DEVICE_TYPES[index % DEVICE_TYPES.length];
+    }
+
+    private void createApplicationAndVariants() {
+        entityManager.getTransaction().begin();
+
+        pushApplication = new PushApplication();
+        pushApplication.setName("Scale Test");
+        pushApplication.setDeveloper(DEVELOPER);
+        entityManager.persist(pushApplication);
+
+        for (int i = 0; i < configuration.variants; i++) {
+            final Variant variant = newVariant(i);
+            entityManager.persist(variant);
+            variants.add(variant);
+            pushApplication.getVariants().add(variant);
+        }
+
+        entityManager.getTransaction().commit();
+    }
+
+    Variant newVariant(int index) {
+        final Variant variant;
+        switch (index % 3) {
+            case 0:
+                final AndroidVariant android = new AndroidVariant();
+                android.setGoogleKey("google-key-" + index);
+                variant = android;
+                break;
+            case 1:
+                final iOSVariant ios = new iOSVariant();
+                ios.setCertificate(new byte[]{1, 2, 3});
+                ios.setPassphrase("secret");
+                variant = ios;
+                break;
+            default:
+                variant = new SimplePushVariant();
+        }
+        variant.setName("Variant " + index);
+        variant.setDeveloper(DEVELOPER);
+        return variant;
+    }
+
+    private void createInstallations() {
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < configuration.installations; i++) {
+            // the first variants get more installations, like in a real deployment:
+            final Variant variant = variants.get(skewedIndex(variants.size()));
+            entityManager.persist(newInstallation(variant, "i", i));
+
+            if (i > 0 && i % configuration.batchSize == 0) {
+                flushBatch();
+                entityManager.getTransaction().commit();
+                entityManager.getTransaction().begin();
+            }
+        }
+        flushBatch();
+        entityManager.getTransaction().commit();
+    }
+
+    private Installation newInstallation(Variant variant, String prefix, int index) {
+        final Installation installation = new Installation();
+        installation.setVariant(variant);
+        installation.setDeviceToken(deviceToken(variant, prefix, index));
+        installation.setAlias(alias(random.nextInt(configuration.aliases)));
+        installation.setDeviceType(deviceType(random.nextInt(DEVICE_TYPES.length)));
+        installation.setOperatingSystem(variant.getType().getTypeName());
+        installation.setEnabled(index % 50 != 0);
+
+        final Set<String> categories = new HashSet<String>();
+        final int count = 1 + random.nextInt(3);
+        for (int c = 0; c < count; c++) {
+            categories.add(category(skewedIndex(configuration.categories)));
+        }
+        installation.setCategories(categories);
+        return installation;
+    }
+
+    /**
+     * Device tokens that pass the validation of the given variant type.
+     */
+    private static String deviceToken(Variant variant, String prefix, int index) {
+        switch (variant.getType()) {
+            case IOS:
+                return String.format("%056x%08x", (long) prefix.hashCode() & 0xffffffffL, index);
+            case ANDROID:
+                return String.format("APA91%095d-%s", index, prefix);
+            default:
+                return "http://simplepush.example.com/update/" + variant.getVariantID() + "/" + prefix + index;
+        }
+    }
+
+    private void createMessageHistory() {
+        final long now = System.currentTimeMillis();
+        int created = 0;
+
+        entityManager.getTransaction().begin();
+        for (int day = 0; day < configuration.historyDays; day++) {
+            for (int m = 0; m < configuration.messagesPerDay; m++) {
+                final PushMessageInformation information = new PushMessageInformation();
+                information.setPushApplicationId(pushApplication.getPushApplicationID());
+                information.setRawJsonMessage("{\"alert\":\"Message " + m + " of day " + day + "\"}");
+                information.setIpAddress("127.0.0.1");
+                information.setClientIdentifier("scale-test");
+                information.setSubmitDate(new Date(now - TimeUnit.DAYS.toMillis(day) - random.nextInt((int) TimeUnit.DAYS.toMillis(1))));
+
+                final int targets = 1 + random.nextInt(3);
+                for (int t = 0; t < targets; t++) {
+                    final VariantMetricInformation variantInformation = new VariantMetricInformation();
+                    variantInformation.setVariantID(variants.get(skewedIndex(variants.size())).getVariantID());
+                    variantInformation.setReceivers(random.nextInt(10000));
+                    // a few failed deliveries, for the dashboard warnings:
+                    variantInformation.setDeliveryStatus(random.nextInt(20) != 0);
+                    information.getVariantInformations().add(variantInformation);
+                }
+                entityManager.persist(information);
+
+                if (++created % configuration.batchSize == 0) {
+                    flushBatch();
+                    entityManager.getTransaction().commit();
+                    entityManager.getTransaction().begin();
+                }
+            }
+        }
+        flushBatch();
+        entityManager.getTransaction().commit();
+    }
+
+    /**
+     * Picks an index in <code>[0, size)</code>, where lower indexes are picked more often.
+     */
+    private int skewedIndex(int size) {
+        final double value = random.nextDouble();
+        return (int) (value * value * size);
+    }
+
+    private void flushBatch() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
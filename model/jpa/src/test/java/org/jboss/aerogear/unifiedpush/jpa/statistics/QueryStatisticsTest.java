@@ -0,0 +1,55 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.jpa.statistics;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryStatisticsTest {
+
+    @Test
+    public void normalizesQueryShapes() {
+        assertEquals("select i from Installation i where :categories# IN ELEMENTS(i.categories)",
+                QueryStatistics.shapeOf(" select i from Installation i\n   where :categories12 IN ELEMENTS(i.categories)"));
+    }
+
+    @Test
+    public void aggregatesPerShape() {
+        final QueryStatistics statistics = new QueryStatistics(Long.MAX_VALUE);
+        statistics.record("cheap", TimeUnit.MICROSECONDS.toNanos(10), 1, 0, true);
+        statistics.record("expensive", TimeUnit.MILLISECONDS.toNanos(20), 3000, 3000, true);
+        statistics.record("expensive", TimeUnit.MILLISECONDS.toNanos(40), 0, 10, false);
+
+        final List<QueryShapeSummary> summaries = statistics.getQueryShapes();
+        assertEquals(2, summaries.size());
+
+        final QueryShapeSummary expensive = summaries.get(0);
+        assertEquals("expensive", expensive.getShape());
+        assertEquals(2, expensive.getExecutions());
+        assertEquals(1, expensive.getFailures());
+        assertEquals(3000, expensive.getTotalRows());
+        assertEquals(3000, expensive.getMaxParameterCardinality());
+        assertEquals(40000, expensive.getMaxMicros());
+        assertEquals(60, expensive.getTotalMillis());
+
+        assertEquals(3, statistics.getTotalExecutions());
+    }
+}
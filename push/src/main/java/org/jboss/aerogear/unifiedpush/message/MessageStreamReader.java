@@ -0,0 +1,73 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Reads the messages of a batch request one after another, without reading the whole request into memory first. The
+ * messages are given either as a JSON array, or as a sequence of JSON objects, e.g. one per line (NDJSON).
+ */
+public final class MessageStreamReader implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JsonParser parser;
+    private boolean array;
+    private boolean started;
+
+    public MessageStreamReader(InputStream in) throws IOException {
+        this.parser = MAPPER.getJsonFactory().createJsonParser(in);
+    }
+
+    /**
+     * Returns the next message, or <code>null</code> once all messages have been read.
+     *
+     * @throws IOException if the stream is not a JSON array or sequence of JSON objects
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> next() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (!started) {
+            started = true;
+            if (token == JsonToken.START_ARRAY) {
+                array = true;
+                token = parser.nextToken();
+            }
+        }
+        if (token == null || (array && token == JsonToken.END_ARRAY)) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Expected a message object, but found " + token, parser.getCurrentLocation());
+        }
+        return MAPPER.readValue(parser, Map.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
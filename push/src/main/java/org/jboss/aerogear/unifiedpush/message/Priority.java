@@ -0,0 +1,42 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+/**
+ * Priority class of a push message, submitted as <code>"priority" : "high"</code>. High priority messages (e.g.
+ * transactional one-to-one notifications) are dispatched on their own lane, so they do not queue behind broadcasts.
+ */
+public enum Priority {
+
+    HIGH,
+
+    NORMAL;
+
+    /**
+     * Returns the priority for the given (case insensitive) value, {@link #NORMAL} if it is missing or unknown.
+     */
+    public static Priority fromValue(String value) {
+        if (value != null) {
+            for (Priority priority : values()) {
+                if (priority.name().equalsIgnoreCase(value)) {
+                    return priority;
+                }
+            }
+        }
+        return NORMAL;
+    }
+}
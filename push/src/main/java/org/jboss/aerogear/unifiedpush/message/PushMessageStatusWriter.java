@@ -0,0 +1,52 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+
+/**
+ * Stores the outcome of a delivery. The outcomes are reported on worker, timer and push network threads, which
+ * do not run in the transaction of the send request: the container starts one for the update, when needed.
+ *
+ * The work units of a partitioned send report to the same push message from several nodes: the outcome is added to
+ * the stored push message, instead of overwriting it with the state known to this node. The outcomes of a variant with
+ * the same delivery status and reason are counted in a single stored outcome, which is updated in place: the push
+ * message with all its outcomes is only loaded for the first one.
+ */
+@Stateless
+public class PushMessageStatusWriter {
+
+    @Inject
+    private PushMessageMetricsService metricsService;
+
+    public void addVariantInformation(PushMessageInformation pushMessageInformation, VariantMetricInformation variantMetricInformation) {
+        if (metricsService.addReceivers(pushMessageInformation.getId(), variantMetricInformation)) {
+            return;
+        }
+        PushMessageInformation stored = metricsService.findById(pushMessageInformation.getId());
+        if (stored == null) {
+            stored = pushMessageInformation;
+        }
+        stored.getVariantInformations().add(variantMetricInformation);
+        metricsService.updatePushMessageInformation(stored);
+    }
+}
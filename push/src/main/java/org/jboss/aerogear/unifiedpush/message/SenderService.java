@@ -18,15 +18,35 @@
 package org.jboss.aerogear.unifiedpush.message;
 
 import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.retry.DeadLetter;
 
 public interface SenderService {
 
     /**
      * Sends the given message/payload to ALL installations of the variants, matching the given criterias.
+     * The message is processed on the calling thread, submitted messages are queued by the
+     * {@link org.jboss.aerogear.unifiedpush.message.dispatch.SendDispatcher}.
      * 
      * @param pushApplication the root target for all installations being notified 
      * @param payload the payload to be sent
      */
     void send(PushApplication pushApplication, UnifiedPushMessage payload);
+
+    /**
+     * Submits the tokens of the given dead letter again, with a fresh set of retries.
+     *
+     * @param deadLetter a batch, that has been removed from the dead letter store
+     */
+    void resend(DeadLetter deadLetter);
+
+    /**
+     * Sends the given message to the installations of a work unit, that has been claimed by this node. The progress is
+     * checkpointed after every batch, and the work stops if the lease of the unit has been lost.
+     *
+     * @param unit a claimed unit of a partitioned send
+     * @param message the message of the unit
+     */
+    void sendWorkUnit(SendWorkUnit unit, UnifiedPushMessage message);
 }
@@ -18,31 +18,60 @@ package org.jboss.aerogear.unifiedpush.message;
 
 import org.jboss.aerogear.unifiedpush.api.PushApplication;
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.message.alias.AliasStage;
+import org.jboss.aerogear.unifiedpush.message.alias.AliasStaging;
+import org.jboss.aerogear.unifiedpush.message.breaker.CircuitBreakerRegistry;
+import org.jboss.aerogear.unifiedpush.message.cluster.WorkUnitCoordinator;
+import org.jboss.aerogear.unifiedpush.message.dispatch.SendDispatcher;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobRegistry;
+import org.jboss.aerogear.unifiedpush.message.outbox.Outbox;
+import org.jboss.aerogear.unifiedpush.message.retry.DeadLetter;
+import org.jboss.aerogear.unifiedpush.message.retry.DeadLetterStore;
+import org.jboss.aerogear.unifiedpush.message.retry.RetryPolicy;
+import org.jboss.aerogear.unifiedpush.message.retry.RetryScheduler;
+import org.jboss.aerogear.unifiedpush.message.schedule.SendScheduler;
 import org.jboss.aerogear.unifiedpush.message.sender.NotificationSenderCallback;
 import org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender;
 import org.jboss.aerogear.unifiedpush.message.sender.SenderTypeLiteral;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
+import org.jboss.aerogear.unifiedpush.service.cluster.SendWorkUnitService;
 import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.SendStage;
+import org.jboss.aerogear.unifiedpush.service.metrics.VariantSendMetrics;
+import org.jboss.aerogear.unifiedpush.trace.FlightRecorder;
+import org.jboss.aerogear.unifiedpush.trace.TraceEventType;
 
 import javax.ejb.Asynchronous;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.enterprise.inject.Any;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Stateless
-@Asynchronous
 public class SenderServiceImpl implements SenderService {
 
+    private static final RetryPolicy RETRY_POLICY = RetryPolicy.fromSystemProperties();
+    private static final String CIRCUIT_OPEN = "Push network unavailable, circuit breaker is open";
+    private static final String TTL_EXPIRED = "Time to live expired";
+
     private final Logger logger = Logger.getLogger(SenderServiceImpl.class.getName());
+    private final Random random = new Random();
 
     @Inject @Any
     private Instance<PushNotificationSender> senders;
@@ -53,19 +82,73 @@ public class SenderServiceImpl implements SenderService {
     private GenericVariantService genericVariantService;
     @Inject
     private PushMessageMetricsService metricsService;
+    @Inject
+    private PushMessageStatusWriter statusWriter;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private RetryScheduler retryScheduler;
+    @Inject
+    private DeadLetterStore deadLetterStore;
+    @Inject
+    private CircuitBreakerRegistry circuitBreakers;
+    @Inject
+    private SendDispatcher sendDispatcher;
+    @Inject
+    private SendJobRegistry sendJobs;
+    @Inject
+    private Outbox outbox;
+    @Inject
+    private WorkUnitCoordinator workUnitCoordinator;
+    @Inject
+    private SendWorkUnitService workUnits;
+    @Inject
+    private AliasStaging aliasStaging;
+    @Inject
+    private SendScheduler sendScheduler;
 
     @Override
-    @Asynchronous
     public void send(PushApplication pushApplication, UnifiedPushMessage message) {
         logger.log(Level.INFO, "Processing send request with '" + message.toString() + "' payload");
 
-        final PushMessageInformation pushMessageInformation =
+        pushMetrics.messageStarted();
+        sendJobs.started(message.getJobId());
+        try {
+            // the push networks would discard it anyway:
+            if (message.isExpired(System.currentTimeMillis())) {
+                logger.log(Level.WARNING, "Dropping send request " + message.getJobId() + ", its time to live expired while it was queued");
+                pushMetrics.messageExpired();
+                sendJobs.failed(message.getJobId(), TTL_EXPIRED);
+                return;
+            }
+            processMessage(pushApplication, message);
+        } catch (RuntimeException e) {
+            sendJobs.failed(message.getJobId(), "Processing failed: " + e.getMessage());
+            throw e;
+        } finally {
+            FlightRecorder.endTrace();
+            pushMetrics.messageFinished();
+        }
+    }
+
+    private void processMessage(PushApplication pushApplication, final UnifiedPushMessage message) {
+        final long persistenceStart = System.nanoTime();
+        // a send resumed after a restart has been stored already:
+        final PushMessageInformation resumed = outbox.isResumed(message.getJobId()) ? metricsService.findById(message.getJobId()) : null;
+        final PushMessageInformation pushMessageInformation = resumed != null ? resumed :
                 metricsService.storeNewRequestFrom(
+                        message.getJobId(),
                         pushApplication.getPushApplicationID(),
                         message.toJsonString(),
                         message.getIpAddress(),
                         message.getClientIdentifier()
                 );
+        final long persistenceNanos = System.nanoTime() - persistenceStart;
+        pushMetrics.recordMessagePersistence(persistenceNanos);
+
+        // correlate all following events of this thread with the stored push message:
+        FlightRecorder.beginTrace(pushMessageInformation.getId());
+        FlightRecorder.record(TraceEventType.SEND_STAGE, "MESSAGE_PERSISTENCE", pushApplication.getPushApplicationID(), 1, persistenceNanos);
 
         // collections for all the different variants:
         final Set<Variant> variants = new HashSet<Variant>();
@@ -98,28 +181,436 @@ public class SenderServiceImpl implements SenderService {
 
         // let's check if we actually have data for native platforms!
         if (message.getData() != null) {
+            sendJobs.expectVariants(pushMessageInformation.getId(), variants.size());
+
+            // a large alias list is staged once, and joined by the token queries of all variants:
+            final AliasStage aliasStage = aliasStaging.isLarge(aliases, variants) && !variants.isEmpty() ? aliasStaging.stage(aliases, variants.size()) : null;
 
-            // TODO: DISPATCH TO A QUEUE .....
             for (final Variant variant : variants) {
-                final List<String> tokenPerVariant = clientInstallationService.findAllDeviceTokenForVariantIDByCriteria(variant.getVariantID(), categories, aliases, deviceTypes);
+                if (circuitBreakers.allowRequest(variant)) {
+                    sendToVariant(variant, message, pushMessageInformation, categories, aliases, aliasStage, deviceTypes);
+                    continue;
+                }
 
-                // extracting the size for our counters
-                final int tokenSize = tokenPerVariant.size();
-                senders.select(new SenderTypeLiteral(variant.getClass())).get().sendPushMessage(variant, tokenPerVariant, message, new NotificationSenderCallback() {
+                // the push network is down, do not even load the tokens; once released, they are loaded on a lane worker:
+                final boolean parked = circuitBreakers.park(variant, new Runnable() {
                     @Override
-                    public void onSuccess() {
-                        logger.log(Level.FINE, String.format("Sent '%s' message to '%d' devices", variant.getType().getTypeName(), tokenSize));
-                        updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), tokenSize, Boolean.TRUE);
+                    public void run() {
+                        sendToVariantOnLane(variant, message, pushMessageInformation, categories, aliases, aliasStage, deviceTypes);
                     }
+                });
+                if (!parked) {
+                    logger.log(Level.WARNING, String.format("Circuit breaker of '%s' is open and its holding queue is full", variant.getType().getTypeName()));
+                    aliasStaging.variantResolved(aliasStage);
+                    sendJobs.variantResolved(pushMessageInformation.getId(), variant.getVariantID(), 0, 0);
+                    updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), 0, Boolean.FALSE, CIRCUIT_OPEN);
+                }
+            }
+        } else {
+            sendJobs.expectVariants(pushMessageInformation.getId(), 0);
+        }
+    }
 
+    /**
+     * Queues the resolution and sending of the tokens of the given variant on the lane of the message.
+     */
+    private void sendToVariantOnLane(final Variant variant, final UnifiedPushMessage message, final PushMessageInformation pushMessageInformation,
+                                     final List<String> categories, final List<String> aliases, final AliasStage aliasStage, final List<String> deviceTypes) {
+        sendDispatcher.dispatchBatch(message, pushMessageInformation.getPushApplicationId(), 1, new Runnable() {
+            @Override
+            public void run() {
+                FlightRecorder.beginTrace(pushMessageInformation.getId());
+                try {
+                    sendToVariant(variant, message, pushMessageInformation, categories, aliases, aliasStage, deviceTypes);
+                } finally {
+                    FlightRecorder.endTrace();
+                }
+            }
+        });
+    }
+
+    private void sendToVariant(final Variant variant, final UnifiedPushMessage message, final PushMessageInformation pushMessageInformation,
+                               final List<String> categories, final List<String> aliases, final AliasStage aliasStage, final List<String> deviceTypes) {
+        // a message, that expired while the push network was unavailable, is not even resolved:
+        if (message.isExpired(System.currentTimeMillis())) {
+            aliasStaging.variantResolved(aliasStage);
+            sendJobs.variantResolved(pushMessageInformation.getId(), variant.getVariantID(), 0, 0);
+            updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), 0, Boolean.FALSE, TTL_EXPIRED);
+            return;
+        }
+
+        // large variants are sent by all nodes of the cluster:
+        if (workUnitCoordinator.partition(variant, message, pushMessageInformation)) {
+            aliasStaging.variantResolved(aliasStage);
+            return;
+        }
+
+        // a scheduled message is released ahead of time, its tokens are staged now and sent once it is due:
+        if (message.getDeliverAt() > System.currentTimeMillis()) {
+            stage(variant, message, pushMessageInformation, categories, aliases, aliasStage, deviceTypes);
+            return;
+        }
+
+        final VariantSendMetrics variantMetrics = pushMetrics.forVariant(variant);
+
+        final long resolutionStart = System.nanoTime();
+        final String jobId = pushMessageInformation.getId();
+        final String cursor = outbox.cursorOf(jobId, variant.getVariantID());
+        final List<String> resolvedTokens;
+        try {
+            resolvedTokens = aliasStage == null
+                    ? clientInstallationService.findAllDeviceTokenForVariantIDByCriteria(variant.getVariantID(), categories, aliases, deviceTypes)
+                    : clientInstallationService.findAllDeviceTokenForVariantIDByStagedAliases(variant.getVariantID(), categories, aliasStage.getId(), deviceTypes);
+        } finally {
+            aliasStaging.variantResolved(aliasStage);
+        }
+        // sorted, if journaled, without the tokens that were sent before a restart:
+        final List<String> tokenPerVariant = outbox.remainingTokens(jobId, variant.getVariantID(), resolvedTokens);
+
+        // extracting the size for our counters
+        final int tokenSize = tokenPerVariant.size();
+        variantMetrics.record(SendStage.TOKEN_RESOLUTION, System.nanoTime() - resolutionStart, tokenSize);
+
+        final int batchSize = sendDispatcher.getBatchSize();
+        sendJobs.variantResolved(pushMessageInformation.getId(), variant.getVariantID(), tokenSize, Math.max(1, (tokenSize + batchSize - 1) / batchSize));
+
+        if (tokenSize <= batchSize) {
+            deliver(variant, tokenPerVariant, message, pushMessageInformation, 1);
+            if (tokenSize > 0) {
+                outbox.checkpoint(jobId, variant.getVariantID(), cursor, tokenPerVariant.get(tokenSize - 1));
+            }
+            return;
+        }
+        dispatchBatches(variant, tokenPerVariant, cursor, message, pushMessageInformation);
+    }
+
+    /**
+     * Splits the sorted tokens of the given variant into ranges of a batch, and holds their boundaries until the message
+     * is due: the tokens themselves are loaded per range, when it is sent.
+     */
+    private void stage(final Variant variant, final UnifiedPushMessage message, final PushMessageInformation pushMessageInformation,
+                       final List<String> categories, final List<String> aliases, final AliasStage aliasStage, final List<String> deviceTypes) {
+        // the staged aliases can not be bound to a range query, they are joined once the message is due:
+        if (aliasStage != null) {
+            sendScheduler.hold(message.getDeliverAt(), new Runnable() {
+                @Override
+                public void run() {
+                    sendToVariantOnLane(variant, message, pushMessageInformation, categories, aliases, aliasStage, deviceTypes);
+                }
+            });
+            return;
+        }
+
+        final VariantSendMetrics variantMetrics = pushMetrics.forVariant(variant);
+        final int batchSize = sendDispatcher.getBatchSize();
+
+        final long resolutionStart = System.nanoTime();
+        final List<String> boundaries = clientInstallationService.findDeviceTokenBoundariesForVariantIDByCriteria(variant.getVariantID(),
+                categories, aliases, deviceTypes, batchSize);
+        final int tokenSize = (int) clientInstallationService.countDeviceTokensForVariantIDByCriteria(variant.getVariantID(), categories, aliases, deviceTypes);
+        variantMetrics.record(SendStage.TOKEN_RESOLUTION, System.nanoTime() - resolutionStart, tokenSize);
+
+        sendJobs.variantResolved(pushMessageInformation.getId(), variant.getVariantID(), tokenSize, boundaries.size() + 1);
+
+        sendScheduler.hold(message.getDeliverAt(), new Runnable() {
+            @Override
+            public void run() {
+                dispatchRanges(variant, boundaries, message, pushMessageInformation, categories, aliases, deviceTypes);
+            }
+        });
+    }
+
+    /**
+     * Queues one batch per range of the staged tokens, each one loads its tokens once it is taken from the lane.
+     */
+    private void dispatchRanges(final Variant variant, List<String> boundaries, final UnifiedPushMessage message, final PushMessageInformation pushMessageInformation,
+                                final List<String> categories, final List<String> aliases, final List<String> deviceTypes) {
+        final String jobId = pushMessageInformation.getId();
+        for (int i = 0; i <= boundaries.size(); i++) {
+            final String after = i == 0 ? null : boundaries.get(i - 1);
+            final String last = i == boundaries.size() ? null : boundaries.get(i);
+            sendDispatcher.dispatchBatch(message, pushMessageInformation.getPushApplicationId(), sendDispatcher.getBatchSize(), new Runnable() {
+                @Override
+                public void run() {
+                    FlightRecorder.beginTrace(jobId);
+                    try {
+                        final long resolutionStart = System.nanoTime();
+                        final List<String> batch = clientInstallationService.findDeviceTokenRangeForVariantIDByCriteria(variant.getVariantID(),
+                                categories, aliases, deviceTypes, after, last);
+                        pushMetrics.forVariant(variant).record(SendStage.TOKEN_RESOLUTION, System.nanoTime() - resolutionStart, batch.size());
+
+                        // the range is sent up to its boundary, the last one up to its last token:
+                        final String upTo = last != null ? last : batch.isEmpty() ? null : batch.get(batch.size() - 1);
+                        if (deliverWhenAllowed(variant, batch, message, pushMessageInformation, 1) && upTo != null) {
+                            outbox.checkpoint(jobId, variant.getVariantID(), after, upTo);
+                        }
+                    } finally {
+                        FlightRecorder.endTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues the tokens in batches, interleaved with the batches of the other push applications.
+     */
+    private void dispatchBatches(final Variant variant, List<String> tokens, String cursor, final UnifiedPushMessage message,
+                                 final PushMessageInformation pushMessageInformation) {
+        final String jobId = pushMessageInformation.getId();
+        final int batchSize = sendDispatcher.getBatchSize();
+        for (int from = 0; from < tokens.size(); from += batchSize) {
+            final List<String> batch = new ArrayList<String>(tokens.subList(from, Math.min(from + batchSize, tokens.size())));
+            final String after = from == 0 ? cursor : tokens.get(from - 1);
+            sendDispatcher.dispatchBatch(message, pushMessageInformation.getPushApplicationId(), batch.size(), new Runnable() {
+                @Override
+                public void run() {
+                    FlightRecorder.beginTrace(jobId);
+                    try {
+                        if (deliverWhenAllowed(variant, batch, message, pushMessageInformation, 1)) {
+                            outbox.checkpoint(jobId, variant.getVariantID(), after, batch.get(batch.size() - 1));
+                        }
+                    } finally {
+                        FlightRecorder.endTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    @Asynchronous
+    public void resend(DeadLetter deadLetter) {
+        logger.log(Level.INFO, "Replaying " + deadLetter.getTokens().size() + " tokens of variant " + deadLetter.getVariant().getVariantID());
+
+        FlightRecorder.beginTrace(deadLetter.getPushMessageInformation().getId());
+        sendJobs.replaying(deadLetter.getPushMessageInformation().getId(), deadLetter.getVariant().getVariantID(), deadLetter.getTokens().size());
+        try {
+            deliverWhenAllowed(deadLetter.getVariant(), deadLetter.getTokens(), deadLetter.getMessage(), deadLetter.getPushMessageInformation(), 1);
+        } finally {
+            FlightRecorder.endTrace();
+        }
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void sendWorkUnit(SendWorkUnit unit, UnifiedPushMessage message) {
+        final Variant variant = genericVariantService.findByVariantID(unit.getVariantID());
+        final PushMessageInformation pushMessageInformation = metricsService.findById(unit.getPushMessageInformationId());
+        if (variant == null || pushMessageInformation == null) {
+            logger.log(Level.WARNING, "Dropping work unit " + unit.getId() + ", its variant or push message has been deleted");
+            workUnits.complete(unit, unit.getTokens());
+            return;
+        }
+        // the time to live counts from the submission on the node that has partitioned the variant:
+        message.setSubmittedAt(pushMessageInformation.getSubmitDate().getTime());
+
+        final SendCriteria criteria = message.getSendCriteria();
+        final VariantSendMetrics variantMetrics = pushMetrics.forVariant(variant);
+        final int batchSize = sendDispatcher.getBatchSize();
+
+        // a unit, whose lease has expired on another node, continues after its checkpoint:
+        String after = unit.getCheckpoint() != null ? unit.getCheckpoint() : unit.getAfterInstallationId();
+        long tokens = unit.getTokens();
+
+        FlightRecorder.beginTrace(pushMessageInformation.getId());
+        try {
+            while (!message.isExpired(System.currentTimeMillis())) {
+                final long resolutionStart = System.nanoTime();
+                final Map<String, String> page = clientInstallationService.findDeviceTokensForVariantIDByCriteria(variant.getVariantID(),
+                        criteria.getCategories(), criteria.getAliases(), criteria.getDeviceTypes(), after, unit.getLastInstallationId(), batchSize);
+                variantMetrics.record(SendStage.TOKEN_RESOLUTION, System.nanoTime() - resolutionStart, page.size());
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                deliverWhenAllowed(variant, new ArrayList<String>(page.values()), message, pushMessageInformation, 1);
+                tokens += page.size();
+                for (String installationId : page.keySet()) {
+                    after = installationId;
+                }
+                if (!workUnits.checkpoint(unit, after, tokens)) {
+                    logger.log(Level.WARNING, "Lost the lease of work unit " + unit.getId() + ", stopping after " + tokens + " tokens");
+                    return;
+                }
+                if (page.size() < batchSize) {
+                    break;
+                }
+            }
+            workUnits.complete(unit, tokens);
+        } finally {
+            FlightRecorder.endTrace();
+        }
+    }
+
+    /**
+     * Hands the given tokens to the sender of the variant, the given attempt starts at 1.
+     */
+    private void deliver(Variant variant, List<String> tokens, UnifiedPushMessage message, PushMessageInformation pushMessageInformation, int attempt) {
+        if (expired(variant, tokens, message, pushMessageInformation, attempt)) {
+            return;
+        }
+        final DeliveryCallback callback = new DeliveryCallback(variant, tokens.size(), message, pushMessageInformation, attempt);
+        try {
+            senders.select(new SenderTypeLiteral(variant.getClass())).get().sendPushMessage(variant, tokens, message, callback);
+        } catch (RuntimeException e) {
+            // do not leave the tokens without outcome:
+            logger.log(Level.SEVERE, String.format("Unexpected error on '%s' delivery", variant.getType().getTypeName()), e);
+            callback.onError(tokens.size(), "Unexpected error: " + e.getMessage());
+        }
+        if (attempt == 1) {
+            sendJobs.batchSent(pushMessageInformation.getId(), variant.getVariantID());
+        }
+    }
+
+    /**
+     * Hands the given tokens to the sender, or parks them while the circuit breaker of the variant is open. Returns
+     * whether they have been handed to the sender right away.
+     */
+    private boolean deliverWhenAllowed(final Variant variant, final List<String> tokens, final UnifiedPushMessage message,
+                                    final PushMessageInformation pushMessageInformation, final int attempt) {
+        if (expired(variant, tokens, message, pushMessageInformation, attempt)) {
+            return false;
+        }
+        if (circuitBreakers.allowRequest(variant)) {
+            deliver(variant, tokens, message, pushMessageInformation, attempt);
+            return true;
+        }
+
+        final boolean parked = circuitBreakers.park(variant, new Runnable() {
+            @Override
+            public void run() {
+                sendDispatcher.dispatchBatch(message, pushMessageInformation.getPushApplicationId(), tokens.size(), new Runnable() {
                     @Override
-                    public void onError(final String reason) {
-                        logger.log(Level.WARNING, String.format("Error on '%s' delivery", variant.getType().getTypeName()));
-                        updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), tokenSize, Boolean.FALSE, reason);
+                    public void run() {
+                        FlightRecorder.beginTrace(pushMessageInformation.getId());
+                        try {
+                            deliver(variant, tokens, message, pushMessageInformation, attempt);
+                        } finally {
+                            FlightRecorder.endTrace();
+                        }
                     }
                 });
+            }
+        });
+        if (!parked) {
+            logger.log(Level.WARNING, String.format("Circuit breaker of '%s' is open and its holding queue is full", variant.getType().getTypeName()));
+            deadLetterStore.add(new DeadLetter(variant, tokens, message, pushMessageInformation, CIRCUIT_OPEN, attempt));
+            updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), tokens.size(), Boolean.FALSE, CIRCUIT_OPEN);
+        }
+        return false;
+    }
+
+    /**
+     * Gives up on the given tokens, if the time to live of their message has passed while they were queued, held for a
+     * retry or parked. Returns whether they have been given up on.
+     */
+    private boolean expired(Variant variant, List<String> tokens, UnifiedPushMessage message, PushMessageInformation pushMessageInformation, int attempt) {
+        if (!message.isExpired(System.currentTimeMillis())) {
+            return false;
+        }
+        logger.log(Level.FINE, String.format("Dropping %d '%s' tokens, the time to live of the message expired",
+                tokens.size(), variant.getType().getTypeName()));
+        pushMetrics.tokensExpired(tokens.size());
+        if (attempt == 1) {
+            sendJobs.batchSent(pushMessageInformation.getId(), variant.getVariantID());
+        }
+        updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), tokens.size(), Boolean.FALSE, TTL_EXPIRED);
+        return true;
+    }
 
+    /**
+     * Schedules the next attempt for the given tokens, or moves them to the {@link DeadLetterStore}, once the
+     * {@link RetryPolicy} does not allow another attempt.
+     */
+    private void retryOrDeadLetter(Variant variant, Collection<String> tokens, UnifiedPushMessage message,
+                                   PushMessageInformation pushMessageInformation, String reason, long retryAfterMillis, int attempt) {
+        if (RETRY_POLICY.canRetry(attempt)) {
+            final long delay = RETRY_POLICY.delayFor(attempt, retryAfterMillis, random);
+            logger.log(Level.INFO, String.format("Retrying %d '%s' tokens in %d ms, attempt %d failed: %s",
+                    tokens.size(), variant.getType().getTypeName(), delay, attempt, reason));
+
+            scheduleDelivery(variant, tokens, message, pushMessageInformation, attempt + 1, delay);
+        } else {
+            logger.log(Level.WARNING, String.format("Giving up on %d '%s' tokens after %d attempts: %s",
+                    tokens.size(), variant.getType().getTypeName(), attempt, reason));
+            deadLetterStore.add(new DeadLetter(variant, tokens, message, pushMessageInformation, reason, attempt));
+            updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), tokens.size(), Boolean.FALSE, reason);
+        }
+    }
+
+    private void scheduleDelivery(final Variant variant, Collection<String> tokens, final UnifiedPushMessage message,
+                                  final PushMessageInformation pushMessageInformation, final int attempt, long delayMillis) {
+        final List<String> pendingTokens = new ArrayList<String>(tokens);
+        retryScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                FlightRecorder.beginTrace(pushMessageInformation.getId());
+                try {
+                    deliverWhenAllowed(variant, pendingTokens, message, pushMessageInformation, attempt);
+                } finally {
+                    FlightRecorder.endTrace();
+                }
             }
+        }, delayMillis);
+    }
+
+    /**
+     * Updates the status of the push message, and retries the transient failures. Every token is accounted for once:
+     * the reported counts are capped by the number of tokens, whose outcome is still pending.
+     */
+    private final class DeliveryCallback implements NotificationSenderCallback {
+
+        private final Variant variant;
+        private final UnifiedPushMessage message;
+        private final PushMessageInformation pushMessageInformation;
+        private final int attempt;
+        private int pending;
+
+        private DeliveryCallback(Variant variant, int tokenSize, UnifiedPushMessage message, PushMessageInformation pushMessageInformation, int attempt) {
+            this.variant = variant;
+            this.pending = tokenSize;
+            this.message = message;
+            this.pushMessageInformation = pushMessageInformation;
+            this.attempt = attempt;
+        }
+
+        // the APNs delegate reports on its own thread
+        private synchronized int settle(int tokens) {
+            final int settled = Math.max(0, Math.min(tokens, pending));
+            pending -= settled;
+            return settled;
+        }
+
+        @Override
+        public void onSuccess(int tokens) {
+            final int delivered = settle(tokens);
+            circuitBreakers.recordSuccess(variant);
+            logger.log(Level.FINE, String.format("Sent '%s' message to '%d' devices", variant.getType().getTypeName(), delivered));
+            updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), delivered, Boolean.TRUE);
+        }
+
+        @Override
+        public void onError(int tokens, final String reason) {
+            final int failed = settle(tokens);
+            circuitBreakers.recordFailure(variant, false);
+            logger.log(Level.WARNING, String.format("Error on '%s' delivery", variant.getType().getTypeName()));
+            updateStatusOfPushMessageInformation(pushMessageInformation, variant.getVariantID(), failed, Boolean.FALSE, reason);
+        }
+
+        @Override
+        public void onTransientError(Collection<String> tokens, String reason, long retryAfterMillis) {
+            settle(tokens.size());
+            circuitBreakers.recordFailure(variant, true);
+            retryOrDeadLetter(variant, tokens, message, pushMessageInformation, reason, retryAfterMillis, attempt);
+        }
+
+        @Override
+        public void onThrottled(Collection<String> tokens, long delayMillis) {
+            settle(tokens.size());
+            logger.log(Level.FINE, String.format("Rate limit reached, sending %d '%s' tokens in %d ms",
+                    tokens.size(), variant.getType().getTypeName(), delayMillis));
+            scheduleDelivery(variant, tokens, message, pushMessageInformation, attempt, delayMillis);
         }
     }
 
@@ -136,9 +627,13 @@ public class SenderServiceImpl implements SenderService {
         variantMetricInformation.setReceivers(receives);
         variantMetricInformation.setDeliveryStatus(deliveryStatus);
         variantMetricInformation.setReason(reason);
-        pushMessageInformation.getVariantInformations().add(variantMetricInformation);
 
-        // store it!
-        metricsService.updatePushMessageInformation(pushMessageInformation);
+        // store it! The batches of a message may complete on different workers at the same time
+        final long persistenceStart = System.nanoTime();
+        synchronized (pushMessageInformation) {
+            statusWriter.addVariantInformation(pushMessageInformation, variantMetricInformation);
+        }
+        sendJobs.settled(pushMessageInformation.getId(), variantID, receives, Boolean.TRUE.equals(deliveryStatus), reason);
+        pushMetrics.forVariantID(variantID).record(SendStage.METRICS_PERSISTENCE, System.nanoTime() - persistenceStart, receives);
     }
 }
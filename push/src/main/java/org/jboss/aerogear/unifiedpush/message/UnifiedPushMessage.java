@@ -16,6 +16,7 @@
  */
 package org.jboss.aerogear.unifiedpush.message;
 
+import javax.xml.bind.DatatypeConverter;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -30,6 +31,9 @@ public class UnifiedPushMessage {
 
     private String ipAddress;
     private String clientIdentifier;
+    private String jobId;
+    private String rawMessage;
+    private long submittedAt = System.currentTimeMillis();
 
     private final SendCriteria criteria;
 
@@ -40,6 +44,9 @@ public class UnifiedPushMessage {
     private final boolean contentAvailable;
     private final int badge;
     private final int timeToLive;
+    private final Priority priority;
+    private final long deliverAt;
+    private final String collapseKey;
 
     private final Map<String, Object> data;
 
@@ -52,6 +59,9 @@ public class UnifiedPushMessage {
      *     "categories" : ["someCategories"],
      *     "variants" : ["someVariantIDs"],
      *     "ttl" : 3600,
+     *     "priority" : "high",
+     *     "deliver-at" : "2015-01-31T09:00:00Z",
+     *     "collapse-key" : "score",
      *     "message":
      *     {
      *       "key":"value",
@@ -118,6 +128,33 @@ public class UnifiedPushMessage {
         // SimplePush values:
         this.simplePush = (String) data.remove("simple-push");
 
+        // dispatch lane, normal if not given:
+        this.priority = Priority.fromValue((String) data.remove("priority"));
+
+        // scheduled delivery, right away if not given:
+        this.deliverAt = parseDeliveryTime(data.remove("deliver-at"));
+
+        // newer messages with the same key supersede this one:
+        this.collapseKey = (String) data.remove("collapse-key");
+    }
+
+    /**
+     * Accepts an ISO-8601 date and time, or the milliseconds since the epoch.
+     *
+     * @throws InvalidDeliveryTimeException if the value is neither
+     */
+    private static long parseDeliveryTime(Object value) {
+        if (value == null) {
+            return -1;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return DatatypeConverter.parseDateTime(value.toString()).getTimeInMillis();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDeliveryTimeException(value.toString(), e);
+        }
     }
 
     /**
@@ -165,6 +202,51 @@ public class UnifiedPushMessage {
         return timeToLive;
     }
 
+    /**
+     * Returns the priority class of the message, {@link Priority#NORMAL} if the 'priority' key has not been specified.
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) the message has been scheduled for with the 'deliver-at' key,
+     * or -1 if it is to be delivered right away.
+     */
+    public long getDeliverAt() {
+        return deliverAt;
+    }
+
+    /**
+     * Returns the value of the 'collapse-key' key: a newer message with the same key replaces this one, while it is still
+     * queued for the same audience. The key is passed on as GCM <code>collapse_key</code>.
+     *
+     * If the 'collapse-key' key has not been specified, this method will return <code>null</code>.
+     */
+    public String getCollapseKey() {
+        return collapseKey;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch), after which the push networks would discard the message: its
+     * 'ttl' counted from the submission, or from the 'deliver-at' time for a scheduled message. Returns
+     * {@link Long#MAX_VALUE} if the 'ttl' key has not been specified, or is 0 (which asks the push networks for an
+     * immediate delivery attempt, not for dropping the message before it got to them).
+     */
+    public long getDeadline() {
+        if (timeToLive <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(submittedAt, deliverAt) + timeToLive * 1000L;
+    }
+
+    /**
+     * Whether the time to live of the message has passed at the given time.
+     */
+    public boolean isExpired(long now) {
+        return now >= getDeadline();
+    }
+
     /**
      * Returns the value of the 'sound' key from the submitted payload.
      * This key is recognized in native iOS, without any API invocation.
@@ -228,6 +310,39 @@ public class UnifiedPushMessage {
 
     public void setClientIdentifier(String clientIdentifier) { this.clientIdentifier = clientIdentifier; }
 
+    /**
+     * The ID of the send job, that tracks the processing of this message.
+     */
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    /**
+     * The message, in the JSON form it has been submitted with.
+     */
+    public String getRawMessage() {
+        return rawMessage;
+    }
+
+    public void setRawMessage(String rawMessage) {
+        this.rawMessage = rawMessage;
+    }
+
+    /**
+     * The time (in milliseconds since the epoch) the message has been submitted, defaults to the time it was created.
+     */
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(long submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
     public String toJsonString() {
         return "{" +
                 "\"ipAddress\":\"" + ipAddress + "\"," +
@@ -263,6 +378,6 @@ public class UnifiedPushMessage {
     public String toString() {
         return "[alert=" + alert + ", data=" + data+ ", criteria="
                 + criteria + ", sound=" + sound + ", action-category=" + actionCategory + ", badge=" + badge + ", time-to-live="
-                + timeToLive + ", simplePush=" + simplePush + ", content-available=" + contentAvailable +"]";
+                + timeToLive + ", simplePush=" + simplePush + ", content-available=" + contentAvailable + ", priority=" + priority + ", deliver-at=" + deliverAt + ", collapse-key=" + collapseKey + "]";
     }
 }
@@ -0,0 +1,45 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.alias;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The staged alias list of one send, joined by the token queries of its variants. The stage is removed once the tokens
+ * of the last variant have been resolved.
+ */
+public final class AliasStage {
+
+    private final String id;
+    private final AtomicInteger pendingVariants;
+
+    AliasStage(String id, int variants) {
+        this.id = id;
+        this.pendingVariants = new AtomicInteger(variants);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Records that the tokens of one more variant have been resolved. Returns true for the last variant.
+     */
+    boolean variantResolved() {
+        return pendingVariants.decrementAndGet() == 0;
+    }
+}
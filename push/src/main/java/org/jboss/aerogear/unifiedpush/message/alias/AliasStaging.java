@@ -0,0 +1,117 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.alias;
+
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.service.audience.AudienceIndex;
+import org.jboss.aerogear.unifiedpush.service.staging.AliasStagingService;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stages alias lists, that are too large to be bound into the token query of every variant: beyond
+ * <code>aerogear.sender.aliasStagingThreshold</code> aliases (default: 1000), the list is written once per send, and
+ * the token queries join it. Stages that outlive their send, e.g. as the node has been stopped, are removed after a day.
+ *
+ * Nothing is staged while the {@link AudienceIndex} covers all variants of the send, it evaluates large alias lists in
+ * memory.
+ */
+@ApplicationScoped
+public class AliasStaging {
+
+    private static final int THRESHOLD = Integer.getInteger("aerogear.sender.aliasStagingThreshold", 1000);
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Logger logger = Logger.getLogger(AliasStaging.class.getName());
+
+    private final AtomicLong lastCleanup = new AtomicLong(System.currentTimeMillis());
+
+    @Inject
+    private AliasStagingService aliasStagingService;
+    @Inject
+    private AudienceIndex audienceIndex;
+
+    /**
+     * Whether the given alias list is large enough to be staged, for the token queries of the given variants.
+     */
+    public boolean isLarge(List<String> aliases, Collection<Variant> variants) {
+        if (aliases == null || aliases.size() <= THRESHOLD) {
+            return false;
+        }
+        for (Variant variant : variants) {
+            if (!audienceIndex.covers(variant.getVariantID())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stages the given aliases for the given number of variants. Returns <code>null</code> if they could not be staged,
+     * the tokens are queried with the alias list then.
+     */
+    public AliasStage stage(List<String> aliases, int variants) {
+        cleanUpWhenDue();
+        try {
+            // the join does not need duplicates:
+            final String stageId = aliasStagingService.stage(new LinkedHashSet<String>(aliases));
+            logger.log(Level.FINE, "Staged " + aliases.size() + " aliases as " + stageId);
+            return new AliasStage(stageId, variants);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not stage " + aliases.size() + " aliases, querying with the alias list", e);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the given stage, once the tokens of its last variant have been resolved. Accepts <code>null</code>, for a
+     * send without a staged alias list.
+     */
+    public void variantResolved(AliasStage stage) {
+        if (stage == null || !stage.variantResolved()) {
+            return;
+        }
+        try {
+            aliasStagingService.unstage(stage.getId());
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not remove the staged aliases " + stage.getId(), e);
+        }
+    }
+
+    private void cleanUpWhenDue() {
+        final long last = lastCleanup.get();
+        final long now = System.currentTimeMillis();
+        if (now - last < CLEANUP_INTERVAL_MILLIS || !lastCleanup.compareAndSet(last, now)) {
+            return;
+        }
+        try {
+            final int deleted = aliasStagingService.deleteStagedBefore(MAX_AGE_MILLIS);
+            logger.log(Level.FINE, "Deleted " + deleted + " stale staged aliases");
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not delete the stale staged aliases", e);
+        }
+    }
+}
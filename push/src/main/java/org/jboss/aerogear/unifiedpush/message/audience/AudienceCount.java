@@ -0,0 +1,46 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.audience;
+
+import java.util.List;
+
+/**
+ * The result of a dry run: the number of devices per variant, that a send with the counted criteria would go to.
+ */
+public class AudienceCount {
+
+    private final List<VariantAudience> variants;
+
+    public AudienceCount(List<VariantAudience> variants) {
+        this.variants = variants;
+    }
+
+    public List<VariantAudience> getVariants() {
+        return variants;
+    }
+
+    /**
+     * The number of devices of all variants.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (VariantAudience variant : variants) {
+            total += variant.getDevices();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.audience;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.message.SendCriteria;
+import org.jboss.aerogear.unifiedpush.message.alias.AliasStage;
+import org.jboss.aerogear.unifiedpush.message.alias.AliasStaging;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates the criteria of a message, like a send would, but only counts the matching installations of each variant:
+ * no token is loaded. A large alias list is staged like for a send.
+ *
+ * Unlike a send, only the variants of the given push application are counted.
+ */
+@ApplicationScoped
+public class AudienceCounter {
+
+    @Inject
+    private ClientInstallationService clientInstallationService;
+    @Inject
+    private AliasStaging aliasStaging;
+
+    public AudienceCount count(PushApplication pushApplication, SendCriteria criteria) {
+        final List<Variant> variants = new ArrayList<Variant>();
+        for (Variant variant : pushApplication.getVariants()) {
+            if (criteria.getVariants() == null || criteria.getVariants().contains(variant.getVariantID())) {
+                variants.add(variant);
+            }
+        }
+
+        final List<String> aliases = criteria.getAliases();
+        final AliasStage aliasStage = aliasStaging.isLarge(aliases, variants) && !variants.isEmpty() ? aliasStaging.stage(aliases, variants.size()) : null;
+
+        final List<VariantAudience> counts = new ArrayList<VariantAudience>(variants.size());
+        for (Variant variant : variants) {
+            final long devices;
+            try {
+                devices = aliasStage == null
+                        ? clientInstallationService.countDeviceTokensForVariantIDByCriteria(variant.getVariantID(), criteria.getCategories(), aliases, criteria.getDeviceTypes())
+                        : clientInstallationService.countDeviceTokensForVariantIDByStagedAliases(variant.getVariantID(), criteria.getCategories(), aliasStage.getId(), criteria.getDeviceTypes());
+            } finally {
+                aliasStaging.variantResolved(aliasStage);
+            }
+            counts.add(new VariantAudience(variant.getVariantID(), variant.getName(), variant.getType().getTypeName(), devices));
+        }
+        return new AudienceCount(counts);
+    }
+}
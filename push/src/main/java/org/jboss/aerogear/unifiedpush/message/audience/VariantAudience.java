@@ -0,0 +1,51 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.audience;
+
+/**
+ * The number of devices of a single variant, that a send with the counted criteria would go to.
+ */
+public class VariantAudience {
+
+    private final String variantID;
+    private final String name;
+    private final String type;
+    private final long devices;
+
+    public VariantAudience(String variantID, String name, String type, long devices) {
+        this.variantID = variantID;
+        this.name = name;
+        this.type = type;
+        this.devices = devices;
+    }
+
+    public String getVariantID() {
+        return variantID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getDevices() {
+        return devices;
+    }
+}
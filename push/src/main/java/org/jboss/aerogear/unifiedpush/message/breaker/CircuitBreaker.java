@@ -0,0 +1,203 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.breaker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Circuit breaker for a push network or a single credential. Opens after a run of consecutive failures, parks the
+ * batches while open and lets a single probe through once the open period is over (half-open). A successful probe
+ * closes the breaker and releases the parked batches, a failed probe opens it again.
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final int holdingCapacity;
+
+    private final Deque<Runnable> parked = new ArrayDeque<Runnable>();
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long probeStartedAt;
+    private boolean probeScheduled;
+
+    private long opens;
+    private long parkedBatches;
+    private long rejectedBatches;
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, int holdingCapacity) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.holdingCapacity = holdingCapacity;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * Returns true if {@link #allowRequest(long)} would let a batch through now, without starting a probe.
+     */
+    synchronized boolean wouldAllow(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return now - openedAt >= openMillis;
+            default:
+                return !probeInFlight || now - probeStartedAt >= openMillis;
+        }
+    }
+
+    /**
+     * Returns true if a batch may be sent now. Once the open period is over, a single batch is let through as probe;
+     * if its outcome is not reported within another open period, the next batch becomes the probe.
+     */
+    synchronized boolean allowRequest(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                startProbe(now);
+                return true;
+            default:
+                if (probeInFlight && now - probeStartedAt < openMillis) {
+                    return false;
+                }
+                startProbe(now);
+                return true;
+        }
+    }
+
+    /**
+     * Gives up the probe started by {@link #allowRequest(long)}, as the batch has not been sent after all.
+     */
+    synchronized void cancelProbe() {
+        probeInFlight = false;
+    }
+
+    /**
+     * Closes the breaker, returns the parked batches that can be sent now.
+     */
+    synchronized List<Runnable> recordSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.CLOSED) {
+            return Collections.emptyList();
+        }
+        state = State.CLOSED;
+        probeInFlight = false;
+        return drain();
+    }
+
+    /**
+     * Counts a failure, returns true if the breaker has been opened and a probe has to be scheduled.
+     */
+    synchronized boolean recordFailure(long now) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = now;
+            probeInFlight = false;
+            opens++;
+            return needsProbe();
+        }
+        return false;
+    }
+
+    /**
+     * Parks the given batch until the breaker closes, returns false if the holding queue is full.
+     */
+    synchronized boolean park(Runnable batch) {
+        if (parked.size() >= holdingCapacity) {
+            rejectedBatches++;
+            return false;
+        }
+        parked.add(batch);
+        parkedBatches++;
+        return true;
+    }
+
+    /**
+     * Returns the parked batches, if the breaker has been closed in the meantime.
+     */
+    synchronized List<Runnable> drainIfClosed() {
+        return state == State.CLOSED ? drain() : Collections.<Runnable>emptyList();
+    }
+
+    /**
+     * Takes the next parked batch as probe, or returns <code>null</code> if there is nothing to probe with.
+     */
+    synchronized Runnable takeProbe(long now) {
+        probeScheduled = false;
+        if (state == State.CLOSED || parked.isEmpty() || (state == State.HALF_OPEN && probeInFlight && now - probeStartedAt < openMillis)) {
+            return null;
+        }
+        state = State.HALF_OPEN;
+        startProbe(now);
+        return parked.poll();
+    }
+
+    /**
+     * Returns true, if parked batches are waiting for a probe, and marks the probe as scheduled.
+     */
+    synchronized boolean needsProbe() {
+        if (state == State.CLOSED || parked.isEmpty() || probeScheduled) {
+            return false;
+        }
+        probeScheduled = true;
+        return true;
+    }
+
+    synchronized CircuitBreakerSummary summarize() {
+        return new CircuitBreakerSummary(name, state.name(), consecutiveFailures, opens, parked.size(), parkedBatches, rejectedBatches);
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void startProbe(long now) {
+        probeInFlight = true;
+        probeStartedAt = now;
+    }
+
+    private List<Runnable> drain() {
+        final List<Runnable> batches = new ArrayList<Runnable>(parked);
+        parked.clear();
+        return batches;
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.breaker;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.ChromePackagedAppVariant;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.api.iOSVariant;
+import org.jboss.aerogear.unifiedpush.message.retry.RetryScheduler;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breakers per push network and per credential (Google API key, APNs certificate, Chrome client ID).
+ * Transient failures count against both breakers of a variant, permanent failures (e.g. a rejected API key) only
+ * against the breaker of the credential.
+ *
+ * Configured with the system properties <code>aerogear.breaker.failureThreshold</code> (consecutive failures, default: 5),
+ * <code>aerogear.breaker.openMillis</code> (default: 30000) and <code>aerogear.breaker.holdingCapacity</code>
+ * (parked batches per breaker, default: 1000).
+ *
+ * Parked batches are run on the scheduler thread, once they are released or taken as probe: they are expected to hand
+ * their work to the send lanes, instead of sending right away.
+ */
+@ApplicationScoped
+public class CircuitBreakerRegistry implements CircuitBreakerMXBean {
+
+    static final String OBJECT_NAME = "org.jboss.aerogear.unifiedpush:type=CircuitBreakers";
+
+    private final Logger logger = Logger.getLogger(CircuitBreakerRegistry.class.getName());
+
+    private final int failureThreshold = Integer.getInteger("aerogear.breaker.failureThreshold", 5);
+    private final long openMillis = Long.getLong("aerogear.breaker.openMillis", 30000);
+    private final int holdingCapacity = Integer.getInteger("aerogear.breaker.holdingCapacity", 1000);
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    @Inject
+    private RetryScheduler retryScheduler;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+
+    @PostConstruct
+    public void registerMBean() {
+        pushMetrics.register(this, OBJECT_NAME);
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        pushMetrics.unregister(OBJECT_NAME);
+    }
+
+    /**
+     * Returns true if a batch for the given variant may be sent now. Both breakers are checked before either of them
+     * starts a probe, so a probe is not started for a batch, that the other breaker holds back.
+     */
+    public boolean allowRequest(Variant variant) {
+        final long now = System.currentTimeMillis();
+        final CircuitBreaker network = networkBreaker(variant);
+        final CircuitBreaker credential = credentialBreaker(variant);
+        if (!network.wouldAllow(now) || !credential.wouldAllow(now)) {
+            return false;
+        }
+        if (!network.allowRequest(now)) {
+            return false;
+        }
+        if (!credential.allowRequest(now)) {
+            // taken by a concurrent request in between:
+            network.cancelProbe();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parks the given batch at the open breaker of the variant, until it is closed again. Returns false if the holding
+     * queue is full.
+     */
+    public boolean park(Variant variant, Runnable batch) {
+        final CircuitBreaker network = networkBreaker(variant);
+        final CircuitBreaker breaker = network.getState() != CircuitBreaker.State.CLOSED ? network : credentialBreaker(variant);
+        if (!breaker.park(batch)) {
+            return false;
+        }
+        // closed in the meantime?
+        release(breaker.drainIfClosed());
+        scheduleProbeIfNeeded(breaker);
+        return true;
+    }
+
+    public void recordSuccess(Variant variant) {
+        release(networkBreaker(variant).recordSuccess());
+        release(credentialBreaker(variant).recordSuccess());
+    }
+
+    /**
+     * @param transientFailure true for I/O errors and unavailable networks, false for permanent rejections
+     */
+    public void recordFailure(Variant variant, boolean transientFailure) {
+        final long now = System.currentTimeMillis();
+        if (transientFailure) {
+            recordFailure(networkBreaker(variant), now);
+        }
+        recordFailure(credentialBreaker(variant), now);
+    }
+
+    @Override
+    public List<CircuitBreakerSummary> getBreakers() {
+        final List<CircuitBreakerSummary> summaries = new ArrayList<CircuitBreakerSummary>();
+        for (CircuitBreaker breaker : breakers.values()) {
+            summaries.add(breaker.summarize());
+        }
+        Collections.sort(summaries, new Comparator<CircuitBreakerSummary>() {
+            @Override
+            public int compare(CircuitBreakerSummary first, CircuitBreakerSummary second) {
+                return first.getName().compareTo(second.getName());
+            }
+        });
+        return summaries;
+    }
+
+    @Override
+    public int getOpenBreakers() {
+        int open = 0;
+        for (CircuitBreaker breaker : breakers.values()) {
+            if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    private void recordFailure(CircuitBreaker breaker, long now) {
+        if (breaker.recordFailure(now)) {
+            retryScheduler.schedule(new Probe(breaker), breaker.getOpenMillis());
+        }
+        if (breaker.getState() == CircuitBreaker.State.OPEN) {
+            logger.log(Level.FINE, "Circuit breaker " + breaker.getName() + " is open");
+        }
+    }
+
+    private void scheduleProbeIfNeeded(CircuitBreaker breaker) {
+        if (breaker.needsProbe()) {
+            retryScheduler.schedule(new Probe(breaker), breaker.getOpenMillis());
+        }
+    }
+
+    /**
+     * Hands the released batches to the scheduler, so that they do not run on the thread that reported the success.
+     */
+    private void release(List<Runnable> batches) {
+        for (Runnable batch : batches) {
+            retryScheduler.schedule(batch, 0);
+        }
+    }
+
+    private CircuitBreaker networkBreaker(Variant variant) {
+        return breakerFor(variant.getType().getTypeName());
+    }
+
+    private CircuitBreaker credentialBreaker(Variant variant) {
+        return breakerFor(variant.getType().getTypeName() + "/" + Integer.toHexString(credentialHashOf(variant)));
+    }
+
+    private CircuitBreaker breakerFor(String name) {
+        CircuitBreaker breaker = breakers.get(name);
+        if (breaker == null) {
+            final CircuitBreaker created = new CircuitBreaker(name, failureThreshold, openMillis, holdingCapacity);
+            breaker = breakers.putIfAbsent(name, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Identifies the credential of the variant, without keeping the secret itself around.
+     */
+    private static int credentialHashOf(Variant variant) {
+        if (variant instanceof AndroidVariant) {
+            return String.valueOf(((AndroidVariant) variant).getGoogleKey()).hashCode();
+        } else if (variant instanceof iOSVariant) {
+            return Arrays.hashCode(((iOSVariant) variant).getCertificate());
+        } else if (variant instanceof ChromePackagedAppVariant) {
+            return String.valueOf(((ChromePackagedAppVariant) variant).getClientId()).hashCode();
+        }
+        return variant.getVariantID().hashCode();
+    }
+
+    /**
+     * Sends one parked batch as probe, and schedules the next probe while the breaker stays open.
+     */
+    private final class Probe implements Runnable {
+
+        private final CircuitBreaker breaker;
+
+        private Probe(CircuitBreaker breaker) {
+            this.breaker = breaker;
+        }
+
+        @Override
+        public void run() {
+            final Runnable batch = breaker.takeProbe(System.currentTimeMillis());
+            if (batch != null) {
+                logger.log(Level.INFO, "Probing circuit breaker " + breaker.getName());
+                batch.run();
+            }
+            scheduleProbeIfNeeded(breaker);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.breaker;
+
+/**
+ * State and counters of a single circuit breaker.
+ */
+public class CircuitBreakerSummary {
+
+    private final String name;
+    private final String state;
+    private final int consecutiveFailures;
+    private final long opens;
+    private final int parked;
+    private final long parkedBatches;
+    private final long rejectedBatches;
+
+    public CircuitBreakerSummary(String name, String state, int consecutiveFailures, long opens, int parked,
+                                 long parkedBatches, long rejectedBatches) {
+        this.name = name;
+        this.state = state;
+        this.consecutiveFailures = consecutiveFailures;
+        this.opens = opens;
+        this.parked = parked;
+        this.parkedBatches = parkedBatches;
+        this.rejectedBatches = rejectedBatches;
+    }
+
+    /**
+     * The push network, or the push network and a hash of the credential, e.g. <code>android/1f3a2b</code>.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <code>CLOSED</code>, <code>OPEN</code> or <code>HALF_OPEN</code>.
+     */
+    public String getState() {
+        return state;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * How often the breaker has been opened.
+     */
+    public long getOpens() {
+        return opens;
+    }
+
+    /**
+     * Number of batches, that are currently parked.
+     */
+    public int getParked() {
+        return parked;
+    }
+
+    /**
+     * Number of batches, that have been parked in total.
+     */
+    public long getParkedBatches() {
+        return parkedBatches;
+    }
+
+    /**
+     * Number of batches, that could not be parked, as the holding queue was full.
+     */
+    public long getRejectedBatches() {
+        return rejectedBatches;
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.cluster;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnitState;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobRegistry;
+import org.jboss.aerogear.unifiedpush.message.outbox.Outbox;
+import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.cluster.SendWorkUnitService;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Splits large sends into work units, that are sent by all nodes of the cluster (see {@link WorkUnitPoller}). The
+ * enabled installations of a variant are split into ranges of installation IDs, and each range is stored as a
+ * {@link SendWorkUnit} in the shared database. The node, that processes the message, tracks the completion of its
+ * units for the send job, and removes them once all are completed.
+ *
+ * Sends to aliases are never split, as they are targeting a few installations only. Configured by the system
+ * properties:
+ *
+ * <ul>
+ *     <li><code>aerogear.cluster.enabled</code> (default: false)</li>
+ *     <li><code>aerogear.cluster.unitSize</code>, the installations per unit; smaller variants are not split (default: 100000)</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class WorkUnitCoordinator {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("aerogear.cluster.enabled", "false"));
+    private static final int UNIT_SIZE = Integer.getInteger("aerogear.cluster.unitSize", 100000);
+
+    private final Logger logger = Logger.getLogger(WorkUnitCoordinator.class.getName());
+
+    private final Set<String> coordinatedJobs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Inject
+    private SendWorkUnitService workUnits;
+    @Inject
+    private ClientInstallationService clientInstallationService;
+    @Inject
+    private SendJobRegistry sendJobs;
+    @Inject
+    private Outbox outbox;
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public int getUnitSize() {
+        return UNIT_SIZE;
+    }
+
+    /**
+     * Stores the work units for the given variant, if it is large enough to be split. Returns whether the variant is
+     * sent in work units, instead of by the calling node alone.
+     */
+    public boolean partition(Variant variant, UnifiedPushMessage message, PushMessageInformation pushMessageInformation) {
+        final List<String> aliases = message.getSendCriteria().getAliases();
+        if (!ENABLED || message.getRawMessage() == null || (aliases != null && !aliases.isEmpty())) {
+            return false;
+        }
+
+        final String jobId = pushMessageInformation.getId();
+        // the units of a resumed send have been stored before the restart:
+        if (outbox.isResumed(jobId)) {
+            int units = 0;
+            for (SendWorkUnit unit : workUnits.findAllForPushMessage(jobId)) {
+                if (unit.getVariantID().equals(variant.getVariantID())) {
+                    units++;
+                }
+            }
+            if (units > 0) {
+                coordinate(jobId, variant.getVariantID(), units);
+                return true;
+            }
+        }
+
+        final List<String> boundaries = clientInstallationService.findInstallationIdBoundariesForVariantID(variant.getVariantID(), UNIT_SIZE);
+        if (boundaries.isEmpty()) {
+            return false;
+        }
+
+        final SendWorkUnit template = new SendWorkUnit();
+        template.setPushMessageInformationId(jobId);
+        template.setPushApplicationId(pushMessageInformation.getPushApplicationId());
+        template.setVariantID(variant.getVariantID());
+        template.setRawJsonMessage(message.getRawMessage());
+        template.setIpAddress(message.getIpAddress());
+        template.setClientIdentifier(message.getClientIdentifier());
+        if (message.getDeliverAt() > 0) {
+            template.setNotBefore(new Date(message.getDeliverAt()));
+        }
+
+        final int units = workUnits.createUnits(template, boundaries);
+        logger.log(Level.INFO, String.format("Split send %s to variant %s into %d work units", jobId, variant.getVariantID(), units));
+        coordinate(jobId, variant.getVariantID(), units);
+        return true;
+    }
+
+    private void coordinate(String jobId, String variantID, int units) {
+        coordinatedJobs.add(jobId);
+        sendJobs.variantPartitioned(jobId, variantID, units);
+    }
+
+    /**
+     * Reports the completed units of the coordinated send jobs, and removes the units of the jobs, whose units are
+     * all completed.
+     */
+    public void refresh() {
+        for (String jobId : coordinatedJobs) {
+            // completed units and tokens, per variant:
+            final Map<String, int[]> progress = new LinkedHashMap<String, int[]>();
+            boolean completed = true;
+            for (SendWorkUnit unit : workUnits.findAllForPushMessage(jobId)) {
+                int[] counts = progress.get(unit.getVariantID());
+                if (counts == null) {
+                    counts = new int[2];
+                    progress.put(unit.getVariantID(), counts);
+                }
+                if (unit.getState() == SendWorkUnitState.COMPLETED) {
+                    counts[0]++;
+                } else {
+                    completed = false;
+                }
+                counts[1] += (int) unit.getTokens();
+            }
+
+            for (Map.Entry<String, int[]> entry : progress.entrySet()) {
+                sendJobs.unitsCompleted(jobId, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+            if (completed) {
+                workUnits.deleteAllForPushMessage(jobId);
+                coordinatedJobs.remove(jobId);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.cluster;
+
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
+import org.jboss.aerogear.unifiedpush.message.SenderService;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.dispatch.SendDispatcher;
+import org.jboss.aerogear.unifiedpush.message.outbox.Outbox;
+import org.jboss.aerogear.unifiedpush.service.cluster.SendWorkUnitService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls the shared database for work units, on every node of the cluster. Claimed units are queued on the lane of
+ * their message's priority, and processed by {@link SenderService#sendWorkUnit(SendWorkUnit, UnifiedPushMessage)}.
+ * A unit is charged with its full size against the fair share of its push application, so it may wait in the lane for
+ * longer than its lease: the lease is renewed once the unit is taken from the lane.
+ * Configured by the system properties:
+ *
+ * <ul>
+ *     <li><code>aerogear.cluster.pollMillis</code> (default: 2000)</li>
+ *     <li><code>aerogear.cluster.maxUnitsPerNode</code>, the units a node works on at the same time (default: 2)</li>
+ * </ul>
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class WorkUnitPoller {
+
+    private static final long POLL_MILLIS = Long.getLong("aerogear.cluster.pollMillis", 2000);
+    private static final int MAX_UNITS = Integer.getInteger("aerogear.cluster.maxUnitsPerNode", 2);
+
+    private final Logger logger = Logger.getLogger(WorkUnitPoller.class.getName());
+
+    private final AtomicInteger runningUnits = new AtomicInteger();
+
+    @Resource
+    private TimerService timerService;
+    @Inject
+    private WorkUnitCoordinator coordinator;
+    @Inject
+    private SendWorkUnitService workUnits;
+    @Inject
+    private SendDispatcher sendDispatcher;
+    @Inject
+    private SenderService senderService;
+    @Inject
+    private Outbox outbox;
+
+    @PostConstruct
+    public void startPolling() {
+        if (coordinator.isEnabled()) {
+            logger.log(Level.INFO, "Polling for work units as node " + workUnits.getNodeId());
+            timerService.createIntervalTimer(POLL_MILLIS, POLL_MILLIS, new TimerConfig(null, false));
+        }
+    }
+
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void poll() {
+        try {
+            coordinator.refresh();
+            claimUnits();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Polling for work units failed", e);
+        }
+    }
+
+    private void claimUnits() {
+        final int free = MAX_UNITS - runningUnits.get();
+        if (free <= 0) {
+            return;
+        }
+
+        // other nodes are competing for the same units, some claims may fail:
+        final List<String> ids = workUnits.findClaimableIds(free);
+        for (String id : ids) {
+            final SendWorkUnit unit = workUnits.claim(id);
+            if (unit != null) {
+                dispatch(unit);
+            }
+        }
+    }
+
+    private void dispatch(final SendWorkUnit unit) {
+        final UnifiedPushMessage message;
+        try {
+            message = new UnifiedPushMessage(outbox.parse(unit.getRawJsonMessage()));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Dropping work unit " + unit.getId() + ", its message could not be read", e);
+            workUnits.complete(unit, unit.getTokens());
+            return;
+        }
+        message.setIpAddress(unit.getIpAddress());
+        message.setClientIdentifier(unit.getClientIdentifier());
+        message.setJobId(unit.getPushMessageInformationId());
+        message.setRawMessage(unit.getRawJsonMessage());
+
+        runningUnits.incrementAndGet();
+        sendDispatcher.dispatchBatch(message, unit.getPushApplicationId(), coordinator.getUnitSize(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (workUnits.renew(unit)) {
+                        senderService.sendWorkUnit(unit, message);
+                    } else {
+                        logger.log(Level.WARNING, "Lost the lease of work unit " + unit.getId() + " while it was queued");
+                    }
+                } finally {
+                    runningUnits.decrementAndGet();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive limit on the number of admitted, but not yet processed, messages of a lane. The limit follows the
+ * gradient between the latency of the lane without load and the recent (smoothed) latency: as long as messages are
+ * processed about as fast as without load, the limit grows; once they start to queue up, it shrinks, down to
+ * <code>minLimit</code>.
+ */
+final class AdmissionLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double LATENCY_SMOOTHING = 0.1;
+    // the latency without load is learned again after this number of samples, to follow a changing environment:
+    private static final int RELEARN_INTERVAL = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private double limit;
+    private int inFlight;
+    private double smoothedLatency;
+    private long noLoadLatency = Long.MAX_VALUE;
+    private int samples;
+    private long limited;
+
+    /**
+     * @param tolerance factor by which the latency may exceed the latency without load, before the limit shrinks.
+     */
+    AdmissionLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    /**
+     * Admits up to the given number of messages in one step, returns the number of admitted messages.
+     */
+    synchronized int tryAcquire(int permits) {
+        final int admitted = Math.max(0, Math.min(permits, (int) limit - inFlight));
+        inFlight += admitted;
+        limited += permits - admitted;
+        return admitted;
+    }
+
+    /**
+     * Releases the given number of admitted messages, that have not been processed.
+     */
+    synchronized void releaseUnprocessed(int permits) {
+        inFlight -= permits;
+    }
+
+    /**
+     * Releases an admitted message, and adjusts the limit with the latency from its admission until it was processed.
+     */
+    synchronized void release(long latencyNanos) {
+        final int admitted = inFlight;
+        inFlight--;
+
+        smoothedLatency = smoothedLatency == 0 ? latencyNanos : smoothedLatency * (1 - LATENCY_SMOOTHING) + latencyNanos * LATENCY_SMOOTHING;
+        noLoadLatency = Math.min(noLoadLatency, Math.max(1, latencyNanos));
+        if (++samples % RELEARN_INTERVAL == 0) {
+            noLoadLatency = Math.max(1, (long) smoothedLatency);
+        }
+
+        final double gradient = Math.max(0.5, Math.min(1.0, tolerance * noLoadLatency / smoothedLatency));
+        final double newLimit = limit * gradient + Math.sqrt(limit);
+        if (newLimit > limit && admitted < limit / 2) {
+            // the lane is not busy, this sample says nothing about a higher limit:
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized long getLimited() {
+        return limited;
+    }
+
+    /**
+     * Seconds a rejected sender should wait: the recent latency of the lane, at least one second.
+     */
+    synchronized long retryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(smoothedLatency / TimeUnit.SECONDS.toNanos(1)));
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Share of the dispatch lanes per push application. Defaults to 1, unless configured with the
+ * <code>aerogear.fairness.weight.&lt;pushApplicationID&gt;</code> system property, or changed at runtime.
+ */
+final class ApplicationWeights {
+
+    static final String PROPERTY_PREFIX = "aerogear.fairness.weight.";
+
+    private final ConcurrentMap<String, Integer> weights = new ConcurrentHashMap<String, Integer>();
+
+    int weightOf(String pushApplicationID) {
+        final Integer weight = weights.get(pushApplicationID);
+        if (weight != null) {
+            return weight;
+        }
+        return Math.max(1, Integer.getInteger(PROPERTY_PREFIX + pushApplicationID, 1));
+    }
+
+    void setWeight(String pushApplicationID, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("The weight must be at least 1");
+        }
+        weights.put(pushApplicationID, weight);
+    }
+
+    /**
+     * The weights that have been changed at runtime.
+     */
+    Map<String, Integer> overrides() {
+        return new TreeMap<String, Integer>(weights);
+    }
+}
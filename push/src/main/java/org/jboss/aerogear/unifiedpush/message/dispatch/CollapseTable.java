@@ -0,0 +1,84 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The queued messages, that carry a collapse key: a newer message for the same key takes the place of the queued one,
+ * instead of being queued behind it.
+ */
+final class CollapseTable {
+
+    /**
+     * The place of a message in the lane queue, holding the latest message for its key until a worker takes it.
+     */
+    static final class Slot {
+        private UnifiedPushMessage message;
+        private String key;
+        private boolean taken;
+
+        Slot(UnifiedPushMessage message) {
+            this.message = message;
+        }
+    }
+
+    private final Map<String, Slot> queued = new HashMap<String, Slot>();
+
+    /**
+     * Makes the given slot, which has been queued, replaceable under the given key. Does nothing if a worker has taken
+     * it already.
+     */
+    synchronized void register(String key, Slot slot) {
+        if (!slot.taken) {
+            slot.key = key;
+            queued.put(key, slot);
+        }
+    }
+
+    /**
+     * Puts the given message in the place of the queued message with the same key. Returns the replaced message, or
+     * <code>null</code> if there is none, and the given message has to be queued.
+     */
+    synchronized UnifiedPushMessage replace(String key, UnifiedPushMessage message) {
+        final Slot slot = queued.get(key);
+        if (slot == null) {
+            return null;
+        }
+        final UnifiedPushMessage replaced = slot.message;
+        slot.message = message;
+        return replaced;
+    }
+
+    /**
+     * Takes the latest message of the given slot, which can not be replaced anymore.
+     */
+    synchronized UnifiedPushMessage take(Slot slot) {
+        slot.taken = true;
+        if (slot.key != null && queued.get(slot.key) == slot) {
+            queued.remove(slot.key);
+        }
+        return slot.message;
+    }
+
+    synchronized int size() {
+        return queued.size();
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Deficit round-robin over the tasks of the different push applications: every application has its own queue (flow),
+ * and on its turn a flow is credited with <code>quantum * weight</code>, which it spends on the cost of its tasks (the
+ * number of tokens of a batch). A broadcast of one application can therefore only take its share of the workers, while
+ * the other applications keep being served.
+ *
+ * In addition, a flow with <code>maxInFlight</code> running tasks is skipped, until one of its tasks is {@link #done(Task) done}.
+ *
+ * The tasks of a flow are taken earliest deadline first (tasks with the same deadline in the order they were offered), so
+ * a message with a short time to live is not stuck behind the batches of a broadcast that may wait.
+ */
+final class FairQueue {
+
+    /**
+     * A queued unit of work, charged with its cost against the flow of its push application.
+     */
+    static final class Task implements Comparable<Task> {
+        private final String key;
+        private final int cost;
+        private final boolean bounded;
+        private final long deadline;
+        private final long sequence;
+        private final Runnable work;
+
+        private Task(String key, int cost, boolean bounded, long deadline, long sequence, Runnable work) {
+            this.key = key;
+            this.cost = cost;
+            this.bounded = bounded;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.work = work;
+        }
+
+        Runnable getWork() {
+            return work;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (deadline != other.deadline) {
+                return deadline < other.deadline ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private static final class Flow {
+        private final PriorityQueue<Task> tasks = new PriorityQueue<Task>();
+        private long deficit;
+        private int inFlight;
+    }
+
+    private final int quantum;
+    private final int maxInFlight;
+    private final int capacity;
+    private final ApplicationWeights weights;
+
+    private final Map<String, Flow> flows = new HashMap<String, Flow>();
+    private final Deque<Flow> active = new ArrayDeque<Flow>();
+    private long sequence;
+    private int queued;
+    private int boundedQueued;
+    private boolean closed;
+
+    FairQueue(int quantum, int maxInFlight, int capacity, ApplicationWeights weights) {
+        this.quantum = quantum;
+        this.maxInFlight = maxInFlight;
+        this.capacity = capacity;
+        this.weights = weights;
+    }
+
+    /**
+     * Queues the given work for the given push application. Bounded tasks (new messages) are rejected once
+     * <code>capacity</code> of them are waiting, unbounded tasks (batches of already accepted messages) are always queued.
+     * The deadline is the time (in milliseconds since the epoch) the work expires, {@link Long#MAX_VALUE} if it does not.
+     */
+    synchronized boolean offer(String key, int cost, boolean bounded, long deadline, Runnable work) {
+        return offerAll(key, cost, bounded, new long[] {deadline}, Collections.singletonList(work)) == 1;
+    }
+
+    /**
+     * Queues the given work items for the given push application at once, each with the given cost and the deadline
+     * at the same index. Bounded tasks are queued up to the <code>capacity</code>, returns the number of queued items:
+     * the first ones of the given list.
+     */
+    synchronized int offerAll(String key, int cost, boolean bounded, long[] deadlines, List<Runnable> works) {
+        if (closed) {
+            return 0;
+        }
+        final int count = bounded ? Math.max(0, Math.min(works.size(), capacity - boundedQueued)) : works.size();
+        if (count == 0) {
+            return 0;
+        }
+        Flow flow = flows.get(key);
+        if (flow == null) {
+            flow = new Flow();
+            flows.put(key, flow);
+        }
+        if (flow.tasks.isEmpty()) {
+            active.addLast(flow);
+        }
+        for (int i = 0; i < count; i++) {
+            flow.tasks.add(new Task(key, Math.max(1, cost), bounded, deadlines[i], sequence++, works.get(i)));
+        }
+        queued += count;
+        if (bounded) {
+            boundedQueued += count;
+        }
+        notifyAll();
+        return count;
+    }
+
+    /**
+     * Blocks until a task may run, returns <code>null</code> once the queue has been closed.
+     */
+    synchronized Task take() throws InterruptedException {
+        while (!closed) {
+            final Task task = next();
+            if (task != null) {
+                return task;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    /**
+     * Releases the in-flight slot of the given task.
+     */
+    synchronized void done(Task task) {
+        final Flow flow = flows.get(task.key);
+        flow.inFlight--;
+        if (flow.inFlight == 0 && flow.tasks.isEmpty()) {
+            flows.remove(task.key);
+        }
+        notifyAll();
+    }
+
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    synchronized int size() {
+        return queued;
+    }
+
+    /**
+     * Number of push applications with queued or running tasks.
+     */
+    synchronized int flows() {
+        return flows.size();
+    }
+
+    private Task next() {
+        int skipped = 0;
+        while (!active.isEmpty() && skipped < active.size()) {
+            final Flow flow = active.peekFirst();
+            if (flow.inFlight >= maxInFlight) {
+                // the application is already using its share of the workers:
+                active.addLast(active.pollFirst());
+                skipped++;
+                continue;
+            }
+
+            final Task head = flow.tasks.peek();
+            if (head.cost <= flow.deficit) {
+                flow.deficit -= head.cost;
+                flow.tasks.poll();
+                flow.inFlight++;
+                queued--;
+                if (head.bounded) {
+                    boundedQueued--;
+                }
+                if (flow.tasks.isEmpty()) {
+                    // an idle flow does not save up credit:
+                    flow.deficit = 0;
+                    active.pollFirst();
+                }
+                return head;
+            }
+
+            // the turn is over, credit the flow for its next one:
+            flow.deficit += (long) quantum * weights.weightOf(head.key);
+            active.addLast(active.pollFirst());
+            skipped = 0;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+/**
+ * Capacity and load of a single dispatch lane.
+ */
+public class LaneStatistics {
+
+    private final String priority;
+    private final int threads;
+    private final int queueCapacity;
+    private final int queued;
+    private final int active;
+    private final long completed;
+    private final long rejected;
+    private final int applications;
+    private final int concurrencyLimit;
+    private final int admitted;
+    private final long limited;
+
+    public LaneStatistics(String priority, int threads, int queueCapacity, int queued, int active, long completed, long rejected,
+                          int applications, int concurrencyLimit, int admitted, long limited) {
+        this.priority = priority;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.queued = queued;
+        this.active = active;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.applications = applications;
+        this.concurrencyLimit = concurrencyLimit;
+        this.admitted = admitted;
+        this.limited = limited;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Number of messages and token batches, waiting for a worker of this lane.
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Number of messages and token batches, currently processed by this lane.
+     */
+    public int getActive() {
+        return active;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Number of messages, that were rejected as the queue was full.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Number of push applications, with queued or running work on this lane.
+     */
+    public int getApplications() {
+        return applications;
+    }
+
+    /**
+     * Current adaptive limit of admitted messages.
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Number of messages, admitted but not yet processed.
+     */
+    public int getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * Number of messages, that were refused as the concurrency limit was reached.
+     */
+    public long getLimited() {
+        return limited;
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.message.Priority;
+import org.jboss.aerogear.unifiedpush.message.SenderService;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands the submitted push messages to the {@link SenderService}, on a separate lane per {@link Priority}: each lane has
+ * its own queue and workers, so a high priority message to a single alias does not wait for a broadcast to drain.
+ *
+ * The lanes are sized by system properties, e.g. <code>aerogear.lane.high.threads</code> (default: 4) and
+ * <code>aerogear.lane.high.queueCapacity</code> (default: 10000), <code>aerogear.lane.normal.threads</code> (default: 8)
+ * and <code>aerogear.lane.normal.queueCapacity</code> (default: 1000).
+ *
+ * Within a lane, the push applications are served in weighted fair order (see {@link FairQueue}): the tokens of a variant
+ * are split into batches of <code>aerogear.fairness.batchSize</code> (default: 5000) tokens, and every application may
+ * send <code>aerogear.fairness.quantum</code> (default: the batch size) tokens times its weight per round. The work of
+ * an application is taken in the order of the deadlines, derived from the time to live of the messages.
+ *
+ * A message with a collapse key replaces the queued message of the same application, with the same key, priority and
+ * send criteria: the superseded message is not sent at all.
+ */
+@ApplicationScoped
+public class SendDispatcher implements SendDispatcherMXBean {
+
+    static final String OBJECT_NAME = "org.jboss.aerogear.unifiedpush:type=SendLanes";
+
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger("aerogear.fairness.batchSize", 5000));
+    private static final int QUANTUM = Math.max(1, Integer.getInteger("aerogear.fairness.quantum", BATCH_SIZE));
+
+    private final Map<Priority, SendLane> lanes = new EnumMap<Priority, SendLane>(Priority.class);
+    private final ApplicationWeights weights = new ApplicationWeights();
+    private final CollapseTable collapsible = new CollapseTable();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    @Inject
+    private SenderService senderService;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private SendJobRegistry sendJobs;
+
+    @PostConstruct
+    public void startLanes() {
+        lanes.put(Priority.HIGH, SendLane.fromSystemProperties(Priority.HIGH, 4, 10000, QUANTUM, weights));
+        lanes.put(Priority.NORMAL, SendLane.fromSystemProperties(Priority.NORMAL, 8, 1000, QUANTUM, weights));
+        pushMetrics.register(this, OBJECT_NAME);
+    }
+
+    @PreDestroy
+    public void stopLanes() {
+        pushMetrics.unregister(OBJECT_NAME);
+        for (SendLane lane : lanes.values()) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Queues the given message on the lane of its priority, unless the lane is at its concurrency limit or its queue
+     * is full. A message, that supersedes a queued one, takes its place and is always accepted.
+     */
+    public Admission dispatch(PushApplication pushApplication, UnifiedPushMessage message) {
+        return dispatchAll(pushApplication, Collections.singletonList(message)).get(0);
+    }
+
+    /**
+     * Queues the given messages of one push application, with one admission step per lane. Returns the admission of
+     * each message, in the given order: once a lane is at its concurrency limit or its queue is full, the remaining
+     * messages of that lane are not accepted.
+     */
+    public List<Admission> dispatchAll(final PushApplication pushApplication, List<UnifiedPushMessage> messages) {
+        final Admission[] admissions = new Admission[messages.size()];
+        final Map<Priority, List<Integer>> byLane = new EnumMap<Priority, List<Integer>>(Priority.class);
+        for (int i = 0; i < messages.size(); i++) {
+            final UnifiedPushMessage message = messages.get(i);
+            if (supersede(pushApplication, message)) {
+                admissions[i] = Admission.ACCEPTED;
+                continue;
+            }
+            List<Integer> indexes = byLane.get(message.getPriority());
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                byLane.put(message.getPriority(), indexes);
+            }
+            indexes.add(i);
+        }
+
+        for (Map.Entry<Priority, List<Integer>> lane : byLane.entrySet()) {
+            final List<Integer> indexes = lane.getValue();
+            final long[] deadlines = new long[indexes.size()];
+            final List<CollapseTable.Slot> slots = new ArrayList<CollapseTable.Slot>(indexes.size());
+            final List<Runnable> tasks = new ArrayList<Runnable>(indexes.size());
+            for (int i = 0; i < indexes.size(); i++) {
+                final UnifiedPushMessage message = messages.get(indexes.get(i));
+                final CollapseTable.Slot slot = new CollapseTable.Slot(message);
+                deadlines[i] = message.getDeadline();
+                slots.add(slot);
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        senderService.send(pushApplication, collapsible.take(slot));
+                    }
+                });
+                pushMetrics.messageQueued();
+            }
+
+            final Admission[] laneAdmissions = lanes.get(lane.getKey()).submitAll(pushApplication.getPushApplicationID(), deadlines, tasks);
+            for (int i = 0; i < indexes.size(); i++) {
+                admissions[indexes.get(i)] = laneAdmissions[i];
+                if (laneAdmissions[i] != Admission.ACCEPTED) {
+                    pushMetrics.messageRejected();
+                    continue;
+                }
+                final String collapseKey = collapseKeyOf(pushApplication, messages.get(indexes.get(i)));
+                if (collapseKey != null) {
+                    collapsible.register(collapseKey, slots.get(i));
+                }
+            }
+        }
+        return Arrays.asList(admissions);
+    }
+
+    /**
+     * Puts the given message in the place of a queued message with the same collapse key. Returns false if there is
+     * none, and the message has to be queued.
+     */
+    private boolean supersede(PushApplication pushApplication, UnifiedPushMessage message) {
+        final String collapseKey = collapseKeyOf(pushApplication, message);
+        if (collapseKey == null) {
+            return false;
+        }
+        final UnifiedPushMessage superseded = collapsible.replace(collapseKey, message);
+        if (superseded == null) {
+            return false;
+        }
+        collapsed.incrementAndGet();
+        sendJobs.superseded(superseded.getJobId(), message.getJobId());
+        return true;
+    }
+
+    /**
+     * Messages collapse, if they are sent by the same application on the same lane, to the same audience.
+     */
+    private static String collapseKeyOf(PushApplication pushApplication, UnifiedPushMessage message) {
+        if (message.getCollapseKey() == null) {
+            return null;
+        }
+        return pushApplication.getPushApplicationID() + ':' + message.getPriority() + ':' + message.getCollapseKey() + ':'
+                + message.getSendCriteria();
+    }
+
+    /**
+     * Queues a message, that has been accepted before a restart, without admission control.
+     */
+    public void resume(final PushApplication pushApplication, final UnifiedPushMessage message) {
+        pushMetrics.messageQueued();
+        lanes.get(message.getPriority()).submitBatch(pushApplication.getPushApplicationID(), 1, message.getDeadline(), new Runnable() {
+            @Override
+            public void run() {
+                senderService.send(pushApplication, message);
+            }
+        });
+    }
+
+    /**
+     * Seconds a sender, whose message was not accepted on the lane of the given priority, should wait.
+     */
+    public long getRetryAfterSeconds(Priority priority) {
+        return lanes.get(priority).retryAfterSeconds();
+    }
+
+    /**
+     * Queues a batch of tokens of an already accepted message behind the batches of the other push applications, and
+     * behind the batches of the same application, that expire earlier.
+     */
+    public void dispatchBatch(UnifiedPushMessage message, String pushApplicationID, int tokens, Runnable batch) {
+        lanes.get(message.getPriority()).submitBatch(pushApplicationID, tokens, message.getDeadline(), batch);
+    }
+
+    /**
+     * Maximum number of tokens per batch.
+     */
+    public int getBatchSize() {
+        return BATCH_SIZE;
+    }
+
+    @Override
+    public int getWeight(String pushApplicationID) {
+        return weights.weightOf(pushApplicationID);
+    }
+
+    @Override
+    public void setWeight(String pushApplicationID, int weight) {
+        weights.setWeight(pushApplicationID, weight);
+    }
+
+    @Override
+    public Map<String, Integer> getWeightOverrides() {
+        return weights.overrides();
+    }
+
+    @Override
+    public long getCollapsedMessages() {
+        return collapsed.get();
+    }
+
+    @Override
+    public List<LaneStatistics> getLanes() {
+        final List<LaneStatistics> statistics = new ArrayList<LaneStatistics>(lanes.size());
+        for (SendLane lane : lanes.values()) {
+            statistics.add(lane.statistics());
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view on the {@link SendDispatcher}, registered as <code>org.jboss.aerogear.unifiedpush:type=SendLanes</code>.
+ */
+public interface SendDispatcherMXBean {
+
+    List<LaneStatistics> getLanes();
+
+    /**
+     * Share of the given push application, relative to the other applications on the same lane.
+     */
+    int getWeight(String pushApplicationID);
+
+    void setWeight(String pushApplicationID, int weight);
+
+    /**
+     * The weights, that have been changed at runtime.
+     */
+    Map<String, Integer> getWeightOverrides();
+
+    /**
+     * Number of queued messages, that have been replaced by a newer message with the same collapse key.
+     */
+    long getCollapsedMessages();
+}
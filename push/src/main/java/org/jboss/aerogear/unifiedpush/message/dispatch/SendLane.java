@@ -0,0 +1,170 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import org.jboss.aerogear.unifiedpush.message.Priority;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded {@link FairQueue} and fixed number of workers for the messages of one {@link Priority}. New messages are
+ * admitted by an {@link AdmissionLimiter}, that adapts to the latency of the lane.
+ */
+final class SendLane {
+
+    private static final Logger logger = Logger.getLogger(SendLane.class.getName());
+
+    private final Priority priority;
+    private final int threads;
+    private final int queueCapacity;
+    private final FairQueue queue;
+    private final AdmissionLimiter admissionLimiter;
+    private final List<Thread> workers;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    SendLane(Priority priority, int threads, int queueCapacity, int quantum, int maxInFlight, ApplicationWeights weights,
+             AdmissionLimiter admissionLimiter) {
+        this.priority = priority;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.queue = new FairQueue(quantum, maxInFlight, queueCapacity, weights);
+        this.admissionLimiter = admissionLimiter;
+        this.workers = new ArrayList<Thread>(threads);
+        for (int i = 1; i <= threads; i++) {
+            final Thread worker = new Thread(new Worker(), "aerogear-send-" + priority.name().toLowerCase() + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Creates the lane, sized by <code>aerogear.lane.&lt;priority&gt;.threads</code> and
+     * <code>aerogear.lane.&lt;priority&gt;.queueCapacity</code>. A single push application may occupy at most
+     * <code>aerogear.lane.&lt;priority&gt;.maxInFlightPerApplication</code> workers (default: half of them).
+     *
+     * The admission limit starts at <code>aerogear.admission.initialLimit</code> (default: 100), never drops below
+     * <code>aerogear.admission.minLimit</code> (default: the number of threads), never exceeds the threads plus the queue
+     * capacity, and shrinks once the latency exceeds <code>aerogear.admission.tolerance</code> (default: 2) times the
+     * latency without load.
+     */
+    static SendLane fromSystemProperties(Priority priority, int defaultThreads, int defaultQueueCapacity, int quantum, ApplicationWeights weights) {
+        final String prefix = "aerogear.lane." + priority.name().toLowerCase();
+        final int threads = Integer.getInteger(prefix + ".threads", defaultThreads);
+        final int queueCapacity = Integer.getInteger(prefix + ".queueCapacity", defaultQueueCapacity);
+        final AdmissionLimiter admissionLimiter = new AdmissionLimiter(Integer.getInteger("aerogear.admission.initialLimit", 100),
+                Integer.getInteger("aerogear.admission.minLimit", threads), threads + queueCapacity,
+                Double.parseDouble(System.getProperty("aerogear.admission.tolerance", "2")));
+        return new SendLane(priority, threads, queueCapacity, quantum,
+                Integer.getInteger(prefix + ".maxInFlightPerApplication", Math.max(1, threads / 2)), weights, admissionLimiter);
+    }
+
+    /**
+     * Admits and queues the given new messages of the given push application in one step, each expiring at the deadline
+     * at the same index. Returns the admission of each message: once the concurrency limit is reached or the queue is
+     * full, the remaining messages are not accepted.
+     */
+    Admission[] submitAll(String pushApplicationID, long[] deadlines, List<Runnable> tasks) {
+        final Admission[] admissions = new Admission[tasks.size()];
+        final int admitted = admissionLimiter.tryAcquire(tasks.size());
+        Arrays.fill(admissions, admitted, admissions.length, Admission.LIMITED);
+        if (admitted == 0) {
+            return admissions;
+        }
+
+        final long admittedAt = System.nanoTime();
+        final List<Runnable> works = new ArrayList<Runnable>(admitted);
+        for (final Runnable task : tasks.subList(0, admitted)) {
+            works.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        admissionLimiter.release(System.nanoTime() - admittedAt);
+                    }
+                }
+            });
+        }
+        final int queued = queue.offerAll(pushApplicationID, 1, true, deadlines, works);
+        Arrays.fill(admissions, 0, queued, Admission.ACCEPTED);
+        Arrays.fill(admissions, queued, admitted, Admission.QUEUE_FULL);
+        if (queued < admitted) {
+            admissionLimiter.releaseUnprocessed(admitted - queued);
+            rejected.addAndGet(admitted - queued);
+        }
+        return admissions;
+    }
+
+    /**
+     * Queues a batch of an already accepted message, charged with the number of its tokens.
+     */
+    void submitBatch(String pushApplicationID, int tokens, long deadline, Runnable batch) {
+        if (!queue.offer(pushApplicationID, tokens, false, deadline, batch)) {
+            logger.log(Level.WARNING, "Dropping batch of " + tokens + " tokens, the " + priority + " lane has been shut down");
+        }
+    }
+
+    long retryAfterSeconds() {
+        return admissionLimiter.retryAfterSeconds();
+    }
+
+    void shutdown() {
+        queue.close();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    LaneStatistics statistics() {
+        return new LaneStatistics(priority.name(), threads, queueCapacity, queue.size(),
+                running.get(), completed.get(), rejected.get(), queue.flows(),
+                admissionLimiter.getLimit(), admissionLimiter.getInFlight(), admissionLimiter.getLimited());
+    }
+
+    private final class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                FairQueue.Task task;
+                while ((task = queue.take()) != null) {
+                    running.incrementAndGet();
+                    try {
+                        task.getWork().run();
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "Send task failed on the " + priority + " lane", e);
+                    } finally {
+                        running.decrementAndGet();
+                        completed.incrementAndGet();
+                        queue.done(task);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
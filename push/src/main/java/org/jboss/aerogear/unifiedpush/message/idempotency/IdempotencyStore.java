@@ -0,0 +1,118 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.idempotency;
+
+import org.jboss.aerogear.unifiedpush.api.IdempotencyKey;
+import org.jboss.aerogear.unifiedpush.service.cluster.IdempotencyKeyService;
+
+import javax.ejb.EJBException;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the <code>Idempotency-Key</code> headers of the requests to the RESTful Sender endpoint, so a sender, that
+ * retries a request after a timeout, gets the job of its first request instead of starting another send.
+ *
+ * The keys are kept per push application, in a bounded store of this node, and optionally in the shared database, so a
+ * retry routed to another node of the cluster is recognized as well. Configured by the system properties:
+ *
+ * <ul>
+ *     <li><code>aerogear.idempotency.ttlSeconds</code>, the time a key is remembered (default: 86400)</li>
+ *     <li><code>aerogear.idempotency.capacity</code>, the maximum number of keys kept by this node (default: 100000)</li>
+ *     <li><code>aerogear.idempotency.shared</code>, whether the keys are stored in the database as well (default: false)</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class IdempotencyStore {
+
+    /**
+     * Maximum length of an idempotency key.
+     */
+    public static final int MAX_KEY_LENGTH = 200;
+
+    private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("aerogear.idempotency.ttlSeconds", 86400));
+    private static final int CAPACITY = Integer.getInteger("aerogear.idempotency.capacity", 100000);
+    private static final boolean SHARED = Boolean.getBoolean("aerogear.idempotency.shared");
+    private static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Logger logger = Logger.getLogger(IdempotencyStore.class.getName());
+
+    private final RecentKeys recentKeys = new RecentKeys(CAPACITY, TTL_MILLIS);
+    private final AtomicLong lastCleanup = new AtomicLong(System.currentTimeMillis());
+
+    @Inject
+    private IdempotencyKeyService idempotencyKeyService;
+
+    /**
+     * Records the given key of the push application for the given job, unless a request with the same key has started
+     * another job before.
+     *
+     * @return the ID of the job, that has been started with the key, or <code>null</code> if the request is the first
+     */
+    public String reserve(String pushApplicationID, String idempotencyKey, String jobId) {
+        final String key = IdempotencyKey.idOf(pushApplicationID, idempotencyKey);
+        final String recentJobId = recentKeys.reserve(key, jobId, System.currentTimeMillis());
+        if (recentJobId != null || !SHARED) {
+            return recentJobId;
+        }
+
+        String storedJobId;
+        try {
+            storedJobId = idempotencyKeyService.reserve(pushApplicationID, idempotencyKey, jobId, TTL_MILLIS);
+        } catch (EJBException e) {
+            // another node has stored the key at the same time:
+            storedJobId = idempotencyKeyService.findJobId(pushApplicationID, idempotencyKey);
+        }
+        if (storedJobId != null && !storedJobId.equals(jobId)) {
+            recentKeys.put(key, storedJobId, System.currentTimeMillis());
+            return storedJobId;
+        }
+        cleanUpWhenDue();
+        return null;
+    }
+
+    /**
+     * Forgets the given key, as the request, that has recorded it for the given job, has not been accepted.
+     */
+    public void release(String pushApplicationID, String idempotencyKey, String jobId) {
+        recentKeys.release(IdempotencyKey.idOf(pushApplicationID, idempotencyKey), jobId);
+        if (SHARED) {
+            idempotencyKeyService.release(pushApplicationID, idempotencyKey, jobId);
+        }
+    }
+
+    /**
+     * Removes the expired keys from the database, on one request per interval.
+     */
+    private void cleanUpWhenDue() {
+        final long last = lastCleanup.get();
+        final long now = System.currentTimeMillis();
+        if (now - last < CLEANUP_INTERVAL_MILLIS || !lastCleanup.compareAndSet(last, now)) {
+            return;
+        }
+        try {
+            final int deleted = idempotencyKeyService.deleteExpired();
+            logger.log(Level.FINE, "Deleted " + deleted + " expired idempotency keys");
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not delete the expired idempotency keys", e);
+        }
+    }
+}
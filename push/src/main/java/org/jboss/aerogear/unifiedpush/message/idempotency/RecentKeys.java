@@ -0,0 +1,86 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.idempotency;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The idempotency keys of the recent requests of this node, with the jobs they have started. Holds at most
+ * <code>capacity</code> keys: the oldest key is forgotten first, and an expired key is not found anymore.
+ */
+final class RecentKeys {
+
+    private static final class Entry {
+        private final String jobId;
+        private final long expiry;
+
+        private Entry(String jobId, long expiry) {
+            this.jobId = jobId;
+            this.expiry = expiry;
+        }
+    }
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    RecentKeys(final int capacity, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Records the given key for the given job, unless it has been recorded for another job, that has not expired at the
+     * given time. Returns the ID of that job, or <code>null</code> if the key has been recorded for the given job.
+     */
+    synchronized String reserve(String key, String jobId, long now) {
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.expiry > now) {
+            return entry.jobId;
+        }
+        // re-inserted, so it is the youngest entry again:
+        entries.remove(key);
+        entries.put(key, new Entry(jobId, now + ttlMillis));
+        return null;
+    }
+
+    /**
+     * Records the key for the given job, which has been found in the shared store.
+     */
+    synchronized void put(String key, String jobId, long now) {
+        entries.put(key, new Entry(jobId, now + ttlMillis));
+    }
+
+    /**
+     * Forgets the given key, unless it has been recorded for another job.
+     */
+    synchronized void release(String key, String jobId) {
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.jobId.equals(jobId)) {
+            entries.remove(key);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
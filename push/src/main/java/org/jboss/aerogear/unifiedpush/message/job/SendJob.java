@@ -0,0 +1,247 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.job;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the progress of a submitted push message: the job is completed once the tokens of all its variants have been
+ * resolved, and each of them has either been sent, or given up on. Pending retries keep the job running.
+ */
+final class SendJob {
+
+    private static final class Progress {
+        private int tokensResolved;
+        private int batches;
+        private int batchesSent;
+        private int tokensSent;
+        private int tokensFailed;
+        private String lastError;
+        private boolean partitioned;
+    }
+
+    private final String id;
+    private final String pushApplicationID;
+    private final long submitted;
+    private final Map<String, Progress> variants = new LinkedHashMap<String, Progress>();
+
+    private SendJobState state = SendJobState.QUEUED;
+    private long scheduled;
+    private long started;
+    private long finished;
+    private String failure;
+    // -1 while the variants are not known yet:
+    private int expectedVariants = -1;
+    private int resolvedVariants;
+    private long version;
+
+    SendJob(String id, String pushApplicationID, long now) {
+        this.id = id;
+        this.pushApplicationID = pushApplicationID;
+        this.submitted = now;
+    }
+
+    String getPushApplicationID() {
+        return pushApplicationID;
+    }
+
+    /**
+     * The message waits until the given time.
+     */
+    synchronized void scheduled(long deliverAt, long now) {
+        state = SendJobState.SCHEDULED;
+        scheduled = deliverAt;
+        changed(now);
+    }
+
+    synchronized void started(long now) {
+        state = SendJobState.RUNNING;
+        started = now;
+        changed(now);
+    }
+
+    /**
+     * The message is sent to the given number of variants.
+     */
+    synchronized void expectVariants(int count, long now) {
+        expectedVariants = count;
+        changed(now);
+    }
+
+    synchronized void variantResolved(String variantID, int tokens, int batches, long now) {
+        final Progress progress = progressOf(variantID);
+        progress.tokensResolved = tokens;
+        progress.batches = batches;
+        resolvedVariants++;
+        changed(now);
+    }
+
+    /**
+     * The tokens of the variant are sent in the given number of work units, by the nodes of the cluster: its progress
+     * is reported by {@link #unitsCompleted(String, int, int, long)}, not per batch.
+     */
+    synchronized void variantPartitioned(String variantID, int units, long now) {
+        final Progress progress = progressOf(variantID);
+        progress.partitioned = true;
+        progress.batches = units;
+        resolvedVariants++;
+        changed(now);
+    }
+
+    synchronized void unitsCompleted(String variantID, int units, int tokens, long now) {
+        final Progress progress = progressOf(variantID);
+        progress.batchesSent = units;
+        progress.tokensResolved = tokens;
+        progress.tokensSent = tokens;
+        changed(now);
+    }
+
+    synchronized void batchSent(String variantID, long now) {
+        final Progress progress = progressOf(variantID);
+        if (!progress.partitioned) {
+            progress.batchesSent++;
+            changed(now);
+        }
+    }
+
+    /**
+     * The given number of tokens has been sent, or given up on with the given reason.
+     */
+    synchronized void settled(String variantID, int tokens, boolean sent, String reason, long now) {
+        final Progress progress = progressOf(variantID);
+        if (progress.partitioned) {
+            return;
+        }
+        if (sent) {
+            progress.tokensSent += tokens;
+        } else {
+            progress.tokensFailed += tokens;
+            progress.lastError = reason;
+        }
+        changed(now);
+    }
+
+    /**
+     * Previously failed tokens are sent again, e.g. when a dead letter is replayed.
+     */
+    synchronized void replaying(String variantID, int tokens, long now) {
+        final Progress progress = progressOf(variantID);
+        progress.tokensFailed = Math.max(0, progress.tokensFailed - tokens);
+        if (state == SendJobState.COMPLETED) {
+            state = SendJobState.RUNNING;
+            finished = 0;
+        }
+        changed(now);
+    }
+
+    synchronized void failed(String reason, long now) {
+        state = SendJobState.FAILED;
+        failure = reason;
+        finished = now;
+        changed(now);
+    }
+
+    /**
+     * The queued message has been replaced by the message of the given job.
+     */
+    synchronized void superseded(String byJobId, long now) {
+        state = SendJobState.SUPERSEDED;
+        failure = "Superseded by job " + byJobId;
+        finished = now;
+        changed(now);
+    }
+
+    synchronized boolean isFinished() {
+        return state == SendJobState.COMPLETED || state == SendJobState.FAILED || state == SendJobState.SUPERSEDED;
+    }
+
+    /**
+     * Waits until the job has changed after the given version, or is finished, or the timeout elapsed.
+     */
+    synchronized SendJobStatus awaitChange(long sinceVersion, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (version <= sinceVersion && !isFinished() && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return status(System.currentTimeMillis());
+    }
+
+    synchronized SendJobStatus status(long now) {
+        final List<VariantProgress> progresses = new ArrayList<VariantProgress>(variants.size());
+        int resolved = 0;
+        int settled = 0;
+        for (Map.Entry<String, Progress> entry : variants.entrySet()) {
+            final Progress progress = entry.getValue();
+            progresses.add(new VariantProgress(entry.getKey(), progress.tokensResolved, progress.batches, progress.batchesSent,
+                    progress.tokensSent, progress.tokensFailed, progress.lastError, progress.partitioned));
+            resolved += progress.tokensResolved;
+            settled += Math.min(progress.tokensResolved, progress.tokensSent + progress.tokensFailed);
+        }
+
+        long eta = -1;
+        if (isFinished()) {
+            eta = 0;
+        } else if (settled > 0 && started > 0) {
+            eta = (long) ((double) (now - started) / settled * (resolved - settled));
+        }
+        return new SendJobStatus(id, pushApplicationID, state, version, new Date(submitted), toDate(scheduled), toDate(started),
+                toDate(finished), eta, failure, progresses);
+    }
+
+    private Progress progressOf(String variantID) {
+        Progress progress = variants.get(variantID);
+        if (progress == null) {
+            progress = new Progress();
+            variants.put(variantID, progress);
+        }
+        return progress;
+    }
+
+    private void changed(long now) {
+        version++;
+        if (state == SendJobState.RUNNING && isComplete()) {
+            state = SendJobState.COMPLETED;
+            finished = now;
+        }
+        notifyAll();
+    }
+
+    private boolean isComplete() {
+        if (expectedVariants < 0 || resolvedVariants < expectedVariants) {
+            return false;
+        }
+        for (Progress progress : variants.values()) {
+            if (progress.partitioned && progress.batchesSent < progress.batches) {
+                return false;
+            }
+            if (progress.tokensSent + progress.tokensFailed < progress.tokensResolved) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Date toDate(long millis) {
+        return millis == 0 ? null : new Date(millis);
+    }
+}
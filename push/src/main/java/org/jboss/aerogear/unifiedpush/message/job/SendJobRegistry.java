@@ -0,0 +1,254 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.job;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
+import org.jboss.aerogear.unifiedpush.message.outbox.Outbox;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMessageMetricsService;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bounded, in-memory registry of the {@link SendJob}s of this node, updated from the dispatch pipeline. Once the capacity
+ * (system property <code>aerogear.jobs.capacity</code>, default: 10000) is reached, the job that finished first is
+ * dropped. Jobs that are still in progress are never dropped, as they are removed from the {@link Outbox} once finished:
+ * the registry exceeds its capacity while all tracked jobs are in progress.
+ *
+ * The ID of a job is the ID of its persisted {@link PushMessageInformation}, so jobs that are no longer tracked are
+ * reported with their persisted delivery results. All updates are ignored for unknown jobs.
+ */
+@ApplicationScoped
+public class SendJobRegistry {
+
+    private final int capacity;
+    private final Map<String, SendJob> jobs = new LinkedHashMap<String, SendJob>();
+    // IDs of the tracked jobs that are finished, in the order they finished, guarded by jobs:
+    private final Set<String> finished = new LinkedHashSet<String>();
+
+    @Inject
+    private PushMessageMetricsService metricsService;
+    @Inject
+    private Outbox outbox;
+
+    public SendJobRegistry() {
+        this(Integer.getInteger("aerogear.jobs.capacity", 10000));
+    }
+
+    SendJobRegistry(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a queued job for the given push application, and returns its ID.
+     */
+    public String create(String pushApplicationID) {
+        final String id = UUID.randomUUID().toString();
+        create(id, pushApplicationID);
+        return id;
+    }
+
+    /**
+     * Creates a queued job with the given ID, e.g. for a send resumed after a restart.
+     */
+    public void create(String id, String pushApplicationID) {
+        synchronized (jobs) {
+            if (jobs.size() >= capacity && !finished.isEmpty()) {
+                final Iterator<String> oldest = finished.iterator();
+                jobs.remove(oldest.next());
+                oldest.remove();
+            }
+            jobs.put(id, new SendJob(id, pushApplicationID, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Forgets the job, e.g. as its message has not been accepted.
+     */
+    public void remove(String id) {
+        synchronized (jobs) {
+            jobs.remove(id);
+            finished.remove(id);
+        }
+    }
+
+    public void scheduled(String id, long deliverAt) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.scheduled(deliverAt, System.currentTimeMillis());
+        }
+    }
+
+    public void started(String id) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.started(System.currentTimeMillis());
+        }
+    }
+
+    public void expectVariants(String id, int count) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.expectVariants(count, System.currentTimeMillis());
+            finishedWhenDone(id, job);
+        }
+    }
+
+    public void variantResolved(String id, String variantID, int tokens, int batches) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.variantResolved(variantID, tokens, batches, System.currentTimeMillis());
+            finishedWhenDone(id, job);
+        }
+    }
+
+    public void variantPartitioned(String id, String variantID, int units) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.variantPartitioned(variantID, units, System.currentTimeMillis());
+            finishedWhenDone(id, job);
+        }
+    }
+
+    public void unitsCompleted(String id, String variantID, int units, int tokens) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.unitsCompleted(variantID, units, tokens, System.currentTimeMillis());
+            finishedWhenDone(id, job);
+        }
+    }
+
+    public void batchSent(String id, String variantID) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.batchSent(variantID, System.currentTimeMillis());
+        }
+    }
+
+    public void settled(String id, String variantID, int tokens, boolean sent, String reason) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.settled(variantID, tokens, sent, reason, System.currentTimeMillis());
+            finishedWhenDone(id, job);
+        }
+    }
+
+    public void replaying(String id, String variantID, int tokens) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.replaying(variantID, tokens, System.currentTimeMillis());
+        }
+    }
+
+    public void failed(String id, String reason) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.failed(reason, System.currentTimeMillis());
+            finishedWhenDone(id, job);
+        }
+    }
+
+    public void superseded(String id, String byJobId) {
+        final SendJob job = get(id);
+        if (job != null) {
+            job.superseded(byJobId, System.currentTimeMillis());
+            finishedWhenDone(id, job);
+        }
+    }
+
+    /**
+     * Returns the status of the given job, or <code>null</code> if it is neither tracked nor persisted.
+     */
+    public SendJobStatus find(String id) {
+        final SendJob job = get(id);
+        if (job != null) {
+            return job.status(System.currentTimeMillis());
+        }
+        return persistedStatus(id);
+    }
+
+    /**
+     * Like {@link #find(String)}, but waits up to the given timeout until a tracked job has changed after the given
+     * version, or is finished.
+     */
+    public SendJobStatus await(String id, long sinceVersion, long timeoutMillis) throws InterruptedException {
+        final SendJob job = get(id);
+        if (job != null) {
+            return job.awaitChange(sinceVersion, timeoutMillis);
+        }
+        return persistedStatus(id);
+    }
+
+    private void finishedWhenDone(String id, SendJob job) {
+        if (!job.isFinished()) {
+            return;
+        }
+        synchronized (jobs) {
+            if (!jobs.containsKey(id) || !finished.add(id)) {
+                return;
+            }
+        }
+        outbox.finished(id);
+    }
+
+    private SendJob get(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    private SendJobStatus persistedStatus(String id) {
+        final PushMessageInformation information = metricsService.findById(id);
+        if (information == null) {
+            return null;
+        }
+
+        final Map<String, int[]> counts = new LinkedHashMap<String, int[]>();
+        final Map<String, String> errors = new LinkedHashMap<String, String>();
+        for (VariantMetricInformation variantInformation : information.getVariantInformations()) {
+            int[] sentAndFailed = counts.get(variantInformation.getVariantID());
+            if (sentAndFailed == null) {
+                sentAndFailed = new int[2];
+                counts.put(variantInformation.getVariantID(), sentAndFailed);
+            }
+            if (Boolean.TRUE.equals(variantInformation.getDeliveryStatus())) {
+                sentAndFailed[0] += variantInformation.getReceivers();
+            } else {
+                sentAndFailed[1] += variantInformation.getReceivers();
+                errors.put(variantInformation.getVariantID(), variantInformation.getReason());
+            }
+        }
+
+        final List<VariantProgress> variants = new ArrayList<VariantProgress>(counts.size());
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            final int[] sentAndFailed = entry.getValue();
+            variants.add(new VariantProgress(entry.getKey(), sentAndFailed[0] + sentAndFailed[1], 0, 0,
+                    sentAndFailed[0], sentAndFailed[1], errors.get(entry.getKey()), false));
+        }
+        return new SendJobStatus(id, information.getPushApplicationId(), SendJobState.UNTRACKED, 0,
+                information.getSubmitDate(), null, null, null, -1, null, variants);
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.job;
+
+/**
+ * Lifecycle of a {@link SendJob}.
+ */
+public enum SendJobState {
+
+    /**
+     * Accepted, waiting for a worker of its dispatch lane.
+     */
+    QUEUED,
+
+    /**
+     * Accepted, waiting for the time it has been scheduled for.
+     */
+    SCHEDULED,
+
+    /**
+     * Tokens are resolved and sent.
+     */
+    RUNNING,
+
+    /**
+     * Every resolved token has either been sent, or given up on.
+     */
+    COMPLETED,
+
+    /**
+     * The processing of the message failed, see {@link SendJobStatus#getFailure()}.
+     */
+    FAILED,
+
+    /**
+     * Replaced by a newer message with the same collapse key before it was processed, see
+     * {@link SendJobStatus#getFailure()} for the job of that message.
+     */
+    SUPERSEDED,
+
+    /**
+     * The job is not tracked (anymore) by this node, only the persisted delivery results are known.
+     */
+    UNTRACKED
+}
@@ -0,0 +1,130 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.job;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Snapshot of a {@link SendJob}, as shown by the RESTful endpoint.
+ */
+public class SendJobStatus {
+
+    private final String id;
+    private final String pushApplicationID;
+    private final SendJobState state;
+    private final long version;
+    private final Date submitted;
+    private final Date scheduled;
+    private final Date started;
+    private final Date finished;
+    private final long etaMillis;
+    private final String failure;
+    private final List<VariantProgress> variants;
+
+    public SendJobStatus(String id, String pushApplicationID, SendJobState state, long version, Date submitted, Date scheduled,
+                         Date started, Date finished, long etaMillis, String failure, List<VariantProgress> variants) {
+        this.id = id;
+        this.pushApplicationID = pushApplicationID;
+        this.state = state;
+        this.version = version;
+        this.submitted = submitted;
+        this.scheduled = scheduled;
+        this.started = started;
+        this.finished = finished;
+        this.etaMillis = etaMillis;
+        this.failure = failure;
+        this.variants = variants;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPushApplicationID() {
+        return pushApplicationID;
+    }
+
+    public SendJobState getState() {
+        return state;
+    }
+
+    /**
+     * Increased on every change of the job, to be passed back when polling for the next change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Date getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * The time the message has been scheduled for, <code>null</code> if it is sent right away.
+     */
+    public Date getScheduled() {
+        return scheduled;
+    }
+
+    public Date getStarted() {
+        return started;
+    }
+
+    public Date getFinished() {
+        return finished;
+    }
+
+    /**
+     * Estimated milliseconds until all resolved tokens are sent, based on the throughput so far, or -1 if unknown.
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public int getTokensResolved() {
+        int sum = 0;
+        for (VariantProgress progress : variants) {
+            sum += progress.getTokensResolved();
+        }
+        return sum;
+    }
+
+    public int getTokensSent() {
+        int sum = 0;
+        for (VariantProgress progress : variants) {
+            sum += progress.getTokensSent();
+        }
+        return sum;
+    }
+
+    public int getTokensFailed() {
+        int sum = 0;
+        for (VariantProgress progress : variants) {
+            sum += progress.getTokensFailed();
+        }
+        return sum;
+    }
+
+    public List<VariantProgress> getVariants() {
+        return variants;
+    }
+}
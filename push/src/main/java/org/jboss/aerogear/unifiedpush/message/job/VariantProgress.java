@@ -0,0 +1,89 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.job;
+
+/**
+ * Progress of a {@link SendJob} for a single variant.
+ */
+public class VariantProgress {
+
+    private final String variantID;
+    private final int tokensResolved;
+    private final int batches;
+    private final int batchesSent;
+    private final int tokensSent;
+    private final int tokensFailed;
+    private final String lastError;
+    private final boolean partitioned;
+
+    public VariantProgress(String variantID, int tokensResolved, int batches, int batchesSent, int tokensSent, int tokensFailed, String lastError,
+                           boolean partitioned) {
+        this.variantID = variantID;
+        this.tokensResolved = tokensResolved;
+        this.batches = batches;
+        this.batchesSent = batchesSent;
+        this.tokensSent = tokensSent;
+        this.tokensFailed = tokensFailed;
+        this.lastError = lastError;
+        this.partitioned = partitioned;
+    }
+
+    public String getVariantID() {
+        return variantID;
+    }
+
+    public int getTokensResolved() {
+        return tokensResolved;
+    }
+
+    /**
+     * Number of batches, the resolved tokens have been split into.
+     */
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Number of batches, that have been handed to the push network.
+     */
+    public int getBatchesSent() {
+        return batchesSent;
+    }
+
+    public int getTokensSent() {
+        return tokensSent;
+    }
+
+    /**
+     * Number of tokens, that were given up on (including the dead letters).
+     */
+    public int getTokensFailed() {
+        return tokensFailed;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Whether the variant is sent in work units, by the nodes of the cluster. The batches are the work units then, and
+     * the tokens are counted, once they have been handed to the push network.
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+}
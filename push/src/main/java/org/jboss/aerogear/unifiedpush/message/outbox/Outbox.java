@@ -0,0 +1,223 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.outbox;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the accepted push messages in an {@link OutboxJournal}, until their send job is finished, so that a restart
+ * resumes them (see {@link OutboxRecovery}) instead of losing them.
+ *
+ * The tokens of a variant are sent in sorted order, and every sent batch is checkpointed with its last token: a resumed
+ * send only resolves and sends the tokens after the checkpointed cursor. Delivery is at-least-once, batches that were
+ * sent after a gap in the checkpoints, or were waiting for a retry, are sent again.
+ *
+ * Configured by the system properties <code>aerogear.outbox.enabled</code> (default: true),
+ * <code>aerogear.outbox.dir</code> (default: <code>aerogear-outbox</code> in the data directory of the server) and
+ * <code>aerogear.outbox.segmentBytes</code> (default: 64 MB).
+ */
+@ApplicationScoped
+public class Outbox {
+
+    private final Logger logger = Logger.getLogger(Outbox.class.getName());
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Set<String> open = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> resumed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private List<PendingSend> recovered = Collections.emptyList();
+    private OutboxJournal journal;
+
+    @PostConstruct
+    public void openJournal() {
+        if (!Boolean.parseBoolean(System.getProperty("aerogear.outbox.enabled", "true"))) {
+            return;
+        }
+        final File directory = new File(System.getProperty("aerogear.outbox.dir",
+                System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir")) + File.separator + "aerogear-outbox"));
+        final OutboxJournal candidate = new OutboxJournal(directory, Long.getLong("aerogear.outbox.segmentBytes", 64L * 1024 * 1024));
+        try {
+            recovered = candidate.open();
+            for (PendingSend send : recovered) {
+                open.add(send.getJobId());
+            }
+            journal = candidate;
+            logger.log(Level.INFO, "Outbox journal opened in " + directory + ", " + recovered.size() + " pending sends");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not open the outbox journal in " + directory + ", accepted sends will not survive a restart", e);
+        }
+    }
+
+    @PreDestroy
+    public void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Returns the given message, as submitted to the RESTful Sender endpoint, in its JSON form, or <code>null</code> if it
+     * could not be serialized.
+     */
+    public String serialize(Map<String, Object> message) {
+        try {
+            return mapper.writeValueAsString(message);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not serialize message", e);
+            return null;
+        }
+    }
+
+    /**
+     * Journals the given message, in the JSON form returned by {@link #serialize(java.util.Map)}, before it is processed.
+     * Returns false if it could not be journaled.
+     */
+    public boolean accepted(String jobId, String pushApplicationID, String rawMessage, String ipAddress, String clientIdentifier) {
+        if (journal == null) {
+            return true;
+        }
+        try {
+            open.add(jobId);
+            if (journal.accepted(jobId, pushApplicationID, rawMessage, ipAddress, clientIdentifier)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // it may still be written after the timeout, it must not be resumed then:
+        finished(jobId);
+        return false;
+    }
+
+    /**
+     * Journals the given messages of one push application at once, before they are processed: they share the syncs of
+     * the journal. Returns false if any of them could not be journaled, none of them may be processed then.
+     */
+    public boolean accepted(String pushApplicationID, List<UnifiedPushMessage> messages) {
+        if (journal == null) {
+            return true;
+        }
+        final List<String[]> sends = new ArrayList<String[]>(messages.size());
+        for (UnifiedPushMessage message : messages) {
+            open.add(message.getJobId());
+            sends.add(new String[] {message.getJobId(), pushApplicationID, message.getRawMessage(), message.getIpAddress(),
+                    message.getClientIdentifier()});
+        }
+        try {
+            if (journal.acceptedAll(sends)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // some of them may have been written:
+        for (UnifiedPushMessage message : messages) {
+            finished(message.getJobId());
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sorted tokens of the given variant, that have not been sent before the restart.
+     */
+    public List<String> remainingTokens(String jobId, String variantID, List<String> tokens) {
+        if (journal == null) {
+            return tokens;
+        }
+        final List<String> sorted = new ArrayList<String>(tokens);
+        Collections.sort(sorted);
+
+        final String cursor = cursorOf(jobId, variantID);
+        if (cursor == null) {
+            return sorted;
+        }
+        final int index = Collections.binarySearch(sorted, cursor);
+        return sorted.subList(index >= 0 ? index + 1 : -index - 1, sorted.size());
+    }
+
+    /**
+     * Returns the last token of the variant, up to which the sorted tokens were sent before the restart, or
+     * <code>null</code>.
+     */
+    public String cursorOf(String jobId, String variantID) {
+        if (journal == null || !resumed.contains(jobId)) {
+            return null;
+        }
+        return journal.cursorOf(jobId, variantID);
+    }
+
+    /**
+     * Records that the sorted tokens of the variant after <code>after</code> (<code>null</code> for the first token),
+     * up to and including <code>last</code>, have been sent.
+     */
+    public void checkpoint(String jobId, String variantID, String after, String last) {
+        if (journal != null && open.contains(jobId)) {
+            journal.checkpoint(jobId, variantID, after == null ? PendingSend.START : after, last);
+        }
+    }
+
+    /**
+     * The send job is finished, or the message has not been accepted after all.
+     */
+    public void finished(String jobId) {
+        if (journal != null && open.remove(jobId)) {
+            resumed.remove(jobId);
+            journal.finished(jobId);
+        }
+    }
+
+    /**
+     * Whether the given job has been resumed after a restart.
+     */
+    public boolean isResumed(String jobId) {
+        return resumed.contains(jobId);
+    }
+
+    /**
+     * Hands out the sends, that were pending at startup, once.
+     */
+    synchronized List<PendingSend> takeRecovered() {
+        final List<PendingSend> sends = recovered;
+        recovered = Collections.emptyList();
+        for (PendingSend send : sends) {
+            resumed.add(send.getJobId());
+        }
+        return sends;
+    }
+
+    /**
+     * Reads a message, in the JSON form returned by {@link #serialize(java.util.Map)}.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> parse(String rawMessage) throws IOException {
+        return mapper.readValue(rawMessage, Map.class);
+    }
+}
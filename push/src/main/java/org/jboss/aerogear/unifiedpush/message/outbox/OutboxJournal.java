@@ -0,0 +1,465 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.outbox;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the accepted push messages and their progress, in segment files of a local directory.
+ *
+ * Appends are queued and written by a single writer thread, which syncs every written batch with one
+ * <code>force</code> (group commit): concurrent senders share the cost of a sync. Every record is framed with its length
+ * and CRC32, so a torn write at the end of a segment is detected and ignored on replay.
+ *
+ * If a batch can not be written, the segment is truncated to its last synced record: the accepted messages of the batch
+ * are reported as not written, its checkpoints and finished sends are written again with the next batch.
+ *
+ * Once a segment exceeds the configured size, the writer starts a new one with a snapshot of the pending sends, and
+ * deletes the older segments.
+ */
+final class OutboxJournal {
+
+    private static final Logger logger = Logger.getLogger(OutboxJournal.class.getName());
+
+    private static final byte ACCEPTED = 1;
+    private static final byte CHECKPOINT = 2;
+    private static final byte FINISHED = 3;
+
+    private static final String PREFIX = "outbox-";
+    private static final String SUFFIX = ".log";
+    private static final int MAX_BATCH = 1000;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final File directory;
+    private final long segmentBytes;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+    // state after the written records, guarded by itself:
+    private final Map<String, PendingSend> pending = new LinkedHashMap<String, PendingSend>();
+
+    // owned by the writer thread, once it is started:
+    private long segment;
+    private FileChannel channel;
+
+    private Thread writer;
+    private volatile boolean running;
+
+    OutboxJournal(File directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Replays the existing segments, rolls over to a new one and starts the writer. Returns the sends, which have been
+     * accepted but not finished.
+     */
+    List<PendingSend> open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create outbox directory " + directory);
+        }
+        for (File file : segments()) {
+            replay(file);
+            segment = Math.max(segment, sequenceOf(file));
+        }
+        rollOver();
+
+        running = true;
+        writer = new Thread(new Writer(), "aerogear-outbox-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        synchronized (pending) {
+            return new ArrayList<PendingSend>(pending.values());
+        }
+    }
+
+    void close() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeChannel();
+    }
+
+    /**
+     * Appends the accepted message, and waits until it has been synced. Returns false if it could not be written.
+     */
+    boolean accepted(String jobId, String pushApplicationID, String rawMessage, String ipAddress, String clientIdentifier)
+            throws InterruptedException {
+        return acceptedAll(Collections.singletonList(new String[] {jobId, pushApplicationID, rawMessage, ipAddress, clientIdentifier}));
+    }
+
+    /**
+     * Appends the accepted messages, each given as job ID, push application ID, message, IP address and client
+     * identifier, and waits until they have been synced, usually with a single sync. Returns false if any of them could
+     * not be written.
+     */
+    boolean acceptedAll(List<String[]> sends) throws InterruptedException {
+        if (!running) {
+            return false;
+        }
+        final String acceptedAt = String.valueOf(System.currentTimeMillis());
+        final List<Entry> entries = new ArrayList<Entry>(sends.size());
+        for (String[] send : sends) {
+            entries.add(new Entry(ACCEPTED, new String[] {send[0], send[1], send[2], send[3], send[4], acceptedAt}, true));
+        }
+        queue.addAll(entries);
+
+        boolean written = true;
+        for (Entry entry : entries) {
+            written &= entry.await();
+        }
+        return written;
+    }
+
+    void checkpoint(String jobId, String variantID, String after, String last) {
+        queue.add(new Entry(CHECKPOINT, new String[] {jobId, variantID, after, last}, false));
+    }
+
+    void finished(String jobId) {
+        queue.add(new Entry(FINISHED, new String[] {jobId}, false));
+    }
+
+    /**
+     * Returns the cursor of the given variant of a pending send, or <code>null</code>.
+     */
+    String cursorOf(String jobId, String variantID) {
+        synchronized (pending) {
+            final PendingSend send = pending.get(jobId);
+            return send == null ? null : send.cursorOf(variantID);
+        }
+    }
+
+    private void apply(byte type, String[] fields) {
+        synchronized (pending) {
+            switch (type) {
+                case ACCEPTED:
+                    pending.put(fields[0], new PendingSend(fields[0], fields[1], fields[2], fields[3], fields[4], Long.parseLong(fields[5])));
+                    break;
+                case CHECKPOINT:
+                    final PendingSend send = pending.get(fields[0]);
+                    if (send != null) {
+                        send.checkpoint(fields[1], fields[2], fields[3]);
+                    }
+                    break;
+                default:
+                    pending.remove(fields[0]);
+            }
+        }
+    }
+
+    /**
+     * Starts the next segment with a snapshot of the pending sends, and deletes the older segments.
+     */
+    private void rollOver() throws IOException {
+        final File file = new File(directory, String.format("%s%012d%s", PREFIX, ++segment, SUFFIX));
+        final FileChannel next = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            writeSnapshot(next);
+        } catch (IOException e) {
+            // a partial snapshot must not be replayed after the records of the current segment:
+            next.close();
+            if (!file.delete()) {
+                logger.log(Level.SEVERE, "Could not delete incomplete outbox segment " + file);
+            }
+            segment--;
+            throw e;
+        }
+
+        closeChannel();
+        channel = next;
+        for (File old : segments()) {
+            if (sequenceOf(old) < segment && !old.delete()) {
+                logger.log(Level.WARNING, "Could not delete outbox segment " + old);
+            }
+        }
+    }
+
+    private void writeSnapshot(FileChannel next) throws IOException {
+        synchronized (pending) {
+            for (PendingSend send : pending.values()) {
+                write(next, ACCEPTED, new String[] {send.getJobId(), send.getPushApplicationID(), send.getRawMessage(),
+                        send.getIpAddress(), send.getClientIdentifier(), String.valueOf(send.getAcceptedAt())});
+                for (Map.Entry<String, PendingSend.VariantCursor> variant : send.getVariants().entrySet()) {
+                    final PendingSend.VariantCursor cursor = variant.getValue();
+                    write(next, CHECKPOINT, new String[] {send.getJobId(), variant.getKey(), PendingSend.START, cursor.getPosition()});
+                    for (Map.Entry<String, String> range : cursor.getRanges().entrySet()) {
+                        write(next, CHECKPOINT, new String[] {send.getJobId(), variant.getKey(), range.getKey(), range.getValue()});
+                    }
+                }
+            }
+        }
+        next.force(false);
+    }
+
+    private void replay(File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                final long crc = in.readInt() & 0xffffffffL;
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    logger.log(Level.WARNING, "Corrupt record in outbox segment " + file + ", ignoring the rest of it");
+                    return;
+                }
+                final byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    logger.log(Level.WARNING, "Incomplete record at the end of outbox segment " + file);
+                    return;
+                }
+                if (crcOf(payload) != crc) {
+                    logger.log(Level.WARNING, "Checksum mismatch in outbox segment " + file + ", ignoring the rest of it");
+                    return;
+                }
+                decode(payload);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void decode(byte[] payload) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        final byte type = in.readByte();
+        final String[] fields = new String[in.readInt()];
+        for (int i = 0; i < fields.length; i++) {
+            final int length = in.readInt();
+            if (length >= 0) {
+                final byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                fields[i] = new String(bytes, "UTF-8");
+            }
+        }
+        apply(type, fields);
+    }
+
+    private static void write(FileChannel target, byte type, String[] fields) throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+        final DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(type);
+        out.writeInt(fields.length);
+        for (String field : fields) {
+            if (field == null) {
+                out.writeInt(-1);
+            } else {
+                final byte[] bytes = field.getBytes("UTF-8");
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        out.flush();
+
+        final byte[] bytes = payload.toByteArray();
+        final ByteBuffer buffer = ByteBuffer.allocate(8 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.putInt((int) crcOf(bytes));
+        buffer.put(bytes);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static long crcOf(byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    private List<File> segments() {
+        final File[] files = directory.listFiles();
+        final List<File> segments = new ArrayList<File>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX)) {
+                    segments.add(file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static long sequenceOf(File file) {
+        final String name = file.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not close outbox segment", e);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final byte type;
+        private final String[] fields;
+        private final CountDownLatch committed;
+        private volatile boolean written;
+
+        private Entry(byte type, String[] fields, boolean awaited) {
+            this.type = type;
+            this.fields = fields;
+            this.committed = awaited ? new CountDownLatch(1) : null;
+        }
+
+        private void complete(boolean success) {
+            written = success;
+            if (committed != null) {
+                committed.countDown();
+            }
+        }
+
+        private boolean await() throws InterruptedException {
+            return committed.await(30, TimeUnit.SECONDS) && written;
+        }
+    }
+
+    private final class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            final List<Entry> batch = new ArrayList<Entry>();
+            // records of a failed batch, which nobody waits for:
+            final List<Entry> retry = new ArrayList<Entry>();
+            while (running || !queue.isEmpty() || !retry.isEmpty()) {
+                if (retry.isEmpty()) {
+                    try {
+                        final Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                    } catch (InterruptedException e) {
+                        running = false;
+                        continue;
+                    }
+                } else {
+                    batch.addAll(retry);
+                    retry.clear();
+                }
+                queue.drainTo(batch, Math.max(0, MAX_BATCH - batch.size()));
+
+                boolean success = true;
+                long start = -1;
+                try {
+                    start = channel.position();
+                    for (Entry entry : batch) {
+                        write(channel, entry.type, entry.fields);
+                    }
+                    // one sync for the whole batch:
+                    channel.force(false);
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Could not write " + batch.size() + " outbox records", e);
+                    success = false;
+                    discardFrom(start);
+                }
+
+                for (Entry entry : batch) {
+                    if (success) {
+                        apply(entry.type, entry.fields);
+                        entry.complete(true);
+                    } else if (entry.committed != null) {
+                        entry.complete(false);
+                    } else {
+                        retry.add(entry);
+                    }
+                }
+                batch.clear();
+
+                if (!success) {
+                    if (!running) {
+                        logger.log(Level.SEVERE, "Dropping " + retry.size() + " outbox records on shutdown");
+                        retry.clear();
+                        continue;
+                    }
+                    try {
+                        Thread.sleep(RETRY_DELAY_MILLIS);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                    continue;
+                }
+
+                try {
+                    if (channel.size() > segmentBytes) {
+                        rollOver();
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Could not roll over the outbox segment", e);
+                }
+            }
+        }
+
+        // a partially written batch must not be followed by further records, they would be ignored on replay:
+        private void discardFrom(long start) {
+            if (start < 0) {
+                return;
+            }
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not truncate the outbox segment, starting a new one", e);
+                try {
+                    rollOver();
+                } catch (IOException again) {
+                    logger.log(Level.SEVERE, "Could not roll over the outbox segment", again);
+                }
+            }
+        }
+    }
+}
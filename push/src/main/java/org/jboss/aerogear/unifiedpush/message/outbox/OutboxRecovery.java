@@ -0,0 +1,91 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.outbox;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.dispatch.SendDispatcher;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobRegistry;
+import org.jboss.aerogear.unifiedpush.message.schedule.SendScheduler;
+import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resumes the sends, that were accepted but not finished before the last shutdown or crash.
+ */
+@Singleton
+@Startup
+public class OutboxRecovery {
+
+    private final Logger logger = Logger.getLogger(OutboxRecovery.class.getName());
+
+    @Inject
+    private Outbox outbox;
+    @Inject
+    private PushApplicationService pushApplicationService;
+    @Inject
+    private SendJobRegistry sendJobs;
+    @Inject
+    private SendDispatcher sendDispatcher;
+    @Inject
+    private SendScheduler sendScheduler;
+
+    @PostConstruct
+    public void resumePendingSends() {
+        final List<PendingSend> sends = outbox.takeRecovered();
+        for (PendingSend send : sends) {
+            final PushApplication pushApplication = pushApplicationService.findByPushApplicationID(send.getPushApplicationID());
+            if (pushApplication == null) {
+                logger.log(Level.WARNING, "Dropping pending send " + send.getJobId() + ", its push application has been deleted");
+                outbox.finished(send.getJobId());
+                continue;
+            }
+
+            final UnifiedPushMessage message;
+            try {
+                message = new UnifiedPushMessage(outbox.parse(send.getRawMessage()));
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Dropping pending send " + send.getJobId() + ", its message could not be read", e);
+                outbox.finished(send.getJobId());
+                continue;
+            }
+            message.setIpAddress(send.getIpAddress());
+            message.setClientIdentifier(send.getClientIdentifier());
+            message.setJobId(send.getJobId());
+            message.setRawMessage(send.getRawMessage());
+            // the time to live counts from the original submission:
+            message.setSubmittedAt(send.getAcceptedAt());
+
+            sendJobs.create(send.getJobId(), send.getPushApplicationID());
+            // scheduled messages wait for their time again, when the scheduler is full they are staged right away:
+            if (!sendScheduler.isScheduled(message) || !sendScheduler.schedule(send.getPushApplicationID(), message)) {
+                sendDispatcher.resume(pushApplication, message);
+            }
+        }
+        if (!sends.isEmpty()) {
+            logger.log(Level.INFO, "Resumed " + sends.size() + " pending sends");
+        }
+    }
+}
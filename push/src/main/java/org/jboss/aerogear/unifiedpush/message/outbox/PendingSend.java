@@ -0,0 +1,119 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.outbox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An accepted push message, that has not been finished yet, with the progress of its variants.
+ */
+public final class PendingSend {
+
+    // tokens are never empty, so the empty string marks the start of the sorted token list:
+    static final String START = "";
+
+    private final String jobId;
+    private final String pushApplicationID;
+    private final String rawMessage;
+    private final String ipAddress;
+    private final String clientIdentifier;
+    private final long acceptedAt;
+    private final Map<String, VariantCursor> variants = new HashMap<String, VariantCursor>();
+
+    PendingSend(String jobId, String pushApplicationID, String rawMessage, String ipAddress, String clientIdentifier, long acceptedAt) {
+        this.jobId = jobId;
+        this.pushApplicationID = pushApplicationID;
+        this.rawMessage = rawMessage;
+        this.ipAddress = ipAddress;
+        this.clientIdentifier = clientIdentifier;
+        this.acceptedAt = acceptedAt;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getPushApplicationID() {
+        return pushApplicationID;
+    }
+
+    /**
+     * The message, as submitted to the RESTful Sender endpoint.
+     */
+    public String getRawMessage() {
+        return rawMessage;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getClientIdentifier() {
+        return clientIdentifier;
+    }
+
+    /**
+     * The time (in milliseconds since the epoch) the message has been accepted.
+     */
+    public long getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    /**
+     * Returns the last token of the given variant, up to which all tokens have been sent, or <code>null</code>.
+     */
+    String cursorOf(String variantID) {
+        final VariantCursor cursor = variants.get(variantID);
+        return cursor == null || START.equals(cursor.position) ? null : cursor.position;
+    }
+
+    /**
+     * Records that the (sorted) tokens of the given variant after <code>after</code>, up to and including
+     * <code>last</code> have been sent. Batches may complete in any order, the cursor only moves over contiguous ones.
+     */
+    void checkpoint(String variantID, String after, String last) {
+        VariantCursor cursor = variants.get(variantID);
+        if (cursor == null) {
+            cursor = new VariantCursor();
+            variants.put(variantID, cursor);
+        }
+        cursor.ranges.put(after, last);
+        String next;
+        while ((next = cursor.ranges.remove(cursor.position)) != null) {
+            cursor.position = next;
+        }
+    }
+
+    Map<String, VariantCursor> getVariants() {
+        return variants;
+    }
+
+    static final class VariantCursor {
+        private String position = START;
+        // batches beyond the position, the exclusive lower bound mapped to the last token:
+        private final Map<String, String> ranges = new HashMap<String, String>();
+
+        String getPosition() {
+            return position;
+        }
+
+        Map<String, String> getRanges() {
+            return ranges;
+        }
+    }
+}
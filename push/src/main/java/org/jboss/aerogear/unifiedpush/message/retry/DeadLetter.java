@@ -0,0 +1,82 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.retry;
+
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A batch of tokens, that could not be delivered to the push network within the allowed attempts. Kept in the
+ * {@link DeadLetterStore}, until it is replayed or discarded.
+ */
+public class DeadLetter {
+
+    private final String id = UUID.randomUUID().toString();
+    private final Variant variant;
+    private final List<String> tokens;
+    private final UnifiedPushMessage message;
+    private final PushMessageInformation pushMessageInformation;
+    private final String reason;
+    private final int attempts;
+    private final Date failedAt = new Date();
+
+    public DeadLetter(Variant variant, Collection<String> tokens, UnifiedPushMessage message,
+                      PushMessageInformation pushMessageInformation, String reason, int attempts) {
+        this.variant = variant;
+        this.tokens = Collections.unmodifiableList(new ArrayList<String>(tokens));
+        this.message = message;
+        this.pushMessageInformation = pushMessageInformation;
+        this.reason = reason;
+        this.attempts = attempts;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Variant getVariant() {
+        return variant;
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    public UnifiedPushMessage getMessage() {
+        return message;
+    }
+
+    public PushMessageInformation getPushMessageInformation() {
+        return pushMessageInformation;
+    }
+
+    /**
+     * Returns the JSON friendly view, without the credentials of the variant and the tokens.
+     */
+    public DeadLetterSummary summarize() {
+        return new DeadLetterSummary(id, variant.getVariantID(), variant.getType().getTypeName(),
+                pushMessageInformation.getId(), tokens.size(), message.getAlert(), reason, attempts, failedAt);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.retry;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded, in-memory store of the batches that ran out of retries. Once the capacity (system property
+ * <code>aerogear.deadLetter.capacity</code>, default: 1000) is reached, the oldest entry is dropped.
+ */
+@ApplicationScoped
+public class DeadLetterStore {
+
+    private final Logger logger = Logger.getLogger(DeadLetterStore.class.getName());
+
+    private final int capacity;
+    private final Map<String, DeadLetter> deadLetters = new LinkedHashMap<String, DeadLetter>();
+
+    public DeadLetterStore() {
+        this(Integer.getInteger("aerogear.deadLetter.capacity", 1000));
+    }
+
+    DeadLetterStore(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void add(DeadLetter deadLetter) {
+        synchronized (deadLetters) {
+            if (deadLetters.size() >= capacity) {
+                final Iterator<DeadLetter> oldest = deadLetters.values().iterator();
+                final DeadLetter dropped = oldest.next();
+                oldest.remove();
+                logger.log(Level.WARNING, "Dead letter store is full, dropping " + dropped.getTokens().size()
+                        + " tokens of variant " + dropped.getVariant().getVariantID());
+            }
+            deadLetters.put(deadLetter.getId(), deadLetter);
+        }
+    }
+
+    /**
+     * Returns the summaries of all dead letters, the oldest first.
+     */
+    public List<DeadLetterSummary> getSummaries() {
+        synchronized (deadLetters) {
+            final List<DeadLetterSummary> summaries = new ArrayList<DeadLetterSummary>(deadLetters.size());
+            for (DeadLetter deadLetter : deadLetters.values()) {
+                summaries.add(deadLetter.summarize());
+            }
+            return summaries;
+        }
+    }
+
+    /**
+     * Removes and returns the dead letter with the given ID, or <code>null</code> if there is none.
+     */
+    public DeadLetter remove(String id) {
+        synchronized (deadLetters) {
+            return deadLetters.remove(id);
+        }
+    }
+
+    /**
+     * Removes and returns all dead letters, the oldest first.
+     */
+    public List<DeadLetter> removeAll() {
+        synchronized (deadLetters) {
+            final List<DeadLetter> all = new ArrayList<DeadLetter>(deadLetters.values());
+            deadLetters.clear();
+            return all;
+        }
+    }
+
+    public int size() {
+        synchronized (deadLetters) {
+            return deadLetters.size();
+        }
+    }
+}
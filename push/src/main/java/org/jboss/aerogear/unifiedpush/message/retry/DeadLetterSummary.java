@@ -0,0 +1,84 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.retry;
+
+import java.util.Date;
+
+/**
+ * Describes a {@link DeadLetter}, as shown by the RESTful endpoint.
+ */
+public class DeadLetterSummary {
+
+    private final String id;
+    private final String variantID;
+    private final String network;
+    private final String pushMessageID;
+    private final int tokenCount;
+    private final String alert;
+    private final String reason;
+    private final int attempts;
+    private final Date failedAt;
+
+    public DeadLetterSummary(String id, String variantID, String network, String pushMessageID, int tokenCount,
+                             String alert, String reason, int attempts, Date failedAt) {
+        this.id = id;
+        this.variantID = variantID;
+        this.network = network;
+        this.pushMessageID = pushMessageID;
+        this.tokenCount = tokenCount;
+        this.alert = alert;
+        this.reason = reason;
+        this.attempts = attempts;
+        this.failedAt = failedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getVariantID() {
+        return variantID;
+    }
+
+    public String getNetwork() {
+        return network;
+    }
+
+    public String getPushMessageID() {
+        return pushMessageID;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public String getAlert() {
+        return alert;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Date getFailedAt() {
+        return failedAt;
+    }
+}
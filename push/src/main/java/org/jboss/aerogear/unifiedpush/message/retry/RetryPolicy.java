@@ -0,0 +1,99 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.retry;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether, and when, a batch that failed with a transient error is submitted again: exponential backoff with
+ * jitter, never sooner than requested by the push network (<code>Retry-After</code>), up to a maximum of attempts.
+ *
+ * Configured with the system properties <code>aerogear.retry.maxAttempts</code> (default: 5),
+ * <code>aerogear.retry.initialDelayMillis</code> (default: 1000) and <code>aerogear.retry.maxDelayMillis</code>
+ * (default: 300000).
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public static RetryPolicy fromSystemProperties() {
+        return new RetryPolicy(Integer.getInteger("aerogear.retry.maxAttempts", 5),
+                Long.getLong("aerogear.retry.initialDelayMillis", 1000),
+                Long.getLong("aerogear.retry.maxDelayMillis", TimeUnit.MINUTES.toMillis(5)));
+    }
+
+    /**
+     * Returns true if a batch, that failed on the given attempt (starting at 1), may be submitted again.
+     */
+    public boolean canRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * Returns the delay before the next attempt, after the given attempt (starting at 1) failed. Half of the
+     * exponentially growing delay is random, so that the retries of many batches, that failed at the same time,
+     * do not hit the push network all at once.
+     *
+     * @param retryAfterMillis the delay requested by the push network, or 0
+     */
+    public long delayFor(int attempt, long retryAfterMillis, Random random) {
+        final long ceiling = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt - 1, 30));
+        final long half = ceiling / 2;
+        final long delay = half + (long) (random.nextDouble() * (ceiling - half));
+        return Math.max(delay, retryAfterMillis);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Parses the value of a <code>Retry-After</code> header, either delta-seconds or an HTTP date, into milliseconds
+     * from now. Returns 0 if the header is missing or invalid.
+     */
+    public static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // not delta-seconds, so it has to be a date
+        }
+        final SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.ENGLISH);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, httpDate.parse(value).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.retry;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs retries, and other delayed work like the probes of the circuit breakers, after a delay, on a container managed
+ * thread. The retries are kept in memory and scheduled with non-persistent timers, so pending retries do not survive a
+ * restart.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RetryScheduler {
+
+    private final Logger logger = Logger.getLogger(RetryScheduler.class.getName());
+
+    private final ConcurrentMap<String, Runnable> pendingRetries = new ConcurrentHashMap<String, Runnable>();
+
+    @Resource
+    private TimerService timerService;
+
+    public void schedule(Runnable retry, long delayMillis) {
+        final String id = UUID.randomUUID().toString();
+        pendingRetries.put(id, retry);
+        timerService.createSingleActionTimer(Math.max(1, delayMillis), new TimerConfig(id, false));
+    }
+
+    /**
+     * Number of retries, that are waiting for their timer.
+     */
+    public int getPendingRetries() {
+        return pendingRetries.size();
+    }
+
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void retry(Timer timer) {
+        final Runnable retry = pendingRetries.remove((String) timer.getInfo());
+        if (retry != null) {
+            try {
+                retry.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Retry failed", e);
+            }
+        }
+    }
+}
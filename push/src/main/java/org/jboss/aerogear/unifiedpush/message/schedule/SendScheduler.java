@@ -0,0 +1,239 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.schedule;
+
+import org.jboss.aerogear.unifiedpush.api.PushApplication;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.dispatch.SendDispatcher;
+import org.jboss.aerogear.unifiedpush.message.job.SendJobRegistry;
+import org.jboss.aerogear.unifiedpush.message.outbox.Outbox;
+import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the messages, that have been submitted with a future 'deliver-at' time, in a {@link TimingWheel}. The messages
+ * are journaled by the {@link Outbox} like any other accepted message, so they are scheduled again after a restart.
+ *
+ * A message is released to its dispatch lane shortly before its delivery time, so it is stored, and the tokens of its
+ * variants are staged ahead of time: only the tokens that split them into batches are kept, and the staged variants are
+ * held on the same wheel (see {@link #hold(long, Runnable)}) until the time has come. The releases of messages scheduled
+ * for the same time are spread over the first half of the staging period, so their token queries do not all hit the
+ * database at once.
+ *
+ * Configured by the system properties:
+ *
+ * <ul>
+ *     <li><code>aerogear.schedule.stagingSeconds</code>, the time a message is released before it is due (default: 60)</li>
+ *     <li><code>aerogear.schedule.capacity</code>, the maximum number of pending scheduled messages (default: 500000)</li>
+ *     <li><code>aerogear.schedule.tickMillis</code>, the resolution of the timing wheel (default: 1000)</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class SendScheduler {
+
+    private static final long STAGING_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("aerogear.schedule.stagingSeconds", 60));
+    private static final int CAPACITY = Integer.getInteger("aerogear.schedule.capacity", 500000);
+    private static final long TICK_MILLIS = Math.max(1, Long.getLong("aerogear.schedule.tickMillis", 1000));
+    private static final int WHEEL_SIZE = 64;
+
+    private final Logger logger = Logger.getLogger(SendScheduler.class.getName());
+
+    /**
+     * The submitted message is kept in its JSON form, which is smaller than the parsed one.
+     */
+    private final class ScheduledSend implements Runnable {
+        private final String jobId;
+        private final String pushApplicationID;
+        private final String rawMessage;
+        private final String ipAddress;
+        private final String clientIdentifier;
+
+        private ScheduledSend(String pushApplicationID, UnifiedPushMessage message) {
+            this.jobId = message.getJobId();
+            this.pushApplicationID = pushApplicationID;
+            this.rawMessage = message.getRawMessage();
+            this.ipAddress = message.getIpAddress();
+            this.clientIdentifier = message.getClientIdentifier();
+        }
+
+        @Override
+        public void run() {
+            try {
+                release(this);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Could not release scheduled send " + jobId, e);
+                sendJobs.failed(jobId, "Release failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A staged variant of a released message, that is waiting for its delivery time.
+     */
+    private static final class HeldVariant implements Runnable {
+        private final Runnable task;
+
+        private HeldVariant(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    private final TimingWheel<Runnable> wheel = new TimingWheel<Runnable>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+    private int heldVariants;
+    private Thread ticker;
+
+    @Inject
+    private SendDispatcher sendDispatcher;
+    @Inject
+    private PushApplicationService pushApplicationService;
+    @Inject
+    private SendJobRegistry sendJobs;
+    @Inject
+    private Outbox outbox;
+
+    @PostConstruct
+    public void startTicker() {
+        ticker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(TICK_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    releaseDue();
+                }
+            }
+        }, "aerogear-send-scheduler");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stopTicker() {
+        ticker.interrupt();
+    }
+
+    /**
+     * Whether the given message is to be delivered later.
+     */
+    public boolean isScheduled(UnifiedPushMessage message) {
+        return message.getDeliverAt() > System.currentTimeMillis();
+    }
+
+    /**
+     * Holds the given message until shortly before its delivery time. Returns false if too many messages are pending.
+     */
+    public boolean schedule(String pushApplicationID, UnifiedPushMessage message) {
+        synchronized (wheel) {
+            if (wheel.size() - heldVariants >= CAPACITY) {
+                return false;
+            }
+            wheel.add(releaseTime(message.getJobId(), message.getDeliverAt()), new ScheduledSend(pushApplicationID, message));
+        }
+        sendJobs.scheduled(message.getJobId(), message.getDeliverAt());
+        return true;
+    }
+
+    /**
+     * Runs the given task once the given delivery time has come, on the thread of the wheel: it should only hand the
+     * work to a dispatch lane. Used for the staged variants of a released message, they are not counted against the
+     * capacity.
+     */
+    public void hold(long deliverAt, Runnable task) {
+        synchronized (wheel) {
+            wheel.add(deliverAt, new HeldVariant(task));
+            heldVariants++;
+        }
+    }
+
+    /**
+     * Number of scheduled messages, that have not been released yet.
+     */
+    public int getPendingCount() {
+        synchronized (wheel) {
+            return wheel.size() - heldVariants;
+        }
+    }
+
+    static long releaseTime(String jobId, long deliverAt) {
+        // stable per job, within the first half of the staging period:
+        final long spread = (jobId.hashCode() & Integer.MAX_VALUE) % (STAGING_MILLIS / 2 + 1);
+        return deliverAt - STAGING_MILLIS + spread;
+    }
+
+    private void releaseDue() {
+        final List<Runnable> due;
+        synchronized (wheel) {
+            due = wheel.advance(System.currentTimeMillis());
+            for (Runnable task : due) {
+                if (task instanceof HeldVariant) {
+                    heldVariants--;
+                }
+            }
+        }
+        for (Runnable task : due) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Could not dispatch a staged variant", e);
+            }
+        }
+    }
+
+    private void release(ScheduledSend send) {
+        final PushApplication pushApplication = pushApplicationService.findByPushApplicationID(send.pushApplicationID);
+        if (pushApplication == null) {
+            logger.log(Level.WARNING, "Dropping scheduled send " + send.jobId + ", its push application has been deleted");
+            sendJobs.failed(send.jobId, "Push application has been deleted");
+            outbox.finished(send.jobId);
+            return;
+        }
+
+        final UnifiedPushMessage message;
+        try {
+            message = new UnifiedPushMessage(outbox.parse(send.rawMessage));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Dropping scheduled send " + send.jobId + ", its message could not be read", e);
+            sendJobs.failed(send.jobId, "Message could not be read");
+            outbox.finished(send.jobId);
+            return;
+        }
+        message.setIpAddress(send.ipAddress);
+        message.setClientIdentifier(send.clientIdentifier);
+        message.setJobId(send.jobId);
+        message.setRawMessage(send.rawMessage);
+
+        // accepted already, when it was scheduled:
+        sendDispatcher.resume(pushApplication, message);
+    }
+}
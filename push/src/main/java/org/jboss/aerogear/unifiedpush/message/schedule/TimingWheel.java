@@ -0,0 +1,155 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.schedule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: every level is a ring of <code>wheelSize</code> buckets, the buckets of the first level
+ * span one tick, the buckets of every further level span a whole revolution of the level below. Adding an item is
+ * O(1), regardless of the number of pending items and of how far ahead it is due. Once the wheel reaches a bucket of a
+ * higher level, its items are moved down, until they expire in the first level.
+ *
+ * Items are due at tick granularity, and are returned by {@link #advance(long)}. Not thread-safe.
+ */
+final class TimingWheel<T> {
+
+    private static final class Entry<T> {
+        private final long fireAt;
+        private final T item;
+
+        private Entry(long fireAt, T item) {
+            this.fireAt = fireAt;
+            this.item = item;
+        }
+    }
+
+    private static final class Level<T> {
+        private final long tick;
+        private final long interval;
+        private final List<ArrayDeque<Entry<T>>> buckets;
+        // start of the current bucket:
+        private long currentTime;
+
+        private Level(long tick, int wheelSize, long now) {
+            this.tick = tick;
+            this.interval = tick * wheelSize;
+            this.buckets = new ArrayList<ArrayDeque<Entry<T>>>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(null);
+            }
+            this.currentTime = now - now % tick;
+        }
+
+        private ArrayDeque<Entry<T>> bucketOf(long time) {
+            final int index = (int) ((time / tick) % buckets.size());
+            ArrayDeque<Entry<T>> bucket = buckets.get(index);
+            if (bucket == null) {
+                bucket = new ArrayDeque<Entry<T>>();
+                buckets.set(index, bucket);
+            }
+            return bucket;
+        }
+
+        private ArrayDeque<Entry<T>> removeBucketOf(long time) {
+            return buckets.set((int) ((time / tick) % buckets.size()), null);
+        }
+    }
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<Level<T>> levels = new ArrayList<Level<T>>();
+    private final List<T> expired = new ArrayList<T>();
+    private int size;
+
+    TimingWheel(long tickMillis, int wheelSize, long now) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        levels.add(new Level<T>(tickMillis, wheelSize, now));
+    }
+
+    /**
+     * Adds an item, that is due at the given time. Items that are due already are returned by the next advance.
+     */
+    void add(long fireAt, T item) {
+        size++;
+        insert(new Entry<T>(fireAt, item));
+    }
+
+    /**
+     * Moves the wheel forward to the given time, and returns the items that are due.
+     */
+    List<T> advance(long now) {
+        final Level<T> first = levels.get(0);
+        while (first.currentTime + tickMillis <= now) {
+            final long next = first.currentTime + tickMillis;
+            // all levels move first, so moved items fit into the level below:
+            final boolean[] moved = new boolean[levels.size()];
+            for (int i = 0; i < levels.size(); i++) {
+                final Level<T> level = levels.get(i);
+                if (next >= level.currentTime + level.tick) {
+                    level.currentTime += level.tick;
+                    moved[i] = true;
+                }
+            }
+            for (int i = moved.length - 1; i >= 0; i--) {
+                if (moved[i]) {
+                    final Level<T> level = levels.get(i);
+                    final ArrayDeque<Entry<T>> bucket = level.removeBucketOf(level.currentTime);
+                    if (bucket != null) {
+                        for (Entry<T> entry : bucket) {
+                            insert(entry);
+                        }
+                    }
+                }
+            }
+        }
+
+        final List<T> due = new ArrayList<T>(expired);
+        expired.clear();
+        size -= due.size();
+        return due;
+    }
+
+    /**
+     * Number of pending items, including the due ones, that have not been returned yet.
+     */
+    int size() {
+        return size;
+    }
+
+    private void insert(Entry<T> entry) {
+        final Level<T> first = levels.get(0);
+        if (entry.fireAt < first.currentTime + tickMillis) {
+            expired.add(entry.item);
+            return;
+        }
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                final Level<T> below = levels.get(i - 1);
+                levels.add(new Level<T>(below.interval, wheelSize, first.currentTime));
+            }
+            final Level<T> level = levels.get(i);
+            if (entry.fireAt < level.currentTime + level.interval) {
+                level.bucketOf(entry.fireAt).add(entry);
+                return;
+            }
+        }
+    }
+}
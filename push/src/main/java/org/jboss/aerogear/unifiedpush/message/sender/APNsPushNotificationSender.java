@@ -23,16 +23,26 @@ import com.notnoop.apns.ApnsService;
 import com.notnoop.apns.ApnsServiceBuilder;
 import com.notnoop.apns.EnhancedApnsNotification;
 import com.notnoop.apns.PayloadBuilder;
+import com.notnoop.apns.internal.Utilities;
+import com.notnoop.exceptions.NetworkIOException;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.api.iOSVariant;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.throttle.SendRateLimiter;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.SendStage;
+import org.jboss.aerogear.unifiedpush.service.metrics.VariantSendMetrics;
 
 import javax.inject.Inject;
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,10 +50,20 @@ import java.util.logging.Logger;
 @SenderType(iOSVariant.class)
 public class APNsPushNotificationSender implements PushNotificationSender {
 
+    /**
+     * Overrides the APNs gateway (together with <code>aerogear.apns.gatewayPort</code>, <code>aerogear.apns.feedbackHost</code>
+     * and <code>aerogear.apns.feedbackPort</code>), for all iOS variants.
+     */
+    private static final String GATEWAY_HOST = System.getProperty("aerogear.apns.gatewayHost");
+
     private final Logger logger = Logger.getLogger(APNsPushNotificationSender.class.getName());
 
     @Inject
     private ClientInstallationService clientInstallationService;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private SendRateLimiter rateLimiter;
 
     /**
      * Sends APNs notifications ({@link UnifiedPushMessage}) to all devices, that are represented by
@@ -56,48 +76,66 @@ public class APNsPushNotificationSender implements PushNotificationSender {
         }
 
         final iOSVariant iOSVariant = (iOSVariant) variant;
+        final VariantSendMetrics variantMetrics = pushMetrics.forVariant(variant);
 
-        PayloadBuilder builder = APNS.newPayload()
-                // adding recognized key values
-                .alertBody(pushMessage.getAlert()) // alert dialog, in iOS
-                .badge(pushMessage.getBadge()) // little badge icon update;
-                .sound(pushMessage.getSound()) // sound to be played by app
-                .category(pushMessage.getActionCategory()); // iOS8: User Action category
-
-                // apply the 'content-available:1' value:
-                if (pushMessage.isContentAvailable()) {
-                    // content-available is for 'silent' notifications and Newsstand
-                    builder = builder.instantDeliveryOrSilentNotification();
-                }
-
-                builder = builder.customFields(pushMessage.getData()); // adding other (submitted) fields
+        final long buildStart = System.nanoTime();
+        final PayloadBuilder builder = buildPayload(pushMessage);
 
         // we are done with adding values here, before building let's check if the msg is too long
         if (builder.isTooLong()) {
             logger.log(Level.WARNING, "Nothing sent to APNs since the payload is too large");
+            variantMetrics.recordError(SendStage.PAYLOAD_BUILD);
             // invoke the error callback and return, as it is pointless to send something out
-            callback.onError("message too long for APNs");
+            callback.onError(tokens.size(), "message too long for APNs");
 
             return;
         }
 
         // all good, let's build the JSON payload for APNs
         final String apnsMessage  =  builder.build();
+        variantMetrics.record(SendStage.PAYLOAD_BUILD, System.nanoTime() - buildStart, 1);
 
         ApnsService service = buildApnsService(iOSVariant, callback);
 
         if (service != null) {
+            final long networkStart = System.nanoTime();
+            final List<String> deviceTokens = new ArrayList<String>(tokens);
+            // tokens, that have been handed to APNs or to the callback:
+            int handled = 0;
+            variantMetrics.networkCallStarted();
             try {
                 logger.log(Level.FINE, "Sending transformed APNs payload: " + apnsMessage);
                 // send:
                 service.start();
 
                 Date expireDate = createFutureDateBasedOnTTL(pushMessage.getTimeToLive());
-                service.push(tokens, apnsMessage, expireDate);
+                final String certificate = Integer.toHexString(Arrays.hashCode(iOSVariant.getCertificate()));
+                for (int i = 0; i < deviceTokens.size(); i++) {
+                    final long delay = rateLimiter.acquire(variant.getType().getTypeName(), certificate, 1);
+                    if (delay > 0) {
+                        callback.onThrottled(deviceTokens.subList(i, deviceTokens.size()), delay);
+                        handled = deviceTokens.size();
+                        break;
+                    }
+                    try {
+                        service.push(deviceTokens.get(i), apnsMessage, expireDate);
+                        handled = i + 1;
+                    } catch (NetworkIOException e) {
+                        // the failed token has been handed to the delegate, the remaining ones were not sent at all:
+                        logger.log(Level.WARNING, "Connection to APNs failed, retrying the remaining tokens later", e);
+                        variantMetrics.recordError(SendStage.NETWORK);
+                        if (i + 1 < deviceTokens.size()) {
+                            callback.onTransientError(deviceTokens.subList(i + 1, deviceTokens.size()), "Error sending payload to APNs server", 0);
+                        }
+                        handled = deviceTokens.size();
+                        break;
+                    }
+                }
                 logger.log(Level.INFO, "Message to APNs has been submitted");
 
                 // after sending, let's ask for the inactive tokens:
                 final Set<String> inactiveTokens = service.getInactiveDevices().keySet();
+                variantMetrics.record(SendStage.NETWORK, System.nanoTime() - networkStart, tokens.size());
                 // transform the tokens to be all lower-case:
                 final Set<String> transformedTokens = lowerCaseAllTokens(inactiveTokens);
 
@@ -108,14 +146,41 @@ public class APNsPushNotificationSender implements PushNotificationSender {
                 }
             } catch (RuntimeException e) {
                 logger.log(Level.SEVERE, "Error sending messages to APN server", e);
+                variantMetrics.recordError(SendStage.NETWORK);
+                // the tokens, that have not been pushed, would never be reported otherwise:
+                if (handled < deviceTokens.size()) {
+                    callback.onError(deviceTokens.size() - handled, "Error sending payload to APNs server");
+                }
             } finally {
                 // tear down and release resources:
                 service.stop();
+                variantMetrics.networkCallFinished();
             }
         } else {
             logger.log(Level.SEVERE, "No certificate was found. Could not send messages to APNs");
-            callback.onError("No certificate for APNs was found");
+            callback.onError(tokens.size(), "No certificate for APNs was found");
+        }
+    }
+
+    /**
+     * Transforms the given {@link UnifiedPushMessage} into the APNs payload builder, the size check and the final
+     * <code>build()</code> is up to the caller.
+     */
+    static PayloadBuilder buildPayload(UnifiedPushMessage pushMessage) {
+        PayloadBuilder builder = APNS.newPayload()
+                // adding recognized key values
+                .alertBody(pushMessage.getAlert()) // alert dialog, in iOS
+                .badge(pushMessage.getBadge()) // little badge icon update;
+                .sound(pushMessage.getSound()) // sound to be played by app
+                .category(pushMessage.getActionCategory()); // iOS8: User Action category
+
+        // apply the 'content-available:1' value:
+        if (pushMessage.isContentAvailable()) {
+            // content-available is for 'silent' notifications and Newsstand
+            builder = builder.instantDeliveryOrSilentNotification();
         }
+
+        return builder.customFields(pushMessage.getData()); // adding other (submitted) fields
     }
 
     /**
@@ -160,13 +225,14 @@ public class APNsPushNotificationSender implements PushNotificationSender {
             builder.withDelegate(new ApnsDelegateAdapter() {
                 @Override
                 public void messageSent(ApnsNotification message, boolean resent) {
-                    notificationSenderCallback.onSuccess();
+                    notificationSenderCallback.onSuccess(1);
                 }
 
                 @Override
                 public void messageSendFailed(ApnsNotification message, Throwable e) {
-                    logger.log(Level.SEVERE, "Error sending payload to APNs server", e);
-                    notificationSenderCallback.onError("Error sending payload to APNs server");
+                    logger.log(Level.WARNING, "Error sending payload to APNs server", e);
+                    final String token = Utilities.encodeHex(message.getDeviceToken()).toLowerCase();
+                    notificationSenderCallback.onTransientError(Collections.singletonList(token), "Error sending payload to APNs server", 0);
                 }
             });
 
@@ -185,7 +251,12 @@ public class APNsPushNotificationSender implements PushNotificationSender {
             }
 
             // pick the destination:
-            if (iOSVariant.isProduction()) {
+            if (GATEWAY_HOST != null) {
+                // e.g. a local stand-in for load tests:
+                builder.withGatewayDestination(GATEWAY_HOST, Integer.getInteger("aerogear.apns.gatewayPort", 2195));
+                builder.withFeedbackDestination(System.getProperty("aerogear.apns.feedbackHost", GATEWAY_HOST),
+                        Integer.getInteger("aerogear.apns.feedbackPort", 2196));
+            } else if (iOSVariant.isProduction()) {
                 builder.withProductionDestination();
             } else {
                 builder.withSandboxDestination();
@@ -20,10 +20,16 @@ import org.jboss.aerogear.unifiedpush.api.ChromePackagedAppVariant;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.message.helper.ChromePackagedAppTokenCache;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.retry.RetryPolicy;
+import org.jboss.aerogear.unifiedpush.message.throttle.SendRateLimiter;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.SendStage;
+import org.jboss.aerogear.unifiedpush.service.metrics.VariantSendMetrics;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
+import javax.inject.Inject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,9 +38,12 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,11 +52,17 @@ import java.util.logging.Logger;
 public class GCMForChromePushNotificationSender implements PushNotificationSender {
 
     private static final Charset UTF_8 = Charset.forName("UTF-8");
-    private static final String MESSAGE_URL = "https://www.googleapis.com/gcm_for_chrome/v1/messages";
-    private static final String ACCESS_TOKEN_URL = "https://accounts.google.com/o/oauth2/token";
+    // both can be overridden, e.g. with a local stand-in for load tests:
+    private static final String MESSAGE_URL = System.getProperty("aerogear.chrome.messageUrl", "https://www.googleapis.com/gcm_for_chrome/v1/messages");
+    private static final String ACCESS_TOKEN_URL = System.getProperty("aerogear.chrome.accessTokenUrl", "https://accounts.google.com/o/oauth2/token");
 
     private final Logger logger = Logger.getLogger(GCMForChromePushNotificationSender.class.getName());
 
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private SendRateLimiter rateLimiter;
+
     // We need a place to hold the current access token/expire time for each GCM for Chrome application. Not good practice to always get a new access token
     private Map<String, ChromePackagedAppTokenCache> accessTokenMap = new HashMap<String, ChromePackagedAppTokenCache>();
 
@@ -58,30 +73,50 @@ public class GCMForChromePushNotificationSender implements PushNotificationSende
         }
 
         final ChromePackagedAppVariant chromePackagedAppVariant = (ChromePackagedAppVariant) variant;
+        final VariantSendMetrics variantMetrics = pushMetrics.forVariant(variant);
 
         String accessToken = fetchAccessToken(chromePackagedAppVariant);
 
         // iterate over all the given channelIDs
-        for (String channelID : tokens) {
+        final List<String> channelIDs = new ArrayList<String>(tokens);
+        for (int i = 0; i < channelIDs.size(); i++) {
+            final String channelID = channelIDs.get(i);
+
+            final long delay = rateLimiter.acquire(variant.getType().getTypeName(), chromePackagedAppVariant.getClientId(), 1);
+            if (delay > 0) {
+                callback.onThrottled(channelIDs.subList(i, channelIDs.size()), delay);
+                break;
+            }
 
             HttpURLConnection conn = null;
+            final long networkStart = System.nanoTime();
+            variantMetrics.networkCallStarted();
             try {
                 final String clientURL = MESSAGE_URL;
                 // POST the payload to the GCM For Chrome server
                 conn = post(clientURL, "{'channelId': '" + channelID + "', 'subchannelId': '0', 'payload': '" + pushMessage.getAlert() + "'}", accessToken);
                 int chromePackagedAppStatusCode = conn.getResponseCode();
+                variantMetrics.record(SendStage.NETWORK, System.nanoTime() - networkStart, 1);
 
                 // did we get a 'good' status code?
                 if (chromePackagedAppStatusCode < 400) {
-                    callback.onSuccess();
+                    callback.onSuccess(1);
+                } else if (chromePackagedAppStatusCode >= 500) {
+                    logger.log(Level.WARNING, "GCM for Chrome Network is unavailable, status code was: " + chromePackagedAppStatusCode);
+                    variantMetrics.recordError(SendStage.NETWORK);
+                    callback.onTransientError(Collections.singletonList(channelID), "GCM for Chrome Network is unavailable",
+                            RetryPolicy.parseRetryAfter(conn.getHeaderField("Retry-After")));
                 } else {
                     logger.log(Level.SEVERE, "Error during Post execution to GCM for Chrome Network, status code was: " + chromePackagedAppStatusCode);
-                    callback.onError("Error delivering GCM/Chrome payload");
+                    variantMetrics.recordError(SendStage.NETWORK);
+                    callback.onError(1, "Error delivering GCM/Chrome payload");
                 }
             } catch (IOException e) {
-                logger.log(Level.SEVERE, "Error during Post execution to GCM for Chrome Network", e);
-                callback.onError("Error delivering GCM/Chrome payload");
+                logger.log(Level.WARNING, "Error during Post execution to GCM for Chrome Network", e);
+                variantMetrics.recordError(SendStage.NETWORK);
+                callback.onTransientError(Collections.singletonList(channelID), "Error delivering GCM/Chrome payload", 0);
             } finally {
+                variantMetrics.networkCallFinished();
                 // tear down
                 if (conn != null ) {
                     conn.disconnect();
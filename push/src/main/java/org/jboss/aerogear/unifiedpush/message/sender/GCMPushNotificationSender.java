@@ -17,6 +17,7 @@
 package org.jboss.aerogear.unifiedpush.message.sender;
 
 import com.google.android.gcm.server.Constants;
+import com.google.android.gcm.server.InvalidRequestException;
 import com.google.android.gcm.server.Message;
 import com.google.android.gcm.server.Message.Builder;
 import com.google.android.gcm.server.MulticastResult;
@@ -25,10 +26,16 @@ import com.google.android.gcm.server.Sender;
 import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.retry.RetryPolicy;
+import org.jboss.aerogear.unifiedpush.message.throttle.SendRateLimiter;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.SendStage;
+import org.jboss.aerogear.unifiedpush.service.metrics.VariantSendMetrics;
 
 import javax.inject.Inject;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -42,8 +49,17 @@ public class GCMPushNotificationSender implements PushNotificationSender {
 
     private static final int GCM_PAGE = 1000;
 
+    /**
+     * Overrides the GCM endpoint, e.g. with a local stand-in for load tests.
+     */
+    private static final String GCM_ENDPOINT = System.getProperty("aerogear.gcm.endpoint");
+
     @Inject
     private ClientInstallationService clientInstallationService;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private SendRateLimiter rateLimiter;
 
     private final Logger logger = Logger.getLogger(GCMPushNotificationSender.class.getName());
 
@@ -60,7 +76,85 @@ public class GCMPushNotificationSender implements PushNotificationSender {
 
         final List<String>  registrationIDs = new ArrayList(tokens);
         final AndroidVariant androidVariant = (AndroidVariant) variant;
+        final VariantSendMetrics variantMetrics = pushMetrics.forVariant(variant);
+
+        final long buildStart = System.nanoTime();
+        final Message gcmMessage = buildMessage(pushMessage);
+        variantMetrics.record(SendStage.PAYLOAD_BUILD, System.nanoTime() - buildStart, 1);
+
+        // send it out.....
+        logger.log(Level.FINE, "Sending transformed GCM payload: " + gcmMessage);
+
+        final RetryAfterAwareSender sender = new RetryAfterAwareSender(androidVariant.getGoogleKey());
+        int submitted = 0;
+
+        // GCM does only allow a 1000 device IDs, and a page must fit the rate limit; a failing page is retried on its own
+        final int pageSize = Math.min(GCM_PAGE, rateLimiter.maxPermits(variant.getType().getTypeName(), androidVariant.getGoogleKey()));
+        for (int fromIndex = 0; fromIndex < registrationIDs.size(); fromIndex += pageSize) {
+            final List<String> sublist = registrationIDs.subList(fromIndex, Math.min(fromIndex + pageSize, registrationIDs.size()));
+
+            final long delay = rateLimiter.acquire(variant.getType().getTypeName(), androidVariant.getGoogleKey(), sublist.size());
+            if (delay > 0) {
+                // send the remaining pages, once the rate limit allows it:
+                callback.onThrottled(registrationIDs.subList(fromIndex, registrationIDs.size()), delay);
+                break;
+            }
+
+            try {
+                // send out a message to a few devices...
+                final List<String> unavailable = processGCM(androidVariant, sublist, gcmMessage, sender, variantMetrics);
+                submitted += sublist.size() - unavailable.size();
+
+                if (!unavailable.isEmpty()) {
+                    callback.onTransientError(unavailable, "GCM is unavailable for some devices", sender.getRetryAfterMillis());
+                }
+            } catch (InvalidRequestException e) {
+                if (e.getHttpStatusCode() < 500) {
+                    // e.g. an invalid Google API key, no point in trying the other pages:
+                    logger.log(Level.SEVERE, "Error sending payload to GCM server", e);
+                    callback.onError(registrationIDs.size() - fromIndex, "Error sending payload to GCM server");
+                    break;
+                }
+                logger.log(Level.WARNING, "GCM server is unavailable, retrying the page later", e);
+                callback.onTransientError(sublist, "GCM server is unavailable", sender.getRetryAfterMillis());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error sending payload to GCM server, retrying the page later", e);
+                callback.onTransientError(sublist, "Error sending payload to GCM server", sender.getRetryAfterMillis());
+            }
+        }
+
+        if (submitted > 0) {
+            logger.log(Level.INFO, "Message to GCM has been submitted");
+            callback.onSuccess(submitted);
+        }
+    }
+
+    /**
+     * Remembers the last connection, to read the <code>Retry-After</code> header after a failure.
+     */
+    private static final class RetryAfterAwareSender extends Sender {
+
+        private HttpURLConnection lastConnection;
+
+        private RetryAfterAwareSender(String googleKey) {
+            super(googleKey);
+        }
+
+        @Override
+        protected HttpURLConnection getConnection(String url) throws IOException {
+            lastConnection = super.getConnection(GCM_ENDPOINT == null ? url : GCM_ENDPOINT);
+            return lastConnection;
+        }
 
+        long getRetryAfterMillis() {
+            return lastConnection == null ? 0 : RetryPolicy.parseRetryAfter(lastConnection.getHeaderField("Retry-After"));
+        }
+    }
+
+    /**
+     * Transforms the given {@link UnifiedPushMessage} into the GCM payload.
+     */
+    static Message buildMessage(UnifiedPushMessage pushMessage) {
         // payload builder:
         Builder gcmBuilder = new Message.Builder();
 
@@ -75,6 +169,11 @@ public class GCMPushNotificationSender implements PushNotificationSender {
             gcmBuilder.timeToLive(ttl);
         }
 
+        // GCM keeps only the last message of a collapse key, for an offline device:
+        if (pushMessage.getCollapseKey() != null) {
+            gcmBuilder.collapseKey(pushMessage.getCollapseKey());
+        }
+
         // iterate over the missing keys:
         Set<String> keys = pushMessage.getData().keySet();
         for (String key : keys) {
@@ -82,50 +181,46 @@ public class GCMPushNotificationSender implements PushNotificationSender {
             gcmBuilder.addData(key, "" + pushMessage.getData().get(key));
         }
 
-        Message gcmMessage = gcmBuilder.build();
-
-        // send it out.....
-        try {
-            logger.log(Level.FINE, "Sending transformed GCM payload: " + gcmMessage);
-
-            final Sender sender = new Sender(androidVariant.getGoogleKey());
-
-            // GCM does only allow a 1000 device IDs
-            while (! registrationIDs.isEmpty()) {
-
-                int toIndex = GCM_PAGE;
-
-                if (registrationIDs.size() < GCM_PAGE) {
-                    toIndex = registrationIDs.size();
-                }
-                List<String> sublist = registrationIDs.subList(0, toIndex);
-
-                // send out a message to a few devices...
-                processGCM(androidVariant, sublist, gcmMessage, sender);
-                registrationIDs.removeAll(sublist);
-            }
-
-            logger.log(Level.INFO, "Message to GCM has been submitted");
-            callback.onSuccess();
-
-        } catch (Exception e) {
-            // GCM exceptions:
-            logger.log(Level.SEVERE, "Error sending payload to GCM server", e);
-            callback.onError("Error sending payload to GCM server");
-        }
+        return gcmBuilder.build();
     }
 
     /**
-     * Process the HTTP POST to the GCM infrastructor for the given list of registrationIDs.     *
+     * Process the HTTP POST to the GCM infrastructor for the given list of registrationIDs. Returns the registrationIDs,
+     * that GCM could not process at the moment (<code>Unavailable</code> or <code>InternalServerError</code>).
      */
-    private void processGCM(AndroidVariant androidVariant, List<String> registrationIDs, Message gcmMessage, Sender sender) throws IOException {
+    private List<String> processGCM(AndroidVariant androidVariant, List<String> registrationIDs, Message gcmMessage, Sender sender, VariantSendMetrics variantMetrics) throws IOException {
 
         logger.log(Level.INFO, "Sending payload for [" + registrationIDs.size() + "] devices to GCM");
 
-        MulticastResult multicastResult = sender.send(gcmMessage, registrationIDs, 0);
+        final MulticastResult multicastResult;
+        final long networkStart = System.nanoTime();
+        variantMetrics.networkCallStarted();
+        try {
+            multicastResult = sender.send(gcmMessage, registrationIDs, 0);
+        } catch (IOException e) {
+            variantMetrics.recordError(SendStage.NETWORK);
+            throw e;
+        } finally {
+            variantMetrics.networkCallFinished();
+        }
+        variantMetrics.record(SendStage.NETWORK, System.nanoTime() - networkStart, registrationIDs.size());
 
         // after sending, let's identify the inactive/invalid registrationIDs and trigger their deletion:
         cleanupInvalidRegistrationIDsForVariant(androidVariant.getVariantID(), multicastResult, registrationIDs);
+
+        return unavailableRegistrationIDs(multicastResult, registrationIDs);
+    }
+
+    private static List<String> unavailableRegistrationIDs(MulticastResult multicastResult, List<String> registrationIDs) {
+        final List<Result> results = multicastResult.getResults();
+        final List<String> unavailable = new ArrayList<String>();
+        for (int i = 0; i < results.size(); i++) {
+            final String errorCode = results.get(i).getErrorCodeName();
+            if (Constants.ERROR_UNAVAILABLE.equals(errorCode) || Constants.ERROR_INTERNAL_SERVER_ERROR.equals(errorCode)) {
+                unavailable.add(registrationIDs.get(i));
+            }
+        }
+        return unavailable;
     }
 
     /**
@@ -16,6 +16,8 @@
  */
 package org.jboss.aerogear.unifiedpush.message.sender;
 
+import java.util.Collection;
+
 /**
  * A simple Callback interface used when sending {@link org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage} to
  * an actual push network.
@@ -27,12 +29,36 @@ public interface NotificationSenderCallback {
      * this callback does <b>NOT</b> mean the messages have been sent out to the mobile devices. The invocation simply means
      * the {@link org.jboss.aerogear.unifiedpush.message.sender.PushNotificationSender} was able to send the messages to
      * the push network for its further processing
+     *
+     * @param tokens the number of tokens, that have been handed to the push network
      */
-    void onSuccess();
+    void onSuccess(int tokens);
 
     /**
      * Simple indicator which will be called on any type of error that occurred while sending the payload to the
      * underlying push network.
+     *
+     * @param tokens the number of tokens, that will not be delivered
+     * @param reason description of the error
+     */
+    void onError(int tokens, String reason);
+
+    /**
+     * Indicator for a transient error (e.g. an I/O error, a HTTP 5xx status or a GCM <code>Unavailable</code> result),
+     * the given tokens were not delivered, but may be submitted again later.
+     *
+     * @param tokens the tokens, that have not been delivered
+     * @param reason description of the error
+     * @param retryAfterMillis the delay requested by the push network (<code>Retry-After</code>), or 0
+     */
+    void onTransientError(Collection<String> tokens, String reason, long retryAfterMillis);
+
+    /**
+     * Indicator that the given tokens were not sent, because the rate limit of the push network or the credential
+     * was reached. Unlike {@link #onTransientError(Collection, String, long)}, this does not count as a failed attempt.
+     *
+     * @param tokens the tokens, that have not been sent
+     * @param delayMillis the delay, after which the rate limit allows to send them
      */
-    void onError(String reason);
+    void onThrottled(Collection<String> tokens, long delayMillis);
 }
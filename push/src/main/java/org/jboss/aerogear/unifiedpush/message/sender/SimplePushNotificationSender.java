@@ -19,14 +19,23 @@ package org.jboss.aerogear.unifiedpush.message.sender;
 import org.jboss.aerogear.unifiedpush.api.SimplePushVariant;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.jboss.aerogear.unifiedpush.message.retry.RetryPolicy;
+import org.jboss.aerogear.unifiedpush.message.throttle.SendRateLimiter;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.SendStage;
+import org.jboss.aerogear.unifiedpush.service.metrics.VariantSendMetrics;
 
+import javax.inject.Inject;
 import javax.ws.rs.core.Response.Status;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,12 +46,18 @@ public class SimplePushNotificationSender implements PushNotificationSender {
 
     private final Logger logger = Logger.getLogger(SimplePushNotificationSender.class.getName());
 
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private SendRateLimiter rateLimiter;
+
     /**
      * Sends SimplePush notifications to all connected clients, that are represented by
      * the {@link Collection} of channelIDs, for the given SimplePush network.
      */
     public void sendPushMessage(Variant variant, Collection<String> tokens, UnifiedPushMessage pushMessage, NotificationSenderCallback callback) {
 
+        final VariantSendMetrics variantMetrics = pushMetrics.forVariant(variant);
         String payload = pushMessage.getSimplePush();
 
         // Convenience from the SimplePush spec;
@@ -52,26 +67,45 @@ public class SimplePushNotificationSender implements PushNotificationSender {
         }
 
         // iterate over all the given channels, if there are channels:
-        for (String clientURL : tokens) {
+        final List<String> clientURLs = new ArrayList<String>(tokens);
+        for (int i = 0; i < clientURLs.size(); i++) {
+            final String clientURL = clientURLs.get(i);
+
+            final long delay = rateLimiter.acquire(variant.getType().getTypeName(), null, 1);
+            if (delay > 0) {
+                callback.onThrottled(clientURLs.subList(i, clientURLs.size()), delay);
+                break;
+            }
 
             HttpURLConnection conn = null;
+            final long networkStart = System.nanoTime();
+            variantMetrics.networkCallStarted();
             try {
                 // PUT the version payload to the SimplePushServer
                 logger.log(Level.FINEST, "Sending out SimplePush payload: " + payload);
                 conn = put(clientURL, payload);
                 int simplePushStatusCode = conn.getResponseCode();
                 logger.log(Level.INFO, "SimplePush Status: " + simplePushStatusCode);
+                variantMetrics.record(SendStage.NETWORK, System.nanoTime() - networkStart, 1);
 
                 if (Status.OK.getStatusCode() == simplePushStatusCode) {
-                    callback.onSuccess();
+                    callback.onSuccess(1);
+                } else if (simplePushStatusCode >= 500) {
+                    logger.log(Level.WARNING, "SimplePush Network is unavailable, status code was: " + simplePushStatusCode);
+                    variantMetrics.recordError(SendStage.NETWORK);
+                    callback.onTransientError(Collections.singletonList(clientURL), "SimplePush Network is unavailable",
+                            RetryPolicy.parseRetryAfter(conn.getHeaderField("Retry-After")));
                 } else {
                     logger.log(Level.SEVERE, "Error during PUT execution to SimplePush Network, status code was: " + simplePushStatusCode);
-                    callback.onError("Error delivering SimplePush payload");
+                    variantMetrics.recordError(SendStage.NETWORK);
+                    callback.onError(1, "Error delivering SimplePush payload");
                 }
             } catch (IOException e) {
-                logger.log(Level.SEVERE, "Error during PUT execution to SimplePush Network", e);
-                callback.onError("Error delivering SimplePush payload");
+                logger.log(Level.WARNING, "Error during PUT execution to SimplePush Network", e);
+                variantMetrics.recordError(SendStage.NETWORK);
+                callback.onTransientError(Collections.singletonList(clientURL), "Error delivering SimplePush payload", 0);
             } finally {
+                variantMetrics.networkCallFinished();
                 // tear down
                 if (conn != null) {
                     conn.disconnect();
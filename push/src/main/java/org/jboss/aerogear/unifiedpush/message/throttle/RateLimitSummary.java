@@ -0,0 +1,97 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.throttle;
+
+/**
+ * The configured limits of a push network and how often they kicked in.
+ */
+public class RateLimitSummary {
+
+    private final String network;
+    private final double permitsPerSecond;
+    private final double burst;
+    private final double permitsPerSecondPerCredential;
+    private final double burstPerCredential;
+    private final int credentials;
+    private final long waits;
+    private final long waitMillis;
+    private final long rescheduled;
+
+    public RateLimitSummary(String network, double permitsPerSecond, double burst, double permitsPerSecondPerCredential,
+                            double burstPerCredential, int credentials, long waits, long waitMillis, long rescheduled) {
+        this.network = network;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.permitsPerSecondPerCredential = permitsPerSecondPerCredential;
+        this.burstPerCredential = burstPerCredential;
+        this.credentials = credentials;
+        this.waits = waits;
+        this.waitMillis = waitMillis;
+        this.rescheduled = rescheduled;
+    }
+
+    public String getNetwork() {
+        return network;
+    }
+
+    /**
+     * Tokens per second for the whole network, 0 if unlimited.
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public double getBurst() {
+        return burst;
+    }
+
+    /**
+     * Tokens per second for each credential (Google API key, APNs certificate, Chrome client ID), 0 if unlimited.
+     */
+    public double getPermitsPerSecondPerCredential() {
+        return permitsPerSecondPerCredential;
+    }
+
+    public double getBurstPerCredential() {
+        return burstPerCredential;
+    }
+
+    /**
+     * Number of credentials, that have been seen.
+     */
+    public int getCredentials() {
+        return credentials;
+    }
+
+    /**
+     * Number of batches, that had to wait for the limit.
+     */
+    public long getWaits() {
+        return waits;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    /**
+     * Number of batches, that were rescheduled, as the wait would have been too long.
+     */
+    public long getRescheduled() {
+        return rescheduled;
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.throttle;
+
+import org.jboss.aerogear.unifiedpush.api.VariantType;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Paces the outbound batches with token buckets, one per push network and one per credential (Google API key,
+ * APNs certificate, Chrome client ID) of that network. The senders acquire a permit per token before each batch, and
+ * either wait for the buckets to refill or, if the wait would exceed <code>aerogear.rateLimit.maxWaitMillis</code>
+ * (default: 2000), reschedule the batch. A batch larger than the burst of a bucket would wait longer than that on every
+ * attempt, so the senders split their batches to {@link #maxPermits(String, String)}.
+ *
+ * The initial limits are read from system properties, e.g. <code>aerogear.rateLimit.android=1000</code> and
+ * <code>aerogear.rateLimit.android.burst=2000</code> for the network, <code>aerogear.rateLimit.android.perCredential=500</code>
+ * and <code>aerogear.rateLimit.android.perCredential.burst=500</code> for each Google API key. Without properties, there is
+ * no limit. The limits can be changed at runtime, over JMX or the RESTful <code>ratelimits</code> endpoint, and apply to
+ * this node only.
+ */
+@ApplicationScoped
+public class SendRateLimiter implements SendRateLimiterMXBean {
+
+    static final String OBJECT_NAME = "org.jboss.aerogear.unifiedpush:type=SendRateLimiter";
+
+    private final Logger logger = Logger.getLogger(SendRateLimiter.class.getName());
+
+    private final ConcurrentMap<String, NetworkLimits> networks = new ConcurrentHashMap<String, NetworkLimits>();
+    private volatile long maxWaitMillis = Long.getLong("aerogear.rateLimit.maxWaitMillis", 2000);
+
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+
+    @PostConstruct
+    public void registerMBean() {
+        pushMetrics.register(this, OBJECT_NAME);
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        pushMetrics.unregister(OBJECT_NAME);
+    }
+
+    /**
+     * Acquires the given number of permits from the buckets of the network and the credential, waiting for them if
+     * needed.
+     *
+     * @param network type name of the push network
+     * @param credential identifies the credential, or <code>null</code> if the network has none
+     * @param permits number of tokens of the batch
+     * @return 0 if the permits were acquired, otherwise the delay (in milliseconds), after which the batch should be
+     * submitted again
+     */
+    public long acquire(String network, String credential, int permits) {
+        final NetworkLimits limits = limitsOf(network);
+        final TokenBucket credentialBucket = credential == null ? null : limits.credentialBucket(credential);
+
+        final long now = System.nanoTime();
+        long waitNanos = limits.bucket.reserve(permits, now);
+        if (credentialBucket != null) {
+            waitNanos = Math.max(waitNanos, credentialBucket.reserve(permits, now));
+        }
+        if (waitNanos == 0) {
+            return 0;
+        }
+
+        final long waitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1;
+        if (waitMillis <= maxWaitMillis) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+                limits.waits.incrementAndGet();
+                limits.waitMillis.addAndGet(waitMillis);
+                return 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // the batch will not be sent now, give the permits back:
+        limits.bucket.cancel(permits);
+        if (credentialBucket != null) {
+            credentialBucket.cancel(permits);
+        }
+        limits.rescheduled.incrementAndGet();
+        return waitMillis;
+    }
+
+    /**
+     * Returns the largest number of permits, that the buckets of the network and the credential can grant at once.
+     */
+    public int maxPermits(String network, String credential) {
+        final NetworkLimits limits = limitsOf(network);
+        final int networkPermits = limits.bucket.getMaxPermits();
+        return credential == null ? networkPermits : Math.min(networkPermits, limits.credentialBucket(credential).getMaxPermits());
+    }
+
+    @Override
+    public List<RateLimitSummary> getLimits() {
+        final List<RateLimitSummary> summaries = new ArrayList<RateLimitSummary>();
+        for (VariantType type : VariantType.values()) {
+            final NetworkLimits limits = limitsOf(type.getTypeName());
+            summaries.add(new RateLimitSummary(type.getTypeName(), limits.bucket.getPermitsPerSecond(), limits.bucket.getBurst(),
+                    limits.permitsPerSecondPerCredential, limits.burstPerCredential, limits.credentials.size(),
+                    limits.waits.get(), limits.waitMillis.get(), limits.rescheduled.get()));
+        }
+        return summaries;
+    }
+
+    @Override
+    public void setNetworkLimit(String network, double permitsPerSecond, double burst) {
+        limitsOf(network).bucket.update(permitsPerSecond, burstOrRate(burst, permitsPerSecond));
+        logger.log(Level.INFO, String.format("Rate limit of '%s' changed to %.1f/s", network, permitsPerSecond));
+    }
+
+    @Override
+    public void setCredentialLimit(String network, double permitsPerSecond, double burst) {
+        limitsOf(network).updateCredentialLimit(permitsPerSecond, burstOrRate(burst, permitsPerSecond));
+        logger.log(Level.INFO, String.format("Rate limit per credential of '%s' changed to %.1f/s", network, permitsPerSecond));
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    @Override
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    private NetworkLimits limitsOf(String network) {
+        NetworkLimits limits = networks.get(network);
+        if (limits == null) {
+            final NetworkLimits created = NetworkLimits.fromSystemProperties(network);
+            limits = networks.putIfAbsent(network, created);
+            if (limits == null) {
+                limits = created;
+            }
+        }
+        return limits;
+    }
+
+    private static double burstOrRate(double burst, double permitsPerSecond) {
+        return burst > 0 ? burst : permitsPerSecond;
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        final String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * The buckets of a single push network.
+     */
+    private static final class NetworkLimits {
+
+        private final TokenBucket bucket;
+        private final ConcurrentMap<String, TokenBucket> credentials = new ConcurrentHashMap<String, TokenBucket>();
+        private volatile double permitsPerSecondPerCredential;
+        private volatile double burstPerCredential;
+
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong waitMillis = new AtomicLong();
+        private final AtomicLong rescheduled = new AtomicLong();
+
+        private NetworkLimits(double permitsPerSecond, double burst, double permitsPerSecondPerCredential, double burstPerCredential) {
+            this.bucket = new TokenBucket(permitsPerSecond, burst, System.nanoTime());
+            this.permitsPerSecondPerCredential = permitsPerSecondPerCredential;
+            this.burstPerCredential = burstPerCredential;
+        }
+
+        static NetworkLimits fromSystemProperties(String network) {
+            final String prefix = "aerogear.rateLimit." + network;
+            final double permitsPerSecond = doubleProperty(prefix, 0);
+            final double permitsPerSecondPerCredential = doubleProperty(prefix + ".perCredential", 0);
+            return new NetworkLimits(permitsPerSecond, doubleProperty(prefix + ".burst", permitsPerSecond),
+                    permitsPerSecondPerCredential, doubleProperty(prefix + ".perCredential.burst", permitsPerSecondPerCredential));
+        }
+
+        TokenBucket credentialBucket(String credential) {
+            TokenBucket credentialBucket = credentials.get(credential);
+            if (credentialBucket == null) {
+                final TokenBucket created = new TokenBucket(permitsPerSecondPerCredential, burstPerCredential, System.nanoTime());
+                credentialBucket = credentials.putIfAbsent(credential, created);
+                if (credentialBucket == null) {
+                    credentialBucket = created;
+                }
+            }
+            return credentialBucket;
+        }
+
+        void updateCredentialLimit(double permitsPerSecond, double burst) {
+            permitsPerSecondPerCredential = permitsPerSecond;
+            burstPerCredential = burst;
+            for (TokenBucket credentialBucket : credentials.values()) {
+                credentialBucket.update(permitsPerSecond, burst);
+            }
+        }
+    }
+}
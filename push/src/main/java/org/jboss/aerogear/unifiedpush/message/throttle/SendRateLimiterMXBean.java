@@ -0,0 +1,41 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.throttle;
+
+import java.util.List;
+
+/**
+ * JMX view on the {@link SendRateLimiter}, registered as <code>org.jboss.aerogear.unifiedpush:type=SendRateLimiter</code>.
+ */
+public interface SendRateLimiterMXBean {
+
+    List<RateLimitSummary> getLimits();
+
+    /**
+     * Changes the limit for the whole network, a rate of 0 removes the limit.
+     */
+    void setNetworkLimit(String network, double permitsPerSecond, double burst);
+
+    /**
+     * Changes the limit for each credential of the network, a rate of 0 removes the limit.
+     */
+    void setCredentialLimit(String network, double permitsPerSecond, double burst);
+
+    long getMaxWaitMillis();
+
+    void setMaxWaitMillis(long maxWaitMillis);
+}
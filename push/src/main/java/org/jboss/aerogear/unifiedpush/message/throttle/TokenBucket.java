@@ -0,0 +1,95 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.throttle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classic token bucket: refills at a fixed rate, up to the burst size. Reservations may overdraw the bucket, the
+ * returned wait time tells the caller when the reserved permits are actually covered. A rate of 0 (or less) means
+ * unlimited.
+ */
+final class TokenBucket {
+
+    private double permitsPerSecond;
+    private double burst;
+    private double available;
+    private long lastRefillNanos;
+
+    TokenBucket(double permitsPerSecond, double burst, long nowNanos) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.available = burst;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    synchronized void update(double permitsPerSecond, double burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.available = Math.min(available, burst);
+    }
+
+    /**
+     * Takes the given permits and returns the nanos to wait, until they are covered by the refill.
+     */
+    synchronized long reserve(int permits, long nowNanos) {
+        if (permitsPerSecond <= 0) {
+            return 0;
+        }
+        refill(nowNanos);
+        available -= permits;
+        if (available >= 0) {
+            return 0;
+        }
+        return (long) (-available / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Gives back permits of a reservation, that has not been used.
+     */
+    synchronized void cancel(int permits) {
+        if (permitsPerSecond > 0) {
+            available = Math.min(burst, available + permits);
+        }
+    }
+
+    /**
+     * The largest reservation, that a full bucket covers without a wait, {@link Integer#MAX_VALUE} if unlimited.
+     */
+    synchronized int getMaxPermits() {
+        if (permitsPerSecond <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, burst));
+    }
+
+    synchronized double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    synchronized double getBurst() {
+        return burst;
+    }
+
+    private void refill(long nowNanos) {
+        final long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            available = Math.min(burst, available + elapsed * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessageStreamReaderTest {
+
+    @Test
+    public void readsArray() throws IOException {
+        final List<Map<String, Object>> messages = readAll("[{\"alias\":[\"a\"]}, {\"ttl\":60}]");
+
+        assertEquals(2, messages.size());
+        assertEquals(60, messages.get(1).get("ttl"));
+    }
+
+    @Test
+    public void readsOneMessagePerLine() throws IOException {
+        final List<Map<String, Object>> messages = readAll("{\"priority\":\"high\"}\n{\"priority\":\"low\"}\n{}\n");
+
+        assertEquals(3, messages.size());
+        assertEquals("low", messages.get(1).get("priority"));
+    }
+
+    @Test
+    public void readsEmptyArray() throws IOException {
+        assertEquals(0, readAll("[]").size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonObjectMessage() throws IOException {
+        readAll("[{\"ttl\":60}, 42]");
+    }
+
+    private static List<Map<String, Object>> readAll(String body) throws IOException {
+        final MessageStreamReader reader = new MessageStreamReader(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        try {
+            final List<Map<String, Object>> messages = new ArrayList<Map<String, Object>>();
+            Map<String, Object> message;
+            while ((message = reader.next()) != null) {
+                messages.add(message);
+            }
+            return messages;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -465,6 +465,72 @@ public class UnifiedPushMessageTest {
         final UnifiedPushMessage unifiedPushMessage = new UnifiedPushMessage(container);
     }
 
+    @Test
+    public void testPriority() {
+        final Map<String, Object> container = new LinkedHashMap<String, Object>();
+        container.put("priority", "High");
+        assertEquals(Priority.HIGH, new UnifiedPushMessage(container).getPriority());
+
+        container.put("priority", "urgent");
+        assertEquals(Priority.NORMAL, new UnifiedPushMessage(container).getPriority());
+
+        // not given:
+        assertEquals(Priority.NORMAL, new UnifiedPushMessage(new LinkedHashMap<String, Object>()).getPriority());
+    }
+
+    @Test
+    public void testDeliverAt() {
+        final Map<String, Object> container = new LinkedHashMap<String, Object>();
+        container.put("deliver-at", "2015-01-31T09:00:00Z");
+        assertEquals(1422694800000L, new UnifiedPushMessage(container).getDeliverAt());
+
+        container.put("deliver-at", 1422694800000L);
+        assertEquals(1422694800000L, new UnifiedPushMessage(container).getDeliverAt());
+
+        // not given:
+        assertEquals(-1, new UnifiedPushMessage(new LinkedHashMap<String, Object>()).getDeliverAt());
+    }
+
+    @Test
+    public void testDeadline() {
+        final Map<String, Object> container = new LinkedHashMap<String, Object>();
+        container.put("ttl", 60);
+        UnifiedPushMessage message = new UnifiedPushMessage(container);
+        message.setSubmittedAt(1422694800000L);
+        assertEquals(1422694860000L, message.getDeadline());
+        assertFalse(message.isExpired(1422694859999L));
+        assertTrue(message.isExpired(1422694860000L));
+
+        // counted from the scheduled time:
+        container.put("ttl", 60);
+        container.put("deliver-at", 1422698400000L);
+        message = new UnifiedPushMessage(container);
+        message.setSubmittedAt(1422694800000L);
+        assertEquals(1422698460000L, message.getDeadline());
+
+        // no ttl, or 0:
+        assertEquals(Long.MAX_VALUE, new UnifiedPushMessage(new LinkedHashMap<String, Object>()).getDeadline());
+        container.put("ttl", 0);
+        assertFalse(new UnifiedPushMessage(container).isExpired(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void testCollapseKey() {
+        final Map<String, Object> container = new LinkedHashMap<String, Object>();
+        container.put("collapse-key", "score");
+        assertEquals("score", new UnifiedPushMessage(container).getCollapseKey());
+
+        // not given:
+        assertNull(new UnifiedPushMessage(new LinkedHashMap<String, Object>()).getCollapseKey());
+    }
+
+    @Test(expected = InvalidDeliveryTimeException.class)
+    public void testDeliverAtParseError() {
+        final Map<String, Object> container = new LinkedHashMap<String, Object>();
+        container.put("deliver-at", "tomorrow morning");
+        new UnifiedPushMessage(container);
+    }
+
     @Test
     public void testMessageToJson() throws IOException {
         //given
@@ -0,0 +1,108 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.breaker;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final Runnable BATCH = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final CircuitBreaker breaker = new CircuitBreaker("android", 3, 1000, 2);
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        assertFalse(breaker.recordFailure(0));
+        breaker.recordSuccess();
+        assertFalse(breaker.recordFailure(0));
+        assertFalse(breaker.recordFailure(0));
+        assertTrue(breaker.allowRequest(0));
+
+        breaker.recordFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(999));
+    }
+
+    @Test
+    public void probesOnceOpenPeriodIsOver() {
+        open();
+
+        // a single probe is let through:
+        assertTrue(breaker.allowRequest(1000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(1001));
+
+        // a failed probe opens the breaker again:
+        breaker.recordFailure(1500);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(2000));
+        assertTrue(breaker.allowRequest(2500));
+    }
+
+    @Test
+    public void checkDoesNotStartProbe() {
+        open();
+
+        assertFalse(breaker.wouldAllow(999));
+        assertTrue(breaker.wouldAllow(1000));
+        assertTrue(breaker.wouldAllow(1000));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // a probe, that has not been sent, does not hold back the next batch:
+        assertTrue(breaker.allowRequest(1000));
+        assertFalse(breaker.wouldAllow(1001));
+        breaker.cancelProbe();
+        assertTrue(breaker.allowRequest(1001));
+    }
+
+    @Test
+    public void parksUntilClosed() {
+        open();
+
+        assertTrue(breaker.park(BATCH));
+        assertTrue(breaker.needsProbe());
+        assertFalse(breaker.needsProbe());
+        assertTrue(breaker.park(BATCH));
+        assertFalse(breaker.park(BATCH));
+
+        assertSame(BATCH, breaker.takeProbe(1000));
+        assertNull(breaker.takeProbe(1001));
+
+        final List<Runnable> released = breaker.recordSuccess();
+        assertEquals(1, released.size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.summarize().getRejectedBatches());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure(0);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void refusesBeyondLimit() {
+        final AdmissionLimiter limiter = new AdmissionLimiter(2, 1, 10, 2);
+
+        assertEquals(1, limiter.tryAcquire(1));
+        assertEquals(1, limiter.tryAcquire(1));
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(1, limiter.getLimited());
+
+        limiter.releaseUnprocessed(1);
+        assertEquals(1, limiter.tryAcquire(1));
+    }
+
+    @Test
+    public void admitsBatchUpToLimit() {
+        final AdmissionLimiter limiter = new AdmissionLimiter(5, 1, 10, 2);
+
+        assertEquals(3, limiter.tryAcquire(3));
+        assertEquals(2, limiter.tryAcquire(4));
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(3, limiter.getLimited());
+
+        limiter.releaseUnprocessed(2);
+        assertEquals(2, limiter.tryAcquire(2));
+    }
+
+    @Test
+    public void growsWhileLatencyIsStable() {
+        final AdmissionLimiter limiter = new AdmissionLimiter(10, 1, 100, 2);
+
+        for (int i = 0; i < 50; i++) {
+            saturate(limiter, 10 * MILLI);
+        }
+        assertTrue(limiter.getLimit() > 10);
+    }
+
+    @Test
+    public void shrinksOnceLatencyIncreases() {
+        final AdmissionLimiter limiter = new AdmissionLimiter(50, 5, 100, 2);
+        saturate(limiter, 10 * MILLI);
+
+        for (int i = 0; i < 50; i++) {
+            saturate(limiter, 100 * MILLI);
+        }
+        assertTrue(limiter.getLimit() < 50);
+        assertTrue(limiter.getLimit() >= 5);
+    }
+
+    @Test
+    public void doesNotGrowWhenIdle() {
+        final AdmissionLimiter limiter = new AdmissionLimiter(10, 1, 100, 2);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire(1);
+            limiter.release(10 * MILLI);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void retryAfterFollowsLatency() {
+        final AdmissionLimiter limiter = new AdmissionLimiter(10, 1, 100, 2);
+        assertEquals(1, limiter.retryAfterSeconds());
+
+        limiter.tryAcquire(1);
+        limiter.release(TimeUnit.SECONDS.toNanos(3));
+        assertEquals(3, limiter.retryAfterSeconds());
+    }
+
+    // admits up to the limit, and releases all of them with the given latency
+    private static void saturate(AdmissionLimiter limiter, long latencyNanos) {
+        int admitted = 0;
+        while (limiter.tryAcquire(1) == 1) {
+            admitted++;
+        }
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CollapseTableTest {
+
+    @Test
+    public void newerMessageTakesThePlaceOfTheQueuedOne() {
+        final CollapseTable table = new CollapseTable();
+        final UnifiedPushMessage first = message("score");
+        final UnifiedPushMessage second = message("score");
+        final UnifiedPushMessage third = message("score");
+
+        assertNull(table.replace("app:score", first));
+        final CollapseTable.Slot slot = new CollapseTable.Slot(first);
+        table.register("app:score", slot);
+
+        assertSame(first, table.replace("app:score", second));
+        assertSame(second, table.replace("app:score", third));
+        assertSame(third, table.take(slot));
+        assertEquals(0, table.size());
+
+        // the taken message is on its way, the next one is queued again:
+        assertNull(table.replace("app:score", message("score")));
+    }
+
+    @Test
+    public void slotTakenBeforeItIsRegisteredIsNotReplaceable() {
+        final CollapseTable table = new CollapseTable();
+        final UnifiedPushMessage first = message("score");
+        final CollapseTable.Slot slot = new CollapseTable.Slot(first);
+
+        assertSame(first, table.take(slot));
+        table.register("app:score", slot);
+
+        assertNull(table.replace("app:score", message("score")));
+        assertEquals(0, table.size());
+    }
+
+    private static UnifiedPushMessage message(String collapseKey) {
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("collapse-key", collapseKey);
+        return new UnifiedPushMessage(data);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.dispatch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FairQueueTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    @Test
+    public void interleavesBroadcastWithOtherApplications() throws Exception {
+        final FairQueue queue = new FairQueue(100, 10, 10, new ApplicationWeights());
+        for (int i = 0; i < 4; i++) {
+            queue.offer("broadcast", 100, false, NO_DEADLINE, new Named("broadcast"));
+        }
+        queue.offer("single", 1, true, NO_DEADLINE, new Named("single"));
+        queue.offer("single", 100, false, NO_DEADLINE, new Named("single"));
+
+        assertEquals("broadcast,single,broadcast,single,broadcast,broadcast", drain(queue));
+    }
+
+    @Test
+    public void weightedApplicationGetsLargerShare() throws Exception {
+        final ApplicationWeights weights = new ApplicationWeights();
+        weights.setWeight("heavy", 2);
+        final FairQueue queue = new FairQueue(100, 10, 10, weights);
+        for (int i = 0; i < 4; i++) {
+            queue.offer("heavy", 100, false, NO_DEADLINE, new Named("heavy"));
+            queue.offer("light", 100, false, NO_DEADLINE, new Named("light"));
+        }
+
+        assertEquals("heavy,heavy,light,heavy,heavy,light,light,light", drain(queue));
+    }
+
+    @Test
+    public void inFlightLimitOnlyDelaysTheSameApplication() throws Exception {
+        final FairQueue queue = new FairQueue(100, 1, 10, new ApplicationWeights());
+        queue.offer("noisy", 1, true, NO_DEADLINE, new Named("noisy"));
+        queue.offer("noisy", 1, true, NO_DEADLINE, new Named("noisy"));
+        queue.offer("quiet", 1, true, NO_DEADLINE, new Named("quiet"));
+
+        final FairQueue.Task first = queue.take();
+        assertEquals("noisy", first.getWork().toString());
+        assertEquals("quiet", queue.take().getWork().toString());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<FairQueue.Task> next = executor.submit(new Callable<FairQueue.Task>() {
+                @Override
+                public FairQueue.Task call() throws InterruptedException {
+                    return queue.take();
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(next.isDone());
+
+            queue.done(first);
+            assertEquals("noisy", next.get(1, TimeUnit.SECONDS).getWork().toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void earliestDeadlineFirstWithinApplication() throws Exception {
+        final FairQueue queue = new FairQueue(1, 10, 10, new ApplicationWeights());
+        queue.offer("app", 1, false, NO_DEADLINE, new Named("broadcast"));
+        queue.offer("app", 1, false, 2000, new Named("later"));
+        queue.offer("app", 1, false, 1000, new Named("soon"));
+        queue.offer("app", 1, false, NO_DEADLINE, new Named("update"));
+        queue.offer("other", 1, false, 500, new Named("other"));
+
+        // the deadlines do not override the fair share of the other application:
+        assertEquals("soon,other,later,broadcast,update", drain(queue));
+    }
+
+    @Test
+    public void capacityOnlyBoundsNewMessages() {
+        final FairQueue queue = new FairQueue(100, 1, 1, new ApplicationWeights());
+
+        assertTrue(queue.offer("app", 1, true, NO_DEADLINE, new Named("app")));
+        assertFalse(queue.offer("app", 1, true, NO_DEADLINE, new Named("app")));
+        assertTrue(queue.offer("app", 100, false, NO_DEADLINE, new Named("app")));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void batchIsQueuedUpToCapacity() throws Exception {
+        final FairQueue queue = new FairQueue(100, 10, 3, new ApplicationWeights());
+        queue.offer("other", 1, true, NO_DEADLINE, new Named("other"));
+
+        final List<Runnable> works = new ArrayList<Runnable>();
+        for (int i = 0; i < 4; i++) {
+            works.add(new Named("batch" + i));
+        }
+        assertEquals(2, queue.offerAll("app", 1, true, new long[] {NO_DEADLINE, NO_DEADLINE, NO_DEADLINE, NO_DEADLINE}, works));
+        assertEquals(3, queue.size());
+        assertEquals("other,batch0,batch1", drain(queue));
+    }
+
+    // takes the tasks one at a time, so the in-flight limit never blocks
+    private static String drain(FairQueue queue) throws InterruptedException {
+        final List<String> order = new ArrayList<String>();
+        while (queue.size() > 0) {
+            final FairQueue.Task task = queue.take();
+            order.add(task.getWork().toString());
+            queue.done(task);
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (String name : order) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
+    private static final class Named implements Runnable {
+        private final String name;
+
+        private Named(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.idempotency;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RecentKeysTest {
+
+    @Test
+    public void duplicateGetsTheFirstJob() {
+        final RecentKeys keys = new RecentKeys(10, 1000);
+
+        assertNull(keys.reserve("app:retry-1", "job-1", 0));
+        assertEquals("job-1", keys.reserve("app:retry-1", "job-2", 999));
+
+        // expired:
+        assertNull(keys.reserve("app:retry-1", "job-3", 1000));
+        assertEquals("job-3", keys.reserve("app:retry-1", "job-4", 1001));
+    }
+
+    @Test
+    public void oldestKeyIsForgottenFirst() {
+        final RecentKeys keys = new RecentKeys(2, 1000);
+        keys.reserve("app:a", "job-a", 0);
+        keys.reserve("app:b", "job-b", 0);
+        keys.reserve("app:c", "job-c", 0);
+
+        assertEquals(2, keys.size());
+        assertNull(keys.reserve("app:a", "job-a2", 0));
+        assertEquals("job-c", keys.reserve("app:c", "job-c2", 0));
+    }
+
+    @Test
+    public void releasedKeyCanBeReserved() {
+        final RecentKeys keys = new RecentKeys(10, 1000);
+        keys.reserve("app:retry-1", "job-1", 0);
+
+        // not the job of the key:
+        keys.release("app:retry-1", "job-2");
+        assertEquals("job-1", keys.reserve("app:retry-1", "job-2", 0));
+
+        keys.release("app:retry-1", "job-1");
+        assertNull(keys.reserve("app:retry-1", "job-2", 0));
+    }
+}
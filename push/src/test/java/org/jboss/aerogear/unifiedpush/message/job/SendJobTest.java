@@ -0,0 +1,127 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.job;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SendJobTest {
+
+    @Test
+    public void completesOnceAllTokensAreSettled() {
+        final SendJob job = new SendJob("job", "app", 0);
+        job.started(0);
+        job.expectVariants(2, 0);
+        job.variantResolved("android", 300, 3, 0);
+        job.settled("android", 300, true, null, 10);
+
+        // the second variant is not resolved yet:
+        assertEquals(SendJobState.RUNNING, job.status(10).getState());
+
+        job.variantResolved("ios", 2, 1, 20);
+        job.settled("ios", 1, true, null, 20);
+        job.settled("ios", 1, false, "Error sending payload to APNs server", 30);
+
+        final SendJobStatus status = job.status(30);
+        assertEquals(SendJobState.COMPLETED, status.getState());
+        assertEquals(302, status.getTokensResolved());
+        assertEquals(301, status.getTokensSent());
+        assertEquals(1, status.getTokensFailed());
+        assertEquals("Error sending payload to APNs server", status.getVariants().get(1).getLastError());
+        assertNotNull(status.getFinished());
+    }
+
+    @Test
+    public void messageWithoutVariantsCompletesImmediately() {
+        final SendJob job = new SendJob("job", "app", 0);
+        job.started(0);
+        job.expectVariants(0, 0);
+
+        assertEquals(SendJobState.COMPLETED, job.status(0).getState());
+    }
+
+    @Test
+    public void estimatesRemainingTimeFromThroughput() {
+        final SendJob job = new SendJob("job", "app", 0);
+        job.started(1000);
+        job.expectVariants(1, 1000);
+        job.variantResolved("android", 4000, 4, 1000);
+        job.settled("android", 1000, true, null, 2000);
+
+        // 1000 tokens per second, 3000 to go:
+        assertEquals(3000, job.status(2000).getEtaMillis());
+    }
+
+    @Test
+    public void replayReopensCompletedJob() {
+        final SendJob job = new SendJob("job", "app", 0);
+        job.started(0);
+        job.expectVariants(1, 0);
+        job.variantResolved("android", 10, 1, 0);
+        job.settled("android", 10, false, "GCM server is unavailable", 0);
+        assertEquals(SendJobState.COMPLETED, job.status(0).getState());
+
+        job.replaying("android", 10, 10);
+        final SendJobStatus status = job.status(10);
+        assertEquals(SendJobState.RUNNING, status.getState());
+        assertEquals(0, status.getTokensFailed());
+        assertNull(status.getFinished());
+    }
+
+    @Test
+    public void partitionedVariantCompletesWithItsUnits() {
+        final SendJob job = new SendJob("job", "app", 0);
+        job.started(0);
+        job.expectVariants(1, 0);
+        job.variantPartitioned("android", 3, 0);
+
+        // units processed on this node do not report per batch:
+        job.batchSent("android", 10);
+        job.settled("android", 5000, true, null, 10);
+        job.unitsCompleted("android", 2, 200000, 20);
+        assertEquals(SendJobState.RUNNING, job.status(20).getState());
+        assertEquals(2, job.status(20).getVariants().get(0).getBatchesSent());
+
+        job.unitsCompleted("android", 3, 250000, 30);
+        final SendJobStatus status = job.status(30);
+        assertEquals(SendJobState.COMPLETED, status.getState());
+        assertEquals(250000, status.getTokensSent());
+    }
+
+    @Test
+    public void supersededJobIsFinished() {
+        final SendJob job = new SendJob("job", "app", 0);
+        job.superseded("newer-job", 10);
+
+        final SendJobStatus status = job.status(10);
+        assertEquals(SendJobState.SUPERSEDED, status.getState());
+        assertEquals("Superseded by job newer-job", status.getFailure());
+        assertNotNull(status.getFinished());
+    }
+
+    @Test(timeout = 5000)
+    public void awaitReturnsOnTimeoutWithoutChange() throws InterruptedException {
+        final SendJob job = new SendJob("job", "app", 0);
+        final long version = job.status(0).getVersion();
+
+        assertEquals(version, job.awaitChange(version, 50).getVersion());
+        assertEquals(SendJobState.QUEUED, job.awaitChange(version, 50).getState());
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.outbox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutboxJournalTest {
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("outbox", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void deleteDirectory() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void unfinishedSendsSurviveRestart() throws Exception {
+        OutboxJournal journal = new OutboxJournal(directory, 1024 * 1024);
+        assertTrue(journal.open().isEmpty());
+        assertTrue(journal.accepted("job-1", "app", "{\"alert\":\"one\"}", "127.0.0.1", null));
+        assertTrue(journal.accepted("job-2", "app", "{\"alert\":\"two\"}", "127.0.0.1", "sender"));
+        journal.checkpoint("job-2", "variant", PendingSend.START, "b");
+        journal.finished("job-1");
+        journal.close();
+
+        journal = new OutboxJournal(directory, 1024 * 1024);
+        final List<PendingSend> pending = journal.open();
+        journal.close();
+
+        assertEquals(1, pending.size());
+        final PendingSend send = pending.get(0);
+        assertEquals("job-2", send.getJobId());
+        assertEquals("{\"alert\":\"two\"}", send.getRawMessage());
+        assertEquals("sender", send.getClientIdentifier());
+        assertTrue(send.getAcceptedAt() > 0);
+        assertEquals("b", send.cursorOf("variant"));
+    }
+
+    @Test
+    public void cursorOnlyMovesOverContiguousBatches() {
+        final PendingSend send = new PendingSend("job", "app", "{}", null, null, 0);
+        send.checkpoint("variant", "d", "f");
+        assertNull(send.cursorOf("variant"));
+
+        send.checkpoint("variant", PendingSend.START, "b");
+        assertEquals("b", send.cursorOf("variant"));
+
+        send.checkpoint("variant", "b", "d");
+        assertEquals("f", send.cursorOf("variant"));
+    }
+
+    @Test
+    public void rollsOverWithSnapshotOfPendingSends() throws Exception {
+        OutboxJournal journal = new OutboxJournal(directory, 200);
+        journal.open();
+        assertTrue(journal.accepted("pending", "app", "{}", null, null));
+        journal.checkpoint("pending", "variant", PendingSend.START, "x");
+        for (int i = 0; i < 20; i++) {
+            assertTrue(journal.accepted("job-" + i, "app", "{\"alert\":\"some longer alert text\"}", null, null));
+            journal.finished("job-" + i);
+        }
+        journal.close();
+        assertTrue(directory.listFiles().length <= 2);
+
+        journal = new OutboxJournal(directory, 200);
+        final List<PendingSend> pending = journal.open();
+        journal.close();
+
+        assertEquals(1, pending.size());
+        assertEquals("x", pending.get(0).cursorOf("variant"));
+    }
+
+    @Test
+    public void ignoresTornWriteAtTheEnd() throws Exception {
+        OutboxJournal journal = new OutboxJournal(directory, 1024 * 1024);
+        journal.open();
+        assertTrue(journal.accepted("job", "app", "{}", null, null));
+        journal.close();
+
+        final File segment = directory.listFiles()[0];
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(file.length());
+        file.writeInt(100);
+        file.writeInt(0);
+        file.write(new byte[10]);
+        file.close();
+
+        journal = new OutboxJournal(directory, 1024 * 1024);
+        final List<PendingSend> pending = journal.open();
+        journal.close();
+        assertEquals(1, pending.size());
+    }
+}
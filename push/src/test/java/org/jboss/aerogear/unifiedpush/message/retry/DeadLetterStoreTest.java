@@ -0,0 +1,56 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.retry;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.message.UnifiedPushMessage;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DeadLetterStoreTest {
+
+    @Test
+    public void dropsOldestWhenFull() {
+        final DeadLetterStore store = new DeadLetterStore(2);
+        final DeadLetter first = deadLetter("first");
+        final DeadLetter second = deadLetter("second");
+        final DeadLetter third = deadLetter("third");
+        store.add(first);
+        store.add(second);
+        store.add(third);
+
+        assertEquals(2, store.size());
+        assertNull(store.remove(first.getId()));
+        assertEquals("second", store.getSummaries().get(0).getReason());
+        assertSame(third, store.remove(third.getId()));
+        assertEquals(Arrays.asList(second), store.removeAll());
+    }
+
+    private static DeadLetter deadLetter(String reason) {
+        final AndroidVariant variant = new AndroidVariant();
+        variant.setGoogleKey("key");
+        return new DeadLetter(variant, Arrays.asList("token1", "token2"), new UnifiedPushMessage(new HashMap<String, Object>()),
+                new PushMessageInformation(), reason, 5);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.retry;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(3, 1000, 5000);
+    private final Random random = new Random(42);
+
+    @Test
+    public void limitsAttempts() {
+        assertTrue(policy.canRetry(1));
+        assertTrue(policy.canRetry(2));
+        assertFalse(policy.canRetry(3));
+    }
+
+    @Test
+    public void backsOffExponentiallyWithJitter() {
+        for (int i = 0; i < 100; i++) {
+            assertBetween(500, 1000, policy.delayFor(1, 0, random));
+            assertBetween(1000, 2000, policy.delayFor(2, 0, random));
+            // capped by the max delay:
+            assertBetween(2500, 5000, policy.delayFor(10, 0, random));
+        }
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " not in [" + min + ", " + max + "]", actual >= min && actual <= max);
+    }
+
+    @Test
+    public void honorsRetryAfter() {
+        assertEquals(30000, policy.delayFor(1, 30000, random));
+        assertEquals(120000, RetryPolicy.parseRetryAfter("120"));
+        assertEquals(0, RetryPolicy.parseRetryAfter("Fri, 31 Dec 1999 23:59:59 GMT"));
+        assertEquals(0, RetryPolicy.parseRetryAfter("soon"));
+        assertEquals(0, RetryPolicy.parseRetryAfter(null));
+    }
+}
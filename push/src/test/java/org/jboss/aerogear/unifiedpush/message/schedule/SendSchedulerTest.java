@@ -0,0 +1,43 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.schedule;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SendSchedulerTest {
+
+    @Test
+    public void releasesWithinFirstHalfOfStagingPeriod() {
+        final long deliverAt = 10000000L;
+        for (int i = 0; i < 1000; i++) {
+            final long release = SendScheduler.releaseTime(UUID.randomUUID().toString(), deliverAt);
+            assertTrue(release >= deliverAt - 60000);
+            assertTrue(release <= deliverAt - 30000);
+        }
+    }
+
+    @Test
+    public void releaseTimeIsStablePerJob() {
+        final String jobId = UUID.randomUUID().toString();
+        assertEquals(SendScheduler.releaseTime(jobId, 10000000L), SendScheduler.releaseTime(jobId, 10000000L));
+    }
+}
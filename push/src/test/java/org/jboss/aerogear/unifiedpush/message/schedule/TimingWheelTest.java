@@ -0,0 +1,92 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.schedule;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    public void firesItemsOnAllLevelsAtTheirTick() {
+        final TimingWheel<String> wheel = new TimingWheel<String>(10, 4, 0);
+        wheel.add(5, "now");
+        wheel.add(25, "first level");
+        wheel.add(95, "second level");
+        wheel.add(1000, "fourth level");
+        assertEquals(4, wheel.size());
+
+        assertEquals(Collections.singletonList("now"), wheel.advance(9));
+        assertEquals(Collections.singletonList("first level"), wheel.advance(29));
+        assertEquals(Collections.<String>emptyList(), wheel.advance(89));
+        assertEquals(Collections.singletonList("second level"), wheel.advance(99));
+        assertEquals(Collections.<String>emptyList(), wheel.advance(999));
+        assertEquals(Collections.singletonList("fourth level"), wheel.advance(1009));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void itemsAddedLaterFitTheMovedWheel() {
+        final TimingWheel<String> wheel = new TimingWheel<String>(10, 4, 0);
+        wheel.advance(1234);
+
+        wheel.add(1235, "late");
+        wheel.add(1300, "soon");
+        wheel.add(1240, "next");
+        assertEquals(Collections.singletonList("late"), wheel.advance(1239));
+        assertEquals(Collections.singletonList("next"), wheel.advance(1240));
+        assertEquals(Arrays.asList("soon"), wheel.advance(1300));
+    }
+
+    @Test
+    public void neverFiresEarlyNorLate() {
+        final Random random = new Random(42);
+        final long tick = 7;
+        final TimingWheel<Long> wheel = new TimingWheel<Long>(tick, 8, 3);
+
+        long now = 3;
+        int fired = 0;
+        int added = 0;
+        while (now < 200000) {
+            for (int i = random.nextInt(20); i > 0; i--) {
+                final long fireAt = now + random.nextInt(50000);
+                wheel.add(fireAt, fireAt);
+                added++;
+            }
+            final long previous = now;
+            now += random.nextInt(300);
+
+            final List<Long> due = wheel.advance(now);
+            for (Long fireAt : due) {
+                // due within the reached tick, and not before the tick reached by the previous advance:
+                assertTrue(fireAt / tick <= now / tick);
+                assertTrue(fireAt / tick >= previous / tick);
+            }
+            fired += due.size();
+        }
+        fired += wheel.advance(now + 60000).size();
+        assertEquals(added, fired);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.throttle;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SendRateLimiterTest {
+
+    private static final String NETWORK = "test-network";
+
+    @After
+    public void clearLimits() {
+        System.clearProperty("aerogear.rateLimit." + NETWORK + ".perCredential");
+    }
+
+    @Test
+    public void pageLargerThanTheBurstIsSplit() {
+        System.setProperty("aerogear.rateLimit." + NETWORK + ".perCredential", "100");
+        final SendRateLimiter limiter = new SendRateLimiter();
+        limiter.setMaxWaitMillis(0);
+
+        // a page of 1000 tokens would be rescheduled on every attempt:
+        assertTrue(limiter.acquire(NETWORK, "key", 1000) > 0);
+        assertTrue(limiter.acquire(NETWORK, "key", 1000) > 0);
+
+        assertEquals(100, limiter.maxPermits(NETWORK, "key"));
+        assertEquals(0, limiter.acquire(NETWORK, "key", limiter.maxPermits(NETWORK, "key")));
+        // the network itself is not limited:
+        assertEquals(Integer.MAX_VALUE, limiter.maxPermits(NETWORK, null));
+    }
+}
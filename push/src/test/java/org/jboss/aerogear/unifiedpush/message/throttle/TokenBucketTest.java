@@ -0,0 +1,71 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.message.throttle;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void allowsBurstThenPaces() {
+        final TokenBucket bucket = new TokenBucket(100, 200, 0);
+
+        assertEquals(0, bucket.reserve(200, 0));
+        // 100 permits over the burst take a second to refill:
+        assertEquals(SECOND, bucket.reserve(100, 0));
+        // half a second later, the debt is halved:
+        assertEquals(SECOND, bucket.reserve(50, SECOND / 2));
+    }
+
+    @Test
+    public void cancelledReservationsAreGivenBack() {
+        final TokenBucket bucket = new TokenBucket(10, 10, 0);
+
+        assertEquals(2 * SECOND, bucket.reserve(30, 0));
+        bucket.cancel(30);
+        assertEquals(0, bucket.reserve(10, 0));
+    }
+
+    @Test
+    public void unlimitedWithoutRate() {
+        final TokenBucket bucket = new TokenBucket(0, 0, 0);
+
+        assertEquals(0, bucket.reserve(1000000, 0));
+        bucket.update(1, 1);
+        assertEquals(0, bucket.reserve(1, SECOND));
+        assertEquals(SECOND, bucket.reserve(1, SECOND));
+    }
+
+    @Test
+    public void reservationsBeyondTheBurstAlwaysWait() {
+        final TokenBucket bucket = new TokenBucket(100, 100, 0);
+
+        // even a full bucket does not cover more than its burst:
+        assertEquals(9 * SECOND, bucket.reserve(1000, 0));
+        bucket.cancel(1000);
+
+        assertEquals(100, bucket.getMaxPermits());
+        assertEquals(0, bucket.reserve(bucket.getMaxPermits(), 0));
+        assertEquals(Integer.MAX_VALUE, new TokenBucket(0, 0, 0).getMaxPermits());
+    }
+}
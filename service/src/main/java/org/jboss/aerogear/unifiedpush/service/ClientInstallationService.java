@@ -21,6 +21,7 @@ import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -91,4 +92,49 @@ public interface ClientInstallationService {
      */
     List<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes);
 
+    /**
+     * Used for (Android/iOS) Sender API with large alias lists. Queries the available device-tokens for a given variant,
+     * based on provided criteria and the aliases staged under the given ID
+     */
+    List<String> findAllDeviceTokenForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes);
+
+    /**
+     * Used for dry runs of the Sender API. Counts the available device-tokens for a given variant, based on provided
+     * criteria, without loading them
+     */
+    long countDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes);
+
+    /**
+     * Used for dry runs of the Sender API with large alias lists. Counts the available device-tokens for a given variant,
+     * based on provided criteria and the aliases staged under the given ID, without loading them
+     */
+    long countDeviceTokensForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes);
+
+    /**
+     * Used for partitioned sends. Queries up to <code>maxResults</code> device-tokens for a given variant, within a range of
+     * installation IDs, keyed and ordered by the installation ID
+     */
+    Map<String, String> findDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                               String afterInstallationId, String lastInstallationId, int maxResults);
+
+    /**
+     * Used for partitioned sends. Returns the installation IDs, that split the installations of the given variant into ranges
+     * of the given size
+     */
+    List<String> findInstallationIdBoundariesForVariantID(String variantID, int rangeSize);
+
+    /**
+     * Used for scheduled sends. Returns the device-tokens, that split the sorted device-tokens for a given variant, based on
+     * provided criteria, into ranges of the given size
+     */
+    List<String> findDeviceTokenBoundariesForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                 int rangeSize);
+
+    /**
+     * Used for scheduled sends. Queries the sorted device-tokens for a given variant, based on provided criteria, within a
+     * range of device-tokens
+     */
+    List<String> findDeviceTokenRangeForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                            String afterToken, String lastToken);
+
 }
@@ -0,0 +1,273 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.audience;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional in-memory index of the installations, to evaluate the send criteria without querying the database, enabled
+ * with the system property <code>aerogear.audience.index</code>. The index of a variant is loaded on its first query,
+ * and kept up to date with the installations registered, updated and removed by this node, once their transaction has
+ * been committed.
+ *
+ * The indexes hold at most <code>aerogear.audience.index.maxInstallations</code> installations (default: 1000000), the
+ * least recently used ones are dropped to make room for another one. A variant with more installations is not indexed,
+ * its tokens are queried from the database: the finders return <code>null</code> (or -1 for a count) then.
+ *
+ * Installations changed by other nodes of a cluster are not seen: an index is reloaded once it is older than
+ * <code>aerogear.audience.index.maxAgeSeconds</code> (default: 300). An index, that was loaded while installations of
+ * its variant changed, is used for the current query only.
+ */
+@ApplicationScoped
+public class AudienceIndex {
+
+    private static final boolean ENABLED = Boolean.getBoolean("aerogear.audience.index");
+    private static final long MAX_AGE_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("aerogear.audience.index.maxAgeSeconds", 300));
+    private static final long MAX_INSTALLATIONS = Long.getLong("aerogear.audience.index.maxInstallations", 1000000);
+    private static final int PAGE_SIZE = 10000;
+    // the changes of a variant are counted in one of these stripes:
+    private static final int STRIPES = 64;
+
+    private final Logger logger = Logger.getLogger(AudienceIndex.class.getName());
+
+    // the cached indexes, least recently used first, guarded by itself:
+    private final Map<String, VariantAudienceIndex> variants = new LinkedHashMap<String, VariantAudienceIndex>(16, 0.75f, true);
+    // the variants that are too large to be indexed, with the time they were found to be, guarded by variants:
+    private final Map<String, Long> oversized = new HashMap<String, Long>();
+    // guarded by variants:
+    private final long[] modifications = new long[STRIPES];
+
+    @Inject
+    private InstallationDao dao;
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Whether the queries of the given variant are answered from the index, as far as known without loading it.
+     */
+    public boolean covers(String variantID) {
+        if (!ENABLED) {
+            return false;
+        }
+        synchronized (variants) {
+            return !isOversized(variantID, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Returns the tokens of the given variant, that match the given criteria, like
+     * {@link InstallationDao#findAllDeviceTokenForVariantIDByCriteria(String, List, List, List)}, or <code>null</code>
+     * if the variant is not indexed.
+     */
+    public List<String> findDeviceTokens(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        final VariantAudienceIndex index = indexOf(variantID);
+        return index == null ? null : index.findDeviceTokens(categories, aliases, deviceTypes);
+    }
+
+    /**
+     * Counts the tokens of the given variant, that match the given criteria. Returns -1 if the variant is not indexed.
+     */
+    public long countDeviceTokens(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        final VariantAudienceIndex index = indexOf(variantID);
+        return index == null ? -1 : index.countDeviceTokens(categories, aliases, deviceTypes);
+    }
+
+    /**
+     * Records a registered or updated installation of the given variant, once the current transaction is committed.
+     */
+    public void installationChanged(final String variantID, Installation installation) {
+        if (!ENABLED) {
+            return;
+        }
+        // the installation may be detached once the transaction is committed:
+        final Installation indexed = new Installation();
+        indexed.setId(installation.getId());
+        indexed.setDeviceToken(installation.getDeviceToken());
+        indexed.setAlias(installation.getAlias());
+        indexed.setDeviceType(installation.getDeviceType());
+        indexed.setEnabled(installation.isEnabled());
+        indexed.setCategories(installation.getCategories() == null ? new HashSet<String>() : new HashSet<String>(installation.getCategories()));
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                final VariantAudienceIndex index = modified(variantID);
+                if (index != null) {
+                    index.put(indexed);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records a removed installation of the given variant, or of any variant if <code>null</code>, once the current
+     * transaction is committed.
+     */
+    public void installationRemoved(final String variantID, final String installationId) {
+        if (!ENABLED) {
+            return;
+        }
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                if (variantID != null) {
+                    final VariantAudienceIndex index = modified(variantID);
+                    if (index != null) {
+                        index.remove(installationId);
+                    }
+                    return;
+                }
+                final List<VariantAudienceIndex> indexes;
+                synchronized (variants) {
+                    for (int i = 0; i < STRIPES; i++) {
+                        modifications[i]++;
+                    }
+                    indexes = new ArrayList<VariantAudienceIndex>(variants.values());
+                }
+                for (VariantAudienceIndex index : indexes) {
+                    index.remove(installationId);
+                }
+            }
+        });
+    }
+
+    private void afterCommit(final Runnable change) {
+        if (transactions.getTransactionKey() == null) {
+            change.run();
+            return;
+        }
+        transactions.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    change.run();
+                }
+            }
+        });
+    }
+
+    // counts a change of the given variant, and returns its cached index
+    private VariantAudienceIndex modified(String variantID) {
+        synchronized (variants) {
+            modifications[stripeOf(variantID)]++;
+            return variants.get(variantID);
+        }
+    }
+
+    private VariantAudienceIndex indexOf(String variantID) {
+        final long now = System.currentTimeMillis();
+        final long modificationsBefore;
+        synchronized (variants) {
+            final VariantAudienceIndex cached = variants.get(variantID);
+            if (cached != null && now - cached.getLoadedAt() < MAX_AGE_MILLIS) {
+                return cached;
+            }
+            if (isOversized(variantID, now)) {
+                return null;
+            }
+            modificationsBefore = modifications[stripeOf(variantID)];
+        }
+
+        final VariantAudienceIndex index = new VariantAudienceIndex(now);
+        String after = null;
+        List<Installation> page;
+        do {
+            page = dao.findCriteriaOfEnabledInstallationsForVariantID(variantID, after, PAGE_SIZE);
+            for (Installation installation : page) {
+                index.put(installation);
+                after = installation.getId();
+            }
+            if (index.size() > MAX_INSTALLATIONS) {
+                logger.log(Level.INFO, "Variant " + variantID + " has more than " + MAX_INSTALLATIONS + " installations, it is not indexed");
+                synchronized (variants) {
+                    variants.remove(variantID);
+                    oversized.put(variantID, now);
+                }
+                return null;
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        synchronized (variants) {
+            if (modifications[stripeOf(variantID)] == modificationsBefore) {
+                variants.put(variantID, index);
+                evictBeyondCapacity(index);
+                logger.log(Level.FINE, "Indexed " + index.size() + " installations of variant " + variantID);
+            } else {
+                variants.remove(variantID);
+            }
+        }
+        return index;
+    }
+
+    // drops the least recently used indexes, but the given one, until the indexed installations fit; guarded by variants
+    private void evictBeyondCapacity(VariantAudienceIndex keep) {
+        long installations = 0;
+        for (VariantAudienceIndex index : variants.values()) {
+            installations += index.size();
+        }
+        final Iterator<VariantAudienceIndex> leastRecentlyUsed = variants.values().iterator();
+        while (installations > MAX_INSTALLATIONS && leastRecentlyUsed.hasNext()) {
+            final VariantAudienceIndex index = leastRecentlyUsed.next();
+            if (index != keep) {
+                installations -= index.size();
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    // guarded by variants
+    private boolean isOversized(String variantID, long now) {
+        final Long foundAt = oversized.get(variantID);
+        if (foundAt == null) {
+            return false;
+        }
+        if (now - foundAt < MAX_AGE_MILLIS) {
+            return true;
+        }
+        oversized.remove(variantID);
+        return false;
+    }
+
+    private static int stripeOf(String variantID) {
+        return (variantID.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.audience;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index of the enabled installations of one variant. Every installation gets an ordinal, its token is kept in
+ * an arena at that ordinal. Every category and device type, which are shared by many installations, maps to the bitmap
+ * of the ordinals that have it. Every alias, which is usually unique, maps to a sorted list of ordinals instead: a bitmap
+ * per alias would cost a bit per installation for each of them.
+ *
+ * The criteria of a send are evaluated with bitmap operations: the values of one criterion are OR'ed, the criteria are
+ * AND'ed, just like the JPQL query does. The ordinals of removed installations are reused.
+ */
+final class VariantAudienceIndex {
+
+    private final long loadedAt;
+
+    private final List<String> tokens = new ArrayList<String>();
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+    private final BitSet live = new BitSet();
+    // the ordinals of removed installations, reused before the arena grows:
+    private int[] free = new int[16];
+    private int freeCount;
+
+    private final Map<String, Postings> byAlias = new HashMap<String, Postings>();
+    private final Map<String, BitSet> byCategory = new HashMap<String, BitSet>();
+    private final Map<String, BitSet> byDeviceType = new HashMap<String, BitSet>();
+
+    VariantAudienceIndex(long loadedAt) {
+        this.loadedAt = loadedAt;
+    }
+
+    long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Adds or replaces the given installation, a disabled installation is removed.
+     */
+    synchronized void put(Installation installation) {
+        remove(installation.getId());
+        if (!installation.isEnabled() || installation.getDeviceToken() == null) {
+            return;
+        }
+
+        final int ordinal = freeCount > 0 ? free[--freeCount] : tokens.size();
+        final Entry entry = new Entry(installation.getId(), installation.getAlias(), installation.getDeviceType(),
+                installation.getCategories() == null ? Collections.<String>emptySet() : new HashSet<String>(installation.getCategories()));
+        if (ordinal == tokens.size()) {
+            tokens.add(installation.getDeviceToken());
+            entries.add(entry);
+        } else {
+            tokens.set(ordinal, installation.getDeviceToken());
+            entries.set(ordinal, entry);
+        }
+        live.set(ordinal);
+        ordinals.put(entry.id, ordinal);
+
+        if (entry.alias != null) {
+            Postings postings = byAlias.get(entry.alias);
+            if (postings == null) {
+                postings = new Postings();
+                byAlias.put(entry.alias, postings);
+            }
+            postings.add(ordinal);
+        }
+        mark(byDeviceType, entry.deviceType, ordinal, true);
+        for (String category : entry.categories) {
+            mark(byCategory, category, ordinal, true);
+        }
+    }
+
+    synchronized void remove(String installationId) {
+        final Integer ordinal = ordinals.remove(installationId);
+        if (ordinal == null) {
+            return;
+        }
+        final Entry entry = entries.get(ordinal);
+        if (entry.alias != null) {
+            final Postings postings = byAlias.get(entry.alias);
+            if (postings != null && postings.remove(ordinal)) {
+                byAlias.remove(entry.alias);
+            }
+        }
+        mark(byDeviceType, entry.deviceType, ordinal, false);
+        for (String category : entry.categories) {
+            mark(byCategory, category, ordinal, false);
+        }
+        live.clear(ordinal);
+        tokens.set(ordinal, null);
+        entries.set(ordinal, null);
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ordinal;
+    }
+
+    /**
+     * Returns the tokens of the installations, that match the given criteria. A <code>null</code> or empty criterion
+     * matches every installation.
+     */
+    synchronized List<String> findDeviceTokens(List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        final BitSet matches = match(categories, aliases, deviceTypes);
+        final List<String> result = new ArrayList<String>(matches.cardinality());
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            result.add(tokens.get(ordinal));
+        }
+        return result;
+    }
+
+    synchronized long countDeviceTokens(List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        return match(categories, aliases, deviceTypes).cardinality();
+    }
+
+    synchronized int size() {
+        return ordinals.size();
+    }
+
+    private BitSet match(List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        final BitSet matches = (BitSet) live.clone();
+        if (aliases != null && !aliases.isEmpty()) {
+            final BitSet any = new BitSet();
+            for (String alias : aliases) {
+                final Postings postings = byAlias.get(alias);
+                if (postings != null) {
+                    postings.addTo(any);
+                }
+            }
+            matches.and(any);
+        }
+        and(matches, byDeviceType, deviceTypes);
+        and(matches, byCategory, categories);
+        return matches;
+    }
+
+    private static void and(BitSet matches, Map<String, BitSet> index, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        final BitSet any = new BitSet();
+        for (String value : values) {
+            final BitSet bitmap = index.get(value);
+            if (bitmap != null) {
+                any.or(bitmap);
+            }
+        }
+        matches.and(any);
+    }
+
+    private static void mark(Map<String, BitSet> index, String value, int ordinal, boolean set) {
+        if (value == null) {
+            return;
+        }
+        BitSet bitmap = index.get(value);
+        if (set) {
+            if (bitmap == null) {
+                bitmap = new BitSet();
+                index.put(value, bitmap);
+            }
+            bitmap.set(ordinal);
+        } else if (bitmap != null) {
+            bitmap.clear(ordinal);
+            if (bitmap.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    /**
+     * The sorted ordinals of the installations with the same alias.
+     */
+    private static final class Postings {
+        private int[] ordinals = new int[1];
+        private int size;
+
+        private void add(int ordinal) {
+            final int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index >= 0) {
+                return;
+            }
+            final int insertAt = -index - 1;
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            System.arraycopy(ordinals, insertAt, ordinals, insertAt + 1, size - insertAt);
+            ordinals[insertAt] = ordinal;
+            size++;
+        }
+
+        // returns true once no ordinal is left
+        private boolean remove(int ordinal) {
+            final int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index >= 0) {
+                System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        private void addTo(BitSet bitmap) {
+            for (int i = 0; i < size; i++) {
+                bitmap.set(ordinals[i]);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String id;
+        private final String alias;
+        private final String deviceType;
+        private final Set<String> categories;
+
+        private Entry(String id, String alias, String deviceType, Set<String> categories) {
+            this.id = id;
+            this.alias = alias;
+            this.deviceType = deviceType;
+            this.categories = categories;
+        }
+    }
+}
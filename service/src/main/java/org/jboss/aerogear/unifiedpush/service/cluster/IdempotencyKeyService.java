@@ -0,0 +1,94 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cluster;
+
+import org.jboss.aerogear.unifiedpush.api.IdempotencyKey;
+import org.jboss.aerogear.unifiedpush.dao.IdempotencyKeyDao;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import java.util.Date;
+
+/**
+ * Service class to share the idempotency keys of the sender requests between the nodes of the cluster. Every
+ * operation runs in a transaction of its own, so a key is visible to the other nodes right away.
+ */
+@Stateless
+public class IdempotencyKeyService {
+
+    @Inject
+    private IdempotencyKeyDao idempotencyKeyDao;
+
+    /**
+     * Records the given key for the given job, unless it is recorded for another job and has not expired yet.
+     *
+     * @return the ID of the job, the key is recorded for, or <code>null</code> if it has been recorded for the given job
+     * @throws javax.ejb.EJBException if another node has recorded the same key concurrently, see {@link #findJobId(String, String)}
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String reserve(String pushApplicationID, String idempotencyKey, String jobId, long ttlMillis) {
+        final String id = IdempotencyKey.idOf(pushApplicationID, idempotencyKey);
+        final long now = System.currentTimeMillis();
+        final Date expiry = new Date(now + ttlMillis);
+
+        final IdempotencyKey stored = idempotencyKeyDao.find(id);
+        if (stored == null) {
+            final IdempotencyKey key = new IdempotencyKey();
+            key.setId(id);
+            key.setPushApplicationId(pushApplicationID);
+            key.setIdempotencyKey(idempotencyKey);
+            key.setJobId(jobId);
+            key.setExpiry(expiry);
+            idempotencyKeyDao.create(key);
+            return null;
+        }
+        if (stored.getExpiry().getTime() > now) {
+            return stored.getJobId();
+        }
+        if (idempotencyKeyDao.takeOver(id, jobId, expiry, new Date(now))) {
+            return null;
+        }
+        // another node has taken it over first:
+        return idempotencyKeyDao.find(id).getJobId();
+    }
+
+    /**
+     * Returns the ID of the job, the given key is recorded for, or <code>null</code>.
+     */
+    public String findJobId(String pushApplicationID, String idempotencyKey) {
+        final IdempotencyKey stored = idempotencyKeyDao.find(IdempotencyKey.idOf(pushApplicationID, idempotencyKey));
+        return stored == null ? null : stored.getJobId();
+    }
+
+    /**
+     * Forgets the given key, e.g. as the request has not been accepted, unless it has been recorded for another job.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void release(String pushApplicationID, String idempotencyKey, String jobId) {
+        idempotencyKeyDao.release(IdempotencyKey.idOf(pushApplicationID, idempotencyKey), jobId);
+    }
+
+    /**
+     * Removes the expired keys. Returns the number of removed keys.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int deleteExpired() {
+        return idempotencyKeyDao.deleteExpired(new Date());
+    }
+}
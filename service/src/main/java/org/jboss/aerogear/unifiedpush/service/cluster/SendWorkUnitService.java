@@ -0,0 +1,162 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.cluster;
+
+import org.jboss.aerogear.unifiedpush.api.SendWorkUnit;
+import org.jboss.aerogear.unifiedpush.dao.SendWorkUnitDao;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class to lease the work units of partitioned sends. The units are stored in the shared database, the nodes
+ * of the cluster do not talk to each other: a node claims a unit by taking its lease, extends the lease with every
+ * checkpoint, and a unit, whose lease has expired, can be claimed by any other node. The following system properties
+ * are used:
+ *
+ * <ul>
+ *     <li><code>aerogear.cluster.nodeId</code>, the name of this node (default: <code>jboss.node.name</code>, or
+ *     <code>node</code>), the owner name of its leases is the node name with a random ID of this JVM</li>
+ *     <li><code>aerogear.cluster.leaseSeconds</code>, the time a unit stays leased after a claim or checkpoint (default: 60)</li>
+ * </ul>
+ *
+ * Every lease operation runs in a transaction of its own, so it is visible to the other nodes right away.
+ */
+@Stateless
+public class SendWorkUnitService {
+
+    // two servers on the same host, or a restarted one, must not share the leases:
+    private static final String NODE_ID = System.getProperty("aerogear.cluster.nodeId",
+            System.getProperty("jboss.node.name", "node")) + "-" + UUID.randomUUID();
+    private static final long LEASE_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("aerogear.cluster.leaseSeconds", 60));
+
+    @Inject
+    private SendWorkUnitDao sendWorkUnitDao;
+
+    /**
+     * The name of this node, as owner of the leases.
+     */
+    public String getNodeId() {
+        return NODE_ID;
+    }
+
+    /**
+     * Stores the units, that split the installations of the given variant at the given installation IDs.
+     *
+     * @param template the unit, whose message and request metadata are copied to all units
+     * @param boundaries the last installation ID of each range, except the last one
+     *
+     * @return the number of stored units
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int createUnits(SendWorkUnit template, List<String> boundaries) {
+        final List<String> lastIds = new ArrayList<String>(boundaries);
+        // the last range is open:
+        lastIds.add(null);
+
+        String after = null;
+        for (String last : lastIds) {
+            final SendWorkUnit unit = new SendWorkUnit();
+            unit.setPushMessageInformationId(template.getPushMessageInformationId());
+            unit.setPushApplicationId(template.getPushApplicationId());
+            unit.setVariantID(template.getVariantID());
+            unit.setRawJsonMessage(template.getRawJsonMessage());
+            unit.setIpAddress(template.getIpAddress());
+            unit.setClientIdentifier(template.getClientIdentifier());
+            unit.setNotBefore(template.getNotBefore());
+            unit.setAfterInstallationId(after);
+            unit.setLastInstallationId(last);
+            sendWorkUnitDao.create(unit);
+            after = last;
+        }
+        return lastIds.size();
+    }
+
+    /**
+     * Returns the IDs of units, that can be claimed now.
+     */
+    public List<String> findClaimableIds(int maxResults) {
+        return sendWorkUnitDao.findClaimableIds(new Date(), maxResults);
+    }
+
+    /**
+     * Leases the given unit to this node. Returns the leased unit, or <code>null</code> if another node has been faster.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public SendWorkUnit claim(String id) {
+        final long now = System.currentTimeMillis();
+        if (!sendWorkUnitDao.claim(id, NODE_ID, new Date(now), new Date(now + LEASE_MILLIS))) {
+            return null;
+        }
+        return sendWorkUnitDao.find(id);
+    }
+
+    /**
+     * Records that the unit has been sent up to the given installation ID, and extends the lease. Returns false if the
+     * lease has expired and been claimed by another node: this node has to stop working on the unit.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean checkpoint(SendWorkUnit unit, String installationId, long tokens) {
+        final boolean leased = sendWorkUnitDao.checkpoint(unit.getId(), NODE_ID, installationId, tokens,
+                new Date(System.currentTimeMillis() + LEASE_MILLIS));
+        if (leased) {
+            unit.setCheckpoint(installationId);
+            unit.setTokens(tokens);
+        }
+        return leased;
+    }
+
+    /**
+     * Extends the lease of the unit, without moving its checkpoint. Returns false if the lease has expired and been
+     * claimed by another node.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean renew(SendWorkUnit unit) {
+        return sendWorkUnitDao.checkpoint(unit.getId(), NODE_ID, unit.getCheckpoint(), unit.getTokens(),
+                new Date(System.currentTimeMillis() + LEASE_MILLIS));
+    }
+
+    /**
+     * Marks the unit as completed. Returns false if the lease has been lost before.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean complete(SendWorkUnit unit, long tokens) {
+        return sendWorkUnitDao.complete(unit.getId(), NODE_ID, tokens);
+    }
+
+    /**
+     * Returns the units of the given push message request, as currently stored.
+     */
+    public List<SendWorkUnit> findAllForPushMessage(String pushMessageInformationId) {
+        return sendWorkUnitDao.findAllForPushMessage(pushMessageInformationId);
+    }
+
+    /**
+     * Removes the units of a finished push message request.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void deleteAllForPushMessage(String pushMessageInformationId) {
+        sendWorkUnitDao.deleteAllForPushMessage(pushMessageInformationId);
+    }
+}
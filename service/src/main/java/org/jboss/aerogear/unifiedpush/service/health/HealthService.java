@@ -0,0 +1,113 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.health;
+
+import org.jboss.aerogear.unifiedpush.dao.HealthDao;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.RecentNetworkActivity;
+
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the saturation of the node (queued and in-flight work, database latency and push network error rates) against
+ * thresholds, which can be configured by the following system properties:
+ *
+ * <ul>
+ *     <li><code>aerogear.health.maxQueuedMessages</code> (default: 500)</li>
+ *     <li><code>aerogear.health.maxInFlightMessages</code> (default: 100)</li>
+ *     <li><code>aerogear.health.maxInFlightNetworkCalls</code> (default: 200)</li>
+ *     <li><code>aerogear.health.maxDatabaseLatencyMillis</code> (default: 500)</li>
+ *     <li><code>aerogear.health.maxNetworkErrorPercent</code> (default: 50)</li>
+ *     <li><code>aerogear.health.minNetworkCalls</code>, calls needed before an error rate is taken into account (default: 20)</li>
+ * </ul>
+ */
+public class HealthService {
+
+    private final Logger logger = Logger.getLogger(HealthService.class.getName());
+
+    @Inject
+    private HealthDao healthDao;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+
+    /**
+     * Performs all checks and returns the resulting status.
+     */
+    public HealthStatus checkHealth() {
+        final HealthStatus status = new HealthStatus();
+
+        checkQueues(status);
+        checkDatabase(status);
+        checkNetworks(status);
+
+        return status;
+    }
+
+    private void checkQueues(HealthStatus status) {
+        status.setQueuedMessages(pushMetrics.getQueuedMessages());
+        status.setInFlightMessages(pushMetrics.getInFlightMessages());
+        status.setInFlightNetworkCalls(pushMetrics.getInFlightNetworkCalls());
+
+        final long maxQueued = Long.getLong("aerogear.health.maxQueuedMessages", 500);
+        if (status.getQueuedMessages() > maxQueued) {
+            status.reportProblem(HealthStatus.State.DEGRADED, "Queued messages above " + maxQueued);
+        }
+
+        final long maxInFlight = Long.getLong("aerogear.health.maxInFlightMessages", 100);
+        if (status.getInFlightMessages() > maxInFlight) {
+            status.reportProblem(HealthStatus.State.DEGRADED, "In-flight messages above " + maxInFlight);
+        }
+
+        final long maxNetworkCalls = Long.getLong("aerogear.health.maxInFlightNetworkCalls", 200);
+        if (status.getInFlightNetworkCalls() > maxNetworkCalls) {
+            status.reportProblem(HealthStatus.State.DEGRADED, "In-flight network calls above " + maxNetworkCalls);
+        }
+    }
+
+    private void checkDatabase(HealthStatus status) {
+        final long start = System.nanoTime();
+        try {
+            healthDao.ping();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Database health check failed", e);
+            status.reportProblem(HealthStatus.State.DOWN, "Database not reachable");
+            return;
+        }
+        status.setDatabaseLatencyMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        final long maxLatency = Long.getLong("aerogear.health.maxDatabaseLatencyMillis", 500);
+        if (status.getDatabaseLatencyMillis() > maxLatency) {
+            status.reportProblem(HealthStatus.State.DEGRADED, "Database latency above " + maxLatency + "ms");
+        }
+    }
+
+    private void checkNetworks(HealthStatus status) {
+        status.setNetworks(pushMetrics.getRecentNetworkActivity());
+
+        final int maxErrorPercent = Integer.getInteger("aerogear.health.maxNetworkErrorPercent", 50);
+        final long minCalls = Long.getLong("aerogear.health.minNetworkCalls", 20);
+        for (RecentNetworkActivity activity : status.getNetworks()) {
+            if (activity.getCalls() >= minCalls && activity.getErrorRate() * 100 > maxErrorPercent) {
+                status.reportProblem(HealthStatus.State.DEGRADED,
+                        "Error rate of '" + activity.getNetwork() + "' network above " + maxErrorPercent + "%");
+            }
+        }
+    }
+}
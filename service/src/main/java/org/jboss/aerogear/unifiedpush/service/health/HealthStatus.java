@@ -0,0 +1,132 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.health;
+
+import org.jboss.aerogear.unifiedpush.service.metrics.RecentNetworkActivity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a health check, containing the measured values and the reasons why a node is not healthy.
+ */
+public class HealthStatus {
+
+    /**
+     * Overall state of the node.
+     */
+    public enum State {
+        /**
+         * Everything is fine, the node can take more work.
+         */
+        OK,
+
+        /**
+         * The node is alive, but saturated. Traffic should be shifted to other nodes.
+         */
+        DEGRADED,
+
+        /**
+         * A required resource (e.g. the database) is not available.
+         */
+        DOWN
+    }
+
+    private State state = State.OK;
+    private long queuedMessages;
+    private long inFlightMessages;
+    private long inFlightNetworkCalls;
+    private long databaseLatencyMillis = -1;
+    private List<RecentNetworkActivity> networks = new ArrayList<RecentNetworkActivity>();
+    private final List<String> problems = new ArrayList<String>();
+
+    /**
+     * Records a problem, and lowers the state of the node to the given one (if it is not lower already).
+     */
+    void reportProblem(State problemState, String problem) {
+        problems.add(problem);
+        if (problemState.ordinal() > state.ordinal()) {
+            state = problemState;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Push messages, that have been accepted but have not been started yet.
+     */
+    public long getQueuedMessages() {
+        return queuedMessages;
+    }
+
+    void setQueuedMessages(long queuedMessages) {
+        this.queuedMessages = queuedMessages;
+    }
+
+    /**
+     * Push messages, that are currently processed.
+     */
+    public long getInFlightMessages() {
+        return inFlightMessages;
+    }
+
+    void setInFlightMessages(long inFlightMessages) {
+        this.inFlightMessages = inFlightMessages;
+    }
+
+    /**
+     * Calls to the push networks, that are currently in progress.
+     */
+    public long getInFlightNetworkCalls() {
+        return inFlightNetworkCalls;
+    }
+
+    void setInFlightNetworkCalls(long inFlightNetworkCalls) {
+        this.inFlightNetworkCalls = inFlightNetworkCalls;
+    }
+
+    /**
+     * Duration of a trivial database round-trip, or <code>-1</code> if the database was not reachable.
+     */
+    public long getDatabaseLatencyMillis() {
+        return databaseLatencyMillis;
+    }
+
+    void setDatabaseLatencyMillis(long databaseLatencyMillis) {
+        this.databaseLatencyMillis = databaseLatencyMillis;
+    }
+
+    /**
+     * Recent calls and error rates for each push network.
+     */
+    public List<RecentNetworkActivity> getNetworks() {
+        return networks;
+    }
+
+    void setNetworks(List<RecentNetworkActivity> networks) {
+        this.networks = networks;
+    }
+
+    /**
+     * Human readable reasons for a <code>DEGRADED</code> or <code>DOWN</code> state.
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+}
@@ -21,11 +21,15 @@ import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.InstallationDao;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.service.ClientInstallationService;
+import org.jboss.aerogear.unifiedpush.service.audience.AudienceIndex;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
+import org.jboss.aerogear.unifiedpush.service.metrics.SendStage;
 
 import javax.ejb.Asynchronous;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -37,10 +41,15 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
 
     @Inject
     private InstallationDao dao;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
+    @Inject
+    private AudienceIndex audienceIndex;
 
     public void addInstallation(Variant variant, Installation installation) {
         installation.setVariant(variant);
         dao.create(installation);
+        audienceIndex.installationChanged(variant.getVariantID(), installation);
     }
 
     @Override
@@ -62,6 +71,11 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
     public void updateInstallation(
             Installation installation) {
         dao.update(installation);
+        if (installation.getVariant() != null) {
+            audienceIndex.installationChanged(installation.getVariant().getVariantID(), installation);
+        } else {
+            audienceIndex.installationRemoved(null, installation.getId());
+        }
     }
 
     @Override
@@ -89,15 +103,18 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
     @Override
     public void removeInstallation(Installation installation) {
         dao.delete(installation);
+        audienceIndex.installationRemoved(installation.getVariant() == null ? null : installation.getVariant().getVariantID(), installation.getId());
     }
 
     @Override
     @Asynchronous
     public void removeInstallationsForVariantByDeviceTokens(String variantID, Set<String> deviceTokens) {
+        final long cleanupStart = System.nanoTime();
         // collect inactive installations for the given variant:
         List<Installation> inactiveInstallations = dao.findInstallationsForVariantByDeviceTokens(variantID, deviceTokens);
         // get rid of them
         this.removeInstallations(inactiveInstallations);
+        pushMetrics.forVariantID(variantID).record(SendStage.CLEANUP, System.nanoTime() - cleanupStart, inactiveInstallations.size());
     }
 
     @Override
@@ -114,6 +131,71 @@ public class ClientInstallationServiceImpl implements ClientInstallationService
      */
     @Override
     public List<String> findAllDeviceTokenForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        if (audienceIndex.isEnabled()) {
+            final List<String> tokens = audienceIndex.findDeviceTokens(variantID, categories, aliases, deviceTypes);
+            if (tokens != null) {
+                return tokens;
+            }
+        }
         return dao.findAllDeviceTokenForVariantIDByCriteria(variantID, categories, aliases, deviceTypes);
     }
+
+    /**
+     * Finder for 'send' with a large alias list, used for Android, iOS and SimplePush clients
+     */
+    @Override
+    public List<String> findAllDeviceTokenForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes) {
+        return dao.findAllDeviceTokenForVariantIDByStagedAliases(variantID, categories, aliasStageId, deviceTypes);
+    }
+
+    /**
+     * Counter for the dry run of a 'send'
+     */
+    @Override
+    public long countDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes) {
+        if (audienceIndex.isEnabled()) {
+            final long count = audienceIndex.countDeviceTokens(variantID, categories, aliases, deviceTypes);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return dao.countDeviceTokensForVariantIDByCriteria(variantID, categories, aliases, deviceTypes);
+    }
+
+    /**
+     * Counter for the dry run of a 'send' with a large alias list
+     */
+    @Override
+    public long countDeviceTokensForVariantIDByStagedAliases(String variantID, List<String> categories, String aliasStageId, List<String> deviceTypes) {
+        return dao.countDeviceTokensForVariantIDByStagedAliases(variantID, categories, aliasStageId, deviceTypes);
+    }
+
+    /**
+     * Finder for the work units of a partitioned send
+     */
+    @Override
+    public Map<String, String> findDeviceTokensForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                      String afterInstallationId, String lastInstallationId, int maxResults) {
+        return dao.findDeviceTokensForVariantIDByCriteria(variantID, categories, aliases, deviceTypes, afterInstallationId, lastInstallationId, maxResults);
+    }
+
+    @Override
+    public List<String> findInstallationIdBoundariesForVariantID(String variantID, int rangeSize) {
+        return dao.findInstallationIdBoundariesForVariantID(variantID, rangeSize);
+    }
+
+    /**
+     * Finders for the staged ranges of a scheduled send
+     */
+    @Override
+    public List<String> findDeviceTokenBoundariesForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                        int rangeSize) {
+        return dao.findDeviceTokenBoundariesForVariantIDByCriteria(variantID, categories, aliases, deviceTypes, rangeSize);
+    }
+
+    @Override
+    public List<String> findDeviceTokenRangeForVariantIDByCriteria(String variantID, List<String> categories, List<String> aliases, List<String> deviceTypes,
+                                                                   String afterToken, String lastToken) {
+        return dao.findDeviceTokenRangeForVariantIDByCriteria(variantID, categories, aliases, deviceTypes, afterToken, lastToken);
+    }
 }
@@ -20,6 +20,7 @@ import org.jboss.aerogear.unifiedpush.api.Installation;
 import org.jboss.aerogear.unifiedpush.api.Variant;
 import org.jboss.aerogear.unifiedpush.dao.VariantDao;
 import org.jboss.aerogear.unifiedpush.service.GenericVariantService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
 
 import javax.inject.Inject;
 
@@ -27,6 +28,8 @@ public class GenericVariantServiceImpl implements GenericVariantService {
 
     @Inject
     private VariantDao variantDao;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
 
     @Override
     public void addVariant(Variant variant) {
@@ -63,5 +66,6 @@ public class GenericVariantServiceImpl implements GenericVariantService {
     @Override
     public void removeVariant(Variant variant) {
         variantDao.delete(variant);
+        pushMetrics.removeVariant(variant.getVariantID());
     }
 }
@@ -19,8 +19,10 @@ package org.jboss.aerogear.unifiedpush.service.impl;
 import org.jboss.aerogear.unifiedpush.api.*;
 import org.jboss.aerogear.unifiedpush.dao.PushApplicationDao;
 import org.jboss.aerogear.unifiedpush.service.PushApplicationService;
+import org.jboss.aerogear.unifiedpush.service.metrics.PushMetricsRegistry;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +30,8 @@ public class PushApplicationServiceImpl implements PushApplicationService {
 
     @Inject
     private PushApplicationDao pushApplicationDao;
+    @Inject
+    private PushMetricsRegistry pushMetrics;
 
     @Override
     public void addPushApplication(PushApplication pushApp) {
@@ -66,6 +70,11 @@ public class PushApplicationServiceImpl implements PushApplicationService {
 
     @Override
     public void removePushApplication(PushApplication pushApp) {
+        // the variants are deleted along with the push application:
+        final List<Variant> variants = new ArrayList<Variant>(pushApp.getVariants());
         pushApplicationDao.delete(pushApp);
+        for (Variant variant : variants) {
+            pushMetrics.removeVariant(variant.getVariantID());
+        }
     }
 }
@@ -17,6 +17,7 @@
 package org.jboss.aerogear.unifiedpush.service.metrics;
 
 import org.jboss.aerogear.unifiedpush.api.PushMessageInformation;
+import org.jboss.aerogear.unifiedpush.api.VariantMetricInformation;
 import org.jboss.aerogear.unifiedpush.dao.PageResult;
 import org.jboss.aerogear.unifiedpush.dao.PushMessageInformationDao;
 
@@ -34,6 +35,7 @@ public class PushMessageMetricsService {
     /**
      * Starts the capturing of metadata around a push message request.
      *
+     * @param id the ID of the push message job
      * @param pushAppId the ip of the push application which is owing the push message job
      * @param json the raw JSON data
      * @param ipAddress remote address of the job submitter
@@ -41,9 +43,12 @@ public class PushMessageMetricsService {
      *
      * @return the metadata object for the started push message request job
      */
-    public PushMessageInformation storeNewRequestFrom(String pushAppId, String json, String ipAddress, String clientIdentifier) {
+    public PushMessageInformation storeNewRequestFrom(String id, String pushAppId, String json, String ipAddress, String clientIdentifier) {
         final PushMessageInformation information = new PushMessageInformation();
 
+        if (id != null) {
+            information.setId(id);
+        }
         information.setRawJsonMessage(json);
         information.setIpAddress(ipAddress);
         information.setPushApplicationId(pushAppId);
@@ -62,6 +67,21 @@ public class PushMessageMetricsService {
         pushMessageInformationDao.update(pushMessageInformation);
     }
 
+    /**
+     * Adds the receivers of the given outcome to a stored outcome of the push message, with the same variant, delivery
+     * status and reason. Returns false if there is none yet.
+     */
+    public boolean addReceivers(String pushMessageInformationId, VariantMetricInformation variantMetricInformation) {
+        return pushMessageInformationDao.addReceivers(pushMessageInformationId, variantMetricInformation);
+    }
+
+    /**
+     * Returns the metadata object with the given ID, or <code>null</code> if there is none.
+     */
+    public PushMessageInformation findById(String id) {
+        return pushMessageInformationDao.find(id);
+    }
+
     /**
      * Returns a list of metadata objects for the given Push Application
      */
@@ -0,0 +1,66 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view on the metrics of the send pipeline, registered as
+ * <code>org.jboss.aerogear.unifiedpush:type=PushMetrics</code>.
+ */
+public interface PushMetricsMXBean {
+
+    /**
+     * Number of push messages, that have been accepted but are not yet processed.
+     */
+    long getQueuedMessages();
+
+    /**
+     * Number of push messages, that are currently processed.
+     */
+    long getInFlightMessages();
+
+    /**
+     * Number of push messages, that were dropped as their time to live passed before they were processed.
+     */
+    long getExpiredMessages();
+
+    /**
+     * Number of device tokens, that were dropped as the time to live of their message passed before they were sent.
+     */
+    long getExpiredTokens();
+
+    /**
+     * Number of calls to the push networks, that are currently in progress.
+     */
+    long getInFlightNetworkCalls();
+
+    /**
+     * Statistics of all stages, aggregated per push network.
+     */
+    List<StageStatistics> getNetworkStatistics();
+
+    /**
+     * Statistics of all stages, for each variant.
+     */
+    List<StageStatistics> getVariantStatistics();
+
+    /**
+     * Resets all counters and histograms, gauges are kept.
+     */
+    void reset();
+}
@@ -0,0 +1,364 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.jboss.aerogear.unifiedpush.api.Variant;
+import org.jboss.aerogear.unifiedpush.jpa.statistics.QueryStatistics;
+import org.jboss.aerogear.unifiedpush.trace.FlightRecorder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Central place for all metrics of the send pipeline: counters and latency histograms per variant and stage, plus a few
+ * gauges (queued/in-flight messages). All recording methods are cheap enough to be invoked on every batch.
+ *
+ * The registry is exported over JMX and via the RESTful <code>metrics/sender</code> endpoint.
+ */
+@ApplicationScoped
+public class PushMetricsRegistry implements PushMetricsMXBean {
+
+    /**
+     * Size of the window, used for the recent activity of the push networks.
+     */
+    public static final int RECENT_WINDOW_SECONDS = 60;
+
+    static final String OBJECT_NAME = "org.jboss.aerogear.unifiedpush:type=PushMetrics";
+
+    private static final String ALL_NETWORKS = "all";
+    private static final String UNKNOWN_NETWORK = "unknown";
+
+    private final Logger logger = Logger.getLogger(PushMetricsRegistry.class.getName());
+
+    private final ConcurrentMap<String, VariantSendMetrics> variantMetrics = new ConcurrentHashMap<String, VariantSendMetrics>();
+    private final LatencyHistogram messagePersistence = new LatencyHistogram();
+    private final StripedCounter queuedMessages = new StripedCounter();
+    private final StripedCounter inFlightMessages = new StripedCounter();
+    private final StripedCounter expiredMessages = new StripedCounter();
+    private final StripedCounter expiredTokens = new StripedCounter();
+
+    @PostConstruct
+    public void registerMBean() {
+        register(this, OBJECT_NAME);
+        register(FlightRecorder.getInstance(), FlightRecorder.OBJECT_NAME);
+        register(QueryStatistics.getInstance(), QueryStatistics.OBJECT_NAME);
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        unregister(OBJECT_NAME);
+        unregister(FlightRecorder.OBJECT_NAME);
+        unregister(QueryStatistics.OBJECT_NAME);
+    }
+
+    /**
+     * Registers the given MXBean on the platform MBean server, unless there is one already.
+     */
+    public void register(Object mbean, String name) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mbean, objectName);
+            }
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not register MBean " + name, e);
+        }
+    }
+
+    public void unregister(String name) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not unregister MBean " + name, e);
+        }
+    }
+
+    /**
+     * Returns the metrics of the given variant, creating them on first access.
+     */
+    public VariantSendMetrics forVariant(Variant variant) {
+        final VariantSendMetrics metrics = forVariantID(variant.getVariantID());
+        if (metrics.getNetwork() == null) {
+            metrics.setNetwork(variant.getType().getTypeName());
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of the given variant, creating them on first access. Used where only the ID of the
+     * variant is around, the network is filled in once the variant is seen by {@link #forVariant(Variant)}.
+     */
+    public VariantSendMetrics forVariantID(String variantID) {
+        VariantSendMetrics metrics = variantMetrics.get(variantID);
+        if (metrics == null) {
+            final VariantSendMetrics created = new VariantSendMetrics(variantID, null);
+            metrics = variantMetrics.putIfAbsent(variantID, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Drops the metrics of the given variant, once it has been deleted: they would be kept for the lifetime of the
+     * server otherwise.
+     */
+    public void removeVariant(String variantID) {
+        variantMetrics.remove(variantID);
+    }
+
+    /**
+     * A push message has been accepted, and is waiting to be processed.
+     */
+    public void messageQueued() {
+        queuedMessages.increment();
+    }
+
+    /**
+     * A queued push message has been rejected, e.g. as the queue was full.
+     */
+    public void messageRejected() {
+        queuedMessages.decrement();
+    }
+
+    /**
+     * The processing of a queued push message has started.
+     */
+    public void messageStarted() {
+        queuedMessages.decrement();
+        inFlightMessages.increment();
+    }
+
+    /**
+     * The processing of a push message is done.
+     */
+    public void messageFinished() {
+        inFlightMessages.decrement();
+    }
+
+    /**
+     * A push message has been dropped, as its time to live passed while it was queued.
+     */
+    public void messageExpired() {
+        expiredMessages.increment();
+    }
+
+    /**
+     * The given number of resolved tokens has been dropped, as the time to live of their message passed before they
+     * were handed to the push network.
+     */
+    public void tokensExpired(int tokens) {
+        expiredTokens.add(tokens);
+    }
+
+    /**
+     * Records the time needed to store the initial push message history entry.
+     */
+    public void recordMessagePersistence(long nanos) {
+        messagePersistence.record(nanos);
+    }
+
+    @Override
+    public long getQueuedMessages() {
+        // messages submitted before the registry was created may lead to small negative values
+        return Math.max(0, queuedMessages.sum());
+    }
+
+    @Override
+    public long getInFlightMessages() {
+        return Math.max(0, inFlightMessages.sum());
+    }
+
+    @Override
+    public long getExpiredMessages() {
+        return expiredMessages.sum();
+    }
+
+    @Override
+    public long getExpiredTokens() {
+        return expiredTokens.sum();
+    }
+
+    @Override
+    public long getInFlightNetworkCalls() {
+        long inFlight = 0;
+        for (VariantSendMetrics metrics : variantMetrics.values()) {
+            inFlight += metrics.getInFlight();
+        }
+        return inFlight;
+    }
+
+    /**
+     * Returns the number of in-flight calls, for the given push network.
+     */
+    public long getInFlightNetworkCalls(String network) {
+        long inFlight = 0;
+        for (VariantSendMetrics metrics : variantMetrics.values()) {
+            if (network.equals(metrics.getNetwork())) {
+                inFlight += metrics.getInFlight();
+            }
+        }
+        return inFlight;
+    }
+
+    /**
+     * Returns the calls and errors of the last {@link #RECENT_WINDOW_SECONDS} seconds, for each push network.
+     */
+    public List<RecentNetworkActivity> getRecentNetworkActivity() {
+        final Map<String, long[]> byNetwork = new LinkedHashMap<String, long[]>();
+        for (VariantSendMetrics metrics : variantMetrics.values()) {
+            final String network = networkOf(metrics);
+            long[] callsAndErrors = byNetwork.get(network);
+            if (callsAndErrors == null) {
+                callsAndErrors = new long[2];
+                byNetwork.put(network, callsAndErrors);
+            }
+            callsAndErrors[0] += metrics.getRecentCalls();
+            callsAndErrors[1] += metrics.getRecentErrors();
+        }
+
+        final List<RecentNetworkActivity> activities = new ArrayList<RecentNetworkActivity>(byNetwork.size());
+        for (Map.Entry<String, long[]> entry : byNetwork.entrySet()) {
+            activities.add(new RecentNetworkActivity(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        return activities;
+    }
+
+    @Override
+    public List<StageStatistics> getNetworkStatistics() {
+        // group the variants by their network:
+        final Map<String, List<VariantSendMetrics>> byNetwork = new LinkedHashMap<String, List<VariantSendMetrics>>();
+        for (VariantSendMetrics metrics : variantMetrics.values()) {
+            final String network = networkOf(metrics);
+            List<VariantSendMetrics> group = byNetwork.get(network);
+            if (group == null) {
+                group = new ArrayList<VariantSendMetrics>();
+                byNetwork.put(network, group);
+            }
+            group.add(metrics);
+        }
+
+        final List<StageStatistics> statistics = new ArrayList<StageStatistics>();
+        for (Map.Entry<String, List<VariantSendMetrics>> entry : byNetwork.entrySet()) {
+            for (SendStage stage : SendStage.values()) {
+                statistics.add(aggregate(entry.getKey(), null, stage, entry.getValue()));
+            }
+        }
+        return statistics;
+    }
+
+    @Override
+    public List<StageStatistics> getVariantStatistics() {
+        final List<StageStatistics> statistics = new ArrayList<StageStatistics>();
+        for (VariantSendMetrics metrics : variantMetrics.values()) {
+            for (SendStage stage : SendStage.values()) {
+                statistics.add(aggregate(networkOf(metrics), metrics.getVariantID(), stage, Collections.singletonList(metrics)));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics of a single variant, or an empty list if nothing has been recorded yet.
+     */
+    public List<StageStatistics> getVariantStatistics(String variantID) {
+        final VariantSendMetrics metrics = variantMetrics.get(variantID);
+        if (metrics == null) {
+            return Collections.emptyList();
+        }
+
+        final List<StageStatistics> statistics = new ArrayList<StageStatistics>();
+        for (SendStage stage : SendStage.values()) {
+            statistics.add(aggregate(networkOf(metrics), variantID, stage, Collections.singletonList(metrics)));
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns a point in time copy of all metrics.
+     */
+    public PushMetricsSnapshot snapshot() {
+        final StageStatistics persistence = new StageStatistics(ALL_NETWORKS, null, SendStage.METRICS_PERSISTENCE.name(),
+                messagePersistence.getCount(), messagePersistence.getCount(), 0, messagePersistence.getMeanMicros(),
+                messagePersistence.getPercentileMicros(0.5), messagePersistence.getPercentileMicros(0.99),
+                messagePersistence.getMaxMicros());
+
+        return new PushMetricsSnapshot(getQueuedMessages(), getInFlightMessages(), getInFlightNetworkCalls(),
+                getExpiredMessages(), getExpiredTokens(), persistence, getNetworkStatistics(), getVariantStatistics());
+    }
+
+    @Override
+    public void reset() {
+        for (VariantSendMetrics metrics : variantMetrics.values()) {
+            metrics.reset();
+        }
+        messagePersistence.reset();
+        expiredMessages.reset();
+        expiredTokens.reset();
+    }
+
+    private StageStatistics aggregate(String network, String variantID, SendStage stage, List<VariantSendMetrics> group) {
+        final long[] buckets = new long[LatencyHistogram.BUCKETS];
+        long count = 0, items = 0, errors = 0, totalNanos = 0, maxNanos = 0;
+
+        for (VariantSendMetrics metrics : group) {
+            final LatencyHistogram histogram = metrics.latencyOf(stage);
+            histogram.copyBucketsInto(buckets);
+            count += histogram.getCount();
+            totalNanos += histogram.getTotalNanos();
+            maxNanos = Math.max(maxNanos, histogram.getMaxNanos());
+            items += metrics.itemsOf(stage);
+            errors += metrics.errorsOf(stage);
+        }
+
+        long bucketTotal = 0;
+        for (long bucket : buckets) {
+            bucketTotal += bucket;
+        }
+
+        final long meanMicros = count == 0 ? 0 : (totalNanos / count) / 1000;
+        return new StageStatistics(network, variantID, stage.name(), count, items, errors, meanMicros,
+                LatencyHistogram.percentileOf(buckets, bucketTotal, 0.5),
+                LatencyHistogram.percentileOf(buckets, bucketTotal, 0.99),
+                maxNanos / 1000);
+    }
+
+    private String networkOf(VariantSendMetrics metrics) {
+        final String network = metrics.getNetwork();
+        return network == null ? UNKNOWN_NETWORK : network;
+    }
+}
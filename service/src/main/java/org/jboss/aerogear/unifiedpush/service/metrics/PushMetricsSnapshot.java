@@ -0,0 +1,81 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import java.util.List;
+
+/**
+ * Point in time copy of the metrics of the send pipeline, as exposed to the RESTful metrics endpoint.
+ */
+public class PushMetricsSnapshot {
+
+    private final long queuedMessages;
+    private final long inFlightMessages;
+    private final long inFlightNetworkCalls;
+    private final long expiredMessages;
+    private final long expiredTokens;
+    private final StageStatistics messagePersistence;
+    private final List<StageStatistics> networks;
+    private final List<StageStatistics> variants;
+
+    public PushMetricsSnapshot(long queuedMessages, long inFlightMessages, long inFlightNetworkCalls, long expiredMessages,
+                               long expiredTokens, StageStatistics messagePersistence, List<StageStatistics> networks, List<StageStatistics> variants) {
+        this.queuedMessages = queuedMessages;
+        this.inFlightMessages = inFlightMessages;
+        this.inFlightNetworkCalls = inFlightNetworkCalls;
+        this.expiredMessages = expiredMessages;
+        this.expiredTokens = expiredTokens;
+        this.messagePersistence = messagePersistence;
+        this.networks = networks;
+        this.variants = variants;
+    }
+
+    public long getQueuedMessages() {
+        return queuedMessages;
+    }
+
+    public long getInFlightMessages() {
+        return inFlightMessages;
+    }
+
+    public long getInFlightNetworkCalls() {
+        return inFlightNetworkCalls;
+    }
+
+    public long getExpiredMessages() {
+        return expiredMessages;
+    }
+
+    public long getExpiredTokens() {
+        return expiredTokens;
+    }
+
+    /**
+     * Latency of storing the initial push message history entry, for all incoming messages
+     */
+    public StageStatistics getMessagePersistence() {
+        return messagePersistence;
+    }
+
+    public List<StageStatistics> getNetworks() {
+        return networks;
+    }
+
+    public List<StageStatistics> getVariants() {
+        return variants;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+/**
+ * Calls to a push network and their failures, during the last {@link PushMetricsRegistry#RECENT_WINDOW_SECONDS} seconds.
+ */
+public class RecentNetworkActivity {
+
+    private final String network;
+    private final long calls;
+    private final long errors;
+
+    public RecentNetworkActivity(String network, long calls, long errors) {
+        this.network = network;
+        this.calls = calls;
+        this.errors = errors;
+    }
+
+    public String getNetwork() {
+        return network;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Ratio of failed calls, between <code>0.0</code> and <code>1.0</code>
+     */
+    public double getErrorRate() {
+        if (calls == 0) {
+            return errors > 0 ? 1.0 : 0.0;
+        }
+        return Math.min(1.0, (double) errors / calls);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over a sliding window of the last seconds, using one slot per second. Slots are recycled lazily,
+ * so neither updating nor reading needs a background task.
+ */
+public final class RollingWindowCounter {
+
+    private final int slots;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray seconds;
+
+    public RollingWindowCounter(int windowSeconds) {
+        this.slots = windowSeconds;
+        this.counts = new AtomicLongArray(windowSeconds);
+        this.seconds = new AtomicLongArray(windowSeconds);
+    }
+
+    public void increment() {
+        add(currentSecond(), 1L);
+    }
+
+    /**
+     * Returns the number of events within the window.
+     */
+    public long sum() {
+        return sum(currentSecond());
+    }
+
+    void add(long second, long delta) {
+        final int slot = (int) (second % slots);
+        final long slotSecond = seconds.get(slot);
+        if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second)) {
+            // we won the race to recycle the slot, events of the same second in between may get lost
+            counts.set(slot, 0L);
+        }
+        counts.addAndGet(slot, delta);
+    }
+
+    long sum(long second) {
+        long sum = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (second - seconds.get(slot) < slots) {
+                sum += counts.get(slot);
+            }
+        }
+        return sum;
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000L;
+    }
+}
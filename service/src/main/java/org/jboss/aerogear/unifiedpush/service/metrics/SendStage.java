@@ -0,0 +1,48 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+/**
+ * The different stages of the send pipeline, for which latencies and item counts are recorded.
+ */
+public enum SendStage {
+
+    /**
+     * Querying the device tokens of a variant, matching the given criteria.
+     */
+    TOKEN_RESOLUTION,
+
+    /**
+     * Transforming the submitted message into the format of the push network.
+     */
+    PAYLOAD_BUILD,
+
+    /**
+     * The actual round-trip(s) to the push network.
+     */
+    NETWORK,
+
+    /**
+     * Deleting installations, that have been reported as invalid by the push network.
+     */
+    CLEANUP,
+
+    /**
+     * Storing the delivery status in the push message history.
+     */
+    METRICS_PERSISTENCE
+}
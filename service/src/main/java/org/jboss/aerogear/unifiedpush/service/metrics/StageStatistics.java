@@ -0,0 +1,101 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+/**
+ * Read-only view on the counters and latencies of a {@link SendStage}, either for a single variant or
+ * aggregated for an entire push network.
+ */
+public class StageStatistics {
+
+    private final String network;
+    private final String variantID;
+    private final String stage;
+    private final long count;
+    private final long items;
+    private final long errors;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    public StageStatistics(String network, String variantID, String stage, long count, long items, long errors,
+                           long meanMicros, long p50Micros, long p99Micros, long maxMicros) {
+        this.network = network;
+        this.variantID = variantID;
+        this.stage = stage;
+        this.count = count;
+        this.items = items;
+        this.errors = errors;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Type name of the push network, e.g. <code>android</code>
+     */
+    public String getNetwork() {
+        return network;
+    }
+
+    /**
+     * The variant, or <code>null</code> when aggregated over the entire network
+     */
+    public String getVariantID() {
+        return variantID;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * Number of recorded executions of the stage
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Number of processed items (e.g. tokens)
+     */
+    public long getItems() {
+        return items;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+}
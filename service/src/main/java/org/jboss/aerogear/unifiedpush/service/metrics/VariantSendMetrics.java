@@ -0,0 +1,136 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.jboss.aerogear.unifiedpush.trace.FlightRecorder;
+import org.jboss.aerogear.unifiedpush.trace.TraceEventType;
+
+/**
+ * Counters and latency histograms of the send pipeline for a single variant.
+ */
+public final class VariantSendMetrics {
+
+    private static final SendStage[] STAGES = SendStage.values();
+
+    private final String variantID;
+    private volatile String network;
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[STAGES.length];
+    private final StripedCounter[] items = new StripedCounter[STAGES.length];
+    private final StripedCounter[] errors = new StripedCounter[STAGES.length];
+    private final StripedCounter inFlight = new StripedCounter();
+    private final RollingWindowCounter recentCalls = new RollingWindowCounter(PushMetricsRegistry.RECENT_WINDOW_SECONDS);
+    private final RollingWindowCounter recentErrors = new RollingWindowCounter(PushMetricsRegistry.RECENT_WINDOW_SECONDS);
+
+    VariantSendMetrics(String variantID, String network) {
+        this.variantID = variantID;
+        this.network = network;
+
+        for (int i = 0; i < STAGES.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            items[i] = new StripedCounter();
+            errors[i] = new StripedCounter();
+        }
+    }
+
+    /**
+     * Records the duration of the given stage, and the number of items (e.g. tokens) it processed.
+     */
+    public void record(SendStage stage, long nanos, int itemCount) {
+        latencies[stage.ordinal()].record(nanos);
+        items[stage.ordinal()].add(itemCount);
+        FlightRecorder.record(traceTypeOf(stage), stage.name(), detail(), itemCount, nanos);
+    }
+
+    /**
+     * Records a failure of the given stage.
+     */
+    public void recordError(SendStage stage) {
+        errors[stage.ordinal()].increment();
+        if (stage == SendStage.NETWORK) {
+            recentErrors.increment();
+        }
+        FlightRecorder.recordFailure(traceTypeOf(stage), stage.name(), detail(), 0);
+    }
+
+    private static TraceEventType traceTypeOf(SendStage stage) {
+        return stage == SendStage.NETWORK ? TraceEventType.NETWORK_CALL : TraceEventType.SEND_STAGE;
+    }
+
+    private String detail() {
+        return network + "/" + variantID;
+    }
+
+    /**
+     * Marks the begin of a call to the push network, must be followed by {@link #networkCallFinished()}.
+     */
+    public void networkCallStarted() {
+        inFlight.increment();
+        recentCalls.increment();
+    }
+
+    public void networkCallFinished() {
+        inFlight.decrement();
+    }
+
+    public String getVariantID() {
+        return variantID;
+    }
+
+    /**
+     * The type name of the variant, or <code>null</code> if not yet known.
+     */
+    public String getNetwork() {
+        return network;
+    }
+
+    void setNetwork(String network) {
+        this.network = network;
+    }
+
+    long getInFlight() {
+        return inFlight.sum();
+    }
+
+    long getRecentCalls() {
+        return recentCalls.sum();
+    }
+
+    long getRecentErrors() {
+        return recentErrors.sum();
+    }
+
+    LatencyHistogram latencyOf(SendStage stage) {
+        return latencies[stage.ordinal()];
+    }
+
+    long itemsOf(SendStage stage) {
+        return items[stage.ordinal()].sum();
+    }
+
+    long errorsOf(SendStage stage) {
+        return errors[stage.ordinal()].sum();
+    }
+
+    void reset() {
+        for (int i = 0; i < STAGES.length; i++) {
+            latencies[i].reset();
+            items[i].reset();
+            errors[i].reset();
+        }
+    }
+}
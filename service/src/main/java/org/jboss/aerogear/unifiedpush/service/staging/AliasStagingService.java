@@ -0,0 +1,65 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.staging;
+
+import org.jboss.aerogear.unifiedpush.dao.StagedAliasDao;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Service class to stage the alias lists of send requests, that are too large to be bound as query parameters. Every
+ * operation runs in a transaction of its own, so a stage is visible to the token queries of all variants right away.
+ */
+@Stateless
+public class AliasStagingService {
+
+    @Inject
+    private StagedAliasDao stagedAliasDao;
+
+    /**
+     * Stores the given distinct aliases, and returns the ID of their stage.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String stage(Collection<String> aliases) {
+        final String stageId = UUID.randomUUID().toString();
+        stagedAliasDao.stage(stageId, aliases, new Date());
+        return stageId;
+    }
+
+    /**
+     * Removes the aliases of the given stage, once the tokens of all variants have been resolved.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void unstage(String stageId) {
+        stagedAliasDao.deleteStage(stageId);
+    }
+
+    /**
+     * Removes the stages, that are older than the given age, e.g. of sends that did not finish before a restart. Returns
+     * the number of removed aliases.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int deleteStagedBefore(long ageMillis) {
+        return stagedAliasDao.deleteStagedBefore(new Date(System.currentTimeMillis() - ageMillis));
+    }
+}
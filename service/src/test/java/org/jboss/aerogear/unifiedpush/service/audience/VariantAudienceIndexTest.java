@@ -0,0 +1,106 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.audience;
+
+import org.jboss.aerogear.unifiedpush.api.Installation;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VariantAudienceIndexTest {
+
+    private VariantAudienceIndex index;
+
+    @Before
+    public void setUp() {
+        index = new VariantAudienceIndex(0);
+        index.put(installation("1", "token-1", "foo@bar.org", "Android Phone", "soccer"));
+        index.put(installation("2", "token-2", "foo@bar.org", "Android Tablet", "news"));
+        index.put(installation("3", "token-3", "bar@foo.org", "Android Phone", "soccer", "news"));
+    }
+
+    @Test
+    public void emptyCriteriaMatchAll() {
+        assertEquals(Arrays.asList("token-1", "token-2", "token-3"), index.findDeviceTokens(null, Collections.<String>emptyList(), null));
+    }
+
+    @Test
+    public void valuesAreOredAndCriteriaAreAnded() {
+        assertEquals(Arrays.asList("token-1", "token-3"), index.findDeviceTokens(Arrays.asList("soccer", "sports"), null, null));
+        assertEquals(Arrays.asList("token-2", "token-3"), index.findDeviceTokens(Arrays.asList("news"), null, null));
+        assertEquals(Arrays.asList("token-2"), index.findDeviceTokens(Arrays.asList("news"), Arrays.asList("foo@bar.org"), null));
+        assertEquals(Arrays.asList("token-3"), index.findDeviceTokens(Arrays.asList("news"), null, Arrays.asList("Android Phone")));
+        assertTrue(index.findDeviceTokens(null, Arrays.asList("nobody"), null).isEmpty());
+        assertEquals(2, index.countDeviceTokens(null, Arrays.asList("foo@bar.org"), null));
+    }
+
+    @Test
+    public void updateReplacesIndexedValues() {
+        index.put(installation("1", "token-1b", "bar@foo.org", "Android Phone"));
+
+        assertEquals(Arrays.asList("token-2"), index.findDeviceTokens(null, Arrays.asList("foo@bar.org"), null));
+        assertEquals(Arrays.asList("token-1b", "token-3"), index.findDeviceTokens(null, Arrays.asList("bar@foo.org"), null));
+        assertEquals(Arrays.asList("token-3"), index.findDeviceTokens(Arrays.asList("soccer"), null, null));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void removedAndDisabledInstallationsAreNotMatched() {
+        index.remove("2");
+        final Installation disabled = installation("3", "token-3", "bar@foo.org", "Android Phone");
+        disabled.setEnabled(false);
+        index.put(disabled);
+
+        assertEquals(Arrays.asList("token-1"), index.findDeviceTokens(null, null, null));
+        assertTrue(index.findDeviceTokens(Arrays.asList("news"), null, null).isEmpty());
+
+        // the ordinal of a removed installation is reused:
+        index.put(installation("4", "token-4", "foo@bar.org", "Android Phone"));
+        assertEquals(Arrays.asList("token-1", "token-4"), index.findDeviceTokens(null, Arrays.asList("foo@bar.org"), null));
+    }
+
+    @Test
+    public void aliasSharedByManyInstallations() {
+        for (int i = 4; i < 20; i++) {
+            index.put(installation(String.valueOf(i), "token-" + i, "shared@foo.org", "Android Phone"));
+        }
+        for (int i = 4; i < 20; i += 2) {
+            index.remove(String.valueOf(i));
+        }
+
+        assertEquals(8, index.countDeviceTokens(null, Arrays.asList("shared@foo.org"), null));
+        assertEquals(10, index.countDeviceTokens(null, Arrays.asList("shared@foo.org", "foo@bar.org"), null));
+        assertEquals("token-5", index.findDeviceTokens(null, Arrays.asList("shared@foo.org"), null).get(0));
+    }
+
+    private static Installation installation(String id, String token, String alias, String deviceType, String... categories) {
+        final Installation installation = new Installation();
+        installation.setId(id);
+        installation.setDeviceToken(token);
+        installation.setAlias(alias);
+        installation.setDeviceType(deviceType);
+        installation.setCategories(new HashSet<String>(Arrays.asList(categories)));
+        return installation;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.jboss.aerogear.unifiedpush.api.AndroidVariant;
+import org.jboss.aerogear.unifiedpush.api.iOSVariant;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PushMetricsRegistryTest {
+
+    @Test
+    public void histogramPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals(100, histogram.getCount());
+        // upper bound of the power-of-two bucket:
+        assertEquals(128, histogram.getPercentileMicros(0.5));
+        assertEquals(128, histogram.getPercentileMicros(0.99));
+        assertEquals(65536, histogram.getPercentileMicros(1.0));
+        assertEquals(50000, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void stripedCounterSumsUp() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, counter.sum());
+    }
+
+    @Test
+    public void aggregatePerNetwork() {
+        final PushMetricsRegistry registry = new PushMetricsRegistry();
+
+        final AndroidVariant android1 = new AndroidVariant();
+        final AndroidVariant android2 = new AndroidVariant();
+        final iOSVariant ios = new iOSVariant();
+
+        registry.forVariant(android1).record(SendStage.NETWORK, TimeUnit.MILLISECONDS.toNanos(2), 1000);
+        registry.forVariant(android2).record(SendStage.NETWORK, TimeUnit.MILLISECONDS.toNanos(4), 500);
+        registry.forVariant(android2).recordError(SendStage.NETWORK);
+        registry.forVariant(ios).record(SendStage.NETWORK, TimeUnit.MILLISECONDS.toNanos(1), 10);
+
+        final List<StageStatistics> networks = registry.getNetworkStatistics();
+        StageStatistics androidNetwork = null;
+        for (StageStatistics statistics : networks) {
+            if ("android".equals(statistics.getNetwork()) && SendStage.NETWORK.name().equals(statistics.getStage())) {
+                androidNetwork = statistics;
+            }
+        }
+
+        assertTrue(androidNetwork != null);
+        assertNull(androidNetwork.getVariantID());
+        assertEquals(2, androidNetwork.getCount());
+        assertEquals(1500, androidNetwork.getItems());
+        assertEquals(1, androidNetwork.getErrors());
+        assertEquals(3000, androidNetwork.getMeanMicros());
+    }
+
+    @Test
+    public void removedVariantIsNotReported() {
+        final PushMetricsRegistry registry = new PushMetricsRegistry();
+        final AndroidVariant android = new AndroidVariant();
+        registry.forVariant(android).record(SendStage.NETWORK, TimeUnit.MILLISECONDS.toNanos(2), 1000);
+
+        registry.removeVariant(android.getVariantID());
+
+        assertTrue(registry.getVariantStatistics(android.getVariantID()).isEmpty());
+        for (StageStatistics statistics : registry.getNetworkStatistics()) {
+            assertEquals(0, statistics.getCount());
+        }
+    }
+
+    @Test
+    public void queueGauges() {
+        final PushMetricsRegistry registry = new PushMetricsRegistry();
+
+        registry.messageQueued();
+        registry.messageQueued();
+        registry.messageStarted();
+
+        assertEquals(1, registry.getQueuedMessages());
+        assertEquals(1, registry.getInFlightMessages());
+
+        registry.messageFinished();
+        assertEquals(0, registry.getInFlightMessages());
+    }
+
+    @Test
+    public void expirationCounters() {
+        final PushMetricsRegistry registry = new PushMetricsRegistry();
+
+        registry.messageExpired();
+        registry.tokensExpired(5000);
+        registry.tokensExpired(20);
+
+        assertEquals(1, registry.getExpiredMessages());
+        assertEquals(5020, registry.getExpiredTokens());
+        assertEquals(5020, registry.snapshot().getExpiredTokens());
+
+        registry.reset();
+        assertEquals(0, registry.getExpiredTokens());
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.unifiedpush.service.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RollingWindowCounterTest {
+
+    @Test
+    public void countsWithinWindow() {
+        final RollingWindowCounter counter = new RollingWindowCounter(10);
+
+        counter.add(100, 3);
+        counter.add(105, 2);
+
+        assertEquals(5, counter.sum(105));
+        assertEquals(5, counter.sum(109));
+    }
+
+    @Test
+    public void forgetsExpiredSeconds() {
+        final RollingWindowCounter counter = new RollingWindowCounter(10);
+
+        counter.add(100, 3);
+        counter.add(105, 2);
+
+        // second 100 left the window:
+        assertEquals(2, counter.sum(110));
+
+        // slot of second 100 gets recycled:
+        counter.add(110, 1);
+        assertEquals(3, counter.sum(110));
+        assertEquals(0, counter.sum(200));
+    }
+}